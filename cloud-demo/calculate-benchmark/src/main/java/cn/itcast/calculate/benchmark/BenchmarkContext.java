@@ -0,0 +1,139 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.CalculateApplication;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 压测环境：H2内存库 + calculate-service完整Spring上下文
+ *
+ * 数据规模（接近生产）：
+ * - rate_table：10个险种 × 500个车型 × 40个地区 = 20万行
+ * - discount_table：20个渠道 × 40个地区 = 800行
+ * - ncd_table：出险次数0~9 = 10行
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class BenchmarkContext {
+
+    public static final int KIND_CODES = 10;
+    public static final int CAR_MODELS = 500;
+    public static final int AREA_CODES = 40;
+    public static final int CHANNELS = 20;
+    public static final int CLAIM_COUNTS = 10;
+
+    private static final String JDBC_URL = "jdbc:h2:mem:calculate_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * 初始化H2数据并启动calculate-service上下文（不启动Web容器）
+     */
+    public static ConfigurableApplicationContext start() {
+        return start(new String[0]);
+    }
+
+    /**
+     * 同上，追加的参数覆盖默认参数（如--logging.level.cn.itcast=debug）
+     */
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        initDatabase();
+        String[] defaults = {
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.url=" + JDBC_URL,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.sleuth.enabled=false",
+                "--calculate.snapshot.reload-cron=-",
+                "--logging.level.root=warn",
+                "--logging.level.cn.itcast=warn"};
+        String[] args = Arrays.copyOf(defaults, defaults.length + extraArgs.length);
+        System.arraycopy(extraArgs, 0, args, defaults.length, extraArgs.length);
+        // 命令行参数优先级高于calculate-service自带的application.yml；同名参数后出现的生效
+        return new SpringApplicationBuilder(CalculateApplication.class).run(args);
+    }
+
+    /**
+     * 生成随机请求（险种/车型/地区/渠道/出险次数均匀分布）
+     */
+    public static CalculateRequest[] randomRequests(int size, long seed) {
+        Random random = new Random(seed);
+        CalculateRequest[] requests = new CalculateRequest[size];
+        for (int i = 0; i < size; i++) {
+            CalculateRequest request = new CalculateRequest();
+            request.setKindCode(kindCode(random.nextInt(KIND_CODES)));
+            request.setCarModel(carModel(random.nextInt(CAR_MODELS)));
+            request.setAreaCode(areaCode(random.nextInt(AREA_CODES)));
+            request.setChannel(channel(random.nextInt(CHANNELS)));
+            request.setClaimCount(random.nextInt(CLAIM_COUNTS));
+            request.setAmount(BigDecimal.valueOf(50_000 + random.nextInt(250_000)));
+            requests[i] = request;
+        }
+        return requests;
+    }
+
+    public static String kindCode(int i) {
+        return String.format("0502%02d", i);
+    }
+
+    public static String carModel(int i) {
+        return String.format("CM%04d", i);
+    }
+
+    public static String areaCode(int i) {
+        return String.valueOf(3201 + i);
+    }
+
+    public static String channel(int i) {
+        return String.format("CH%02d", i);
+    }
+
+    /**
+     * 建表并用SYSTEM_RANGE批量生成数据，编码规则与上面的kindCode/carModel/areaCode/channel一致
+     */
+    private static void initDatabase() {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS rate_table");
+            statement.execute("DROP TABLE IF EXISTS discount_table");
+            statement.execute("DROP TABLE IF EXISTS ncd_table");
+
+            statement.execute("CREATE TABLE rate_table ("
+                    + "kind_code VARCHAR(10) NOT NULL, car_model VARCHAR(20) NOT NULL, area_code VARCHAR(10) NOT NULL, "
+                    + "rate DECIMAL(10,6) NOT NULL, PRIMARY KEY (kind_code, car_model, area_code))");
+            statement.execute("CREATE TABLE discount_table ("
+                    + "channel VARCHAR(20) NOT NULL, area_code VARCHAR(10) NOT NULL, "
+                    + "discount DECIMAL(6,4) NOT NULL, PRIMARY KEY (channel, area_code))");
+            statement.execute("CREATE TABLE ncd_table ("
+                    + "claim_count INT NOT NULL PRIMARY KEY, ncd_rate DECIMAL(6,4) NOT NULL)");
+
+            statement.execute("INSERT INTO rate_table (kind_code, car_model, area_code, rate) "
+                    + "SELECT '0502' || LPAD(CAST(MOD(X, " + KIND_CODES + ") AS VARCHAR), 2, '0'), "
+                    + "'CM' || LPAD(CAST(MOD(X / " + KIND_CODES + ", " + CAR_MODELS + ") AS VARCHAR), 4, '0'), "
+                    + "CAST(3201 + X / " + (KIND_CODES * CAR_MODELS) + " AS VARCHAR), "
+                    + "0.010000 + MOD(X, 997) * 0.000010 "
+                    + "FROM SYSTEM_RANGE(0, " + (KIND_CODES * CAR_MODELS * AREA_CODES - 1) + ")");
+            statement.execute("INSERT INTO discount_table (channel, area_code, discount) "
+                    + "SELECT 'CH' || LPAD(CAST(MOD(X, " + CHANNELS + ") AS VARCHAR), 2, '0'), "
+                    + "CAST(3201 + X / " + CHANNELS + " AS VARCHAR), "
+                    + "0.7000 + MOD(X, 31) * 0.0100 "
+                    + "FROM SYSTEM_RANGE(0, " + (CHANNELS * AREA_CODES - 1) + ")");
+            statement.execute("INSERT INTO ncd_table (claim_count, ncd_rate) "
+                    + "SELECT X, 0.6000 + X * 0.1000 FROM SYSTEM_RANGE(0, " + (CLAIM_COUNTS - 1) + ")");
+        } catch (SQLException e) {
+            throw new IllegalStateException("初始化H2压测数据失败", e);
+        }
+    }
+}
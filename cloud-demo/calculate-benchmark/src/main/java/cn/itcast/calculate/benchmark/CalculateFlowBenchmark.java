@@ -0,0 +1,74 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.service.CalculateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整算费流程JMH基准测试
+ *
+ * - parallel：calculateParallel，线程池并行查3张表 + 计算
+ * - snapshot：calculateSnapshot，内存快照 + 计算（对照组）
+ *
+ * 运行：java -jar target/benchmarks.jar CalculateFlowBenchmark -prof gc
+ * 多线程：追加 -t 16
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculateFlowBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private ConfigurableApplicationContext context;
+    private CalculateService calculateService;
+    private CalculateRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        calculateService = context.getBean(CalculateService.class);
+        requests = BenchmarkContext.randomRequests(SIZE, 11L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private CalculateRequest nextRequest() {
+        return requests[ThreadLocalRandom.current().nextInt(SIZE)];
+    }
+
+    @Benchmark
+    public CalculateResponse parallel() {
+        return calculateService.calculateParallel(nextRequest());
+    }
+
+    @Benchmark
+    public CalculateResponse snapshot() {
+        return calculateService.calculateSnapshot(nextRequest());
+    }
+}
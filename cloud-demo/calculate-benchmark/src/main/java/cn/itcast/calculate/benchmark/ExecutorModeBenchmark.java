@@ -0,0 +1,120 @@
+package cn.itcast.calculate.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 算费查询执行模式压测：平台线程池 vs 每任务一线程 vs 虚拟线程
+ *
+ * 不依赖数据库：每个查询用Semaphore模拟连接池（默认10个连接）+ sleep模拟SQL耗时（默认30ms），
+ * 模拟请求线程（Tomcat线程）并发发起3个查询并等待结果，统计单次算费的p50/p99延迟和吞吐量
+ *
+ * 非JMH压测（关注饱和状态下的尾延迟，而不是单次调用耗时）
+ *
+ * 运行（参数依次为：并发请求线程数 每线程请求数 SQL耗时ms 数据库连接数）：
+ * java -cp target/benchmarks.jar cn.itcast.calculate.benchmark.ExecutorModeBenchmark 200 20 30 10
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class ExecutorModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long dbLatencyMs = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        int dbConnections = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        System.out.printf("并发请求线程：%d，每线程请求数：%d，SQL耗时：%dms，数据库连接数：%d%n",
+                clients, requestsPerClient, dbLatencyMs, dbConnections);
+        System.out.println("----------------------------------------------------------------");
+
+        // 核心10，最大20，队列100，CallerRunsPolicy（溢出回落到调用方线程，对比线程池排队与回落的影响）
+        ThreadPoolExecutor platform = new ThreadPoolExecutor(10, 20, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100), new ThreadPoolExecutor.CallerRunsPolicy());
+        run("platform", platform, clients, requestsPerClient, dbLatencyMs, dbConnections);
+        platform.shutdown();
+
+        // 与SimpleAsyncTaskExecutor一致：每个任务新建一个线程
+        run("per-task", command -> new Thread(command).start(), clients, requestsPerClient, dbLatencyMs, dbConnections);
+
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            run("virtual", virtual, clients, requestsPerClient, dbLatencyMs, dbConnections);
+            virtual.shutdown();
+        } else {
+            System.out.printf("%-9s 当前JDK（%s）不支持虚拟线程，跳过%n", "virtual", System.getProperty("java.version"));
+        }
+    }
+
+    private static void run(String mode, Executor executor, int clients, int requestsPerClient,
+                            long dbLatencyMs, int dbConnections) throws InterruptedException {
+        Semaphore connectionPool = new Semaphore(dbConnections, true);
+        long[] latencies = new long[clients * requestsPerClient];
+        CountDownLatch done = new CountDownLatch(clients);
+
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            final int offset = c * requestsPerClient;
+            Thread client = new Thread(() -> {
+                for (int i = 0; i < requestsPerClient; i++) {
+                    long begin = System.nanoTime();
+                    CompletableFuture<Void> rate = CompletableFuture.runAsync(() -> query(connectionPool, dbLatencyMs), executor);
+                    CompletableFuture<Void> discount = CompletableFuture.runAsync(() -> query(connectionPool, dbLatencyMs), executor);
+                    CompletableFuture<Void> ncd = CompletableFuture.runAsync(() -> query(connectionPool, dbLatencyMs), executor);
+                    CompletableFuture.allOf(rate, discount, ncd).join();
+                    latencies[offset + i] = System.nanoTime() - begin;
+                }
+                done.countDown();
+            });
+            client.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-9s 吞吐量：%8.1f 次/秒，p50：%6.1fms，p99：%6.1fms，max：%6.1fms%n",
+                mode,
+                latencies.length * 1e9 / elapsed,
+                percentile(latencies, 0.50) / 1e6,
+                percentile(latencies, 0.99) / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    /**
+     * 模拟一次数据库查询：先拿连接，再执行SQL
+     */
+    private static void query(Semaphore connectionPool, long dbLatencyMs) {
+        try {
+            connectionPool.acquire();
+            try {
+                Thread.sleep(dbLatencyMs);
+            } finally {
+                connectionPool.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
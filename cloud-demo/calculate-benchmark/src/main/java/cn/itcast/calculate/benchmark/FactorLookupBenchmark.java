@@ -0,0 +1,118 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.mapper.DiscountMapper;
+import cn.itcast.calculate.mapper.NcdMapper;
+import cn.itcast.calculate.mapper.RateMapper;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 因子查询JMH基准测试：每次操作查询费率/折扣/NCD三个因子
+ *
+ * - db：每次都走MyBatis查H2
+ * - cached：按组合主键缓存在ConcurrentHashMap（首次查库，之后命中本地缓存）
+ * - snapshot：从不可变内存快照读取
+ *
+ * 运行：java -jar target/benchmarks.jar FactorLookupBenchmark -prof gc
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FactorLookupBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private ConfigurableApplicationContext context;
+    private RateMapper rateMapper;
+    private DiscountMapper discountMapper;
+    private NcdMapper ncdMapper;
+    private FactorSnapshotHolder snapshotHolder;
+
+    private final ConcurrentHashMap<String, BigDecimal> rateCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BigDecimal> discountCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, BigDecimal> ncdCache = new ConcurrentHashMap<>();
+
+    private CalculateRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        rateMapper = context.getBean(RateMapper.class);
+        discountMapper = context.getBean(DiscountMapper.class);
+        ncdMapper = context.getBean(NcdMapper.class);
+        snapshotHolder = context.getBean(FactorSnapshotHolder.class);
+        requests = BenchmarkContext.randomRequests(SIZE, 7L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private CalculateRequest nextRequest() {
+        return requests[ThreadLocalRandom.current().nextInt(SIZE)];
+    }
+
+    @Benchmark
+    public void db(Blackhole blackhole) {
+        CalculateRequest request = nextRequest();
+        Rate rate = rateMapper.queryRate(request.getKindCode(), request.getCarModel(), request.getAreaCode());
+        Discount discount = discountMapper.queryDiscount(request.getChannel(), request.getAreaCode());
+        Ncd ncd = ncdMapper.queryNcd(request.getClaimCount());
+        blackhole.consume(rate.getRate());
+        blackhole.consume(discount.getDiscount());
+        blackhole.consume(ncd.getNcdRate());
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        CalculateRequest request = nextRequest();
+        blackhole.consume(rateCache.computeIfAbsent(
+                FactorSnapshot.rateKey(request.getKindCode(), request.getCarModel(), request.getAreaCode()),
+                key -> rateMapper.queryRate(request.getKindCode(), request.getCarModel(), request.getAreaCode()).getRate()));
+        blackhole.consume(discountCache.computeIfAbsent(
+                FactorSnapshot.discountKey(request.getChannel(), request.getAreaCode()),
+                key -> discountMapper.queryDiscount(request.getChannel(), request.getAreaCode()).getDiscount()));
+        blackhole.consume(ncdCache.computeIfAbsent(
+                request.getClaimCount(),
+                key -> ncdMapper.queryNcd(key).getNcdRate()));
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole blackhole) {
+        CalculateRequest request = nextRequest();
+        FactorSnapshot snapshot = snapshotHolder.current();
+        blackhole.consume(snapshot.getRate(request.getKindCode(), request.getCarModel(), request.getAreaCode()));
+        blackhole.consume(snapshot.getDiscount(request.getChannel(), request.getAreaCode()));
+        blackhole.consume(snapshot.getNcdRate(request.getClaimCount()));
+    }
+}
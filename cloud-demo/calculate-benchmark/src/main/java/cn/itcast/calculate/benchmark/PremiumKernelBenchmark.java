@@ -0,0 +1,86 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.pricing.PremiumKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保费计算JMH基准测试：BigDecimal链式计算 vs 定点数内核
+ *
+ * 运行：java -jar target/benchmarks.jar PremiumKernelBenchmark -prof gc
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PremiumKernelBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private final BigDecimal[] amounts = new BigDecimal[SIZE];
+    private final long[] amountCents = new long[SIZE];
+
+    private final BigDecimal rate = new BigDecimal("0.014320");
+    private final BigDecimal discount = new BigDecimal("0.7225");
+    private final BigDecimal ncdRate = new BigDecimal("0.8500");
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1L);
+        for (int i = 0; i < SIZE; i++) {
+            long cents = 5_000_000L + random.nextInt(50_000_000);
+            amountCents[i] = cents;
+            amounts[i] = BigDecimal.valueOf(cents, 2);
+        }
+    }
+
+    /**
+     * 原写法：三次multiply + setScale
+     */
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal amount = amounts[index++ & (SIZE - 1)];
+        return amount.multiply(rate)
+                .multiply(discount)
+                .multiply(ncdRate)
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 定点数内核（BigDecimal入参/出参）
+     */
+    @Benchmark
+    public BigDecimal kernel() {
+        BigDecimal amount = amounts[index++ & (SIZE - 1)];
+        return PremiumKernel.premium(amount, rate, discount, ncdRate);
+    }
+
+    /**
+     * 定点数内核（因子已预先转换为long，全程无对象分配）
+     */
+    @Benchmark
+    public long kernelScaledLong() {
+        long amount = amountCents[index++ & (SIZE - 1)];
+        return PremiumKernel.premiumCents(amount, 2, 14320L, 6, 7225L, 4, 8500L, 4);
+    }
+}
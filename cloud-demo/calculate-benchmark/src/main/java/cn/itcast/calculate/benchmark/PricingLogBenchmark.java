@@ -0,0 +1,88 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.service.CalculateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 算费日志JMH基准测试：同步逐笔写出 vs 环形缓冲区异步采样写出
+ *
+ * 日志级别与calculate-service默认配置一致（cn.itcast: debug），写入target/pricing-log-benchmark.log
+ * （logback-benchmark.xml，不输出到控制台）
+ *
+ * - serial：串行算费（规则默认因子，不查库），日志开销占比最大
+ * - parallel：并行查3张表（H2），不经过报价结果缓存
+ *
+ * 运行：java -jar target/benchmarks.jar PricingLogBenchmark -t 8
+ * 对比两种模式的吞吐量即为算费线程上节省的日志开销；-prof gc可查看每笔分配
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricingLogBenchmark {
+
+    private static final int SIZE = 4096;
+
+    /**
+     * calculate.log.mode
+     */
+    @Param({"sync", "async"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private CalculateService calculateService;
+    private CalculateRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(
+                "--logging.config=classpath:logback-benchmark.xml",
+                "--logging.level.cn.itcast=debug",
+                "--calculate.log.mode=" + mode,
+                "--calculate.quote-cache.enabled=false");
+        calculateService = context.getBean(CalculateService.class);
+        requests = BenchmarkContext.randomRequests(SIZE, 17L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private CalculateRequest nextRequest() {
+        return requests[ThreadLocalRandom.current().nextInt(SIZE)];
+    }
+
+    @Benchmark
+    public CalculateResponse serial() {
+        return calculateService.calculate(nextRequest());
+    }
+
+    @Benchmark
+    public CalculateResponse parallel() {
+        return calculateService.calculateParallelUncached(nextRequest());
+    }
+}
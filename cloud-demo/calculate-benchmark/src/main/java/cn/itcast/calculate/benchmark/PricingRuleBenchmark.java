@@ -0,0 +1,111 @@
+package cn.itcast.calculate.benchmark;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pricing.PremiumKernel;
+import cn.itcast.calculate.rule.PricingPlan;
+import cn.itcast.calculate.rule.PricingRules;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定价规则JMH基准测试：编译后的规则 vs 每笔解析规则 vs 基础公式内核
+ *
+ * 使用calculate-service自带的pricing-rules.json（050200：车龄、地区附加费、渠道活动三个附加因子）
+ *
+ * 运行：java -jar target/benchmarks.jar PricingRuleBenchmark -prof gc
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingRuleBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private static final String[] AREA_CODES = {"3101", "1101", "3201", "4401"};
+    private static final String[] CHANNELS = {"APP", "WECHAT", "AGENT"};
+
+    private final CalculateRequest[] requests = new CalculateRequest[SIZE];
+
+    private final BigDecimal rate = new BigDecimal("0.014320");
+    private final BigDecimal discount = new BigDecimal("0.7225");
+    private final BigDecimal ncdRate = new BigDecimal("0.8500");
+
+    private PricingRules.Product product;
+    private PricingPlan plan;
+
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        PricingRules rules;
+        try (InputStream in = PricingRuleBenchmark.class.getResourceAsStream("/pricing-rules.json")) {
+            rules = new ObjectMapper().readValue(in, PricingRules.class);
+        }
+        for (PricingRules.Product candidate : rules.getProducts()) {
+            if ("050200".equals(candidate.getKindCode())) {
+                product = candidate;
+            }
+        }
+        plan = PricingPlan.compile(product);
+
+        Random random = new Random(1L);
+        for (int i = 0; i < SIZE; i++) {
+            CalculateRequest request = new CalculateRequest();
+            request.setKindCode("050200");
+            request.setAmount(BigDecimal.valueOf(5_000_000L + random.nextInt(50_000_000), 2));
+            request.setCarModel("GL8");
+            request.setAreaCode(AREA_CODES[random.nextInt(AREA_CODES.length)]);
+            request.setChannel(CHANNELS[random.nextInt(CHANNELS.length)]);
+            request.setClaimCount(0);
+            request.setCarAge(random.nextInt(12));
+            requests[i] = request;
+        }
+    }
+
+    /**
+     * 加载时编译一次，算费时直接求值（服务中的用法）
+     */
+    @Benchmark
+    public BigDecimal compiled() {
+        CalculateRequest request = requests[index++ & (SIZE - 1)];
+        return plan.premium(request, rate, discount, ncdRate);
+    }
+
+    /**
+     * 每笔重新解析公式和因子定义（解释执行的上限开销）
+     */
+    @Benchmark
+    public BigDecimal interpreted() {
+        CalculateRequest request = requests[index++ & (SIZE - 1)];
+        return PricingPlan.compile(product).premium(request, rate, discount, ncdRate);
+    }
+
+    /**
+     * 基础公式定点数内核（不含附加因子，作为下限参考）
+     */
+    @Benchmark
+    public BigDecimal kernel() {
+        CalculateRequest request = requests[index++ & (SIZE - 1)];
+        return PremiumKernel.premium(request.getAmount(), rate, discount, ncdRate);
+    }
+}
@@ -3,6 +3,7 @@ package cn.itcast.calculate;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 即时算费服务启动类
@@ -12,6 +13,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  */
 @SpringBootApplication
 @MapperScan("cn.itcast.calculate.mapper")
+@EnableScheduling
 public class CalculateApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,101 @@
+package cn.itcast.calculate.bulkhead;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 舱壁（信号量隔离）
+ *
+ * 每张表一个，限制该表同时在途（排队 + 执行）的查询数：
+ * - 提交前tryAcquire，拿不到许可直接返回失败的Future，不排队、不占用线程池、不回落到调用方线程
+ * - 查询完成（成功或失败）时归还许可
+ * - 提交本身失败（线程池拒绝等）时归还许可并返回失败的Future
+ *
+ * 一张表变慢时只会耗尽自己的许可，其他表的查询不受影响
+ *
+ * 统计：
+ * - calls：调用次数
+ * - rejected：快速失败次数
+ * - active：当前在途查询数
+ * - peakActive：在途查询数峰值
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger peakActive = new AtomicInteger();
+
+    public Bulkhead(String name, int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException(name + "舱壁并发上限必须大于0：" + maxConcurrent);
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * 在舱壁内执行
+     *
+     * @param task 提交查询
+     * @return 查询结果；舱壁已满时以BulkheadFullException失败
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> task) {
+        calls.increment();
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return failed(new BulkheadFullException(name, maxConcurrent));
+        }
+        peakActive.accumulateAndGet(getActive(), Math::max);
+
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            return failed(e);
+        }
+        future.whenComplete((value, error) -> permits.release());
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,16 @@
+package cn.itcast.calculate.bulkhead;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 舱壁已满（该表并发查询数达到上限），快速失败
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class BulkheadFullException extends RejectedExecutionException {
+
+    public BulkheadFullException(String name, int maxConcurrent) {
+        super(name + "查询并发已达上限" + maxConcurrent + "，快速失败");
+    }
+}
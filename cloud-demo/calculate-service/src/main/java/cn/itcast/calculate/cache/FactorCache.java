@@ -0,0 +1,289 @@
+package cn.itcast.calculate.cache;
+
+import cn.itcast.calculate.config.FactorCacheProperties;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 因子两级缓存：本地缓存（Caffeine） + Redis
+ *
+ * 读取顺序：本地 → Redis → MySQL，下层命中后回填上层
+ * - 本地：按条数淘汰 + TTL兜底
+ * - Redis：所有实例共享，新启动的实例从Redis预热，不直接打MySQL
+ *
+ * 失效：删除Redis中的key，再通过Redis发布/订阅广播给所有实例（包括自己），
+ * 各实例收到消息后删除本地缓存，秒级全集群可见；
+ * 同时在本实例内发布FactorChangedEvent，通知依赖因子的结果缓存
+ *
+ * 回填与失效并发：加载前记下失效代数，期间本实例发生过失效（含收到的失效消息）则不回填，
+ * 避免把失效前读到的旧值写回Redis和本地缓存。
+ * 剩余窗口：其他实例的失效消息在本实例回填Redis之后才到达时，旧值仍可能留在Redis，
+ * 由Redis TTL兜底，需要强一致时再发一次失效
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class FactorCache {
+
+    /**
+     * 全部失效消息
+     */
+    public static final String INVALIDATE_ALL = "*";
+
+    private static final String RATE = "rate:";
+    private static final String DISCOUNT = "discount:";
+    private static final String NCD = "ncd:";
+
+    @Autowired
+    private FactorCacheProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private Cache<String, BigDecimal> local;
+
+    /**
+     * 失效代数，每次失效+1
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(properties.getLocalTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "calculateFactorLocal");
+        FunctionCounter.builder("calculate.cache.redis.hits", redisHits, LongAdder::sum)
+                .description("因子缓存Redis命中次数").register(meterRegistry);
+        FunctionCounter.builder("calculate.cache.db.loads", dbLoads, LongAdder::sum)
+                .description("因子缓存回源MySQL次数").register(meterRegistry);
+        log.info("因子两级缓存{}，本地上限：{}条，本地TTL：{}s，Redis TTL：{}s",
+                properties.isEnabled() ? "已启用" : "未启用",
+                properties.getLocalMaxSize(), properties.getLocalTtlSeconds(), properties.getRedisTtlSeconds());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public static String rateKey(String kindCode, String carModel, String areaCode) {
+        return RATE + FactorSnapshot.rateKey(kindCode, carModel, areaCode);
+    }
+
+    public static String discountKey(String channel, String areaCode) {
+        return DISCOUNT + FactorSnapshot.discountKey(channel, areaCode);
+    }
+
+    public static String ncdKey(Integer claimCount) {
+        return NCD + claimCount;
+    }
+
+    /**
+     * 只查本地缓存，未启用或未命中返回null
+     */
+    public BigDecimal getIfPresent(String key) {
+        return properties.isEnabled() ? local.getIfPresent(key) : null;
+    }
+
+    /**
+     * 本地未命中时加载：Redis → MySQL，并回填上层
+     *
+     * @param key      缓存key
+     * @param dbLoader MySQL查询，返回值不能为null（缺失时返回默认因子）
+     */
+    public BigDecimal load(String key, Supplier<BigDecimal> dbLoader) {
+        if (!properties.isEnabled()) {
+            return dbLoader.get();
+        }
+        // 排队期间可能已被其他请求加载，asMap().get不计入命中率统计
+        BigDecimal value = local.asMap().get(key);
+        if (value != null) {
+            return value;
+        }
+
+        long gen = generation.get();
+        String redisKey = properties.getKeyPrefix() + key;
+        String cached = redisGet(redisKey);
+        if (cached != null) {
+            redisHits.increment();
+            value = new BigDecimal(cached);
+        } else {
+            dbLoads.increment();
+            value = dbLoader.get();
+            // 加载期间发生过失效，读到的可能是旧值，本次只返回不回填
+            if (generation.get() != gen) {
+                return value;
+            }
+            redisSet(redisKey, value.toPlainString());
+        }
+        if (generation.get() != gen) {
+            return value;
+        }
+        local.put(key, value);
+        // 写入后再检查一次：期间发生过失效则删掉，保证不残留旧值
+        if (generation.get() != gen) {
+            local.invalidate(key);
+            redisDelete(redisKey);
+        }
+        return value;
+    }
+
+    /**
+     * 单个因子变更：删除Redis并广播失效（未启用时只通知本实例）
+     */
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        try {
+            if (properties.isEnabled()) {
+                stringRedisTemplate.delete(properties.getKeyPrefix() + key);
+                stringRedisTemplate.convertAndSend(properties.getInvalidateChannel(), key);
+                log.info("因子缓存失效已广播，key：{}", key);
+            }
+        } finally {
+            local.invalidate(key);
+            eventPublisher.publishEvent(new FactorChangedEvent(this, key));
+        }
+    }
+
+    /**
+     * 批量变更（如整表重新导入）：删除所有Redis因子缓存并广播全部失效
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        try {
+            if (properties.isEnabled()) {
+                deleteByScan(properties.getKeyPrefix() + "*");
+                stringRedisTemplate.convertAndSend(properties.getInvalidateChannel(), INVALIDATE_ALL);
+                log.info("因子缓存全部失效已广播");
+            }
+        } finally {
+            local.invalidateAll();
+            eventPublisher.publishEvent(new FactorChangedEvent(this, INVALIDATE_ALL));
+        }
+    }
+
+    /**
+     * SCAN分批删除，避免KEYS阻塞Redis
+     */
+    private void deleteByScan(String pattern) {
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+            List<byte[]> batch = new ArrayList<>(1000);
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == 1000) {
+                        connection.del(batch.toArray(new byte[0][]));
+                        batch.clear();
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("关闭SCAN游标失败", e);
+            }
+            if (!batch.isEmpty()) {
+                connection.del(batch.toArray(new byte[0][]));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 收到失效消息，只清本地缓存（Redis已由发送方删除）
+     */
+    public void onInvalidateMessage(String key) {
+        generation.incrementAndGet();
+        if (INVALIDATE_ALL.equals(key)) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+        eventPublisher.publishEvent(new FactorChangedEvent(this, key));
+        log.debug("收到因子缓存失效消息，key：{}", key);
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("localSize", local.estimatedSize());
+        stats.put("localHitRate", local.stats().hitRate());
+        stats.put("localHits", local.stats().hitCount());
+        stats.put("localMisses", local.stats().missCount());
+        stats.put("localEvictions", local.stats().evictionCount());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("dbLoads", dbLoads.sum());
+        stats.put("redisErrors", redisErrors.sum());
+        return stats;
+    }
+
+    /**
+     * Redis不可用时降级为直接查MySQL，不影响算费
+     */
+    private String redisGet(String redisKey) {
+        try {
+            return stringRedisTemplate.opsForValue().get(redisKey);
+        } catch (RuntimeException e) {
+            redisErrors.increment();
+            log.warn("读取Redis因子缓存失败，回源MySQL，key：{}，原因：{}", redisKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private void redisSet(String redisKey, String value) {
+        try {
+            stringRedisTemplate.opsForValue().set(redisKey, value, properties.getRedisTtlSeconds(), TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            redisErrors.increment();
+            log.warn("写入Redis因子缓存失败，key：{}，原因：{}", redisKey, e.getMessage());
+        }
+    }
+
+    private void redisDelete(String redisKey) {
+        try {
+            stringRedisTemplate.delete(redisKey);
+        } catch (RuntimeException e) {
+            redisErrors.increment();
+            log.warn("删除Redis因子缓存失败，key：{}，原因：{}", redisKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.itcast.calculate.cache;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 因子变更事件
+ *
+ * 因子缓存失效（本实例发起或收到其他实例的广播）、费率快照重新加载时发布，
+ * 依赖因子的结果缓存（如QuoteCache）监听后自行清理
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class FactorChangedEvent extends ApplicationEvent {
+
+    /**
+     * 变更的缓存key，全部变更时为FactorCache.INVALIDATE_ALL
+     */
+    private final String key;
+
+    public FactorChangedEvent(Object source, String key) {
+        super(source);
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,276 @@
+package cn.itcast.calculate.cache;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.pojo.QuoteCacheStats;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 报价结果缓存
+ *
+ * 比价网站反复轮询同一组(险种, 保额, 车型, 地区, 渠道, 出险次数, 车龄)，
+ * 按完整入参缓存CalculateResponse，命中时不再查询因子和计算
+ *
+ * - 容量：按条数限制，Caffeine的W-TinyLFU淘汰（兼顾访问频率和最近访问）
+ * - 失效：收到FactorChangedEvent（因子缓存失效 / 快照重新加载）时全部清空；
+ *   另有TTL兜底，覆盖直接改库未发通知的情况
+ * - 只缓存成功且未降级的结果
+ * - 计算期间发生因子变更时不写入，避免把旧因子算出的结果放回缓存
+ *
+ * 统计（按接口）：命中率、命中/未命中平均耗时、累计节省耗时 = 命中次数 × (未命中平均耗时 - 命中平均耗时)
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class QuoteCache {
+
+    public static final String PARALLEL = "parallel";
+    public static final String ASYNC = "async";
+
+    @Value("${calculate.quote-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${calculate.quote-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${calculate.quote-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<QuoteKey, CalculateResponse> cache;
+
+    /**
+     * 因子变更代数，每次变更+1
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Map<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        log.info("报价结果缓存{}，最大条数：{}，TTL：{}s", enabled ? "已启用" : "未启用", maxSize, ttlSeconds);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 同步接口：命中直接返回，未命中计算后写入
+     *
+     * @param endpoint 接口名（统计用，也是key的一部分，不同接口返回的message不同）
+     * @param request  请求参数
+     * @param compute  实际算费
+     */
+    public CalculateResponse get(String endpoint, CalculateRequest request, Supplier<CalculateResponse> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+        long start = System.nanoTime();
+        EndpointStats stats = stats(endpoint);
+        QuoteKey key = new QuoteKey(endpoint, request);
+
+        CalculateResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            stats.hit(System.nanoTime() - start);
+            return cached;
+        }
+
+        long gen = generation.get();
+        CalculateResponse response = compute.get();
+        stats.miss(System.nanoTime() - start);
+        put(key, response, gen);
+        return response;
+    }
+
+    /**
+     * 非阻塞接口：命中返回已完成的Future，未命中在结果完成时写入
+     */
+    public CompletableFuture<CalculateResponse> getAsync(String endpoint, CalculateRequest request,
+                                                         Supplier<CompletableFuture<CalculateResponse>> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+        long start = System.nanoTime();
+        EndpointStats stats = stats(endpoint);
+        QuoteKey key = new QuoteKey(endpoint, request);
+
+        CalculateResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            stats.hit(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long gen = generation.get();
+        return compute.get().thenApply(response -> {
+            stats.miss(System.nanoTime() - start);
+            put(key, response, gen);
+            return response;
+        });
+    }
+
+    private void put(QuoteKey key, CalculateResponse response, long gen) {
+        // 降级结果用的是历史因子，不缓存
+        if (!Boolean.TRUE.equals(response.getSuccess()) || Boolean.TRUE.equals(response.getDegraded())) {
+            return;
+        }
+        cache.put(key, response);
+        // 写入后再检查一次：期间发生过变更则删掉，保证不残留旧结果
+        if (generation.get() != gen) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 因子变更时全部清空
+     */
+    @EventListener
+    public void onFactorChanged(FactorChangedEvent event) {
+        generation.incrementAndGet();
+        long size = cache.estimatedSize();
+        cache.invalidateAll();
+        if (enabled) {
+            log.info("因子变更，报价结果缓存已清空，key：{}，清除约{}条", event.getKey(), size);
+        }
+    }
+
+    /**
+     * 各接口缓存统计
+     */
+    public List<QuoteCacheStats> stats() {
+        List<QuoteCacheStats> result = new ArrayList<>(endpointStats.size());
+        for (Map.Entry<String, EndpointStats> entry : endpointStats.entrySet()) {
+            EndpointStats stats = entry.getValue();
+            long hits = stats.hits.sum();
+            long misses = stats.misses.sum();
+            double avgHitMs = hits == 0 ? 0 : stats.hitNanos.sum() / 1e6 / hits;
+            double avgMissMs = misses == 0 ? 0 : stats.missNanos.sum() / 1e6 / misses;
+
+            QuoteCacheStats item = new QuoteCacheStats();
+            item.setEndpoint(entry.getKey());
+            item.setSize(cache.estimatedSize());
+            item.setHits(hits);
+            item.setMisses(misses);
+            item.setHitRatio(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+            item.setAvgHitMs(avgHitMs);
+            item.setAvgMissMs(avgMissMs);
+            item.setSavedMs(misses == 0 ? 0 : hits * Math.max(0, avgMissMs - avgHitMs));
+            result.add(item);
+        }
+        return result;
+    }
+
+    private EndpointStats stats(String endpoint) {
+        return endpointStats.computeIfAbsent(endpoint, name -> {
+            EndpointStats stats = new EndpointStats();
+            FunctionCounter.builder("calculate.quote-cache.hits", stats.hits, LongAdder::sum)
+                    .description("报价结果缓存命中次数").tag("endpoint", name).register(meterRegistry);
+            FunctionCounter.builder("calculate.quote-cache.misses", stats.misses, LongAdder::sum)
+                    .description("报价结果缓存未命中次数").tag("endpoint", name).register(meterRegistry);
+            return stats;
+        });
+    }
+
+    /**
+     * 单个接口的命中统计
+     */
+    private static class EndpointStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder hitNanos = new LongAdder();
+        private final LongAdder missNanos = new LongAdder();
+
+        void hit(long nanos) {
+            hits.increment();
+            hitNanos.add(nanos);
+        }
+
+        void miss(long nanos) {
+            misses.increment();
+            missNanos.add(nanos);
+        }
+    }
+
+    /**
+     * 缓存key：接口 + 完整算费入参（缺省字段按默认值，保证显式传默认值与不传命中同一条）
+     *
+     * 保额按BigDecimal.equals比较（100000与100000.00视为不同），因为响应中原样返回保额
+     */
+    static final class QuoteKey {
+        private final String endpoint;
+        private final String kindCode;
+        private final BigDecimal amount;
+        private final String carModel;
+        private final String areaCode;
+        private final String channel;
+        private final Integer claimCount;
+        private final Integer carAge;
+        private final int hash;
+
+        QuoteKey(String endpoint, CalculateRequest request) {
+            this.endpoint = endpoint;
+            this.kindCode = request.getKindCode();
+            this.amount = request.getAmount();
+            this.carModel = request.getCarModel();
+            this.areaCode = request.getAreaCode();
+            this.channel = request.getChannel();
+            this.claimCount = request.getClaimCount();
+            this.carAge = request.getCarAge();
+            this.hash = Objects.hash(endpoint, kindCode, amount, carModel, areaCode, channel, claimCount, carAge);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey that = (QuoteKey) o;
+            return hash == that.hash
+                    && Objects.equals(endpoint, that.endpoint)
+                    && Objects.equals(kindCode, that.kindCode)
+                    && Objects.equals(amount, that.amount)
+                    && Objects.equals(carModel, that.carModel)
+                    && Objects.equals(areaCode, that.areaCode)
+                    && Objects.equals(channel, that.channel)
+                    && Objects.equals(claimCount, that.claimCount)
+                    && Objects.equals(carAge, that.carAge);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
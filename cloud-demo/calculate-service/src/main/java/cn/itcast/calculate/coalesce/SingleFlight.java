@@ -0,0 +1,103 @@
+package cn.itcast.calculate.coalesce;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 相同key的并发查询合并（single-flight）
+ *
+ * 同一个key同时只有一个查询在执行：
+ * - 第一个调用方（leader）发起查询
+ * - 查询完成前到达的调用方直接共享leader的结果，不再访问数据库
+ * - 查询完成后立即从在途表移除，之后的调用重新查询（只合并并发，不做缓存）
+ *
+ * 统计：
+ * - calls：总调用次数
+ * - executions：实际发起的查询次数
+ * - coalesced：被合并的调用次数（命中在途查询），calls = executions + coalesced
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行查询，相同key的并发调用共享同一个查询结果
+     *
+     * @param key    查询key
+     * @param loader 发起查询（只有leader会调用），提交失败时直接抛出异常，
+     *               已合并进来的调用方收到同样的异常
+     * @return 查询结果
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        calls.increment();
+
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            return follow(existing);
+        }
+
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            return follow(existing);
+        }
+
+        executions.increment();
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+
+        // 先移除再完成，保证完成之后到达的调用方一定发起新查询
+        source.whenComplete((value, error) -> {
+            inFlight.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(value);
+            }
+        });
+        return source;
+    }
+
+    /**
+     * 合并到在途查询，返回派生Future，避免调用方互相影响（如某个调用方调用complete）
+     */
+    private CompletableFuture<V> follow(CompletableFuture<V> shared) {
+        coalesced.increment();
+        return shared.thenApply(Function.identity());
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 当前在途查询数
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
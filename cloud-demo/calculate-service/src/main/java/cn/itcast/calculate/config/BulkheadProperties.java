@@ -0,0 +1,40 @@
+package cn.itcast.calculate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 因子查询舱壁配置属性
+ *
+ * 每张表同时在途（排队 + 执行）的查询数上限，
+ * 三者之和建议不超过算费线程池最大线程数，保证线程池不会因因子查询排满
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "calculate.bulkhead")
+public class BulkheadProperties {
+
+    /**
+     * 是否启用（关闭时三张表共用线程池，不做隔离）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 费率表并发上限
+     */
+    private int rate = 8;
+
+    /**
+     * 折扣系数表并发上限
+     */
+    private int discount = 6;
+
+    /**
+     * NCD系数表并发上限
+     */
+    private int ncd = 6;
+}
@@ -0,0 +1,30 @@
+package cn.itcast.calculate.config;
+
+/**
+ * 算费查询执行模式
+ *
+ * 配置项：calculate.thread-pool.mode
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public enum ExecutionMode {
+
+    /**
+     * 平台线程池（默认）
+     * 有界线程池 + AbortPolicy，突发流量下队列打满时快速失败，不回落到Tomcat线程
+     */
+    PLATFORM,
+
+    /**
+     * 虚拟线程（每个任务一个虚拟线程）
+     * 需要JDK 21+，运行在低版本JDK上时自动降级为PER_TASK
+     */
+    VIRTUAL,
+
+    /**
+     * 每个任务一个新线程（不排队、不回落到调用方线程）
+     * 并发上限由数据库连接池决定
+     */
+    PER_TASK
+}
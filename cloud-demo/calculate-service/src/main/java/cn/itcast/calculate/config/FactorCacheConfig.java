@@ -0,0 +1,36 @@
+package cn.itcast.calculate.config;
+
+import cn.itcast.calculate.cache.FactorCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 因子缓存失效消息订阅
+ *
+ * 只在启用两级缓存时订阅，每个实例收到消息后清理本地缓存
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "calculate.cache", name = "enabled", havingValue = "true")
+public class FactorCacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer factorCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                      FactorCache factorCache,
+                                                                      FactorCacheProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> factorCache.onInvalidateMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(properties.getInvalidateChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,47 @@
+package cn.itcast.calculate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 因子两级缓存配置属性
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "calculate.cache")
+public class FactorCacheProperties {
+
+    /**
+     * 是否启用两级缓存（需要Redis）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 本地缓存最大条数
+     */
+    private long localMaxSize = 10000;
+
+    /**
+     * 本地缓存过期时间（秒），失效消息丢失时的兜底
+     */
+    private long localTtlSeconds = 60;
+
+    /**
+     * Redis缓存过期时间（秒）
+     */
+    private long redisTtlSeconds = 3600;
+
+    /**
+     * Redis key前缀
+     */
+    private String keyPrefix = "calculate:factor:";
+
+    /**
+     * 失效消息频道
+     */
+    private String invalidateChannel = "calculate:factor:invalidate";
+}
@@ -0,0 +1,38 @@
+package cn.itcast.calculate.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 因子查询截止时间与对冲配置属性
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "calculate.hedge")
+public class HedgeProperties {
+
+    /**
+     * 是否启用（关闭时并行/非阻塞算费无限等待三张表）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单次算费的因子查询预算（毫秒），三张表共用
+     */
+    private long deadlineMs = 300;
+
+    /**
+     * 主查询超过该时间未返回时发起对冲（毫秒），建议取查询耗时P95附近；
+     * 大于等于deadlineMs时不对冲
+     */
+    private long hedgeDelayMs = 50;
+
+    /**
+     * 历史因子最大条数（每次查询成功后更新，超时/失败时使用）
+     */
+    private long lastKnownGoodMaxSize = 100000;
+}
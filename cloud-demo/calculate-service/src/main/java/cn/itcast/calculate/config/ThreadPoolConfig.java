@@ -1,11 +1,18 @@
 package cn.itcast.calculate.config;
 
+import cn.itcast.calculate.monitor.ThreadPoolMonitor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -22,6 +29,12 @@ public class ThreadPoolConfig {
     @Autowired
     private ThreadPoolProperties properties;
     
+    /**
+     * 数据库连接池最大连接数（HikariCP默认10）
+     */
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int dbMaxPoolSize;
+    
     /**
      * 算费专用线程池
      * 
@@ -43,8 +56,13 @@ public class ThreadPoolConfig {
         executor.setThreadNamePrefix(properties.getThreadNamePrefix());
         executor.setKeepAliveSeconds(properties.getKeepAliveSeconds());
         
-        // 拒绝策略（队列满了，主线程执行）
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 拒绝策略（队列满了，直接拒绝，快速失败），同时统计拒绝次数
+        // 不用CallerRunsPolicy：溢出的查询会回落到Tomcat线程执行，把Servlet线程池也拖住
+        ThreadPoolMonitor monitor = calculateExecutorMonitor();
+        executor.setRejectedExecutionHandler(monitor.countingRejections(new ThreadPoolExecutor.AbortPolicy()));
+        
+        // 统计每个任务的排队时间和执行时间
+        executor.setTaskDecorator(monitor);
         
         // 等待任务完成后关闭（优雅停机）
         executor.setWaitForTasksToCompleteOnShutdown(true);
@@ -60,4 +78,93 @@ public class ThreadPoolConfig {
         
         return executor;
     }
+    
+    /**
+     * 算费线程池监控（统计排队时间、执行时间、拒绝次数）
+     */
+    @Bean
+    public ThreadPoolMonitor calculateExecutorMonitor() {
+        return new ThreadPoolMonitor();
+    }
+    
+    /**
+     * 异步算费专用线程池
+     * 
+     * 线程数 = 数据库连接数：线程再多也只能拿到这么多连接，
+     * 并发上限由数据库决定，而不是由线程数决定
+     * 
+     * 拒绝策略用AbortPolicy：队列满时直接让Future异常完成，
+     * 不能用CallerRunsPolicy，否则会退化成在Tomcat线程上同步查库
+     */
+    @Bean("calculateAsyncExecutor")
+    public ThreadPoolTaskExecutor calculateAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(dbMaxPoolSize);
+        executor.setMaxPoolSize(dbMaxPoolSize);
+        executor.setQueueCapacity(properties.getAsyncQueueCapacity());
+        executor.setThreadNamePrefix("calculate-async-");
+        executor.setKeepAliveSeconds(properties.getKeepAliveSeconds());
+        
+        // 拒绝策略（队列满了，直接拒绝，由调用方返回"系统繁忙"）
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        
+        executor.initialize();
+        
+        log.info("异步算费线程池初始化完成：线程数{}（与数据库连接数一致），队列容量{}", 
+                dbMaxPoolSize, 
+                properties.getAsyncQueueCapacity());
+        
+        return executor;
+    }
+    
+    /**
+     * 算费查询执行器（费率/折扣/NCD三个查询实际使用的执行器）
+     * 
+     * 根据calculate.thread-pool.mode选择：
+     * - platform：复用calculateExecutor平台线程池
+     * - virtual：每个查询一个虚拟线程（JDK 21+），低版本JDK降级为per-task
+     * - per-task：每个查询一个新线程，不排队，不会回落到Tomcat线程
+     * 
+     * 注意：virtual/per-task模式下线程数不受限，并发上限由数据库连接池决定，
+     * 拿不到连接的查询在HikariCP中等待（connection-timeout）
+     */
+    @Bean("calculateQueryExecutor")
+    public Executor calculateQueryExecutor(@Qualifier("calculateExecutor") ThreadPoolTaskExecutor calculateExecutor) {
+        ExecutionMode mode = properties.getMode();
+        
+        if (mode == ExecutionMode.VIRTUAL) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null) {
+                log.info("算费查询执行模式：虚拟线程");
+                return virtualExecutor;
+            }
+            log.warn("当前JDK（{}）不支持虚拟线程，执行模式降级为per-task", System.getProperty("java.version"));
+            mode = ExecutionMode.PER_TASK;
+        }
+        
+        if (mode == ExecutionMode.PER_TASK) {
+            log.info("算费查询执行模式：每任务一线程");
+            return new SimpleAsyncTaskExecutor(properties.getThreadNamePrefix() + "task-");
+        }
+        
+        log.info("算费查询执行模式：平台线程池");
+        return calculateExecutor.getThreadPoolExecutor();
+    }
+    
+    /**
+     * 反射创建虚拟线程执行器（项目按JDK 8编译，不能直接引用JDK 21的API）
+     * 
+     * @return 不支持虚拟线程时返回null
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
 }
@@ -15,6 +15,11 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties(prefix = "calculate.thread-pool")
 public class ThreadPoolProperties {
     
+    /**
+     * 查询执行模式：platform（平台线程池）/ virtual（虚拟线程）/ per-task（每任务一线程）
+     */
+    private ExecutionMode mode = ExecutionMode.PLATFORM;
+    
     /**
      * 核心线程数
      */
@@ -39,4 +44,60 @@ public class ThreadPoolProperties {
      * 线程名称前缀
      */
     private String threadNamePrefix = "calculate-";
+    
+    /**
+     * 异步算费线程池队列容量
+     * 异步接口不占用Tomcat线程，排队请求只占队列，不占线程
+     */
+    private int asyncQueueCapacity = 2000;
+    
+    /**
+     * 自适应调整配置
+     */
+    private Adaptive adaptive = new Adaptive();
+    
+    /**
+     * 线程池自适应调整配置
+     * 
+     * 按利特尔法则估算所需线程数：线程数 = 吞吐量 × 平均执行时间（≈SQL耗时） × 余量系数，
+     * 队列积压或出现拒绝时额外扩容，在[minCorePoolSize, maxCorePoolSize]范围内逐步调整
+     */
+    @Data
+    public static class Adaptive {
+        
+        /**
+         * 是否开启自适应调整（关闭时只统计不调整）
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 调整周期（毫秒）
+         */
+        private long intervalMs = 5000;
+        
+        /**
+         * 核心线程数下限
+         */
+        private int minCorePoolSize = 5;
+        
+        /**
+         * 核心线程数上限
+         */
+        private int maxCorePoolSize = 50;
+        
+        /**
+         * 每次最多调整的线程数
+         */
+        private int step = 2;
+        
+        /**
+         * 余量系数
+         */
+        private double headroom = 1.2;
+        
+        /**
+         * 队列水位线（队列深度超过容量的该比例时扩容）
+         */
+        private double queueHighWatermark = 0.5;
+    }
 }
@@ -0,0 +1,47 @@
+package cn.itcast.calculate.config;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动预热配置属性
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "calculate.warmup")
+public class WarmupProperties {
+
+    /**
+     * 是否在启动时预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 热点请求（预加载其费率/折扣/NCD，并用于模拟算费）
+     * 为空时使用默认请求：险种050200，保额100000，其余参数取默认值
+     */
+    private List<CalculateRequest> hotRequests = new ArrayList<>();
+
+    /**
+     * 保费计算内核模拟次数（触发JIT编译）
+     */
+    private int kernelIterations = 20000;
+
+    /**
+     * 完整算费流程模拟次数（按热点请求轮询）
+     */
+    private int requestIterations = 200;
+
+    /**
+     * "快速响应"阈值（毫秒），用于统计启动到第一个快速响应的时间
+     */
+    private long fastThresholdMs = 50;
+}
@@ -1,14 +1,39 @@
 package cn.itcast.calculate.controller;
 
+import cn.itcast.calculate.cache.FactorCache;
+import cn.itcast.calculate.cache.QuoteCache;
+import cn.itcast.calculate.cube.PremiumCubeHolder;
+import cn.itcast.calculate.monitor.StageMetrics;
+import cn.itcast.calculate.monitor.StartupMetrics;
+import cn.itcast.calculate.monitor.ThreadPoolTuner;
+import cn.itcast.calculate.pojo.BulkheadStats;
+import cn.itcast.calculate.pojo.CalculateBatchResponse;
 import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CoalesceStats;
+import cn.itcast.calculate.pojo.FactorChange;
+import cn.itcast.calculate.pojo.HedgeStats;
+import cn.itcast.calculate.pojo.PremiumCubeStats;
+import cn.itcast.calculate.pojo.QuoteCacheStats;
+import cn.itcast.calculate.pojo.RepriceJobRequest;
+import cn.itcast.calculate.pojo.RepriceJobStatus;
 import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.pojo.StageLatency;
+import cn.itcast.calculate.pojo.ThreadPoolStats;
+import cn.itcast.calculate.reprice.RepriceJob;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.service.CalculateAsyncService;
+import cn.itcast.calculate.service.CalculateBatchService;
 import cn.itcast.calculate.service.CalculateService;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 即时算费Controller
@@ -24,6 +49,39 @@ public class CalculateController {
     @Autowired
     private CalculateService calculateService;
     
+    @Autowired
+    private CalculateBatchService calculateBatchService;
+    
+    @Autowired
+    private CalculateAsyncService calculateAsyncService;
+    
+    @Autowired
+    private FactorSnapshotHolder factorSnapshotHolder;
+    
+    @Autowired
+    private ThreadPoolTuner threadPoolTuner;
+    
+    @Autowired
+    private StageMetrics stageMetrics;
+    
+    @Autowired
+    private FactorCache factorCache;
+    
+    @Autowired
+    private QuoteCache quoteCache;
+    
+    @Autowired
+    private StartupMetrics startupMetrics;
+    
+    @Autowired
+    private RepriceJob repriceJob;
+    
+    @Autowired
+    private PricingRuleEngine pricingRuleEngine;
+    
+    @Autowired
+    private PremiumCubeHolder premiumCubeHolder;
+    
     /**
      * 测试接口 - GET方式
      * 
@@ -56,8 +114,6 @@ public class CalculateController {
      */
     @PostMapping("/realtime")
     public CalculateResponse realTimeCalculate(@RequestBody CalculateRequest request) {
-        log.info("串行算费接口被调用，请求参数：{}", request);
-        
         return calculateService.calculate(request);
     }
     
@@ -77,8 +133,344 @@ public class CalculateController {
      */
     @PostMapping("/parallel")
     public CalculateResponse parallelCalculate(@RequestBody CalculateRequest request) {
-        log.info("并行算费接口被调用，请求参数：{}", request);
-        
         return calculateService.calculateParallel(request);
     }
+    
+    /**
+     * 即时算费接口 - POST方式（非阻塞）
+     * 
+     * 返回CompletableFuture，Spring MVC按Servlet异步请求处理：
+     * Tomcat线程提交查询后立即归还，查询完成后再写回响应
+     * 
+     * 请求示例：
+     * {
+     *   "kindCode": "050200",
+     *   "amount": 100000
+     * }
+     * 
+     * 访问：http://localhost:8083/calculate/async
+     */
+    @PostMapping("/async")
+    public CompletableFuture<CalculateResponse> asyncCalculate(@RequestBody CalculateRequest request) {
+        return calculateService.calculateAsync(request);
+    }
+    
+    /**
+     * 批量算费接口 - POST方式
+     * 
+     * 同一批次按组合主键去重后每张表只查一次（IN查询），
+     * 500笔报价只需3次数据库查询，而不是1500次
+     * 
+     * 请求示例：
+     * [
+     *   {"kindCode": "050200", "amount": 100000},
+     *   {"kindCode": "050200", "amount": 200000, "carModel": "GL8", "areaCode": "3201", "channel": "APP", "claimCount": 1}
+     * ]
+     * 
+     * 访问：http://localhost:8083/calculate/batch
+     */
+    @PostMapping("/batch")
+    public CalculateBatchResponse batchCalculate(@RequestBody List<CalculateRequest> requests) {
+        log.info("批量算费接口被调用，笔数：{}", requests.size());
+        
+        return calculateBatchService.calculateBatch(requests);
+    }
+    
+    /**
+     * 即时算费接口 - POST方式（内存快照）
+     * 
+     * 费率/折扣/NCD全部从内存快照读取，不访问数据库
+     * 
+     * 请求示例：
+     * {
+     *   "kindCode": "050200",
+     *   "amount": 100000,
+     *   "carModel": "GL8",
+     *   "areaCode": "3201",
+     *   "channel": "WECHAT",
+     *   "claimCount": 0
+     * }
+     * 
+     * 访问：http://localhost:8083/calculate/snapshot
+     */
+    @PostMapping("/snapshot")
+    public CalculateResponse snapshotCalculate(@RequestBody CalculateRequest request) {
+        return calculateService.calculateSnapshot(request);
+    }
+    
+    /**
+     * 重新加载费率快照
+     * 
+     * 费率表变更后调用，新快照构建完成前旧快照继续提供服务
+     * 
+     * 访问：http://localhost:8083/calculate/snapshot/reload
+     */
+    @PostMapping("/snapshot/reload")
+    public Map<String, Object> reloadSnapshot() {
+        log.info("重新加载费率快照接口被调用");
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            FactorSnapshot snapshot = factorSnapshotHolder.reload();
+            result.put("success", true);
+            result.put("version", snapshot.getVersion());
+            result.put("rateCount", snapshot.getRateCount());
+            result.put("rateValueCount", snapshot.getRateValueCount());
+            result.put("rateOffHeapBytes", snapshot.getRateOffHeapBytes());
+            result.put("discountCount", snapshot.getDiscountCount());
+            result.put("ncdCount", snapshot.getNcdCount());
+            result.put("loadedAt", snapshot.getLoadedAt());
+        } catch (Exception e) {
+            log.error("重新加载费率快照失败", e);
+            result.put("success", false);
+            result.put("message", "加载失败：" + e.getMessage());
+            result.put("version", factorSnapshotHolder.current().getVersion());
+        }
+        return result;
+    }
+    
+    /**
+     * 保费因子立方体统计：热点组合数、格子数、估算内存占用、命中率（立方体服务的快照算费请求比例）
+     * 
+     * 访问：http://localhost:8083/calculate/cube/stats
+     */
+    @GetMapping("/cube/stats")
+    public PremiumCubeStats cubeStats() {
+        return premiumCubeHolder.stats();
+    }
+    
+    /**
+     * 按当前快照和最新的请求分布立即重建保费因子立方体（默认每5分钟自动重建）
+     * 
+     * 访问：http://localhost:8083/calculate/cube/rebuild
+     */
+    @PostMapping("/cube/rebuild")
+    public PremiumCubeStats rebuildCube() {
+        log.info("重建保费因子立方体接口被调用");
+        return premiumCubeHolder.rebuild();
+    }
+    
+    /**
+     * 当前定价规则：版本、加载时间、各险种公式和附加因子
+     * 
+     * 访问：http://localhost:8083/calculate/rules
+     */
+    @GetMapping("/rules")
+    public Map<String, Object> rules() {
+        return pricingRuleEngine.stats();
+    }
+    
+    /**
+     * 重新加载定价规则
+     * 
+     * 全部险种编译成功后才替换，失败时旧规则继续生效；规则文件在文件系统上时也会按修改时间自动加载
+     * 
+     * 访问：http://localhost:8083/calculate/rules/reload
+     */
+    @PostMapping("/rules/reload")
+    public Map<String, Object> reloadRules() {
+        log.info("重新加载定价规则接口被调用");
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.putAll(pricingRuleEngine.reload());
+            result.put("success", true);
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            result.put("version", pricingRuleEngine.stats().get("version"));
+        }
+        return result;
+    }
+    
+    /**
+     * 算费线程池运行状态
+     * 
+     * 包括队列深度、活跃线程数、拒绝次数（快速失败）、排队时间与执行时间
+     * 
+     * 访问：http://localhost:8083/calculate/pool/stats
+     */
+    @GetMapping("/pool/stats")
+    public ThreadPoolStats poolStats() {
+        return threadPoolTuner.stats();
+    }
+    
+    /**
+     * 算费分阶段耗时（按P99倒序）
+     * 
+     * 阶段：queue（排队）、rate/discount/ncd（三张表查询）、join（等待最慢的查询）、compute（计算）、total（整笔）
+     * 按险种区分，可直接看出哪张表拉高了P99；原始指标见 /actuator/metrics/calculate.stage
+     * 
+     * 访问：http://localhost:8083/calculate/metrics/stages
+     */
+    @GetMapping("/metrics/stages")
+    public List<StageLatency> stageLatency() {
+        return stageMetrics.snapshot();
+    }
+    
+    /**
+     * 因子查询合并统计
+     * 
+     * 每张表的调用次数、实际查库次数、合并次数和合并命中率；
+     * 指标另见 /actuator/metrics/calculate.coalesce.coalesced?tag=table:rate
+     * 
+     * 访问：http://localhost:8083/calculate/metrics/coalesce
+     */
+    @GetMapping("/metrics/coalesce")
+    public List<CoalesceStats> coalesceStats() {
+        return calculateAsyncService.coalesceStats();
+    }
+    
+    /**
+     * 因子查询对冲与降级统计
+     * 
+     * 每张表的对冲次数、对冲先返回次数、超时次数、使用历史因子次数；
+     * 指标另见 /actuator/metrics/calculate.hedge.hedges?tag=table:rate
+     * 
+     * 访问：http://localhost:8083/calculate/metrics/hedge
+     */
+    @GetMapping("/metrics/hedge")
+    public List<HedgeStats> hedgeStats() {
+        return calculateAsyncService.hedgeStats();
+    }
+    
+    /**
+     * 因子查询舱壁统计
+     * 
+     * 每张表的并发上限、在途查询数、饱和度、快速失败次数；
+     * 指标另见 /actuator/metrics/calculate.bulkhead.saturation?tag=table:ncd
+     * 
+     * 访问：http://localhost:8083/calculate/metrics/bulkhead
+     */
+    @GetMapping("/metrics/bulkhead")
+    public List<BulkheadStats> bulkheadStats() {
+        return calculateAsyncService.bulkheadStats();
+    }
+    
+    /**
+     * 因子变更通知：删除Redis缓存并广播给所有实例清理本地缓存，
+     * 各实例的报价结果缓存同时清空
+     * 
+     * 请求示例：
+     * {"table": "rate", "kindCode": "050200", "carModel": "GL8", "areaCode": "3201"}
+     * {"table": "discount", "channel": "WECHAT", "areaCode": "3201"}
+     * {"table": "ncd", "claimCount": 0}
+     * {"table": "all"}
+     * 
+     * 访问：http://localhost:8083/calculate/cache/invalidate
+     */
+    @PostMapping("/cache/invalidate")
+    public Map<String, Object> invalidateCache(@RequestBody FactorChange change) {
+        log.info("因子缓存失效接口被调用，变更：{}", change);
+        
+        Map<String, Object> result = new HashMap<>();
+        String table = change.getTable() == null ? "all" : change.getTable();
+        try {
+            switch (table) {
+                case "rate":
+                    factorCache.invalidate(FactorCache.rateKey(change.getKindCode(), change.getCarModel(), change.getAreaCode()));
+                    break;
+                case "discount":
+                    factorCache.invalidate(FactorCache.discountKey(change.getChannel(), change.getAreaCode()));
+                    break;
+                case "ncd":
+                    factorCache.invalidate(FactorCache.ncdKey(change.getClaimCount()));
+                    break;
+                case "all":
+                    factorCache.invalidateAll();
+                    break;
+                default:
+                    result.put("success", false);
+                    result.put("message", "不支持的表：" + table);
+                    return result;
+            }
+            result.put("success", true);
+            result.put("table", table);
+        } catch (Exception e) {
+            log.error("因子缓存失效失败", e);
+            result.put("success", false);
+            result.put("message", "失效失败：" + e.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * 因子两级缓存统计
+     * 
+     * 访问：http://localhost:8083/calculate/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return factorCache.stats();
+    }
+    
+    /**
+     * 报价结果缓存统计（按接口）
+     * 
+     * 命中率、命中/未命中平均耗时、累计节省耗时
+     * 
+     * 访问：http://localhost:8083/calculate/cache/quote/stats
+     */
+    @GetMapping("/cache/quote/stats")
+    public List<QuoteCacheStats> quoteCacheStats() {
+        return quoteCache.stats();
+    }
+    
+    /**
+     * 启动耗时统计
+     * 
+     * 预热耗时、JVM启动到就绪、到第一个请求、到第一个快速响应的时间，用于跟踪启动性能回退
+     * 
+     * 访问：http://localhost:8083/calculate/metrics/startup
+     */
+    @GetMapping("/metrics/startup")
+    public Map<String, Object> startupStats() {
+        return startupMetrics.stats();
+    }
+    
+    /**
+     * 启动批量重算任务（异步执行，立即返回）
+     * 
+     * 请求示例：
+     * {"source": "file", "input": "policies.csv", "output": "policies-2026.csv", "reloadSnapshot": true}
+     * {"source": "db", "output": "policies-2026.csv", "resume": true}
+     * 
+     * 访问：http://localhost:8083/calculate/reprice/start
+     */
+    @PostMapping("/reprice/start")
+    public Map<String, Object> startReprice(@RequestBody RepriceJobRequest request) {
+        log.info("批量重算接口被调用，请求：{}", request);
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("success", true);
+            result.put("status", repriceJob.start(request));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * 批量重算任务状态：已读/已写/失败行数、吞吐（行/秒）
+     * 
+     * 访问：http://localhost:8083/calculate/reprice/status
+     */
+    @GetMapping("/reprice/status")
+    public RepriceJobStatus repriceStatus() {
+        return repriceJob.status();
+    }
+    
+    /**
+     * 取消批量重算任务（在途分片写完并保存断点后停止，可续跑）
+     * 
+     * 访问：http://localhost:8083/calculate/reprice/cancel
+     */
+    @PostMapping("/reprice/cancel")
+    public Map<String, Object> cancelReprice() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", repriceJob.cancel());
+        return result;
+    }
 }
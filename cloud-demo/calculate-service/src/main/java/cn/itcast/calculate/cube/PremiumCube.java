@@ -0,0 +1,388 @@
+package cn.itcast.calculate.cube;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pricing.PremiumKernel;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 热点组合保费因子立方体（不可变）
+ *
+ * 按热点组合出现过的取值对五个维度（险种、车型、地区、渠道、出险次数）分别编号，
+ * 把所有维度组合的 基础费率 × 折扣系数 × NCD系数 预先相乘，存为同一小数位数的long数组：
+ * <pre>
+ * cell = (((险种 × 车型数 + 车型) × 地区数 + 地区) × 渠道数 + 渠道) × 出险次数取值数 + 出险次数
+ * 保费 = 保额 × factors[cell]（定点数内核，结果与BigDecimal链式计算逐位一致）
+ * </pre>
+ * 立方体只由快照构建，和快照使用同一套取值规则：无费率的格子标记为不存在，无折扣/NCD按1计算
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class PremiumCube {
+
+    /**
+     * 空立方体（未构建 / 未启用）
+     */
+    public static final PremiumCube EMPTY = new PremiumCube();
+
+    /**
+     * 格子不存在（无费率，或因子积超出long精度）
+     */
+    private static final long ABSENT = -1L;
+
+    /**
+     * 估算内存用：对象引用、HashMap每个条目、String对象头（不含字符）的字节数
+     */
+    private static final int REFERENCE_BYTES = 4;
+    private static final int MAP_ENTRY_BYTES = 48;
+    private static final int STRING_BYTES = 40;
+
+    private final Map<String, Integer> kindCodes;
+    private final Map<String, Integer> carModels;
+    private final Map<String, Integer> areaCodes;
+    private final Map<String, Integer> channels;
+    private final Map<Integer, Integer> claimCounts;
+
+    /**
+     * 因子积（未缩放值，小数位数统一为factorScale）
+     */
+    private final long[] factors;
+    private final int factorScale;
+
+    /**
+     * 响应中返回的单个因子：rates[险种][车型][地区]、discounts[渠道][地区]、ncdRates[出险次数]
+     */
+    private final BigDecimal[] rates;
+    private final BigDecimal[] discounts;
+    private final BigDecimal[] ncdRates;
+
+    private final long snapshotVersion;
+    private final int combinations;
+    private final int filledCells;
+    private final long memoryBytes;
+    private final long builtAt;
+
+    private PremiumCube() {
+        this(Collections.<String, Integer>emptyMap(), Collections.<String, Integer>emptyMap(),
+                Collections.<String, Integer>emptyMap(), Collections.<String, Integer>emptyMap(),
+                Collections.<Integer, Integer>emptyMap(), new long[0], 0,
+                new BigDecimal[0], new BigDecimal[0], new BigDecimal[0], 0L, 0, 0);
+    }
+
+    private PremiumCube(Map<String, Integer> kindCodes, Map<String, Integer> carModels,
+                        Map<String, Integer> areaCodes, Map<String, Integer> channels,
+                        Map<Integer, Integer> claimCounts, long[] factors, int factorScale,
+                        BigDecimal[] rates, BigDecimal[] discounts, BigDecimal[] ncdRates,
+                        long snapshotVersion, int combinations, int filledCells) {
+        this.kindCodes = kindCodes;
+        this.carModels = carModels;
+        this.areaCodes = areaCodes;
+        this.channels = channels;
+        this.claimCounts = claimCounts;
+        this.factors = factors;
+        this.factorScale = factorScale;
+        this.rates = rates;
+        this.discounts = discounts;
+        this.ncdRates = ncdRates;
+        this.snapshotVersion = snapshotVersion;
+        this.combinations = combinations;
+        this.filledCells = filledCells;
+        this.memoryBytes = estimateMemory();
+        this.builtAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 按热点组合构建立方体
+     *
+     * 组合按出现频率从高到低传入；加入某个组合会使格子数超过maxCells时跳过该组合
+     *
+     * @param snapshot     费率快照
+     * @param combinations 热点组合（频率从高到低）
+     * @param maxCells     格子数上限（每格8字节）
+     */
+    public static PremiumCube build(FactorSnapshot snapshot, List<Combination> combinations, int maxCells) {
+        Map<String, Integer> kindCodes = new LinkedHashMap<>();
+        Map<String, Integer> carModels = new LinkedHashMap<>();
+        Map<String, Integer> areaCodes = new LinkedHashMap<>();
+        Map<String, Integer> channels = new LinkedHashMap<>();
+        Map<Integer, Integer> claimCounts = new LinkedHashMap<>();
+
+        int accepted = 0;
+        for (Combination combination : combinations) {
+            long cells = (long) size(kindCodes, combination.kindCode)
+                    * size(carModels, combination.carModel)
+                    * size(areaCodes, combination.areaCode)
+                    * size(channels, combination.channel)
+                    * size(claimCounts, combination.claimCount);
+            if (cells > maxCells) {
+                continue;
+            }
+            index(kindCodes, combination.kindCode);
+            index(carModels, combination.carModel);
+            index(areaCodes, combination.areaCode);
+            index(channels, combination.channel);
+            index(claimCounts, combination.claimCount);
+            accepted++;
+        }
+
+        int kindCount = kindCodes.size();
+        int carCount = carModels.size();
+        int areaCount = areaCodes.size();
+        int channelCount = channels.size();
+        int claimCount = claimCounts.size();
+
+        // 单个因子按维度展开，因子积的小数位数取三者各自最大小数位数之和，保证乘积精确
+        BigDecimal[] rates = new BigDecimal[kindCount * carCount * areaCount];
+        int rateScale = 0;
+        for (Map.Entry<String, Integer> kind : kindCodes.entrySet()) {
+            for (Map.Entry<String, Integer> car : carModels.entrySet()) {
+                for (Map.Entry<String, Integer> area : areaCodes.entrySet()) {
+                    BigDecimal rate = snapshot.getRate(kind.getKey(), car.getKey(), area.getKey());
+                    rates[(kind.getValue() * carCount + car.getValue()) * areaCount + area.getValue()] = rate;
+                    if (rate != null) {
+                        rateScale = Math.max(rateScale, rate.scale());
+                    }
+                }
+            }
+        }
+        BigDecimal[] discounts = new BigDecimal[channelCount * areaCount];
+        int discountScale = 0;
+        for (Map.Entry<String, Integer> channel : channels.entrySet()) {
+            for (Map.Entry<String, Integer> area : areaCodes.entrySet()) {
+                BigDecimal discount = orOne(snapshot.getDiscount(channel.getKey(), area.getKey()));
+                discounts[channel.getValue() * areaCount + area.getValue()] = discount;
+                discountScale = Math.max(discountScale, discount.scale());
+            }
+        }
+        BigDecimal[] ncdRates = new BigDecimal[claimCount];
+        int ncdScale = 0;
+        for (Map.Entry<Integer, Integer> claim : claimCounts.entrySet()) {
+            BigDecimal ncdRate = orOne(snapshot.getNcdRate(claim.getKey()));
+            ncdRates[claim.getValue()] = ncdRate;
+            ncdScale = Math.max(ncdScale, ncdRate.scale());
+        }
+        int factorScale = rateScale + discountScale + ncdScale;
+
+        long[] factors = new long[rates.length * channelCount * claimCount];
+        int filled = 0;
+        int cell = 0;
+        for (BigDecimal rate : rates) {
+            for (int channel = 0; channel < channelCount; channel++) {
+                for (int claim = 0; claim < claimCount; claim++) {
+                    long factor = ABSENT;
+                    if (rate != null) {
+                        int area = (cell / (channelCount * claimCount)) % areaCount;
+                        factor = unscaled(rate.multiply(discounts[channel * areaCount + area])
+                                .multiply(ncdRates[claim]), factorScale);
+                    }
+                    if (factor != ABSENT) {
+                        filled++;
+                    }
+                    factors[cell++] = factor;
+                }
+            }
+        }
+
+        return new PremiumCube(kindCodes, carModels, areaCodes, channels, claimCounts, factors, factorScale,
+                rates, discounts, ncdRates, snapshot.getVersion(), accepted, filled);
+    }
+
+    /**
+     * 查找请求所在的格子
+     *
+     * @return 格子下标，任一维度取值不在立方体中或格子不存在时返回-1
+     */
+    public int indexOf(CalculateRequest request) {
+        return indexOf(request.getKindCode(), request.getCarModel(), request.getAreaCode(),
+                request.getChannel(), request.getClaimCount());
+    }
+
+    /**
+     * 查找组合所在的格子，不存在返回-1
+     */
+    public int indexOf(Combination combination) {
+        return indexOf(combination.kindCode, combination.carModel, combination.areaCode,
+                combination.channel, combination.claimCount);
+    }
+
+    private int indexOf(String kindCode, String carModel, String areaCode, String channel, Integer claimCount) {
+        Integer kind = kindCodes.get(kindCode);
+        Integer car = carModels.get(carModel);
+        Integer area = areaCodes.get(areaCode);
+        Integer channelIndex = channels.get(channel);
+        Integer claim = claimCounts.get(claimCount);
+        if (kind == null || car == null || area == null || channelIndex == null || claim == null) {
+            return -1;
+        }
+        int cell = (((kind * carModels.size() + car) * areaCodes.size() + area) * channels.size() + channelIndex)
+                * claimCounts.size() + claim;
+        return factors[cell] == ABSENT ? -1 : cell;
+    }
+
+    /**
+     * 保费 = 保额 × 因子积，保留2位小数（HALF_UP）
+     */
+    public BigDecimal premium(int cell, BigDecimal amount) {
+        return PremiumKernel.premium(amount, factors[cell], factorScale);
+    }
+
+    public BigDecimal getRate(int cell) {
+        return rates[cell / (channels.size() * claimCounts.size())];
+    }
+
+    public BigDecimal getDiscount(int cell) {
+        int channel = (cell / claimCounts.size()) % channels.size();
+        int area = (cell / (channels.size() * claimCounts.size())) % areaCodes.size();
+        return discounts[channel * areaCodes.size() + area];
+    }
+
+    public BigDecimal getNcdRate(int cell) {
+        return ncdRates[cell % claimCounts.size()];
+    }
+
+    /**
+     * 构建所用快照的版本号，与当前快照不一致时立方体不再使用
+     */
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    /**
+     * 纳入立方体的热点组合数
+     */
+    public int getCombinations() {
+        return combinations;
+    }
+
+    /**
+     * 格子总数（各维度取值数之积）
+     */
+    public int getCells() {
+        return factors.length;
+    }
+
+    /**
+     * 有因子积的格子数（热点组合之外的维度交叉组合有费率时同样可以命中）
+     */
+    public int getFilledCells() {
+        return filledCells;
+    }
+
+    public int getFactorScale() {
+        return factorScale;
+    }
+
+    /**
+     * 估算内存占用（字节）：因子积数组 + 单个因子引用数组 + 维度字典（BigDecimal对象与快照共用，不计入）
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public boolean isEmpty() {
+        return factors.length == 0;
+    }
+
+    private long estimateMemory() {
+        long bytes = (long) factors.length * Long.BYTES
+                + (long) (rates.length + discounts.length + ncdRates.length) * REFERENCE_BYTES;
+        for (Map<String, Integer> dictionary : Arrays.asList(kindCodes, carModels, areaCodes, channels)) {
+            for (String key : dictionary.keySet()) {
+                bytes += MAP_ENTRY_BYTES + STRING_BYTES + key.length();
+            }
+        }
+        return bytes + (long) claimCounts.size() * MAP_ENTRY_BYTES;
+    }
+
+    private static <T> int size(Map<T, Integer> dictionary, T value) {
+        return dictionary.containsKey(value) ? dictionary.size() : dictionary.size() + 1;
+    }
+
+    private static <T> void index(Map<T, Integer> dictionary, T value) {
+        if (!dictionary.containsKey(value)) {
+            dictionary.put(value, dictionary.size());
+        }
+    }
+
+    private static BigDecimal orOne(BigDecimal value) {
+        return value != null ? value : BigDecimal.ONE;
+    }
+
+    /**
+     * 因子积转为指定小数位数的未缩放值，超过18位有效数字返回ABSENT（该格子走普通计算）
+     */
+    private static long unscaled(BigDecimal factor, int scale) {
+        BigDecimal scaled = factor.setScale(scale);
+        return scaled.precision() <= 18 ? scaled.unscaledValue().longValue() : ABSENT;
+    }
+
+    /**
+     * 一个维度组合（缺省字段按请求默认值）
+     */
+    public static final class Combination {
+
+        private final String kindCode;
+        private final String carModel;
+        private final String areaCode;
+        private final String channel;
+        private final Integer claimCount;
+        private final int hash;
+
+        public Combination(String kindCode, String carModel, String areaCode, String channel, Integer claimCount) {
+            this.kindCode = kindCode;
+            this.carModel = carModel;
+            this.areaCode = areaCode;
+            this.channel = channel;
+            this.claimCount = claimCount;
+            this.hash = Objects.hash(kindCode, carModel, areaCode, channel, claimCount);
+        }
+
+        public static Combination of(CalculateRequest request) {
+            return new Combination(request.getKindCode(), request.getCarModel(), request.getAreaCode(),
+                    request.getChannel(), request.getClaimCount());
+        }
+
+        public String getKindCode() {
+            return kindCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Combination)) {
+                return false;
+            }
+            Combination that = (Combination) o;
+            return hash == that.hash
+                    && Objects.equals(kindCode, that.kindCode)
+                    && Objects.equals(carModel, that.carModel)
+                    && Objects.equals(areaCode, that.areaCode)
+                    && Objects.equals(channel, that.channel)
+                    && Objects.equals(claimCount, that.claimCount);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return kindCode + "|" + carModel + "|" + areaCode + "|" + channel + "|" + claimCount;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cn.itcast.calculate.cube;
+
+import cn.itcast.calculate.cache.FactorChangedEvent;
+import cn.itcast.calculate.config.WarmupProperties;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.PremiumCubeStats;
+import cn.itcast.calculate.rule.PricingPlan;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 保费因子立方体持有者
+ *
+ * - 记录：快照算费接口按组合（险种, 车型, 地区, 渠道, 出险次数）计数，最多记录max-tracked个组合
+ * - 构建：后台定时（以及快照重新加载后）取计数最高的max-combinations个组合，
+ *   加上预热配置的热点请求，基于当前快照预计算因子积，构建完成后原子替换；
+ *   每次构建后计数减半，热点随流量变化；定价规则带附加因子的险种（如050200的车龄系数）不进立方体，
+ *   规则重新加载后按新规则重建
+ * - 使用：立方体与当前快照版本一致时才使用，快照重新加载后到重建完成前全部未命中
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class PremiumCubeHolder {
+
+    @Value("${calculate.cube.enabled:true}")
+    private boolean enabled;
+
+    @Value("${calculate.cube.max-combinations:1000}")
+    private int maxCombinations;
+
+    @Value("${calculate.cube.max-cells:1000000}")
+    private int maxCells;
+
+    @Value("${calculate.cube.max-tracked:100000}")
+    private int maxTracked;
+
+    @Autowired
+    private FactorSnapshotHolder factorSnapshotHolder;
+
+    @Autowired
+    private WarmupProperties warmupProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PricingRuleEngine pricingRuleEngine;
+
+    private final AtomicReference<PremiumCube> current = new AtomicReference<>(PremiumCube.EMPTY);
+
+    /**
+     * 组合 → 请求次数
+     */
+    private final Map<PremiumCube.Combination, LongAdder> traffic = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long buildMs;
+    private volatile double expectedHitRatio;
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("calculate.cube.hits", hits, LongAdder::sum)
+                .description("保费因子立方体命中次数").register(meterRegistry);
+        FunctionCounter.builder("calculate.cube.misses", misses, LongAdder::sum)
+                .description("保费因子立方体未命中次数").register(meterRegistry);
+        Gauge.builder("calculate.cube.memory", current, cube -> cube.get().getMemoryBytes())
+                .description("保费因子立方体估算内存占用").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("calculate.cube.cells", current, cube -> cube.get().getFilledCells())
+                .description("保费因子立方体有效格子数").register(meterRegistry);
+        log.info("保费因子立方体{}，热点组合上限：{}，格子上限：{}", enabled ? "已启用" : "未启用",
+                maxCombinations, maxCells);
+    }
+
+    /**
+     * 取与快照版本一致的立方体；未启用返回null，版本不一致返回空立方体（全部未命中）
+     */
+    public PremiumCube current(FactorSnapshot snapshot) {
+        if (!enabled) {
+            return null;
+        }
+        PremiumCube cube = current.get();
+        return cube.getSnapshotVersion() == snapshot.getVersion() ? cube : PremiumCube.EMPTY;
+    }
+
+    /**
+     * 记录一次请求的组合
+     */
+    public void record(CalculateRequest request) {
+        if (!enabled) {
+            return;
+        }
+        PremiumCube.Combination combination = PremiumCube.Combination.of(request);
+        LongAdder counter = traffic.get(combination);
+        if (counter == null) {
+            if (traffic.size() >= maxTracked) {
+                return;
+            }
+            counter = traffic.computeIfAbsent(combination, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * 定时按最新的请求分布重建（默认每5分钟）
+     */
+    @Scheduled(fixedDelayString = "${calculate.cube.rebuild-interval-ms:300000}")
+    public void scheduledRebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("保费因子立方体构建失败，继续使用旧立方体", e);
+        }
+    }
+
+    /**
+     * 快照或定价规则重新加载后立即重建（因子缓存失效等其他变更不影响立方体，不重建）
+     */
+    @EventListener
+    public void onFactorChanged(FactorChangedEvent event) {
+        if (enabled && (current.get().getSnapshotVersion() != factorSnapshotHolder.current().getVersion()
+                || event.getSource() == pricingRuleEngine)) {
+            scheduledRebuild();
+        }
+    }
+
+    /**
+     * 重新构建立方体
+     *
+     * @return 构建结果统计
+     */
+    public synchronized PremiumCubeStats rebuild() {
+        FactorSnapshot snapshot = factorSnapshotHolder.current();
+        if (snapshot.isEmpty()) {
+            return stats();
+        }
+        long start = System.currentTimeMillis();
+
+        // 按请求次数取热点组合，计数减半（老化）
+        List<Map.Entry<PremiumCube.Combination, Long>> counts = new ArrayList<>(traffic.size());
+        long total = 0;
+        for (Map.Entry<PremiumCube.Combination, LongAdder> entry : traffic.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            total += count;
+            counts.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), count));
+            if (count / 2 > 0) {
+                entry.getValue().add(count / 2);
+            } else {
+                traffic.remove(entry.getKey());
+            }
+        }
+        counts.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        // 只取走基础公式的险种，带附加因子的险种算费时不用立方体，放进去只占格子
+        Set<PremiumCube.Combination> combinations = new LinkedHashSet<>();
+        for (CalculateRequest request : warmupProperties.getHotRequests()) {
+            PremiumCube.Combination combination = PremiumCube.Combination.of(request);
+            if (isKernel(combination)) {
+                combinations.add(combination);
+            }
+        }
+        for (Map.Entry<PremiumCube.Combination, Long> entry : counts) {
+            if (combinations.size() >= maxCombinations) {
+                break;
+            }
+            if (isKernel(entry.getKey())) {
+                combinations.add(entry.getKey());
+            }
+        }
+
+        PremiumCube cube = PremiumCube.build(snapshot, new ArrayList<>(combinations), maxCells);
+
+        // 按构建前记录的请求估算命中率（热点组合之外、落在立方体交叉格子里的请求同样命中，
+        // 带附加因子的险种即使落在格子里也不命中）
+        long covered = 0;
+        for (Map.Entry<PremiumCube.Combination, Long> entry : counts) {
+            if (isKernel(entry.getKey()) && cube.indexOf(entry.getKey()) >= 0) {
+                covered += entry.getValue();
+            }
+        }
+        current.set(cube);
+        buildMs = System.currentTimeMillis() - start;
+        expectedHitRatio = total == 0 ? 0 : (double) covered / total;
+
+        log.info("保费因子立方体构建完成，快照版本：{}，热点组合：{}，格子：{}/{}，估算内存：{}KB，预期命中率：{}，耗时：{}ms",
+                snapshot.getVersion(), cube.getCombinations(), cube.getFilledCells(), cube.getCells(),
+                cube.getMemoryBytes() / 1024, String.format("%.2f%%", expectedHitRatio * 100), buildMs);
+        return stats();
+    }
+
+    /**
+     * 险种按基础公式算费时才能使用立方体（与CalculateService的判断一致）
+     */
+    private boolean isKernel(PremiumCube.Combination combination) {
+        PricingPlan plan = pricingRuleEngine.plan(combination.getKindCode());
+        return plan == null || plan.isKernel();
+    }
+
+    /**
+     * 立方体统计：内存占用、服务的请求比例
+     */
+    public PremiumCubeStats stats() {
+        PremiumCube cube = current.get();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        PremiumCubeStats stats = new PremiumCubeStats();
+        stats.setEnabled(enabled);
+        stats.setSnapshotVersion(cube.getSnapshotVersion());
+        stats.setBuiltAt(cube.getBuiltAt());
+        stats.setBuildMs(buildMs);
+        stats.setCombinations(cube.getCombinations());
+        stats.setCells(cube.getCells());
+        stats.setFilledCells(cube.getFilledCells());
+        stats.setMemoryBytes(cube.getMemoryBytes());
+        stats.setExpectedHitRatio(expectedHitRatio);
+        stats.setTrackedCombinations(traffic.size());
+        stats.setHits(hitCount);
+        stats.setMisses(missCount);
+        stats.setHitRatio(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+}
@@ -0,0 +1,19 @@
+package cn.itcast.calculate.entity;
+
+import lombok.Data;
+import java.math.BigDecimal;
+
+/**
+ * 保单实体（批量重算输入）
+ */
+@Data
+public class Policy {
+    private String policyNo;
+    private String kindCode;
+    private BigDecimal amount;
+    private String carModel;
+    private String areaCode;
+    private String channel;
+    private Integer claimCount;
+    private Integer carAge;
+}
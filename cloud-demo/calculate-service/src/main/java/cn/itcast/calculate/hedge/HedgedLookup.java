@@ -0,0 +1,163 @@
+package cn.itcast.calculate.hedge;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 带截止时间的对冲查询（hedged request）
+ *
+ * - 对冲：主查询超过hedgeDelay仍未返回时，再发起一次相同的查询，取先返回的结果
+ *   （慢查询多是偶发的锁等待/索引重建/连接抖动，第二次查询大概率落在正常的一侧）
+ * - 截止时间：到达截止时间仍无结果，或主查询失败时，调用fallback取历史因子；
+ *   fallback也没有结果时按超时/失败异常完成
+ *
+ * 超时后已发出的查询不会被中断，完成时结果被丢弃（调用方可以在主查询上另行挂回调更新历史因子）
+ *
+ * 统计：
+ * - calls：调用次数
+ * - hedges：发起对冲的次数
+ * - hedgeWins：对冲查询先于主查询返回的次数
+ * - timeouts：到达截止时间仍无结果的次数
+ * - failures：主查询失败的次数
+ * - fallbacks：使用历史因子返回的次数
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class HedgedLookup<K, V> {
+
+    private final ScheduledExecutorService timer;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param timer 对冲/截止时间定时器（回调只做complete，不执行查询以外的耗时操作）
+     */
+    public HedgedLookup(ScheduledExecutorService timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * 执行查询
+     *
+     * @param key             查询key（传给fallback）
+     * @param primary         主查询，提交失败时直接抛出异常
+     * @param hedge           对冲查询（为null不对冲），提交失败时放弃本次对冲
+     * @param hedgeDelayNanos 主查询超过该时间未返回时发起对冲
+     * @param deadlineNanos   截止时间（System.nanoTime()）
+     * @param fallback        超时/失败时的历史值，没有返回null
+     * @return 查询结果
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> primary, Supplier<CompletableFuture<V>> hedge,
+                                        long hedgeDelayNanos, long deadlineNanos, Function<K, V> fallback) {
+        calls.increment();
+        CompletableFuture<V> result = new CompletableFuture<>();
+
+        primary.get().whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (!result.isDone()) {
+                failures.increment();
+                fallback(key, result, fallback, error);
+            }
+        });
+        if (result.isDone()) {
+            return result;
+        }
+
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            timeout(key, result, fallback);
+            return result;
+        }
+        ScheduledFuture<?> deadlineTimer = timer.schedule(
+                () -> timeout(key, result, fallback), remaining, TimeUnit.NANOSECONDS);
+        ScheduledFuture<?> hedgeTimer = hedge != null && hedgeDelayNanos < remaining
+                ? timer.schedule(() -> fireHedge(result, hedge), hedgeDelayNanos, TimeUnit.NANOSECONDS)
+                : null;
+
+        result.whenComplete((value, error) -> {
+            deadlineTimer.cancel(false);
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private void fireHedge(CompletableFuture<V> result, Supplier<CompletableFuture<V>> hedge) {
+        if (result.isDone()) {
+            return;
+        }
+        hedges.increment();
+        CompletableFuture<V> hedged;
+        try {
+            hedged = hedge.get();
+        } catch (RuntimeException e) {
+            // 线程池已满等，放弃对冲，由主查询或截止时间决定结果
+            return;
+        }
+        hedged.whenComplete((value, error) -> {
+            if (error == null && result.complete(value)) {
+                hedgeWins.increment();
+            }
+        });
+    }
+
+    private void timeout(K key, CompletableFuture<V> result, Function<K, V> fallback) {
+        if (result.isDone()) {
+            return;
+        }
+        timeouts.increment();
+        fallback(key, result, fallback, new TimeoutException("查询超时"));
+    }
+
+    private void fallback(K key, CompletableFuture<V> result, Function<K, V> fallback, Throwable cause) {
+        V value = null;
+        try {
+            value = fallback.apply(key);
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+        if (value == null) {
+            result.completeExceptionally(cause);
+        } else if (result.complete(value)) {
+            fallbacks.increment();
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+}
@@ -0,0 +1,55 @@
+package cn.itcast.calculate.hedge;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次算费的因子查询预算
+ *
+ * 一次算费创建一个，三张表的查询共用同一个截止时间；
+ * 超时或失败后使用历史因子的表记录在degradedTables中，算费结果据此标记为降级
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class QueryBudget {
+
+    private final long deadlineNanos;
+
+    private final Set<String> degradedTables = ConcurrentHashMap.newKeySet();
+
+    private QueryBudget(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 从现在开始计算截止时间
+     */
+    public static QueryBudget of(long timeoutMillis) {
+        return new QueryBudget(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * 记录某张表使用了历史因子
+     */
+    public void markDegraded(String table) {
+        degradedTables.add(table);
+    }
+
+    public boolean isDegraded() {
+        return !degradedTables.isEmpty();
+    }
+
+    /**
+     * 使用了历史因子的表（按名称排序）
+     */
+    public Set<String> getDegradedTables() {
+        return new TreeSet<>(degradedTables);
+    }
+}
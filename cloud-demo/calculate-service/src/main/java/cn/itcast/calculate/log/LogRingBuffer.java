@@ -0,0 +1,113 @@
+package cn.itcast.calculate.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界无锁环形缓冲区（多生产者、单消费者）
+ *
+ * 每个槽位带一个序号（Vyukov有界队列）：
+ * - 生产者CAS推进写指针占用槽位，写入元素后发布序号；槽位未被消费（缓冲区已满）时直接返回false，不等待
+ * - 消费者只有一个，读指针不需要CAS；取走元素后把槽位序号推进一圈，交还给生产者
+ *
+ * 算费线程只做一次CAS和两次数组写入，不加锁、不阻塞
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class LogRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 读指针（只由消费者线程修改）
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("容量不合法：" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 写入（任意线程），缓冲区已满返回false
+     */
+    public boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // 其他生产者已占用该槽位
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出（只能由同一个消费者线程调用），为空返回null
+     */
+    public T poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        T element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * 批量取出，最多max个
+     *
+     * @return 取出的个数
+     */
+    public int drain(Consumer<? super T> consumer, int max) {
+        int count = 0;
+        T element;
+        while (count < max && (element = poll()) != null) {
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前积压（近似值）
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, mask + 1));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
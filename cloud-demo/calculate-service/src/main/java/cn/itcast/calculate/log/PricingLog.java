@@ -0,0 +1,221 @@
+package cn.itcast.calculate.log;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 算费日志（每笔请求一行结构化摘要）
+ *
+ * 两种模式（calculate.log.mode）：
+ * - sync：每笔请求在算费线程上格式化并同步写出
+ * - async：算费线程只把原始字段放进无锁环形缓冲区（不格式化字符串、不做I/O），
+ *   由后台线程pricing-log批量格式化写出；成功请求按sample-rate采样，失败和降级全部写出；
+ *   缓冲区满时丢弃并计数，不阻塞算费线程
+ *
+ * 摘要格式：path=parallel kind=050200 car=GL8 area=3201 channel=WECHAT claims=0 amount=100000
+ * premium=1234.56 success=true degraded=false cost=12.345ms thread=http-nio-8083-exec-1
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class PricingLog {
+
+    public static final String SERIAL = "serial";
+    public static final String PARALLEL = "parallel";
+    public static final String ASYNC = "async";
+
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_ASYNC = "async";
+
+    /**
+     * 后台线程每批最多写出的条数
+     */
+    private static final int DRAIN_BATCH = 256;
+
+    /**
+     * 缓冲区为空时后台线程的休眠时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Value("${calculate.log.mode:async}")
+    private String mode;
+
+    @Value("${calculate.log.sample-rate:100}")
+    private int sampleRate;
+
+    @Value("${calculate.log.buffer-size:8192}")
+    private int bufferSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LogRingBuffer<Entry> buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * 后台线程专用（单线程复用）
+     */
+    private final StringBuilder line = new StringBuilder(256);
+
+    @PostConstruct
+    public void init() {
+        if (MODE_ASYNC.equals(mode)) {
+            buffer = new LogRingBuffer<>(bufferSize);
+            running = true;
+            writer = new Thread(this::drainLoop, "pricing-log");
+            writer.setDaemon(true);
+            writer.start();
+            Gauge.builder("calculate.log.backlog", buffer, LogRingBuffer::size)
+                    .description("算费日志缓冲区积压条数").register(meterRegistry);
+        } else if (!MODE_SYNC.equals(mode)) {
+            throw new IllegalStateException("不支持的算费日志模式：" + mode + "，可选：sync / async");
+        }
+        FunctionCounter.builder("calculate.log.written", written, LongAdder::sum)
+                .description("已写出的算费日志条数").register(meterRegistry);
+        FunctionCounter.builder("calculate.log.dropped", dropped, LongAdder::sum)
+                .description("缓冲区已满丢弃的算费日志条数").register(meterRegistry);
+        log.info("算费日志模式：{}{}", mode,
+                buffer != null ? "，采样1/" + Math.max(sampleRate, 1) + "，缓冲区" + buffer.capacity() + "条" : "");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 记录一笔算费
+     *
+     * @param path      算费方式（SERIAL / PARALLEL / ASYNC）
+     * @param costNanos 总耗时（纳秒）
+     */
+    public void request(String path, CalculateRequest request, CalculateResponse response, long costNanos) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        boolean success = Boolean.TRUE.equals(response.getSuccess());
+        boolean degraded = Boolean.TRUE.equals(response.getDegraded());
+        if (buffer == null) {
+            write(new Entry(path, request, response.getPremium(), success, degraded,
+                    success ? null : response.getMessage(), costNanos));
+            return;
+        }
+        // 成功且未降级的请求采样，失败和降级全部记录
+        if (success && !degraded && sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        Entry entry = new Entry(path, request, response.getPremium(), success, degraded,
+                success ? null : response.getMessage(), costNanos);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (buffer.drain(this::write, DRAIN_BATCH) == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (Exception e) {
+                // 单条写出失败不能让后台线程退出
+                log.warn("写出算费日志失败", e);
+            }
+        }
+        buffer.drain(this::write, Integer.MAX_VALUE);
+    }
+
+    private void write(Entry entry) {
+        StringBuilder builder = buffer != null ? line : new StringBuilder(256);
+        builder.setLength(0);
+        entry.format(builder);
+        log.info(builder.toString());
+        written.increment();
+    }
+
+    /**
+     * 一笔算费的原始字段（只保存引用，格式化在写出时进行）
+     */
+    private static final class Entry {
+
+        private final String path;
+        private final String kindCode;
+        private final String carModel;
+        private final String areaCode;
+        private final String channel;
+        private final Integer claimCount;
+        private final BigDecimal amount;
+        private final BigDecimal premium;
+        private final boolean success;
+        private final boolean degraded;
+        private final String message;
+        private final long costNanos;
+        private final String thread;
+
+        private Entry(String path, CalculateRequest request, BigDecimal premium, boolean success, boolean degraded,
+                      String message, long costNanos) {
+            this.path = path;
+            this.kindCode = request.getKindCode();
+            this.carModel = request.getCarModel();
+            this.areaCode = request.getAreaCode();
+            this.channel = request.getChannel();
+            this.claimCount = request.getClaimCount();
+            this.amount = request.getAmount();
+            this.premium = premium;
+            this.success = success;
+            this.degraded = degraded;
+            this.message = message;
+            this.costNanos = costNanos;
+            this.thread = Thread.currentThread().getName();
+        }
+
+        private void format(StringBuilder builder) {
+            builder.append("path=").append(path)
+                    .append(" kind=").append(kindCode)
+                    .append(" car=").append(carModel)
+                    .append(" area=").append(areaCode)
+                    .append(" channel=").append(channel)
+                    .append(" claims=").append(claimCount)
+                    .append(" amount=").append(amount == null ? null : amount.toPlainString())
+                    .append(" premium=").append(premium == null ? null : premium.toPlainString())
+                    .append(" success=").append(success)
+                    .append(" degraded=").append(degraded)
+                    .append(" cost=").append(costNanos / 1_000_000).append('.');
+            long micros = costNanos / 1000 % 1000;
+            if (micros < 100) {
+                builder.append(micros < 10 ? "00" : "0");
+            }
+            builder.append(micros).append("ms")
+                    .append(" thread=").append(thread);
+            if (message != null) {
+                builder.append(" message=\"").append(message).append('"');
+            }
+        }
+    }
+}
@@ -3,6 +3,9 @@ package cn.itcast.calculate.mapper;
 import cn.itcast.calculate.entity.Discount;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 折扣系数表Mapper
  */
@@ -13,4 +16,14 @@ public interface DiscountMapper {
      */
     Discount queryDiscount(@Param("channel") String channel, 
                           @Param("areaCode") String areaCode);
+    
+    /**
+     * 查询全部折扣系数（用于加载内存快照）
+     */
+    List<Discount> listAll();
+    
+    /**
+     * 批量查询折扣系数（按channel+areaCode组合主键IN查询）
+     */
+    List<Discount> queryDiscountBatch(@Param("keys") Collection<Discount> keys);
 }
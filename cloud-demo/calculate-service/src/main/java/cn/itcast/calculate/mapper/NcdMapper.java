@@ -3,6 +3,9 @@ package cn.itcast.calculate.mapper;
 import cn.itcast.calculate.entity.Ncd;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * NCD系数表Mapper
  */
@@ -12,4 +15,14 @@ public interface NcdMapper {
      * 查询NCD系数
      */
     Ncd queryNcd(@Param("claimCount") Integer claimCount);
+    
+    /**
+     * 查询全部NCD系数（用于加载内存快照）
+     */
+    List<Ncd> listAll();
+    
+    /**
+     * 批量查询NCD系数
+     */
+    List<Ncd> queryNcdBatch(@Param("claimCounts") Collection<Integer> claimCounts);
 }
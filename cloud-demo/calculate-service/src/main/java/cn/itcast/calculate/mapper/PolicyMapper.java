@@ -0,0 +1,19 @@
+package cn.itcast.calculate.mapper;
+
+import cn.itcast.calculate.entity.Policy;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+/**
+ * 保单表Mapper
+ */
+public interface PolicyMapper {
+    
+    /**
+     * 按保单号顺序流式读取保单（用于批量重算）
+     * 返回Cursor，逐行读取，不会把整张表加载到内存；调用方需在事务内遍历并关闭
+     * 
+     * @param afterPolicyNo 从该保单号之后开始（断点续跑），为空时从头开始
+     */
+    Cursor<Policy> scanPolicies(@Param("afterPolicyNo") String afterPolicyNo);
+}
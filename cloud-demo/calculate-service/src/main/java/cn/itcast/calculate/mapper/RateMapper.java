@@ -2,6 +2,10 @@ package cn.itcast.calculate.mapper;
 
 import cn.itcast.calculate.entity.Rate;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 费率表Mapper
@@ -14,4 +18,15 @@ public interface RateMapper {
     Rate queryRate(@Param("kindCode") String kindCode, 
                    @Param("carModel") String carModel, 
                    @Param("areaCode") String areaCode);
+    
+    /**
+     * 流式读取全部费率（用于加载内存快照，写入堆外索引）
+     * 返回Cursor，逐行读取，不会把整张表加载到内存；调用方需在事务内遍历并关闭
+     */
+    Cursor<Rate> scanAll();
+    
+    /**
+     * 批量查询费率（按kindCode+carModel+areaCode组合主键IN查询）
+     */
+    List<Rate> queryRateBatch(@Param("keys") Collection<Rate> keys);
 }
@@ -0,0 +1,150 @@
+package cn.itcast.calculate.monitor;
+
+import cn.itcast.calculate.pojo.StageLatency;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 算费分阶段耗时统计
+ *
+ * 所有阶段记录到同一个Timer：calculate.stage，标签为stage + kindCode
+ * - queue：查询任务提交 → 开始执行（每个查询各记一次）
+ * - rate / discount / ncd：三张表各自的Mapper查询
+ * - join：三个查询全部提交 → 最慢的一个完成
+ * - compute：保费计算
+ * - total：整笔请求
+ *
+ * 查看方式：
+ * - /actuator/metrics/calculate.stage?tag=stage:rate&tag=kindCode:050200
+ * - /actuator/metrics/calculate.stage.percentile?tag=stage:rate&tag=phi:0.99
+ * - /calculate/metrics/stages（按阶段 + 险种汇总p50/p95/p99）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Component
+public class StageMetrics {
+
+    public static final String METRIC_NAME = "calculate.stage";
+
+    public static final String QUEUE = "queue";
+    public static final String RATE = "rate";
+    public static final String DISCOUNT = "discount";
+    public static final String NCD = "ncd";
+    public static final String JOIN = "join";
+    public static final String COMPUTE = "compute";
+    public static final String TOTAL = "total";
+
+    /**
+     * 险种标签上限，超出后归入other，防止非法险种撑爆指标数量
+     */
+    private static final int MAX_KIND_CODES = 100;
+    private static final String UNKNOWN_KIND_CODE = "unknown";
+    private static final String OTHER_KIND_CODE = "other";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+
+    private final StartupMetrics startupMetrics;
+
+    /**
+     * stage|kindCode → Timer，避免每次记录都走Timer.builder
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Set<String> kindCodes = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public StageMetrics(MeterRegistry meterRegistry, StartupMetrics startupMetrics) {
+        this.meterRegistry = meterRegistry;
+        this.startupMetrics = startupMetrics;
+    }
+
+    /**
+     * 记录一次阶段耗时
+     *
+     * @param stage    阶段
+     * @param kindCode 险种
+     * @param nanos    耗时（纳秒）
+     */
+    public void record(String stage, String kindCode, long nanos) {
+        timer(stage, kindCode).record(nanos, TimeUnit.NANOSECONDS);
+        if (TOTAL.equals(stage)) {
+            startupMetrics.onRequestCompleted(nanos);
+        }
+    }
+
+    private Timer timer(String stage, String kindCode) {
+        String tag = kindCodeTag(kindCode);
+        String key = stage + '|' + tag;
+        Timer timer = timers.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(key, k -> Timer.builder(METRIC_NAME)
+                .description("算费分阶段耗时")
+                .tag("stage", stage)
+                .tag("kindCode", tag)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .distributionStatisticExpiry(Duration.ofMinutes(2))
+                .register(meterRegistry));
+    }
+
+    private String kindCodeTag(String kindCode) {
+        if (kindCode == null || kindCode.isEmpty()) {
+            return UNKNOWN_KIND_CODE;
+        }
+        if (kindCodes.contains(kindCode)) {
+            return kindCode;
+        }
+        // 近似上限即可，并发下略微超出无影响
+        if (kindCodes.size() >= MAX_KIND_CODES) {
+            return OTHER_KIND_CODE;
+        }
+        kindCodes.add(kindCode);
+        return kindCode;
+    }
+
+    /**
+     * 各阶段耗时汇总（百分位为最近2分钟滑动窗口）
+     */
+    public List<StageLatency> snapshot() {
+        List<StageLatency> result = new ArrayList<>(timers.size());
+        for (Timer timer : timers.values()) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            StageLatency latency = new StageLatency();
+            latency.setStage(timer.getId().getTag("stage"));
+            latency.setKindCode(timer.getId().getTag("kindCode"));
+            latency.setCount(snapshot.count());
+            latency.setMeanMs(snapshot.mean(TimeUnit.MILLISECONDS));
+            latency.setMaxMs(snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                double value = percentile.value(TimeUnit.MILLISECONDS);
+                if (percentile.percentile() == 0.5) {
+                    latency.setP50Ms(value);
+                } else if (percentile.percentile() == 0.95) {
+                    latency.setP95Ms(value);
+                } else if (percentile.percentile() == 0.99) {
+                    latency.setP99Ms(value);
+                }
+            }
+            result.add(latency);
+        }
+        result.sort((a, b) -> Double.compare(b.getP99Ms(), a.getP99Ms()));
+        return result;
+    }
+}
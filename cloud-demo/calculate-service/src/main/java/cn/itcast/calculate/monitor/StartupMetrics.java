@@ -0,0 +1,121 @@
+package cn.itcast.calculate.monitor;
+
+import cn.itcast.calculate.config.WarmupProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动耗时统计
+ *
+ * 时间均从JVM启动开始计算：
+ * - ready：应用就绪（预热完成后才会就绪）
+ * - firstResponse：就绪后第一个真实请求完成
+ * - firstFastResponse：就绪后第一个耗时低于阈值（calculate.warmup.fast-threshold-ms）的真实请求完成，
+ *   用于跟踪启动性能回退：预热不充分时，前几百个请求都会慢，这个值会明显变大
+ *
+ * 预热期间的模拟请求不计入
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class StartupMetrics {
+
+    @Autowired
+    private WarmupProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final AtomicLong warmupMillis = new AtomicLong(-1);
+    private final AtomicLong readyMillis = new AtomicLong(-1);
+    private final AtomicLong firstResponseMillis = new AtomicLong(-1);
+    private final AtomicLong firstResponseCostMicros = new AtomicLong(-1);
+    private final AtomicLong firstFastResponseMillis = new AtomicLong(-1);
+    private final AtomicLong slowResponsesBeforeFast = new AtomicLong();
+
+    /**
+     * 就绪后才开始统计真实请求
+     */
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void registerMetrics() {
+        gauge("calculate.startup.warmup", warmupMillis, "启动预热耗时");
+        gauge("calculate.startup.ready", readyMillis, "JVM启动到应用就绪");
+        gauge("calculate.startup.first.response", firstResponseMillis, "JVM启动到第一个请求完成");
+        gauge("calculate.startup.first.fast.response", firstFastResponseMillis, "JVM启动到第一个快速响应");
+    }
+
+    private void gauge(String name, AtomicLong millis, String description) {
+        Gauge.builder(name, millis, value -> value.get() < 0 ? Double.NaN : value.get() / 1000.0)
+                .description(description)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录预热耗时
+     */
+    public void onWarmupFinished(long costMillis) {
+        warmupMillis.set(costMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis.set(System.currentTimeMillis() - jvmStartMillis);
+        ready = true;
+        log.info("应用就绪，JVM启动至今：{}ms，其中预热：{}ms", readyMillis.get(), warmupMillis.get());
+    }
+
+    /**
+     * 一个真实请求完成（由StageMetrics在记录total阶段时调用）
+     */
+    public void onRequestCompleted(long nanos) {
+        if (!ready || firstFastResponseMillis.get() >= 0) {
+            return;
+        }
+        long sinceStart = System.currentTimeMillis() - jvmStartMillis;
+        if (firstResponseMillis.compareAndSet(-1, sinceStart)) {
+            firstResponseCostMicros.set(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+        if (TimeUnit.NANOSECONDS.toMillis(nanos) < properties.getFastThresholdMs()) {
+            if (firstFastResponseMillis.compareAndSet(-1, sinceStart)) {
+                log.info("第一个快速响应（<{}ms），JVM启动至今：{}ms，之前慢请求{}个",
+                        properties.getFastThresholdMs(), sinceStart, slowResponsesBeforeFast.get());
+            }
+        } else {
+            slowResponsesBeforeFast.incrementAndGet();
+        }
+    }
+
+    /**
+     * 启动耗时统计（毫秒，-1表示尚未发生）
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("warmupMs", warmupMillis.get());
+        stats.put("readyMs", readyMillis.get());
+        stats.put("firstResponseMs", firstResponseMillis.get());
+        stats.put("firstResponseCostMs", firstResponseCostMicros.get() < 0 ? -1 : firstResponseCostMicros.get() / 1000.0);
+        stats.put("firstFastResponseMs", firstFastResponseMillis.get());
+        stats.put("slowResponsesBeforeFast", slowResponsesBeforeFast.get());
+        stats.put("fastThresholdMs", properties.getFastThresholdMs());
+        return stats;
+    }
+}
@@ -0,0 +1,74 @@
+package cn.itcast.calculate.monitor;
+
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程池监控
+ *
+ * 通过TaskDecorator包装每个任务，统计：
+ * - 排队等待时间：提交 → 开始执行
+ * - 执行时间：开始执行 → 执行结束（基本等于SQL耗时）
+ * - 拒绝次数：队列满后被拒绝（快速失败）的次数
+ *
+ * 计数器使用LongAdder，高并发下无锁累加
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class ThreadPoolMonitor implements TaskDecorator {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        long submitAt = System.nanoTime();
+        submitted.increment();
+        return () -> {
+            long startAt = System.nanoTime();
+            totalWaitNanos.add(startAt - submitAt);
+            try {
+                runnable.run();
+            } finally {
+                totalRunNanos.add(System.nanoTime() - startAt);
+                completed.increment();
+            }
+        };
+    }
+
+    /**
+     * 包装拒绝策略，统计拒绝次数后交给原策略处理
+     */
+    public RejectedExecutionHandler countingRejections(RejectedExecutionHandler delegate) {
+        return (runnable, executor) -> {
+            rejected.increment();
+            delegate.rejectedExecution(runnable, executor);
+        };
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getTotalRunNanos() {
+        return totalRunNanos.sum();
+    }
+}
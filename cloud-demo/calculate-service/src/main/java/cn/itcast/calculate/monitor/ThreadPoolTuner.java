@@ -0,0 +1,160 @@
+package cn.itcast.calculate.monitor;
+
+import cn.itcast.calculate.config.ThreadPoolProperties;
+import cn.itcast.calculate.pojo.ThreadPoolStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 算费线程池自适应调整
+ *
+ * 每个周期根据窗口内的吞吐量、平均执行时间（≈SQL耗时）、队列深度和拒绝次数，
+ * 在配置的上下限内调整核心线程数和最大线程数：
+ * - 所需线程数 = 吞吐量 × 平均执行时间 × 余量系数（利特尔法则）
+ * - 队列超过水位线或出现拒绝：至少扩容一个步长
+ * - 队列为空且所需线程数更少：缩容一个步长
+ *
+ * 关闭自适应时只计算窗口统计，不调整线程池
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class ThreadPoolTuner {
+
+    @Autowired
+    @Qualifier("calculateExecutor")
+    private ThreadPoolTaskExecutor calculateExecutor;
+
+    @Autowired
+    private ThreadPoolMonitor calculateExecutorMonitor;
+
+    @Autowired
+    private ThreadPoolProperties properties;
+
+    /**
+     * 上个周期的累计值（只在调度线程中读写）
+     */
+    private long lastTickNanos = System.nanoTime();
+    private long lastCompleted;
+    private long lastRejected;
+    private long lastWaitNanos;
+    private long lastRunNanos;
+
+    /**
+     * 最近一个窗口的统计结果（调度线程写，接口线程读）
+     */
+    private volatile double windowAvgWaitMs;
+    private volatile double windowAvgRunMs;
+    private volatile double windowThroughput;
+    private volatile long windowRejected;
+
+    @Scheduled(fixedDelayString = "${calculate.thread-pool.adaptive.interval-ms:5000}")
+    public void tick() {
+        long now = System.nanoTime();
+        long completed = calculateExecutorMonitor.getCompleted();
+        long rejected = calculateExecutorMonitor.getRejected();
+        long waitNanos = calculateExecutorMonitor.getTotalWaitNanos();
+        long runNanos = calculateExecutorMonitor.getTotalRunNanos();
+
+        long completedDelta = completed - lastCompleted;
+        long rejectedDelta = rejected - lastRejected;
+        double elapsedSeconds = (now - lastTickNanos) / 1e9;
+
+        windowThroughput = elapsedSeconds > 0 ? completedDelta / elapsedSeconds : 0;
+        windowAvgWaitMs = completedDelta > 0 ? (waitNanos - lastWaitNanos) / 1e6 / completedDelta : 0;
+        windowAvgRunMs = completedDelta > 0 ? (runNanos - lastRunNanos) / 1e6 / completedDelta : 0;
+        windowRejected = rejectedDelta;
+
+        lastTickNanos = now;
+        lastCompleted = completed;
+        lastRejected = rejected;
+        lastWaitNanos = waitNanos;
+        lastRunNanos = runNanos;
+
+        if (properties.getAdaptive().isEnabled()) {
+            adjust();
+        }
+    }
+
+    /**
+     * 根据最近窗口的统计调整线程池大小
+     */
+    private void adjust() {
+        ThreadPoolProperties.Adaptive adaptive = properties.getAdaptive();
+        ThreadPoolExecutor executor = calculateExecutor.getThreadPoolExecutor();
+        int core = executor.getCorePoolSize();
+        int queueSize = executor.getQueue().size();
+        boolean queueBacklog = queueSize > properties.getQueueCapacity() * adaptive.getQueueHighWatermark();
+
+        // 利特尔法则：并发数 = 到达率 × 平均处理时间
+        int target = (int) Math.ceil(windowThroughput * windowAvgRunMs / 1000 * adaptive.getHeadroom());
+        if (queueBacklog || windowRejected > 0) {
+            target = Math.max(target, core + adaptive.getStep());
+        }
+        target = Math.max(adaptive.getMinCorePoolSize(), Math.min(adaptive.getMaxCorePoolSize(), target));
+
+        int newCore = core;
+        if (target > core) {
+            newCore = Math.min(core + adaptive.getStep(), target);
+        } else if (target < core && queueSize == 0) {
+            newCore = Math.max(core - adaptive.getStep(), target);
+        }
+        if (newCore == core) {
+            return;
+        }
+
+        // 保持配置的突发余量（最大线程数 - 核心线程数）
+        int burst = Math.max(0, properties.getMaxPoolSize() - properties.getCorePoolSize());
+        int newMax = newCore + burst;
+        if (newCore > core) {
+            // 扩容：先调最大线程数，避免核心线程数大于最大线程数
+            calculateExecutor.setMaxPoolSize(newMax);
+            calculateExecutor.setCorePoolSize(newCore);
+        } else {
+            calculateExecutor.setCorePoolSize(newCore);
+            calculateExecutor.setMaxPoolSize(newMax);
+        }
+
+        log.info("算费线程池自适应调整：核心线程{} → {}，最大线程{}，窗口吞吐量{}/s，平均执行{}ms，平均排队{}ms，队列深度{}，拒绝{}次",
+                core, newCore, newMax,
+                String.format("%.1f", windowThroughput),
+                String.format("%.2f", windowAvgRunMs),
+                String.format("%.2f", windowAvgWaitMs),
+                queueSize, windowRejected);
+    }
+
+    /**
+     * 当前线程池状态
+     */
+    public ThreadPoolStats stats() {
+        ThreadPoolExecutor executor = calculateExecutor.getThreadPoolExecutor();
+        long completed = calculateExecutorMonitor.getCompleted();
+
+        ThreadPoolStats stats = new ThreadPoolStats();
+        stats.setCorePoolSize(executor.getCorePoolSize());
+        stats.setMaxPoolSize(executor.getMaximumPoolSize());
+        stats.setPoolSize(executor.getPoolSize());
+        stats.setActiveCount(executor.getActiveCount());
+        stats.setQueueSize(executor.getQueue().size());
+        stats.setQueueRemainingCapacity(executor.getQueue().remainingCapacity());
+        stats.setSubmittedCount(calculateExecutorMonitor.getSubmitted());
+        stats.setCompletedCount(completed);
+        stats.setRejectedCount(calculateExecutorMonitor.getRejected());
+        stats.setAvgWaitMs(completed > 0 ? calculateExecutorMonitor.getTotalWaitNanos() / 1e6 / completed : 0);
+        stats.setAvgRunMs(completed > 0 ? calculateExecutorMonitor.getTotalRunNanos() / 1e6 / completed : 0);
+        stats.setWindowAvgWaitMs(windowAvgWaitMs);
+        stats.setWindowAvgRunMs(windowAvgRunMs);
+        stats.setWindowThroughput(windowThroughput);
+        stats.setWindowRejectedCount(windowRejected);
+        stats.setAdaptiveEnabled(properties.getAdaptive().isEnabled());
+        return stats;
+    }
+}
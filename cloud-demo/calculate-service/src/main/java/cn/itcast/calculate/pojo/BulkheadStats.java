@@ -0,0 +1,53 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 因子查询舱壁统计（按表）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class BulkheadStats {
+
+    /**
+     * 表：rate / discount / ncd
+     */
+    private String table;
+
+    /**
+     * 并发上限
+     */
+    private int maxConcurrent;
+
+    /**
+     * 当前在途查询数
+     */
+    private int active;
+
+    /**
+     * 在途查询数峰值
+     */
+    private int peakActive;
+
+    /**
+     * 饱和度 = active / maxConcurrent
+     */
+    private double saturation;
+
+    /**
+     * 调用次数
+     */
+    private long calls;
+
+    /**
+     * 快速失败次数
+     */
+    private long rejected;
+
+    /**
+     * 快速失败比例
+     */
+    private double rejectRatio;
+}
@@ -0,0 +1,50 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量算费响应结果
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class CalculateBatchResponse {
+
+    /**
+     * 是否成功（整批请求是否被受理，单笔结果见results）
+     */
+    private Boolean success;
+
+    /**
+     * 请求笔数
+     */
+    private Integer total;
+
+    /**
+     * 成功笔数
+     */
+    private Integer successCount;
+
+    /**
+     * 数据库查询次数
+     */
+    private Integer queryCount;
+
+    /**
+     * 总耗时（毫秒）
+     */
+    private Long cost;
+
+    /**
+     * 单笔算费结果（与请求顺序一致）
+     */
+    private List<CalculateResponse> results;
+
+    /**
+     * 消息
+     */
+    private String message;
+}
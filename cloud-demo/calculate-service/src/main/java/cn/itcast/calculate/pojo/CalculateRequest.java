@@ -13,6 +13,11 @@ import java.math.BigDecimal;
 @Data
 public class CalculateRequest {
     
+    public static final String DEFAULT_CAR_MODEL = "GL8";
+    public static final String DEFAULT_AREA_CODE = "3201";
+    public static final String DEFAULT_CHANNEL = "WECHAT";
+    public static final int DEFAULT_CLAIM_COUNT = 0;
+    
     /**
      * 险种代码
      */
@@ -22,4 +27,45 @@ public class CalculateRequest {
      * 保额（元）
      */
     private BigDecimal amount;
+    
+    /**
+     * 车型（为空时默认GL8）
+     */
+    private String carModel;
+    
+    /**
+     * 地区代码（为空时默认3201）
+     */
+    private String areaCode;
+    
+    /**
+     * 渠道（为空时默认WECHAT）
+     */
+    private String channel;
+    
+    /**
+     * 出险次数（为空时默认0）
+     */
+    private Integer claimCount;
+    
+    /**
+     * 车龄（年，可为空，定价规则中的附加因子使用）
+     */
+    private Integer carAge;
+    
+    public String getCarModel() {
+        return carModel != null ? carModel : DEFAULT_CAR_MODEL;
+    }
+    
+    public String getAreaCode() {
+        return areaCode != null ? areaCode : DEFAULT_AREA_CODE;
+    }
+    
+    public String getChannel() {
+        return channel != null ? channel : DEFAULT_CHANNEL;
+    }
+    
+    public Integer getClaimCount() {
+        return claimCount != null ? claimCount : DEFAULT_CLAIM_COUNT;
+    }
 }
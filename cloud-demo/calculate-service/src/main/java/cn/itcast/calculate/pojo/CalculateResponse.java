@@ -48,6 +48,11 @@ public class CalculateResponse {
      */
     private BigDecimal ncdRate;
     
+    /**
+     * 是否降级（部分因子查询超时或失败，使用了历史因子）
+     */
+    private Boolean degraded;
+    
     /**
      * 消息
      */
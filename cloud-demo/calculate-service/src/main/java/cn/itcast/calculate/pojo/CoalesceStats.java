@@ -0,0 +1,43 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 因子查询合并统计
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class CoalesceStats {
+
+    /**
+     * 表：rate / discount / ncd
+     */
+    private String table;
+
+    /**
+     * 总调用次数
+     */
+    private long calls;
+
+    /**
+     * 实际查库次数
+     */
+    private long executions;
+
+    /**
+     * 合并次数（命中在途查询，未查库）
+     */
+    private long coalesced;
+
+    /**
+     * 当前在途查询数
+     */
+    private int inFlight;
+
+    /**
+     * 合并命中率 = coalesced / calls
+     */
+    private double hitRatio;
+}
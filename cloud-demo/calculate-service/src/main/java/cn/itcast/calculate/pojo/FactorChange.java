@@ -0,0 +1,45 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 因子变更通知
+ *
+ * table为空或all时全部失效
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class FactorChange {
+
+    /**
+     * 变更的表：rate / discount / ncd / all
+     */
+    private String table;
+
+    /**
+     * 险种代码（rate）
+     */
+    private String kindCode;
+
+    /**
+     * 车型（rate）
+     */
+    private String carModel;
+
+    /**
+     * 地区代码（rate / discount）
+     */
+    private String areaCode;
+
+    /**
+     * 渠道（discount）
+     */
+    private String channel;
+
+    /**
+     * 出险次数（ncd）
+     */
+    private Integer claimCount;
+}
@@ -0,0 +1,53 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 因子查询对冲与降级统计（按表）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class HedgeStats {
+
+    /**
+     * 表：rate / discount / ncd
+     */
+    private String table;
+
+    /**
+     * 带截止时间的查询次数（不含本地缓存命中）
+     */
+    private long calls;
+
+    /**
+     * 发起对冲次数
+     */
+    private long hedges;
+
+    /**
+     * 对冲查询先返回的次数
+     */
+    private long hedgeWins;
+
+    /**
+     * 对冲比例 = hedges / calls
+     */
+    private double hedgeRatio;
+
+    /**
+     * 超过截止时间次数
+     */
+    private long timeouts;
+
+    /**
+     * 查询失败次数
+     */
+    private long failures;
+
+    /**
+     * 使用历史因子次数
+     */
+    private long fallbacks;
+}
@@ -0,0 +1,78 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 保费因子立方体统计
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class PremiumCubeStats {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 构建所用快照版本（与当前快照版本不一致时立方体暂不使用，等待重建）
+     */
+    private long snapshotVersion;
+
+    /**
+     * 构建完成时间（毫秒时间戳）
+     */
+    private long builtAt;
+
+    /**
+     * 构建耗时（毫秒）
+     */
+    private long buildMs;
+
+    /**
+     * 纳入立方体的热点组合数
+     */
+    private int combinations;
+
+    /**
+     * 格子总数
+     */
+    private int cells;
+
+    /**
+     * 有因子积的格子数
+     */
+    private int filledCells;
+
+    /**
+     * 估算内存占用（字节）
+     */
+    private long memoryBytes;
+
+    /**
+     * 构建时热点组合覆盖的请求比例（按已记录的请求计算，预期命中率）
+     */
+    private double expectedHitRatio;
+
+    /**
+     * 已记录请求的组合数
+     */
+    private int trackedCombinations;
+
+    /**
+     * 命中次数（由立方体直接算出保费）
+     */
+    private long hits;
+
+    /**
+     * 未命中次数（按快照逐个查询因子计算）
+     */
+    private long misses;
+
+    /**
+     * 实际命中率（立方体服务的请求比例）
+     */
+    private double hitRatio;
+}
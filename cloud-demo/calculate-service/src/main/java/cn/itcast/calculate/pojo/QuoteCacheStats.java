@@ -0,0 +1,53 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 报价结果缓存统计（按接口）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class QuoteCacheStats {
+
+    /**
+     * 接口：parallel / async
+     */
+    private String endpoint;
+
+    /**
+     * 缓存条数（所有接口共用一个缓存）
+     */
+    private long size;
+
+    /**
+     * 命中次数
+     */
+    private long hits;
+
+    /**
+     * 未命中次数
+     */
+    private long misses;
+
+    /**
+     * 命中率
+     */
+    private double hitRatio;
+
+    /**
+     * 命中平均耗时（毫秒）
+     */
+    private double avgHitMs;
+
+    /**
+     * 未命中平均耗时（毫秒，含查询因子和计算）
+     */
+    private double avgMissMs;
+
+    /**
+     * 累计节省耗时（毫秒）
+     */
+    private double savedMs;
+}
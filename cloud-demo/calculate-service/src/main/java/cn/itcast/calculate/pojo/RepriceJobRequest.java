@@ -0,0 +1,53 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 批量重算任务请求
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class RepriceJobRequest {
+
+    /**
+     * 数据来源：file（CSV文件）/ db（policy_table）
+     */
+    private String source = "file";
+
+    /**
+     * 输入文件（source=file时必填，相对calculate.reprice.work-dir）
+     */
+    private String input;
+
+    /**
+     * 输出文件（相对calculate.reprice.work-dir），断点文件为同目录下的 输出文件名.checkpoint
+     */
+    private String output;
+
+    /**
+     * 是否从断点续跑（断点文件不存在时从头开始）
+     */
+    private boolean resume;
+
+    /**
+     * 因子表数据版本号与断点不同（或未知）时仍强制续跑（前后两段结果使用不同费率，需自行确认）
+     */
+    private boolean forceResume;
+
+    /**
+     * 开始前是否重新加载费率快照
+     */
+    private boolean reloadSnapshot;
+
+    /**
+     * 分片大小（为空取calculate.reprice.chunk-size）
+     */
+    private Integer chunkSize;
+
+    /**
+     * 并行度（为空取calculate.reprice.parallelism）
+     */
+    private Integer parallelism;
+}
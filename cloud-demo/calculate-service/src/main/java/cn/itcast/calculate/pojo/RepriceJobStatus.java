@@ -0,0 +1,66 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 批量重算任务状态
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class RepriceJobStatus {
+
+    /**
+     * 状态：RUNNING / COMPLETED / FAILED / CANCELLED
+     */
+    private String state;
+
+    private String source;
+
+    private String input;
+
+    private String output;
+
+    /**
+     * 使用的快照版本（整个任务固定）
+     */
+    private long snapshotVersion;
+
+    /**
+     * 快照对应的因子表数据版本号（-1为未知），断点中保存的是这个值
+     */
+    private long dataVersion;
+
+    /**
+     * 续跑起点（断点中已写出的行数，从头开始为0）
+     */
+    private long resumedFrom;
+
+    /**
+     * 本次已读取行数
+     */
+    private long rowsRead;
+
+    /**
+     * 本次已写出行数
+     */
+    private long rowsWritten;
+
+    /**
+     * 本次计算失败行数
+     */
+    private long failedRows;
+
+    /**
+     * 本次耗时（毫秒）
+     */
+    private long elapsedMs;
+
+    /**
+     * 本次吞吐（行/秒）
+     */
+    private double rowsPerSecond;
+
+    private String message;
+}
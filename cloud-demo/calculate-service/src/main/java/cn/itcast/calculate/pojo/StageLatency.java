@@ -0,0 +1,53 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 算费单阶段耗时汇总
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class StageLatency {
+
+    /**
+     * 阶段：queue / rate / discount / ncd / join / compute / total
+     */
+    private String stage;
+
+    /**
+     * 险种代码
+     */
+    private String kindCode;
+
+    /**
+     * 累计次数
+     */
+    private long count;
+
+    /**
+     * 平均耗时（毫秒）
+     */
+    private double meanMs;
+
+    /**
+     * 最近窗口内最大耗时（毫秒）
+     */
+    private double maxMs;
+
+    /**
+     * 最近窗口内P50耗时（毫秒）
+     */
+    private double p50Ms;
+
+    /**
+     * 最近窗口内P95耗时（毫秒）
+     */
+    private double p95Ms;
+
+    /**
+     * 最近窗口内P99耗时（毫秒）
+     */
+    private double p99Ms;
+}
@@ -0,0 +1,93 @@
+package cn.itcast.calculate.pojo;
+
+import lombok.Data;
+
+/**
+ * 算费线程池运行状态
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class ThreadPoolStats {
+
+    /**
+     * 核心线程数（自适应调整后的当前值）
+     */
+    private Integer corePoolSize;
+
+    /**
+     * 最大线程数（自适应调整后的当前值）
+     */
+    private Integer maxPoolSize;
+
+    /**
+     * 当前线程数
+     */
+    private Integer poolSize;
+
+    /**
+     * 活跃线程数
+     */
+    private Integer activeCount;
+
+    /**
+     * 队列深度
+     */
+    private Integer queueSize;
+
+    /**
+     * 队列剩余容量
+     */
+    private Integer queueRemainingCapacity;
+
+    /**
+     * 累计提交任务数
+     */
+    private Long submittedCount;
+
+    /**
+     * 累计完成任务数
+     */
+    private Long completedCount;
+
+    /**
+     * 累计拒绝次数（队列满，快速失败）
+     */
+    private Long rejectedCount;
+
+    /**
+     * 累计平均排队时间（毫秒）
+     */
+    private Double avgWaitMs;
+
+    /**
+     * 累计平均执行时间（毫秒）
+     */
+    private Double avgRunMs;
+
+    /**
+     * 最近一个统计窗口的平均排队时间（毫秒）
+     */
+    private Double windowAvgWaitMs;
+
+    /**
+     * 最近一个统计窗口的平均执行时间（毫秒）
+     */
+    private Double windowAvgRunMs;
+
+    /**
+     * 最近一个统计窗口的吞吐量（任务/秒）
+     */
+    private Double windowThroughput;
+
+    /**
+     * 最近一个统计窗口的拒绝次数
+     */
+    private Long windowRejectedCount;
+
+    /**
+     * 是否开启自适应调整
+     */
+    private Boolean adaptiveEnabled;
+}
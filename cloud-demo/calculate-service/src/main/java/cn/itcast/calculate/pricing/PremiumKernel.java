@@ -0,0 +1,188 @@
+package cn.itcast.calculate.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 保费定点数计算内核
+ *
+ * 保费 = 保额 × 基础费率 × 折扣系数 × NCD系数，保留2位小数（四舍五入 HALF_UP）
+ *
+ * 所有数值以"未缩放整数 + 小数位数"表示，例如 0.014320 = 14320（scale 6），
+ * 计算全程只用long，不创建BigDecimal，结果与BigDecimal链式multiply + setScale(2, HALF_UP)逐位一致
+ *
+ * 超出long范围或出现负数时返回{@link #OVERFLOW}，由调用方回退到BigDecimal计算
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class PremiumKernel {
+
+    /**
+     * 无法用long精确计算（溢出/负数/小数位数超限）
+     */
+    public static final long OVERFLOW = Long.MIN_VALUE;
+
+    /**
+     * 保费保留小数位数
+     */
+    public static final int PREMIUM_SCALE = 2;
+
+    /**
+     * 拆分乘法用的基数：10^7
+     * 费率乘积F拆成 fh × 10^7 + fl，保额 × fh 和 保额 × fl 都能放进long
+     */
+    private static final int SPLIT_DIGITS = 7;
+    private static final long SPLIT = 10_000_000L;
+
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+            100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L,
+            1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L,
+            1_000_000_000_000_000_000L
+    };
+
+    private PremiumKernel() {
+    }
+
+    /**
+     * 计算保费（单位：分，即scale 2的未缩放值）
+     *
+     * @return 保费（分），无法精确计算时返回{@link #OVERFLOW}
+     */
+    public static long premiumCents(long amount, int amountScale,
+                                    long rate, int rateScale,
+                                    long discount, int discountScale,
+                                    long ncdRate, int ncdScale) {
+        if (amount < 0 || rate < 0 || discount < 0 || ncdRate < 0) {
+            return OVERFLOW;
+        }
+        long factor = multiply(rate, discount);
+        if (factor < 0) {
+            return OVERFLOW;
+        }
+        factor = multiply(factor, ncdRate);
+        if (factor < 0) {
+            return OVERFLOW;
+        }
+        int shift = amountScale + rateScale + discountScale + ncdScale - PREMIUM_SCALE;
+        return scaleHalfUp(amount, factor, shift);
+    }
+
+    /**
+     * 计算保费（BigDecimal入参），内核无法处理时回退到BigDecimal
+     */
+    public static BigDecimal premium(BigDecimal amount, BigDecimal rate, BigDecimal discount, BigDecimal ncdRate) {
+        long cents = premiumCents(
+                unscaled(amount), amount.scale(),
+                unscaled(rate), rate.scale(),
+                unscaled(discount), discount.scale(),
+                unscaled(ncdRate), ncdRate.scale());
+        if (cents != OVERFLOW) {
+            return BigDecimal.valueOf(cents, PREMIUM_SCALE);
+        }
+        return amount.multiply(rate)
+                .multiply(discount)
+                .multiply(ncdRate)
+                .setScale(PREMIUM_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 按预先相乘好的因子积计算保费（单位：分）
+     *
+     * @param factor      基础费率 × 折扣系数 × NCD系数 的未缩放值
+     * @param factorScale 因子积的小数位数
+     * @return 保费（分），无法精确计算时返回{@link #OVERFLOW}
+     */
+    public static long premiumCents(long amount, int amountScale, long factor, int factorScale) {
+        if (amount < 0 || factor < 0) {
+            return OVERFLOW;
+        }
+        return scaleHalfUp(amount, factor, amountScale + factorScale - PREMIUM_SCALE);
+    }
+
+    /**
+     * 按预先相乘好的因子积计算保费（BigDecimal保额），内核无法处理时回退到BigDecimal
+     */
+    public static BigDecimal premium(BigDecimal amount, long factor, int factorScale) {
+        long cents = premiumCents(unscaled(amount), amount.scale(), factor, factorScale);
+        if (cents != OVERFLOW) {
+            return BigDecimal.valueOf(cents, PREMIUM_SCALE);
+        }
+        return amount.multiply(BigDecimal.valueOf(factor, factorScale))
+                .setScale(PREMIUM_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 计算 amount × factor / 10^shift，HALF_UP舍入
+     *
+     * amount × factor 可能超过long，按 factor = fh × 10^7 + fl 拆开：
+     * P = amount × fh × 10^7 + amount × fl = Z × 10^7 + yr（yr < 10^7）
+     * 于是 P / 10^shift 的商 = Z / 10^(shift-7)，余数 = (Z % 10^(shift-7)) × 10^7 + yr
+     */
+    static long scaleHalfUp(long amount, long factor, int shift) {
+        if (shift <= 0) {
+            if (-shift >= POW10.length) {
+                return OVERFLOW;
+            }
+            long product = multiply(amount, factor);
+            if (product >= 0) {
+                product = multiply(product, POW10[-shift]);
+            }
+            return product < 0 ? OVERFLOW : product;
+        }
+        if (shift >= POW10.length) {
+            return OVERFLOW;
+        }
+
+        long divisor = POW10[shift];
+        long half = divisor >>> 1;
+
+        if (shift < SPLIT_DIGITS) {
+            long product = multiply(amount, factor);
+            if (product < 0) {
+                return OVERFLOW;
+            }
+            long quotient = product / divisor;
+            long remainder = product - quotient * divisor;
+            return remainder >= half ? quotient + 1 : quotient;
+        }
+
+        long high = multiply(amount, factor / SPLIT);
+        long low = multiply(amount, factor % SPLIT);
+        if (high < 0 || low < 0) {
+            return OVERFLOW;
+        }
+        long z = high + low / SPLIT;
+        if (z < 0) {
+            return OVERFLOW;
+        }
+        long lowRemainder = low % SPLIT;
+
+        long m = POW10[shift - SPLIT_DIGITS];
+        long quotient = z / m;
+        long remainder = (z - quotient * m) * SPLIT + lowRemainder;
+        return remainder >= half ? quotient + 1 : quotient;
+    }
+
+    /**
+     * 非负数乘法，溢出返回-1
+     */
+    private static long multiply(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        if (a > Long.MAX_VALUE / b) {
+            return -1;
+        }
+        return a * b;
+    }
+
+    /**
+     * 取未缩放值，超过18位有效数字返回-1（交给BigDecimal回退）
+     */
+    private static long unscaled(BigDecimal value) {
+        return value.precision() <= 18 ? value.unscaledValue().longValue() : -1;
+    }
+}
@@ -0,0 +1,34 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.entity.Policy;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 从MyBatis Cursor流式读取保单（必须在事务内使用）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class CursorPolicyReader implements PolicyReader {
+
+    private final Cursor<Policy> cursor;
+    private final Iterator<Policy> iterator;
+
+    public CursorPolicyReader(Cursor<Policy> cursor) {
+        this.cursor = cursor;
+        this.iterator = cursor.iterator();
+    }
+
+    @Override
+    public Policy next() {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cursor.close();
+    }
+}
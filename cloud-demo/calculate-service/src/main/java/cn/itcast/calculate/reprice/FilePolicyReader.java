@@ -0,0 +1,115 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.entity.Policy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 从CSV文件流式读取保单
+ *
+ * 格式（首行为表头）：policyNo,kindCode,amount,carModel,areaCode,channel,claimCount,carAge
+ * 空字段按默认值处理，carAge列可省略（旧格式文件）；保额/出险次数/车龄格式错误时置空，该行重算失败但不中断任务
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+public class FilePolicyReader implements PolicyReader {
+
+    public static final String HEADER = "policyNo,kindCode,amount,carModel,areaCode,channel,claimCount,carAge";
+
+    private final BufferedReader reader;
+    private long lineNo;
+
+    /**
+     * @param path     输入文件
+     * @param skipRows 跳过的数据行数（断点续跑）
+     */
+    public FilePolicyReader(Path path, long skipRows) throws IOException {
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        String header = reader.readLine();
+        lineNo = 1;
+        if (header != null && !header.startsWith("policyNo")) {
+            throw new IOException("输入文件缺少表头：" + HEADER);
+        }
+        for (long i = 0; i < skipRows; i++) {
+            if (readDataLine() == null) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public Policy next() throws IOException {
+        String line = readDataLine();
+        if (line == null) {
+            return null;
+        }
+        String[] fields = line.split(",", -1);
+        Policy policy = new Policy();
+        policy.setPolicyNo(field(fields, 0));
+        policy.setKindCode(field(fields, 1));
+        policy.setAmount(parseAmount(field(fields, 2)));
+        policy.setCarModel(field(fields, 3));
+        policy.setAreaCode(field(fields, 4));
+        policy.setChannel(field(fields, 5));
+        policy.setClaimCount(parseInteger(field(fields, 6), "出险次数"));
+        policy.setCarAge(parseInteger(field(fields, 7), "车龄"));
+        return policy;
+    }
+
+    /**
+     * 读取下一条非空行
+     */
+    private String readDataLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNo++;
+        } while (line != null && line.trim().isEmpty());
+        return line;
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index >= fields.length) {
+            return null;
+        }
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private BigDecimal parseAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            log.warn("第{}行保额格式错误：{}", lineNo, value);
+            return null;
+        }
+    }
+
+    private Integer parseInteger(String value, String name) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            log.warn("第{}行{}格式错误：{}，按默认值处理", lineNo, name, value);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
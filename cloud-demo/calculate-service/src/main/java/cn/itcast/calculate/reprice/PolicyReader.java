@@ -0,0 +1,22 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.entity.Policy;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 保单流式读取
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public interface PolicyReader extends Closeable {
+
+    /**
+     * 读取下一条保单
+     *
+     * @return 保单，读完返回null
+     */
+    Policy next() throws IOException;
+}
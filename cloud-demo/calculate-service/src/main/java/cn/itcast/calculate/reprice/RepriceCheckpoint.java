@@ -0,0 +1,91 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 批量重算断点
+ *
+ * 每写完一个分片（结果已flush到输出文件）后保存一次，先写临时文件再原子替换，
+ * 保证断点文件要么是旧的、要么是新的，不会写一半
+ *
+ * 续跑时：
+ * - 输出文件截断到outputBytes（丢弃断点之后写了一半的结果）
+ * - 文件输入跳过rowsWritten行，数据库输入从lastPolicyNo之后开始
+ * - 因子表数据版本号与断点不同（或未知）时拒绝续跑，避免同一个输出文件前后用两套费率计算
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class RepriceCheckpoint {
+
+    /**
+     * 已写出的行数（累计）
+     */
+    private long rowsWritten;
+
+    /**
+     * 最后写出的保单号
+     */
+    private String lastPolicyNo;
+
+    /**
+     * 输出文件有效字节数
+     */
+    private long outputBytes;
+
+    /**
+     * 使用的因子表数据版本号（FactorSnapshot.getDataVersion，跨进程有效），未知为-1
+     */
+    private long dataVersion = FactorSnapshot.UNKNOWN_DATA_VERSION;
+
+    /**
+     * 读取断点，文件不存在时返回null
+     */
+    public static RepriceCheckpoint load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        RepriceCheckpoint checkpoint = new RepriceCheckpoint();
+        checkpoint.setRowsWritten(Long.parseLong(properties.getProperty("rowsWritten", "0")));
+        checkpoint.setLastPolicyNo(properties.getProperty("lastPolicyNo"));
+        checkpoint.setOutputBytes(Long.parseLong(properties.getProperty("outputBytes", "0")));
+        // 旧断点没有数据版本号，按未知处理
+        checkpoint.setDataVersion(Long.parseLong(
+                properties.getProperty("dataVersion", String.valueOf(FactorSnapshot.UNKNOWN_DATA_VERSION))));
+        return checkpoint;
+    }
+
+    /**
+     * 原子保存断点
+     */
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("rowsWritten", String.valueOf(rowsWritten));
+        if (lastPolicyNo != null) {
+            properties.setProperty("lastPolicyNo", lastPolicyNo);
+        }
+        properties.setProperty("outputBytes", String.valueOf(outputBytes));
+        properties.setProperty("dataVersion", String.valueOf(dataVersion));
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "reprice checkpoint");
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
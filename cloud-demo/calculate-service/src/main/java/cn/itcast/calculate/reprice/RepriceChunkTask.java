@@ -0,0 +1,92 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.entity.Policy;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.service.CalculateService;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分片重算任务（fork/join）
+ *
+ * 分片超过阈值时一分为二并行计算，结果按下标写入results，与输入顺序一致
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class RepriceChunkTask extends RecursiveAction {
+
+    /**
+     * 不再拆分的行数
+     */
+    private static final int THRESHOLD = 64;
+
+    private final Policy[] policies;
+    private final CalculateResponse[] results;
+    private final int from;
+    private final int to;
+    private final FactorSnapshot snapshot;
+    private final CalculateService calculateService;
+
+    public RepriceChunkTask(Policy[] policies, CalculateResponse[] results,
+                            FactorSnapshot snapshot, CalculateService calculateService) {
+        this(policies, results, 0, policies.length, snapshot, calculateService);
+    }
+
+    private RepriceChunkTask(Policy[] policies, CalculateResponse[] results, int from, int to,
+                             FactorSnapshot snapshot, CalculateService calculateService) {
+        this.policies = policies;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+        this.snapshot = snapshot;
+        this.calculateService = calculateService;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                results[i] = price(policies[i]);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new RepriceChunkTask(policies, results, from, mid, snapshot, calculateService),
+                new RepriceChunkTask(policies, results, mid, to, snapshot, calculateService));
+    }
+
+    /**
+     * 单笔重算，异常只影响当前行
+     */
+    private CalculateResponse price(Policy policy) {
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode(policy.getKindCode());
+        request.setAmount(policy.getAmount());
+        request.setCarModel(policy.getCarModel());
+        request.setAreaCode(policy.getAreaCode());
+        request.setChannel(policy.getChannel());
+        request.setClaimCount(policy.getClaimCount());
+        request.setCarAge(policy.getCarAge());
+
+        if (request.getAmount() == null) {
+            return failure(request, "计算失败：保额不能为空");
+        }
+        try {
+            return calculateService.calculateSnapshot(request, snapshot);
+        } catch (Exception e) {
+            return failure(request, "计算失败：" + e.getMessage());
+        }
+    }
+
+    private static CalculateResponse failure(CalculateRequest request, String message) {
+        CalculateResponse response = new CalculateResponse();
+        response.setSuccess(false);
+        response.setKindCode(request.getKindCode());
+        response.setAmount(request.getAmount());
+        response.setMessage(message);
+        return response;
+    }
+}
@@ -0,0 +1,467 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.entity.Policy;
+import cn.itcast.calculate.mapper.PolicyMapper;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.pojo.RepriceJobRequest;
+import cn.itcast.calculate.pojo.RepriceJobStatus;
+import cn.itcast.calculate.service.CalculateService;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 批量重算任务（费率调整后对存量保单重新算费）
+ *
+ * 流式处理，内存占用与保单总量无关：
+ * - 读取：CSV文件逐行读取，或policy_table流式游标（fetchSize=Integer.MIN_VALUE），不一次性加载
+ * - 计算：每读满一个分片提交到专用ForkJoinPool，分片内fork/join拆分并行计算
+ * - 背压：在途分片数达到上限时，先等最早的分片算完并写出再继续读取，
+ *   内存中最多 在途分片数 × 分片大小 行
+ * - 写出：按读取顺序逐分片写出，每个分片写完flush后原子保存断点
+ * - 续跑：输出文件截断到断点位置，输入从断点之后继续，重启后不重复、不遗漏
+ *
+ * 整个任务固定使用开始时的费率快照，不逐行查库，也不受中途快照刷新影响
+ *
+ * 同一时刻只运行一个任务
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Service
+public class RepriceJob {
+
+    public static final String SOURCE_FILE = "file";
+    public static final String SOURCE_DB = "db";
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private static final String OUTPUT_HEADER = "policyNo,kindCode,amount,premium,rate,discount,ncdRate,success,message";
+
+    @Value("${calculate.reprice.work-dir:./reprice}")
+    private String workDir;
+
+    @Value("${calculate.reprice.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    @Value("${calculate.reprice.parallelism:0}")
+    private int defaultParallelism;
+
+    @Value("${calculate.reprice.max-in-flight-chunks:0}")
+    private int maxInFlightChunks;
+
+    @Autowired
+    private CalculateService calculateService;
+
+    @Autowired
+    private FactorSnapshotHolder factorSnapshotHolder;
+
+    @Autowired
+    private PolicyMapper policyMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 数据库来源读取用的只读事务（不修改共享的TransactionTemplate）
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 任务调度线程（读取、背压、写出都在这个线程，计算在ForkJoinPool）
+     */
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "reprice-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<Progress> current = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 启动任务
+     *
+     * @throws IllegalStateException    已有任务在运行
+     * @throws IllegalArgumentException 参数错误
+     */
+    public RepriceJobStatus start(RepriceJobRequest request) {
+        String source = request.getSource() == null ? SOURCE_FILE : request.getSource();
+        if (!SOURCE_FILE.equals(source) && !SOURCE_DB.equals(source)) {
+            throw new IllegalArgumentException("数据来源只能是file或db：" + source);
+        }
+        if (request.getOutput() == null || request.getOutput().isEmpty()) {
+            throw new IllegalArgumentException("输出文件不能为空");
+        }
+        Path output = resolve(request.getOutput());
+        Path input = null;
+        if (SOURCE_FILE.equals(source)) {
+            if (request.getInput() == null || request.getInput().isEmpty()) {
+                throw new IllegalArgumentException("输入文件不能为空");
+            }
+            input = resolve(request.getInput());
+            if (!Files.isRegularFile(input)) {
+                throw new IllegalArgumentException("输入文件不存在：" + request.getInput());
+            }
+        }
+        int chunkSize = positive(request.getChunkSize(), defaultChunkSize);
+        int parallelism = positive(request.getParallelism(),
+                defaultParallelism > 0 ? defaultParallelism : Runtime.getRuntime().availableProcessors());
+        int maxInFlight = maxInFlightChunks > 0 ? maxInFlightChunks : parallelism * 2;
+
+        Progress progress = new Progress(source, request.getInput(), request.getOutput());
+        Progress running = current.get();
+        if (running != null && RUNNING.equals(running.state)) {
+            throw new IllegalStateException("已有重算任务在运行，输出：" + running.output);
+        }
+        if (!current.compareAndSet(running, progress)) {
+            throw new IllegalStateException("已有重算任务在运行");
+        }
+
+        Path inputPath = input;
+        jobExecutor.execute(() -> run(request, progress, inputPath, output, chunkSize, parallelism, maxInFlight));
+        return progress.toStatus();
+    }
+
+    /**
+     * 当前（或最近一次）任务状态
+     */
+    public RepriceJobStatus status() {
+        Progress progress = current.get();
+        return progress == null ? null : progress.toStatus();
+    }
+
+    /**
+     * 取消任务：不再读取新分片，已在途的分片写完并保存断点后停止，之后可续跑
+     */
+    public boolean cancel() {
+        Progress progress = current.get();
+        if (progress == null || !RUNNING.equals(progress.state)) {
+            return false;
+        }
+        progress.cancelled = true;
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancel();
+        jobExecutor.shutdown();
+    }
+
+    private void run(RepriceJobRequest request, Progress progress, Path input, Path output,
+                     int chunkSize, int parallelism, int maxInFlight) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Path checkpointPath = output.resolveSibling(output.getFileName() + ".checkpoint");
+        try {
+            FactorSnapshot snapshot = request.isReloadSnapshot()
+                    ? factorSnapshotHolder.reload() : factorSnapshotHolder.current();
+            if (snapshot.isEmpty()) {
+                throw new IllegalStateException("费率快照未加载");
+            }
+            progress.snapshotVersion = snapshot.getVersion();
+            progress.dataVersion = snapshot.getDataVersion();
+
+            RepriceCheckpoint checkpoint = request.isResume() ? RepriceCheckpoint.load(checkpointPath) : null;
+            boolean resumed = checkpoint != null;
+            if (!resumed) {
+                checkpoint = new RepriceCheckpoint();
+            } else if (checkpoint.getDataVersion() == FactorSnapshot.UNKNOWN_DATA_VERSION
+                    || checkpoint.getDataVersion() != snapshot.getDataVersion()) {
+                // 快照版本号是进程内计数，重启后不可比较；比较的是因子表数据版本号
+                if (!request.isForceResume()) {
+                    throw new IllegalStateException("续跑使用的费率数据与断点不同（数据版本" + checkpoint.getDataVersion()
+                            + " → " + snapshot.getDataVersion() + "），请从头重算，或设置forceResume强制续跑");
+                }
+                log.warn("强制续跑，费率数据与断点不同：数据版本{} → {}", checkpoint.getDataVersion(), snapshot.getDataVersion());
+            }
+            checkpoint.setDataVersion(snapshot.getDataVersion());
+            progress.resumedFrom = checkpoint.getRowsWritten();
+
+            log.info("批量重算开始，来源：{}，输出：{}，续跑起点：{}行，快照版本：{}，数据版本：{}，分片：{}，并行度：{}，在途分片上限：{}",
+                    progress.source, output, progress.resumedFrom, snapshot.getVersion(), snapshot.getDataVersion(),
+                    chunkSize, parallelism, maxInFlight);
+
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1))) {
+                if (resumed) {
+                    // 丢弃断点之后写了一半的结果
+                    channel.truncate(checkpoint.getOutputBytes());
+                    channel.position(checkpoint.getOutputBytes());
+                } else {
+                    channel.truncate(0);
+                    writer.write(OUTPUT_HEADER);
+                    writer.write('\n');
+                    writer.flush();
+                    checkpoint.setOutputBytes(channel.position());
+                }
+
+                ChunkWriter chunkWriter = new ChunkWriter(writer, channel, checkpoint, checkpointPath, progress);
+                if (SOURCE_DB.equals(progress.source)) {
+                    String after = checkpoint.getLastPolicyNo();
+                    // 流式游标依赖SqlSession在读取期间保持打开，放在只读事务内
+                    transactionTemplate.execute(status -> {
+                        try (Cursor<Policy> cursor = policyMapper.scanPolicies(after);
+                             PolicyReader reader = new CursorPolicyReader(cursor)) {
+                            process(reader, pool, snapshot, chunkSize, maxInFlight, chunkWriter, progress);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return null;
+                    });
+                } else {
+                    try (PolicyReader reader = new FilePolicyReader(input, checkpoint.getRowsWritten())) {
+                        process(reader, pool, snapshot, chunkSize, maxInFlight, chunkWriter, progress);
+                    }
+                }
+            }
+
+            progress.finish(progress.cancelled ? CANCELLED : COMPLETED, null);
+            RepriceJobStatus status = progress.toStatus();
+            log.info("批量重算{}，本次写出{}行（失败{}行），累计{}行，耗时：{}ms，吞吐：{}行/秒",
+                    progress.cancelled ? "已取消" : "完成", status.getRowsWritten(), status.getFailedRows(),
+                    status.getResumedFrom() + status.getRowsWritten(), status.getElapsedMs(),
+                    String.format("%.0f", status.getRowsPerSecond()));
+        } catch (Exception e) {
+            log.error("批量重算失败，可从断点续跑，输出：{}", output, e);
+            progress.finish(FAILED, "重算失败：" + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 读取 → 提交 → 按顺序写出，在途分片达到上限时阻塞读取
+     */
+    private void process(PolicyReader reader, ForkJoinPool pool, FactorSnapshot snapshot, int chunkSize,
+                         int maxInFlight, ChunkWriter chunkWriter, Progress progress) throws IOException {
+        Deque<Chunk> inFlight = new ArrayDeque<>(maxInFlight);
+        while (!progress.cancelled) {
+            Policy[] policies = readChunk(reader, chunkSize);
+            if (policies.length == 0) {
+                break;
+            }
+            progress.rowsRead += policies.length;
+
+            CalculateResponse[] results = new CalculateResponse[policies.length];
+            ForkJoinTask<Void> task = pool.submit(new RepriceChunkTask(policies, results, snapshot, calculateService));
+            inFlight.addLast(new Chunk(policies, results, task));
+
+            if (inFlight.size() >= maxInFlight) {
+                chunkWriter.write(inFlight.removeFirst());
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            chunkWriter.write(inFlight.removeFirst());
+        }
+    }
+
+    private static Policy[] readChunk(PolicyReader reader, int chunkSize) throws IOException {
+        Policy[] buffer = new Policy[chunkSize];
+        int count = 0;
+        Policy policy;
+        while (count < chunkSize && (policy = reader.next()) != null) {
+            buffer[count++] = policy;
+        }
+        if (count == chunkSize) {
+            return buffer;
+        }
+        Policy[] last = new Policy[count];
+        System.arraycopy(buffer, 0, last, 0, count);
+        return last;
+    }
+
+    /**
+     * 输出路径限制在工作目录内
+     */
+    private Path resolve(String path) {
+        Path base = Paths.get(workDir).toAbsolutePath().normalize();
+        Path resolved = base.resolve(path).normalize();
+        if (!resolved.startsWith(base)) {
+            throw new IllegalArgumentException("路径必须在工作目录内：" + path);
+        }
+        return resolved;
+    }
+
+    private static int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * 一个分片：输入、结果、计算任务
+     */
+    private static final class Chunk {
+        private final Policy[] policies;
+        private final CalculateResponse[] results;
+        private final ForkJoinTask<Void> task;
+
+        Chunk(Policy[] policies, CalculateResponse[] results, ForkJoinTask<Void> task) {
+            this.policies = policies;
+            this.results = results;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 按顺序写出分片并保存断点
+     */
+    private static final class ChunkWriter {
+        private final Writer writer;
+        private final FileChannel channel;
+        private final RepriceCheckpoint checkpoint;
+        private final Path checkpointPath;
+        private final Progress progress;
+        private final StringBuilder line = new StringBuilder(128);
+
+        ChunkWriter(Writer writer, FileChannel channel, RepriceCheckpoint checkpoint,
+                    Path checkpointPath, Progress progress) {
+            this.writer = writer;
+            this.channel = channel;
+            this.checkpoint = checkpoint;
+            this.checkpointPath = checkpointPath;
+            this.progress = progress;
+        }
+
+        void write(Chunk chunk) throws IOException {
+            chunk.task.join();
+            int failed = 0;
+            for (int i = 0; i < chunk.policies.length; i++) {
+                CalculateResponse result = chunk.results[i];
+                boolean success = Boolean.TRUE.equals(result.getSuccess());
+                if (!success) {
+                    failed++;
+                }
+                line.setLength(0);
+                append(chunk.policies[i].getPolicyNo()).append(',');
+                append(chunk.policies[i].getKindCode()).append(',');
+                append(chunk.policies[i].getAmount()).append(',');
+                append(result.getPremium()).append(',');
+                append(result.getRate()).append(',');
+                append(result.getDiscount()).append(',');
+                append(result.getNcdRate()).append(',');
+                line.append(success).append(',');
+                // 成功行不写message（都是同一句），减小输出体积
+                append(success ? null : result.getMessage()).append('\n');
+                writer.append(line);
+            }
+            writer.flush();
+
+            checkpoint.setRowsWritten(checkpoint.getRowsWritten() + chunk.policies.length);
+            checkpoint.setLastPolicyNo(chunk.policies[chunk.policies.length - 1].getPolicyNo());
+            checkpoint.setOutputBytes(channel.position());
+            checkpoint.save(checkpointPath);
+
+            progress.rowsWritten += chunk.policies.length;
+            progress.failedRows += failed;
+        }
+
+        private StringBuilder append(BigDecimal value) {
+            return value == null ? line : line.append(value.toPlainString());
+        }
+
+        /**
+         * CSV转义：含逗号、引号、换行时加引号
+         */
+        private StringBuilder append(String value) {
+            if (value == null) {
+                return line;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return line.append(value);
+            }
+            return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    /**
+     * 任务进度（只由任务线程写，查询线程读）
+     */
+    private static final class Progress {
+        private final String source;
+        private final String input;
+        private final String output;
+        private final long startNanos = System.nanoTime();
+
+        private volatile String state = RUNNING;
+        private volatile boolean cancelled;
+        private volatile long snapshotVersion;
+        private volatile long dataVersion;
+        private volatile long resumedFrom;
+        private volatile long rowsRead;
+        private volatile long rowsWritten;
+        private volatile long failedRows;
+        private volatile long elapsedNanos = -1;
+        private volatile String message;
+
+        Progress(String source, String input, String output) {
+            this.source = source;
+            this.input = input;
+            this.output = output;
+        }
+
+        void finish(String state, String message) {
+            this.elapsedNanos = System.nanoTime() - startNanos;
+            this.message = message;
+            this.state = state;
+        }
+
+        RepriceJobStatus toStatus() {
+            long nanos = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+            RepriceJobStatus status = new RepriceJobStatus();
+            status.setState(state);
+            status.setSource(source);
+            status.setInput(input);
+            status.setOutput(output);
+            status.setSnapshotVersion(snapshotVersion);
+            status.setDataVersion(dataVersion);
+            status.setResumedFrom(resumedFrom);
+            status.setRowsRead(rowsRead);
+            status.setRowsWritten(rowsWritten);
+            status.setFailedRows(failedRows);
+            status.setElapsedMs(nanos / 1_000_000);
+            status.setRowsPerSecond(nanos == 0 ? 0 : rowsWritten * 1e9 / nanos);
+            status.setMessage(message);
+            return status;
+        }
+    }
+}
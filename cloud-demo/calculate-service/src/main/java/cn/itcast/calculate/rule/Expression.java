@@ -0,0 +1,38 @@
+package cn.itcast.calculate.rule;
+
+import java.math.BigDecimal;
+
+/**
+ * 编译后的公式节点
+ *
+ * 变量在编译时已解析为槽位下标，常量子表达式已折叠，求值时只做BigDecimal运算
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+interface Expression {
+
+    /**
+     * 求值
+     *
+     * @param slots 变量槽位（基础因子 + 附加因子）
+     */
+    BigDecimal evaluate(BigDecimal[] slots);
+
+    /**
+     * 常量节点（编译期可折叠）
+     */
+    final class Constant implements Expression {
+
+        final BigDecimal value;
+
+        Constant(BigDecimal value) {
+            this.value = value;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal[] slots) {
+            return value;
+        }
+    }
+}
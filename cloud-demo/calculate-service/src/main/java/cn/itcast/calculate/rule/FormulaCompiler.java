@@ -0,0 +1,229 @@
+package cn.itcast.calculate.rule;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保费公式编译器（递归下降）
+ *
+ * 语法：
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := unary (('*' | '/') unary)*
+ * unary      := '-' unary | primary
+ * primary    := number | variable | function '(' expression (',' expression)* ')' | '(' expression ')'
+ * function   := min | max
+ * </pre>
+ *
+ * 编译结果是Expression树：变量解析为槽位下标，常量子表达式折叠；
+ * 乘法、加减法精确计算，除法按DECIMAL128（34位有效数字）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+final class FormulaCompiler {
+
+    private final String formula;
+    private final Map<String, Integer> slots;
+    private final BitSet usedSlots = new BitSet();
+    private int pos;
+
+    private FormulaCompiler(String formula, Map<String, Integer> slots) {
+        this.formula = formula;
+        this.slots = slots;
+    }
+
+    /**
+     * 编译公式
+     *
+     * @param formula   公式
+     * @param slots     变量名 → 槽位下标
+     * @param usedSlots 输出：公式用到的槽位
+     */
+    static Expression compile(String formula, Map<String, Integer> slots, BitSet usedSlots) {
+        if (formula == null || formula.trim().isEmpty()) {
+            throw new IllegalArgumentException("公式不能为空");
+        }
+        FormulaCompiler compiler = new FormulaCompiler(formula, slots);
+        Expression expression = compiler.parseExpression();
+        compiler.skipSpaces();
+        if (compiler.pos < formula.length()) {
+            throw compiler.error("多余的字符");
+        }
+        usedSlots.or(compiler.usedSlots);
+        return expression;
+    }
+
+    private Expression parseExpression() {
+        Expression left = parseTerm();
+        while (true) {
+            char op = peek();
+            if (op != '+' && op != '-') {
+                return left;
+            }
+            pos++;
+            left = binary(op, left, parseTerm());
+        }
+    }
+
+    private Expression parseTerm() {
+        Expression left = parseUnary();
+        while (true) {
+            char op = peek();
+            if (op != '*' && op != '/') {
+                return left;
+            }
+            pos++;
+            left = binary(op, left, parseUnary());
+        }
+    }
+
+    private Expression parseUnary() {
+        if (peek() == '-') {
+            pos++;
+            Expression operand = parseUnary();
+            if (operand instanceof Expression.Constant) {
+                return new Expression.Constant(((Expression.Constant) operand).value.negate());
+            }
+            return slots -> operand.evaluate(slots).negate();
+        }
+        return parsePrimary();
+    }
+
+    private Expression parsePrimary() {
+        char c = peek();
+        if (c == '(') {
+            pos++;
+            Expression inner = parseExpression();
+            expect(')');
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (Character.isLetter(c) || c == '_') {
+            String name = parseIdentifier();
+            if (peek() == '(') {
+                return parseFunction(name);
+            }
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                throw error("未定义的变量：" + name);
+            }
+            usedSlots.set(slot);
+            int index = slot;
+            return values -> values[index];
+        }
+        throw error(c == 0 ? "公式不完整" : "无法识别的字符：" + c);
+    }
+
+    private Expression parseNumber() {
+        int start = pos;
+        while (pos < formula.length() && (Character.isDigit(formula.charAt(pos)) || formula.charAt(pos) == '.')) {
+            pos++;
+        }
+        try {
+            return new Expression.Constant(new BigDecimal(formula.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("数字格式错误");
+        }
+    }
+
+    private String parseIdentifier() {
+        int start = pos;
+        while (pos < formula.length()
+                && (Character.isLetterOrDigit(formula.charAt(pos)) || formula.charAt(pos) == '_')) {
+            pos++;
+        }
+        return formula.substring(start, pos);
+    }
+
+    private Expression parseFunction(String name) {
+        if (!"min".equals(name) && !"max".equals(name)) {
+            throw error("不支持的函数：" + name);
+        }
+        boolean min = "min".equals(name);
+        expect('(');
+        List<Expression> args = new ArrayList<>();
+        args.add(parseExpression());
+        while (peek() == ',') {
+            pos++;
+            args.add(parseExpression());
+        }
+        expect(')');
+
+        Expression result = args.get(0);
+        for (int i = 1; i < args.size(); i++) {
+            result = binary(min ? 'm' : 'M', result, args.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 二元运算，两侧都是常量时编译期直接算出结果
+     */
+    private static Expression binary(char op, Expression left, Expression right) {
+        if (left instanceof Expression.Constant && right instanceof Expression.Constant) {
+            return new Expression.Constant(apply(op,
+                    ((Expression.Constant) left).value, ((Expression.Constant) right).value));
+        }
+        switch (op) {
+            case '+':
+                return slots -> left.evaluate(slots).add(right.evaluate(slots));
+            case '-':
+                return slots -> left.evaluate(slots).subtract(right.evaluate(slots));
+            case '*':
+                return slots -> left.evaluate(slots).multiply(right.evaluate(slots));
+            case '/':
+                return slots -> left.evaluate(slots).divide(right.evaluate(slots), MathContext.DECIMAL128);
+            case 'm':
+                return slots -> left.evaluate(slots).min(right.evaluate(slots));
+            default:
+                return slots -> left.evaluate(slots).max(right.evaluate(slots));
+        }
+    }
+
+    private static BigDecimal apply(char op, BigDecimal left, BigDecimal right) {
+        switch (op) {
+            case '+':
+                return left.add(right);
+            case '-':
+                return left.subtract(right);
+            case '*':
+                return left.multiply(right);
+            case '/':
+                return left.divide(right, MathContext.DECIMAL128);
+            case 'm':
+                return left.min(right);
+            default:
+                return left.max(right);
+        }
+    }
+
+    private char peek() {
+        skipSpaces();
+        return pos < formula.length() ? formula.charAt(pos) : 0;
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw error("缺少" + expected);
+        }
+        pos++;
+    }
+
+    private void skipSpaces() {
+        while (pos < formula.length() && Character.isWhitespace(formula.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + "，位置：" + pos + "，公式：" + formula);
+    }
+}
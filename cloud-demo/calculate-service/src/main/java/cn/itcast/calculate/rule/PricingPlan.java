@@ -0,0 +1,269 @@
+package cn.itcast.calculate.rule;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pricing.PremiumKernel;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 单个险种编译后的定价计划
+ *
+ * 规则加载时编译一次，算费时不再解析公式：
+ * - 公式编译为Expression树（变量 → 槽位下标，常量折叠）
+ * - 附加因子编译为查表（HashMap）/ 区间数组 / 常量，取值字段解析为RuleInput
+ * - 只计算公式用到的因子
+ * - 公式为 amount * rate * discount * ncdRate 且保留2位小数时直接使用PremiumKernel
+ *
+ * 不可变，可多线程共享
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class PricingPlan {
+
+    public static final String AMOUNT = "amount";
+    public static final String RATE = "rate";
+    public static final String DISCOUNT = "discount";
+    public static final String NCD_RATE = "ncdRate";
+
+    private static final String KERNEL_FORMULA = "amount*rate*discount*ncdRate";
+
+    /**
+     * 基础因子槽位
+     */
+    private static final int AMOUNT_SLOT = 0;
+    private static final int RATE_SLOT = 1;
+    private static final int DISCOUNT_SLOT = 2;
+    private static final int NCD_RATE_SLOT = 3;
+    private static final int BASE_SLOTS = 4;
+
+    private final String kindCode;
+    private final String formula;
+    private final int scale;
+    private final Expression expression;
+    private final boolean kernel;
+    private final String[] slotNames;
+
+    /**
+     * 附加因子（下标 = 槽位 - BASE_SLOTS），公式未用到的为null
+     */
+    private final Function<CalculateRequest, BigDecimal>[] factors;
+
+    /**
+     * 公式用到的槽位
+     */
+    private final int[] requiredSlots;
+
+    private final BigDecimal defaultRate;
+    private final BigDecimal defaultDiscount;
+    private final BigDecimal defaultNcdRate;
+
+    @SuppressWarnings("unchecked")
+    private PricingPlan(PricingRules.Product product) {
+        this.kindCode = product.getKindCode();
+        this.formula = product.getFormula();
+        this.scale = product.getScale();
+
+        Map<String, BigDecimal> defaults = product.getDefaults() == null
+                ? Collections.<String, BigDecimal>emptyMap() : product.getDefaults();
+        this.defaultRate = defaults.get(RATE);
+        this.defaultDiscount = defaults.get(DISCOUNT);
+        this.defaultNcdRate = defaults.get(NCD_RATE);
+
+        Map<String, PricingRules.Factor> factorRules = product.getFactors() == null
+                ? Collections.<String, PricingRules.Factor>emptyMap() : product.getFactors();
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (String name : new String[]{AMOUNT, RATE, DISCOUNT, NCD_RATE}) {
+            slots.put(name, names.size());
+            names.add(name);
+        }
+        for (String name : factorRules.keySet()) {
+            if (slots.containsKey(name)) {
+                throw new IllegalArgumentException("因子名与基础因子重复：" + name);
+            }
+            slots.put(name, names.size());
+            names.add(name);
+        }
+        this.slotNames = names.toArray(new String[0]);
+
+        BitSet used = new BitSet();
+        this.expression = FormulaCompiler.compile(formula, slots, used);
+        this.requiredSlots = used.stream().toArray();
+
+        this.factors = new Function[names.size() - BASE_SLOTS];
+        for (Map.Entry<String, PricingRules.Factor> entry : factorRules.entrySet()) {
+            int slot = slots.get(entry.getKey());
+            if (used.get(slot)) {
+                factors[slot - BASE_SLOTS] = compileFactor(entry.getKey(), entry.getValue());
+            }
+        }
+
+        this.kernel = scale == PremiumKernel.PREMIUM_SCALE && KERNEL_FORMULA.equals(formula.replaceAll("\\s+", ""));
+    }
+
+    /**
+     * 编译一个险种的规则，规则错误时抛出IllegalArgumentException
+     */
+    public static PricingPlan compile(PricingRules.Product product) {
+        if (product.getKindCode() == null || product.getKindCode().isEmpty()) {
+            throw new IllegalArgumentException("险种代码不能为空");
+        }
+        try {
+            return new PricingPlan(product);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("险种" + product.getKindCode() + "规则错误：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 计算保费
+     *
+     * @param request  算费请求（保额和附加因子的取值字段）
+     * @param rate     费率，为空时取规则默认值
+     * @param discount 折扣系数，为空时取规则默认值
+     * @param ncdRate  NCD系数，为空时取规则默认值
+     */
+    public BigDecimal premium(CalculateRequest request, BigDecimal rate, BigDecimal discount, BigDecimal ncdRate) {
+        BigDecimal[] slots = new BigDecimal[slotNames.length];
+        slots[AMOUNT_SLOT] = request.getAmount();
+        slots[RATE_SLOT] = rate != null ? rate : defaultRate;
+        slots[DISCOUNT_SLOT] = discount != null ? discount : defaultDiscount;
+        slots[NCD_RATE_SLOT] = ncdRate != null ? ncdRate : defaultNcdRate;
+        for (int i = 0; i < factors.length; i++) {
+            if (factors[i] != null) {
+                slots[BASE_SLOTS + i] = factors[i].apply(request);
+            }
+        }
+        for (int slot : requiredSlots) {
+            if (slots[slot] == null) {
+                throw new IllegalArgumentException("险种" + kindCode + "缺少因子：" + slotNames[slot]);
+            }
+        }
+
+        if (kernel) {
+            return PremiumKernel.premium(slots[AMOUNT_SLOT], slots[RATE_SLOT], slots[DISCOUNT_SLOT], slots[NCD_RATE_SLOT]);
+        }
+        return expression.evaluate(slots).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public String getKindCode() {
+        return kindCode;
+    }
+
+    public String getFormula() {
+        return formula;
+    }
+
+    public BigDecimal getDefaultRate() {
+        return defaultRate;
+    }
+
+    public BigDecimal getDefaultDiscount() {
+        return defaultDiscount;
+    }
+
+    public BigDecimal getDefaultNcdRate() {
+        return defaultNcdRate;
+    }
+
+    /**
+     * 是否直接使用定点数内核
+     */
+    public boolean isKernel() {
+        return kernel;
+    }
+
+    private static Function<CalculateRequest, BigDecimal> compileFactor(String name, PricingRules.Factor rule) {
+        String type = rule.getType();
+        if ("constant".equals(type)) {
+            BigDecimal value = require(rule.getValue(), name + "缺少value");
+            return request -> value;
+        }
+        RuleInput input = RuleInput.of(require(rule.getInput(), name + "缺少input"));
+        BigDecimal defaultValue = rule.getDefaultValue();
+        if ("table".equals(type)) {
+            Map<String, BigDecimal> table = new HashMap<>(rule.getTable() == null
+                    ? Collections.<String, BigDecimal>emptyMap() : rule.getTable());
+            return request -> {
+                Object key = input.get(request);
+                BigDecimal value = key == null ? null : table.get(key.toString());
+                return value != null ? value : defaultValue;
+            };
+        }
+        if ("range".equals(type)) {
+            return compileRange(name, rule, input, defaultValue);
+        }
+        throw new IllegalArgumentException(name + "类型不支持：" + type);
+    }
+
+    /**
+     * 区间编译为上限数组 + 系数数组，取值按顺序比较
+     */
+    private static Function<CalculateRequest, BigDecimal> compileRange(String name, PricingRules.Factor rule,
+                                                                       RuleInput input, BigDecimal defaultValue) {
+        List<PricingRules.Band> bands = rule.getRanges();
+        if (bands == null || bands.isEmpty()) {
+            throw new IllegalArgumentException(name + "缺少ranges");
+        }
+        BigDecimal[] maxes = new BigDecimal[bands.size()];
+        BigDecimal[] values = new BigDecimal[bands.size()];
+        for (int i = 0; i < bands.size(); i++) {
+            PricingRules.Band band = bands.get(i);
+            maxes[i] = band.getMax();
+            values[i] = require(band.getValue(), name + "第" + (i + 1) + "个区间缺少value");
+            if (maxes[i] == null && i < bands.size() - 1) {
+                throw new IllegalArgumentException(name + "只有最后一个区间可以不写上限");
+            }
+            if (i > 0 && maxes[i] != null && maxes[i].compareTo(maxes[i - 1]) <= 0) {
+                throw new IllegalArgumentException(name + "区间上限必须升序");
+            }
+        }
+        return request -> {
+            Object raw = input.get(request);
+            if (raw == null) {
+                return defaultValue;
+            }
+            BigDecimal value = raw instanceof BigDecimal ? (BigDecimal) raw : new BigDecimal(raw.toString());
+            for (int i = 0; i < maxes.length; i++) {
+                if (maxes[i] == null || value.compareTo(maxes[i]) <= 0) {
+                    return values[i];
+                }
+            }
+            return defaultValue;
+        };
+    }
+
+    private static <T> T require(T value, String message) {
+        if (value == null) {
+            throw new IllegalArgumentException(message);
+        }
+        return value;
+    }
+
+    /**
+     * 规则概要（展示用）
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("kindCode", kindCode);
+        result.put("formula", formula);
+        result.put("scale", scale);
+        result.put("kernel", kernel);
+        List<String> used = new ArrayList<>();
+        for (int slot : requiredSlots) {
+            used.add(slotNames[slot]);
+        }
+        result.put("variables", used);
+        return result;
+    }
+}
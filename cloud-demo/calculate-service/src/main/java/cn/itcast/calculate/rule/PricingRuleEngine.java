@@ -0,0 +1,226 @@
+package cn.itcast.calculate.rule;
+
+import cn.itcast.calculate.cache.FactorChangedEvent;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pricing.PremiumKernel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 定价规则引擎
+ *
+ * 从calculate.rules.location加载各险种的保费公式和附加因子（车龄、地区附加费、渠道活动等），
+ * 加载时编译为PricingPlan，算费时按险种取计划直接求值，不逐笔解析规则
+ *
+ * 热加载：
+ * - 规则文件在文件系统上时，定时检查修改时间，变化后自动重新加载
+ * - 也可调用 POST /calculate/rules/reload 手动加载
+ * - 全部险种编译成功后才整体替换（单个引用切换），算费线程不停顿；
+ *   任一险种编译失败时保留旧规则
+ * - 加载成功后发布FactorChangedEvent，报价结果缓存随之清空
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class PricingRuleEngine {
+
+    /**
+     * 适用于未单独配置的险种
+     */
+    public static final String WILDCARD = "*";
+
+    @Value("${calculate.rules.location:classpath:pricing-rules.json}")
+    private String location;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicReference<RuleSet> current = new AtomicReference<>(RuleSet.EMPTY);
+
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastModified = -1;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        // 启动时规则错误直接失败，避免带着空规则上线
+        reload();
+    }
+
+    /**
+     * 取险种的定价计划，未单独配置时返回通用规则，都没有返回null
+     */
+    public PricingPlan plan(String kindCode) {
+        RuleSet rules = current.get();
+        PricingPlan plan = kindCode == null ? null : rules.plans.get(kindCode);
+        return plan != null ? plan : rules.wildcard;
+    }
+
+    /**
+     * 按险种规则计算保费，没有任何规则时按基础公式（定点数内核）计算
+     */
+    public BigDecimal premium(CalculateRequest request, BigDecimal rate, BigDecimal discount, BigDecimal ncdRate) {
+        PricingPlan plan = plan(request.getKindCode());
+        if (plan == null) {
+            return PremiumKernel.premium(request.getAmount(), rate, discount, ncdRate);
+        }
+        return plan.premium(request, rate, discount, ncdRate);
+    }
+
+    /**
+     * 重新加载并编译规则
+     *
+     * @return 加载结果
+     * @throws IllegalStateException 读取或编译失败（旧规则继续生效）
+     */
+    public synchronized Map<String, Object> reload() {
+        long start = System.nanoTime();
+        Resource resource = resourceLoader.getResource(location);
+        RuleSet rules;
+        try {
+            long modified = lastModified(resource);
+            PricingRules definition;
+            try (InputStream in = resource.getInputStream()) {
+                definition = objectMapper.readValue(in, PricingRules.class);
+            }
+            rules = compile(definition);
+            lastModified = modified;
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+            log.error("定价规则加载失败，继续使用版本：{}，位置：{}", current.get().version, location, e);
+            throw new IllegalStateException("定价规则加载失败：" + e.getMessage(), e);
+        }
+
+        RuleSet old = current.getAndSet(rules);
+        reloads.incrementAndGet();
+        lastError = null;
+        log.info("定价规则加载完成，版本：{} → {}，险种{}个，耗时：{}ms",
+                old.version, rules.version, rules.plans.size() + (rules.wildcard != null ? 1 : 0),
+                (System.nanoTime() - start) / 1_000_000);
+
+        // 首次加载（启动）不算变更
+        if (old != RuleSet.EMPTY) {
+            eventPublisher.publishEvent(new FactorChangedEvent(this, "rules:" + rules.version));
+        }
+        return stats();
+    }
+
+    /**
+     * 规则文件在文件系统上时检查修改时间，变化后重新加载
+     */
+    @Scheduled(fixedDelayString = "${calculate.rules.check-interval-ms:10000}")
+    public void checkForUpdate() {
+        Resource resource = resourceLoader.getResource(location);
+        long modified = lastModified(resource);
+        if (modified < 0 || modified == lastModified) {
+            return;
+        }
+        log.info("定价规则文件已修改，重新加载：{}", location);
+        try {
+            reload();
+        } catch (IllegalStateException e) {
+            // 已记录日志；记下修改时间，文件再次修改前不重复加载
+            lastModified = modified;
+        }
+    }
+
+    /**
+     * 当前规则概要
+     */
+    public Map<String, Object> stats() {
+        RuleSet rules = current.get();
+        List<Map<String, Object>> products = new ArrayList<>();
+        for (PricingPlan plan : rules.plans.values()) {
+            products.add(plan.describe());
+        }
+        if (rules.wildcard != null) {
+            products.add(rules.wildcard.describe());
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("location", location);
+        stats.put("version", rules.version);
+        stats.put("loadedAt", rules.loadedAt);
+        stats.put("reloads", reloads.get());
+        stats.put("failures", failures.get());
+        stats.put("lastError", lastError);
+        stats.put("products", products);
+        return stats;
+    }
+
+    /**
+     * 编译全部险种，任一失败则整体失败
+     */
+    static RuleSet compile(PricingRules definition) {
+        Map<String, PricingPlan> plans = new HashMap<>();
+        PricingPlan wildcard = null;
+        for (PricingRules.Product product : definition.getProducts()) {
+            PricingPlan plan = PricingPlan.compile(product);
+            if (WILDCARD.equals(plan.getKindCode())) {
+                wildcard = plan;
+            } else if (plans.put(plan.getKindCode(), plan) != null) {
+                throw new IllegalArgumentException("险种重复：" + plan.getKindCode());
+            }
+        }
+        return new RuleSet(definition.getVersion(), plans, wildcard, System.currentTimeMillis());
+    }
+
+    /**
+     * 文件系统上的规则文件返回修改时间，否则（如jar内的classpath资源）返回-1
+     */
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.getFile().lastModified() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 一个版本的全部编译结果（不可变，整体替换）
+     */
+    static final class RuleSet {
+
+        static final RuleSet EMPTY = new RuleSet(null, Collections.<String, PricingPlan>emptyMap(), null, 0L);
+
+        final String version;
+        final Map<String, PricingPlan> plans;
+        final PricingPlan wildcard;
+        final long loadedAt;
+
+        RuleSet(String version, Map<String, PricingPlan> plans, PricingPlan wildcard, long loadedAt) {
+            this.version = version;
+            this.plans = plans;
+            this.wildcard = wildcard;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cn.itcast.calculate.rule;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 定价规则定义（pricing-rules.json）
+ *
+ * 数值建议写成字符串（如"0.014320"），保留原始小数位数
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Data
+public class PricingRules {
+
+    /**
+     * 规则版本（展示用）
+     */
+    private String version;
+
+    /**
+     * 各险种规则；kindCode为"*"的规则适用于未单独配置的险种
+     */
+    private List<Product> products = new ArrayList<>();
+
+    /**
+     * 单个险种的定价规则
+     */
+    @Data
+    public static class Product {
+
+        /**
+         * 险种代码
+         */
+        private String kindCode;
+
+        /**
+         * 保费公式，支持 + - * / ( ) min() max()，变量为基础因子或本险种定义的因子：
+         * - amount：保额
+         * - rate / discount / ncdRate：费率 / 折扣系数 / NCD系数（来自费率表，未查询时取defaults）
+         */
+        private String formula;
+
+        /**
+         * 保费保留小数位数（四舍五入）
+         */
+        private int scale = 2;
+
+        /**
+         * 基础因子默认值（即时算费接口不查费率表，使用这里的值）
+         */
+        private Map<String, BigDecimal> defaults = new LinkedHashMap<>();
+
+        /**
+         * 附加因子（因子名 → 定义）
+         */
+        private Map<String, Factor> factors = new LinkedHashMap<>();
+    }
+
+    /**
+     * 附加因子定义
+     */
+    @Data
+    public static class Factor {
+
+        /**
+         * 类型：constant（常量）/ table（按取值查表）/ range（按数值区间）
+         */
+        private String type;
+
+        /**
+         * 取值字段：kindCode / carModel / areaCode / channel / claimCount / carAge
+         */
+        private String input;
+
+        /**
+         * constant的值
+         */
+        private BigDecimal value;
+
+        /**
+         * table的取值 → 系数
+         */
+        private Map<String, BigDecimal> table = new LinkedHashMap<>();
+
+        /**
+         * range的区间，按上限升序，最后一个区间可以不写上限
+         */
+        private List<Band> ranges = new ArrayList<>();
+
+        /**
+         * 取值为空或未命中时的系数
+         */
+        @JsonProperty("default")
+        private BigDecimal defaultValue;
+    }
+
+    /**
+     * 数值区间：取值 ≤ max 时使用value
+     */
+    @Data
+    public static class Band {
+
+        /**
+         * 区间上限（含），为空表示无上限
+         */
+        private BigDecimal max;
+
+        private BigDecimal value;
+    }
+}
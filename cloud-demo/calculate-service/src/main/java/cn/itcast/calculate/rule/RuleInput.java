@@ -0,0 +1,73 @@
+package cn.itcast.calculate.rule;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+
+/**
+ * 附加因子的取值字段
+ *
+ * 编译时把字段名解析为枚举，算费时直接取值，不使用反射
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+enum RuleInput {
+
+    KIND_CODE("kindCode") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getKindCode();
+        }
+    },
+
+    CAR_MODEL("carModel") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getCarModel();
+        }
+    },
+
+    AREA_CODE("areaCode") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getAreaCode();
+        }
+    },
+
+    CHANNEL("channel") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getChannel();
+        }
+    },
+
+    CLAIM_COUNT("claimCount") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getClaimCount();
+        }
+    },
+
+    CAR_AGE("carAge") {
+        @Override
+        Object get(CalculateRequest request) {
+            return request.getCarAge();
+        }
+    };
+
+    private final String field;
+
+    RuleInput(String field) {
+        this.field = field;
+    }
+
+    abstract Object get(CalculateRequest request);
+
+    static RuleInput of(String field) {
+        for (RuleInput input : values()) {
+            if (input.field.equals(field)) {
+                return input;
+            }
+        }
+        throw new IllegalArgumentException("不支持的取值字段：" + field);
+    }
+}
@@ -1,24 +1,71 @@
 package cn.itcast.calculate.service;
 
+import cn.itcast.calculate.bulkhead.Bulkhead;
+import cn.itcast.calculate.cache.FactorCache;
+import cn.itcast.calculate.coalesce.SingleFlight;
+import cn.itcast.calculate.config.BulkheadProperties;
+import cn.itcast.calculate.config.HedgeProperties;
 import cn.itcast.calculate.entity.Discount;
 import cn.itcast.calculate.entity.Ncd;
 import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.hedge.HedgedLookup;
+import cn.itcast.calculate.hedge.QueryBudget;
 import cn.itcast.calculate.mapper.DiscountMapper;
 import cn.itcast.calculate.mapper.NcdMapper;
 import cn.itcast.calculate.mapper.RateMapper;
+import cn.itcast.calculate.monitor.StageMetrics;
+import cn.itcast.calculate.pojo.BulkheadStats;
+import cn.itcast.calculate.pojo.CoalesceStats;
+import cn.itcast.calculate.pojo.HedgeStats;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 异步查询服务
  * 使用CompletableFuture并行查询3张表
  * 
+ * 每个查询记录两段耗时（按险种打标签，见StageMetrics）：
+ * - queue：提交 → 开始执行
+ * - rate / discount / ncd：Mapper查询
+ * 
+ * 相同组合主键的并发查询合并为一次（SingleFlight），
+ * 活动期间大量报价命中同一组(险种, 车型, 地区)时只有一个查询打到MySQL；
+ * 被合并的调用不经过线程池，不记录queue和查询耗时
+ * 
+ * 启用两级缓存（calculate.cache.enabled）时，本地缓存命中直接返回，不提交线程池；
+ * 未命中时在线程池中依次查Redis、MySQL
+ * 
+ * 传入QueryBudget（并行/非阻塞算费）时，查询带截止时间和对冲（见HedgedLookup）：
+ * - 主查询超过hedge-delay-ms未返回，绕过合并再发一次相同查询，取先返回的
+ * - 超过截止时间或查询失败时，使用该key最近一次查询成功的因子，其次使用内存快照中的因子，
+ *   并在QueryBudget中标记降级；两者都没有时按超时/失败处理
+ * 
+ * 每张表一个舱壁（Bulkhead，信号量隔离），限制该表在途查询数：
+ * 某张表变慢时只耗尽自己的许可，超出的查询立即失败（有QueryBudget时按失败降级），
+ * 不会占满共用线程池拖慢其他表，也不会回落到Tomcat线程
+ * 
  * @author demo
  * @date 2026-02-05
  */
@@ -27,8 +74,8 @@ import java.util.concurrent.CompletableFuture;
 public class CalculateAsyncService {
     
     @Autowired
-    @Qualifier("calculateExecutor")
-    private ThreadPoolTaskExecutor calculateExecutor;
+    @Qualifier("calculateQueryExecutor")
+    private Executor calculateQueryExecutor;
     
     @Autowired
     private RateMapper rateMapper;
@@ -39,63 +86,408 @@ public class CalculateAsyncService {
     @Autowired
     private NcdMapper ncdMapper;
     
+    @Autowired
+    private StageMetrics stageMetrics;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private FactorCache factorCache;
+    
+    @Autowired
+    private FactorSnapshotHolder factorSnapshotHolder;
+    
+    @Autowired
+    private HedgeProperties hedgeProperties;
+    
+    @Autowired
+    private BulkheadProperties bulkheadProperties;
+    
+    /**
+     * 是否合并相同key的并发查询
+     */
+    @Value("${calculate.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+    
+    private final SingleFlight<String, BigDecimal> rateFlight = new SingleFlight<>();
+    private final SingleFlight<String, BigDecimal> discountFlight = new SingleFlight<>();
+    private final SingleFlight<String, BigDecimal> ncdFlight = new SingleFlight<>();
+    
+    /**
+     * 对冲/截止时间定时器
+     */
+    private final ScheduledThreadPoolExecutor hedgeTimer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "calculate-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final HedgedLookup<String, BigDecimal> rateHedge = new HedgedLookup<>(hedgeTimer);
+    private final HedgedLookup<String, BigDecimal> discountHedge = new HedgedLookup<>(hedgeTimer);
+    private final HedgedLookup<String, BigDecimal> ncdHedge = new HedgedLookup<>(hedgeTimer);
+    
+    /**
+     * 最近一次查询成功的因子（key同FactorCache，不过期，按条数淘汰）
+     */
+    private Cache<String, BigDecimal> lastKnownGood;
+    
+    /**
+     * 每张表的舱壁（未启用时为null）
+     */
+    private Bulkhead rateBulkhead;
+    private Bulkhead discountBulkhead;
+    private Bulkhead ncdBulkhead;
+    
+    @PostConstruct
+    public void registerMetrics() {
+        // 查询先返回时取消的定时任务立即移出队列，避免堆积
+        hedgeTimer.setRemoveOnCancelPolicy(true);
+        lastKnownGood = Caffeine.newBuilder()
+                .maximumSize(hedgeProperties.getLastKnownGoodMaxSize())
+                .build();
+        
+        registerMetrics(StageMetrics.RATE, rateFlight);
+        registerMetrics(StageMetrics.DISCOUNT, discountFlight);
+        registerMetrics(StageMetrics.NCD, ncdFlight);
+        registerMetrics(StageMetrics.RATE, rateHedge);
+        registerMetrics(StageMetrics.DISCOUNT, discountHedge);
+        registerMetrics(StageMetrics.NCD, ncdHedge);
+        
+        if (bulkheadProperties.isEnabled()) {
+            rateBulkhead = new Bulkhead(StageMetrics.RATE, bulkheadProperties.getRate());
+            discountBulkhead = new Bulkhead(StageMetrics.DISCOUNT, bulkheadProperties.getDiscount());
+            ncdBulkhead = new Bulkhead(StageMetrics.NCD, bulkheadProperties.getNcd());
+            registerMetrics(rateBulkhead);
+            registerMetrics(discountBulkhead);
+            registerMetrics(ncdBulkhead);
+            log.info("因子查询舱壁已启用，并发上限：rate {}，discount {}，ncd {}",
+                    bulkheadProperties.getRate(), bulkheadProperties.getDiscount(), bulkheadProperties.getNcd());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        hedgeTimer.shutdownNow();
+    }
+    
+    private void registerMetrics(String table, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder("calculate.coalesce.calls", flight, SingleFlight::getCalls)
+                .description("因子查询调用次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.coalesce.executions", flight, SingleFlight::getExecutions)
+                .description("因子查询实际查库次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.coalesce.coalesced", flight, SingleFlight::getCoalesced)
+                .description("因子查询合并次数").tag("table", table).register(meterRegistry);
+        Gauge.builder("calculate.coalesce.inflight", flight, SingleFlight::getInFlight)
+                .description("在途因子查询数").tag("table", table).register(meterRegistry);
+    }
+    
+    private void registerMetrics(String table, HedgedLookup<?, ?> hedge) {
+        FunctionCounter.builder("calculate.hedge.hedges", hedge, HedgedLookup::getHedges)
+                .description("因子查询对冲次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.hedge.wins", hedge, HedgedLookup::getHedgeWins)
+                .description("对冲查询先返回次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.hedge.timeouts", hedge, HedgedLookup::getTimeouts)
+                .description("因子查询超过截止时间次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.hedge.fallbacks", hedge, HedgedLookup::getFallbacks)
+                .description("使用历史因子次数").tag("table", table).register(meterRegistry);
+    }
+    
+    private void registerMetrics(Bulkhead bulkhead) {
+        String table = bulkhead.getName();
+        FunctionCounter.builder("calculate.bulkhead.calls", bulkhead, Bulkhead::getCalls)
+                .description("舱壁调用次数").tag("table", table).register(meterRegistry);
+        FunctionCounter.builder("calculate.bulkhead.rejected", bulkhead, Bulkhead::getRejected)
+                .description("舱壁快速失败次数").tag("table", table).register(meterRegistry);
+        Gauge.builder("calculate.bulkhead.active", bulkhead, Bulkhead::getActive)
+                .description("舱壁在途查询数").tag("table", table).register(meterRegistry);
+        Gauge.builder("calculate.bulkhead.saturation", bulkhead, b -> (double) b.getActive() / b.getMaxConcurrent())
+                .description("舱壁饱和度").tag("table", table).register(meterRegistry);
+    }
+    
+    /**
+     * 创建单次算费的查询预算，未启用截止时间时返回null（无限等待）
+     */
+    public QueryBudget newBudget() {
+        return hedgeProperties.isEnabled() ? QueryBudget.of(hedgeProperties.getDeadlineMs()) : null;
+    }
+    
     /**
      * 异步查询费率表
      */
     public CompletableFuture<BigDecimal> queryRateAsync(String kindCode, String carModel, String areaCode) {
-        return CompletableFuture.supplyAsync(() -> {
-            long start = System.currentTimeMillis();
-            String threadName = Thread.currentThread().getName();
-            log.info("[{}] 开始查询费率表，险种：{}，车型：{}，地区：{}", threadName, kindCode, carModel, areaCode);
-            
-            // 从数据库查询
-            Rate rate = rateMapper.queryRate(kindCode, carModel, areaCode);
-            BigDecimal rateValue = rate != null ? rate.getRate() : BigDecimal.ZERO;
-            
-            long cost = System.currentTimeMillis() - start;
-            log.info("[{}] 费率表查询完成，耗时：{}ms，费率：{}", threadName, cost, rateValue);
-            
-            return rateValue;
-        }, calculateExecutor.getThreadPoolExecutor());
+        return queryRateAsync(kindCode, carModel, areaCode, calculateQueryExecutor);
+    }
+    
+    /**
+     * 带截止时间查询
+     */
+    public CompletableFuture<BigDecimal> queryRateAsync(String kindCode, String carModel, String areaCode, QueryBudget budget) {
+        return queryRateAsync(kindCode, carModel, areaCode, calculateQueryExecutor, budget);
+    }
+    
+    /**
+     * 在指定线程池上执行查询
+     */
+    public CompletableFuture<BigDecimal> queryRateAsync(String kindCode, String carModel, String areaCode, Executor executor) {
+        return queryRateAsync(kindCode, carModel, areaCode, executor, null);
+    }
+    
+    /**
+     * 带截止时间查询（budget为null时无限等待）
+     */
+    public CompletableFuture<BigDecimal> queryRateAsync(String kindCode, String carModel, String areaCode,
+                                                        Executor executor, QueryBudget budget) {
+        String key = FactorCache.rateKey(kindCode, carModel, areaCode);
+        return lookup(StageMetrics.RATE, rateFlight, rateHedge, key, budget, () -> supplyTimed(StageMetrics.RATE, kindCode,
+                () -> factorCache.load(key, () -> {
+                    Rate rate = rateMapper.queryRate(kindCode, carModel, areaCode);
+                    return rate != null ? rate.getRate() : BigDecimal.ZERO;
+                }), executor),
+                () -> snapshotValue(snapshot -> snapshot.getRate(kindCode, carModel, areaCode), BigDecimal.ZERO));
     }
     
     /**
      * 异步查询折扣系数表
+     *
+     * @param kindCode 险种（仅用于耗时统计打标签）
      */
-    public CompletableFuture<BigDecimal> queryDiscountAsync(String channel, String areaCode) {
-        return CompletableFuture.supplyAsync(() -> {
-            long start = System.currentTimeMillis();
-            String threadName = Thread.currentThread().getName();
-            log.info("[{}] 开始查询折扣系数表，渠道：{}，地区：{}", threadName, channel, areaCode);
-            
-            // 从数据库查询
-            Discount discount = discountMapper.queryDiscount(channel, areaCode);
-            BigDecimal discountValue = discount != null ? discount.getDiscount() : BigDecimal.ONE;
-            
-            long cost = System.currentTimeMillis() - start;
-            log.info("[{}] 折扣系数表查询完成，耗时：{}ms，折扣：{}", threadName, cost, discountValue);
-            
-            return discountValue;
-        }, calculateExecutor.getThreadPoolExecutor());
+    public CompletableFuture<BigDecimal> queryDiscountAsync(String kindCode, String channel, String areaCode) {
+        return queryDiscountAsync(kindCode, channel, areaCode, calculateQueryExecutor);
+    }
+    
+    /**
+     * 带截止时间查询
+     */
+    public CompletableFuture<BigDecimal> queryDiscountAsync(String kindCode, String channel, String areaCode, QueryBudget budget) {
+        return queryDiscountAsync(kindCode, channel, areaCode, calculateQueryExecutor, budget);
+    }
+    
+    /**
+     * 在指定线程池上执行查询
+     */
+    public CompletableFuture<BigDecimal> queryDiscountAsync(String kindCode, String channel, String areaCode, Executor executor) {
+        return queryDiscountAsync(kindCode, channel, areaCode, executor, null);
+    }
+    
+    /**
+     * 带截止时间查询（budget为null时无限等待）
+     */
+    public CompletableFuture<BigDecimal> queryDiscountAsync(String kindCode, String channel, String areaCode,
+                                                            Executor executor, QueryBudget budget) {
+        String key = FactorCache.discountKey(channel, areaCode);
+        return lookup(StageMetrics.DISCOUNT, discountFlight, discountHedge, key, budget, () -> supplyTimed(StageMetrics.DISCOUNT, kindCode,
+                () -> factorCache.load(key, () -> {
+                    Discount discount = discountMapper.queryDiscount(channel, areaCode);
+                    return discount != null ? discount.getDiscount() : BigDecimal.ONE;
+                }), executor),
+                () -> snapshotValue(snapshot -> snapshot.getDiscount(channel, areaCode), BigDecimal.ONE));
     }
     
     /**
      * 异步查询NCD系数表
+     *
+     * @param kindCode 险种（仅用于耗时统计打标签）
+     */
+    public CompletableFuture<BigDecimal> queryNcdAsync(String kindCode, Integer claimCount) {
+        return queryNcdAsync(kindCode, claimCount, calculateQueryExecutor);
+    }
+    
+    /**
+     * 带截止时间查询
+     */
+    public CompletableFuture<BigDecimal> queryNcdAsync(String kindCode, Integer claimCount, QueryBudget budget) {
+        return queryNcdAsync(kindCode, claimCount, calculateQueryExecutor, budget);
+    }
+    
+    /**
+     * 在指定线程池上执行查询
+     */
+    public CompletableFuture<BigDecimal> queryNcdAsync(String kindCode, Integer claimCount, Executor executor) {
+        return queryNcdAsync(kindCode, claimCount, executor, null);
+    }
+    
+    /**
+     * 带截止时间查询（budget为null时无限等待）
+     */
+    public CompletableFuture<BigDecimal> queryNcdAsync(String kindCode, Integer claimCount, Executor executor, QueryBudget budget) {
+        String key = FactorCache.ncdKey(claimCount);
+        return lookup(StageMetrics.NCD, ncdFlight, ncdHedge, key, budget, () -> supplyTimed(StageMetrics.NCD, kindCode,
+                () -> factorCache.load(key, () -> {
+                    Ncd ncd = ncdMapper.queryNcd(claimCount);
+                    return ncd != null ? ncd.getNcdRate() : BigDecimal.ONE;
+                }), executor),
+                () -> snapshotValue(snapshot -> snapshot.getNcdRate(claimCount), BigDecimal.ONE));
+    }
+    
+    /**
+     * 查询合并统计
+     */
+    public List<CoalesceStats> coalesceStats() {
+        List<CoalesceStats> stats = new ArrayList<>(3);
+        stats.add(coalesceStats(StageMetrics.RATE, rateFlight));
+        stats.add(coalesceStats(StageMetrics.DISCOUNT, discountFlight));
+        stats.add(coalesceStats(StageMetrics.NCD, ncdFlight));
+        return stats;
+    }
+    
+    private CoalesceStats coalesceStats(String table, SingleFlight<?, ?> flight) {
+        CoalesceStats stats = new CoalesceStats();
+        stats.setTable(table);
+        stats.setCalls(flight.getCalls());
+        stats.setExecutions(flight.getExecutions());
+        stats.setCoalesced(flight.getCoalesced());
+        stats.setInFlight(flight.getInFlight());
+        stats.setHitRatio(stats.getCalls() == 0 ? 0 : (double) stats.getCoalesced() / stats.getCalls());
+        return stats;
+    }
+    
+    /**
+     * 舱壁统计（未启用时为空）
+     */
+    public List<BulkheadStats> bulkheadStats() {
+        List<BulkheadStats> stats = new ArrayList<>(3);
+        if (!bulkheadProperties.isEnabled()) {
+            return stats;
+        }
+        stats.add(bulkheadStats(rateBulkhead));
+        stats.add(bulkheadStats(discountBulkhead));
+        stats.add(bulkheadStats(ncdBulkhead));
+        return stats;
+    }
+    
+    private BulkheadStats bulkheadStats(Bulkhead bulkhead) {
+        BulkheadStats stats = new BulkheadStats();
+        stats.setTable(bulkhead.getName());
+        stats.setMaxConcurrent(bulkhead.getMaxConcurrent());
+        stats.setActive(bulkhead.getActive());
+        stats.setPeakActive(bulkhead.getPeakActive());
+        stats.setSaturation((double) stats.getActive() / stats.getMaxConcurrent());
+        stats.setCalls(bulkhead.getCalls());
+        stats.setRejected(bulkhead.getRejected());
+        stats.setRejectRatio(stats.getCalls() == 0 ? 0 : (double) stats.getRejected() / stats.getCalls());
+        return stats;
+    }
+    
+    /**
+     * 对冲与降级统计
+     */
+    public List<HedgeStats> hedgeStats() {
+        List<HedgeStats> stats = new ArrayList<>(3);
+        stats.add(hedgeStats(StageMetrics.RATE, rateHedge));
+        stats.add(hedgeStats(StageMetrics.DISCOUNT, discountHedge));
+        stats.add(hedgeStats(StageMetrics.NCD, ncdHedge));
+        return stats;
+    }
+    
+    private HedgeStats hedgeStats(String table, HedgedLookup<?, ?> hedge) {
+        HedgeStats stats = new HedgeStats();
+        stats.setTable(table);
+        stats.setCalls(hedge.getCalls());
+        stats.setHedges(hedge.getHedges());
+        stats.setHedgeWins(hedge.getHedgeWins());
+        stats.setHedgeRatio(stats.getCalls() == 0 ? 0 : (double) stats.getHedges() / stats.getCalls());
+        stats.setTimeouts(hedge.getTimeouts());
+        stats.setFailures(hedge.getFailures());
+        stats.setFallbacks(hedge.getFallbacks());
+        return stats;
+    }
+    
+    /**
+     * 本地缓存命中直接返回；否则合并相同key的并发查询（关闭合并时每次都直接查询）
+     * 
+     * 传入budget时主查询外再加截止时间和对冲，对冲查询不参与合并（否则会直接挂到慢查询上）
+     */
+    private CompletableFuture<BigDecimal> lookup(String table, SingleFlight<String, BigDecimal> flight,
+                                                 HedgedLookup<String, BigDecimal> hedge, String key, QueryBudget budget,
+                                                 Supplier<CompletableFuture<BigDecimal>> loader,
+                                                 Supplier<BigDecimal> snapshotValue) {
+        BigDecimal cached = factorCache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Supplier<CompletableFuture<BigDecimal>> remembering = () -> remember(key, loader.get());
+        Supplier<CompletableFuture<BigDecimal>> primary = () -> coalesceEnabled
+                ? flight.execute(key, remembering) : remembering.get();
+        if (budget == null) {
+            return primary.get();
+        }
+        return hedge.execute(key, primary, remembering,
+                TimeUnit.MILLISECONDS.toNanos(hedgeProperties.getHedgeDelayMs()), budget.getDeadlineNanos(),
+                k -> fallback(table, k, budget, snapshotValue));
+    }
+    
+    /**
+     * 查询成功后更新历史因子（超时返回后仍会更新）
      */
-    public CompletableFuture<BigDecimal> queryNcdAsync(Integer claimCount) {
+    private CompletableFuture<BigDecimal> remember(String key, CompletableFuture<BigDecimal> query) {
+        query.thenAccept(value -> lastKnownGood.put(key, value));
+        return query;
+    }
+    
+    /**
+     * 超时/失败时的历史因子：最近一次查询成功的值，其次内存快照
+     */
+    private BigDecimal fallback(String table, String key, QueryBudget budget, Supplier<BigDecimal> snapshotValue) {
+        String source = "历史因子";
+        BigDecimal value = lastKnownGood.getIfPresent(key);
+        if (value == null) {
+            source = "内存快照";
+            value = snapshotValue.get();
+        }
+        if (value != null) {
+            budget.markDegraded(table);
+            log.warn("{}查询超时或失败，使用{}，key：{}，值：{}", table, source, key, value);
+        }
+        return value;
+    }
+    
+    /**
+     * 从内存快照取因子；快照未加载返回null，快照中没有按查库未命中时的默认值
+     */
+    private BigDecimal snapshotValue(Function<FactorSnapshot, BigDecimal> getter, BigDecimal missing) {
+        FactorSnapshot snapshot = factorSnapshotHolder.current();
+        if (snapshot.isEmpty()) {
+            return null;
+        }
+        BigDecimal value = getter.apply(snapshot);
+        return value != null ? value : missing;
+    }
+    
+    /**
+     * 在该表的舱壁内提交查询，并记录排队时间与查询时间
+     * 
+     * 舱壁已满或线程池拒绝时返回失败的Future（不在调用方线程执行）
+     */
+    private <T> CompletableFuture<T> supplyTimed(String stage, String kindCode, Supplier<T> query, Executor executor) {
+        Bulkhead bulkhead = bulkhead(stage);
+        if (bulkhead == null) {
+            return submitTimed(stage, kindCode, query, executor);
+        }
+        return bulkhead.execute(() -> submitTimed(stage, kindCode, query, executor));
+    }
+    
+    private Bulkhead bulkhead(String stage) {
+        switch (stage) {
+            case StageMetrics.RATE:
+                return rateBulkhead;
+            case StageMetrics.DISCOUNT:
+                return discountBulkhead;
+            default:
+                return ncdBulkhead;
+        }
+    }
+    
+    private <T> CompletableFuture<T> submitTimed(String stage, String kindCode, Supplier<T> query, Executor executor) {
+        long submitAt = System.nanoTime();
         return CompletableFuture.supplyAsync(() -> {
-            long start = System.currentTimeMillis();
-            String threadName = Thread.currentThread().getName();
-            log.info("[{}] 开始查询NCD系数表，出险次数：{}", threadName, claimCount);
-            
-            // 从数据库查询
-            Ncd ncd = ncdMapper.queryNcd(claimCount);
-            BigDecimal ncdRate = ncd != null ? ncd.getNcdRate() : BigDecimal.ONE;
-            
-            long cost = System.currentTimeMillis() - start;
-            log.info("[{}] NCD系数表查询完成，耗时：{}ms，NCD：{}", threadName, cost, ncdRate);
-            
-            return ncdRate;
-        }, calculateExecutor.getThreadPoolExecutor());
+            long startAt = System.nanoTime();
+            stageMetrics.record(StageMetrics.QUEUE, kindCode, startAt - submitAt);
+            try {
+                return query.get();
+            } finally {
+                stageMetrics.record(stage, kindCode, System.nanoTime() - startAt);
+            }
+        }, executor);
     }
 }
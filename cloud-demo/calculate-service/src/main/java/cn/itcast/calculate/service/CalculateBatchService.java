@@ -0,0 +1,207 @@
+package cn.itcast.calculate.service;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.mapper.DiscountMapper;
+import cn.itcast.calculate.mapper.NcdMapper;
+import cn.itcast.calculate.mapper.RateMapper;
+import cn.itcast.calculate.pojo.CalculateBatchResponse;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量算费服务
+ *
+ * 同一批次内按组合主键去重，每张表只发一条IN查询，
+ * 再在内存中一次性算出所有保费：
+ * - 逐笔调用：500笔 × 3张表 = 1500次查询
+ * - 批量调用：3次查询
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Service
+public class CalculateBatchService {
+
+    @Autowired
+    private RateMapper rateMapper;
+
+    @Autowired
+    private DiscountMapper discountMapper;
+
+    @Autowired
+    private NcdMapper ncdMapper;
+
+    @Autowired
+    private PricingRuleEngine pricingRuleEngine;
+
+    /**
+     * 单批最大笔数
+     */
+    @Value("${calculate.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    /**
+     * 批量算费
+     *
+     * @param requests 请求列表
+     * @return 批量算费结果，results与requests顺序一一对应
+     */
+    public CalculateBatchResponse calculateBatch(List<CalculateRequest> requests) {
+        long start = System.currentTimeMillis();
+        CalculateBatchResponse batchResponse = new CalculateBatchResponse();
+
+        if (requests == null || requests.isEmpty()) {
+            batchResponse.setSuccess(false);
+            batchResponse.setTotal(0);
+            batchResponse.setMessage("计算失败：请求列表为空");
+            return batchResponse;
+        }
+        if (requests.size() > maxBatchSize) {
+            batchResponse.setSuccess(false);
+            batchResponse.setTotal(requests.size());
+            batchResponse.setMessage("计算失败：单批最多" + maxBatchSize + "笔，实际" + requests.size() + "笔");
+            return batchResponse;
+        }
+
+        log.info("开始批量计算保费，笔数：{}", requests.size());
+
+        try {
+            // 1. 按组合主键去重收集查询条件
+            Map<String, Rate> rateKeys = new LinkedHashMap<>();
+            Map<String, Discount> discountKeys = new LinkedHashMap<>();
+            Set<Integer> claimCounts = new LinkedHashSet<>();
+            for (CalculateRequest request : requests) {
+                String rateKey = FactorSnapshot.rateKey(
+                        request.getKindCode(), request.getCarModel(), request.getAreaCode());
+                if (!rateKeys.containsKey(rateKey)) {
+                    Rate key = new Rate();
+                    key.setKindCode(request.getKindCode());
+                    key.setCarModel(request.getCarModel());
+                    key.setAreaCode(request.getAreaCode());
+                    rateKeys.put(rateKey, key);
+                }
+
+                String discountKey = FactorSnapshot.discountKey(request.getChannel(), request.getAreaCode());
+                if (!discountKeys.containsKey(discountKey)) {
+                    Discount key = new Discount();
+                    key.setChannel(request.getChannel());
+                    key.setAreaCode(request.getAreaCode());
+                    discountKeys.put(discountKey, key);
+                }
+
+                claimCounts.add(request.getClaimCount());
+            }
+
+            // 2. 每张表一次IN查询
+            Map<String, BigDecimal> rateMap = new HashMap<>();
+            for (Rate rate : rateMapper.queryRateBatch(rateKeys.values())) {
+                rateMap.put(FactorSnapshot.rateKey(rate.getKindCode(), rate.getCarModel(), rate.getAreaCode()),
+                        rate.getRate());
+            }
+            Map<String, BigDecimal> discountMap = new HashMap<>();
+            for (Discount discount : discountMapper.queryDiscountBatch(discountKeys.values())) {
+                discountMap.put(FactorSnapshot.discountKey(discount.getChannel(), discount.getAreaCode()),
+                        discount.getDiscount());
+            }
+            Map<Integer, BigDecimal> ncdMap = new HashMap<>();
+            for (Ncd ncd : ncdMapper.queryNcdBatch(claimCounts)) {
+                ncdMap.put(ncd.getClaimCount(), ncd.getNcdRate());
+            }
+
+            // 3. 一次遍历算出所有保费
+            List<CalculateResponse> results = new ArrayList<>(requests.size());
+            int successCount = 0;
+            for (CalculateRequest request : requests) {
+                CalculateResponse response = calculateOne(request, rateMap, discountMap, ncdMap);
+                if (Boolean.TRUE.equals(response.getSuccess())) {
+                    successCount++;
+                }
+                results.add(response);
+            }
+
+            long cost = System.currentTimeMillis() - start;
+            batchResponse.setSuccess(true);
+            batchResponse.setTotal(requests.size());
+            batchResponse.setSuccessCount(successCount);
+            batchResponse.setQueryCount(3);
+            batchResponse.setCost(cost);
+            batchResponse.setResults(results);
+            batchResponse.setMessage("计算完成（批量查询）");
+
+            log.info("批量保费计算完成，笔数：{}，成功：{}，费率键{}个，折扣键{}个，NCD键{}个，总耗时：{}ms",
+                    requests.size(), successCount, rateKeys.size(), discountKeys.size(), claimCounts.size(), cost);
+
+        } catch (Exception e) {
+            log.error("批量保费计算失败", e);
+            batchResponse.setSuccess(false);
+            batchResponse.setTotal(requests.size());
+            batchResponse.setMessage("计算失败：" + e.getMessage());
+        }
+
+        return batchResponse;
+    }
+
+    /**
+     * 单笔计算（因子已批量查出）
+     * 缺失的折扣/NCD按默认值1处理，缺失的费率单笔失败
+     */
+    private CalculateResponse calculateOne(CalculateRequest request,
+                                           Map<String, BigDecimal> rateMap,
+                                           Map<String, BigDecimal> discountMap,
+                                           Map<Integer, BigDecimal> ncdMap) {
+        CalculateResponse response = new CalculateResponse();
+        response.setKindCode(request.getKindCode());
+        response.setAmount(request.getAmount());
+
+        if (request.getAmount() == null) {
+            response.setSuccess(false);
+            response.setMessage("计算失败：保额不能为空");
+            return response;
+        }
+
+        BigDecimal rate = rateMap.get(FactorSnapshot.rateKey(
+                request.getKindCode(), request.getCarModel(), request.getAreaCode()));
+        if (rate == null) {
+            response.setSuccess(false);
+            response.setMessage("计算失败：未找到费率，险种：" + request.getKindCode()
+                    + "，车型：" + request.getCarModel() + "，地区：" + request.getAreaCode());
+            return response;
+        }
+        BigDecimal discount = discountMap.get(FactorSnapshot.discountKey(request.getChannel(), request.getAreaCode()));
+        if (discount == null) {
+            discount = BigDecimal.ONE;
+        }
+        BigDecimal ncdRate = ncdMap.get(request.getClaimCount());
+        if (ncdRate == null) {
+            ncdRate = BigDecimal.ONE;
+        }
+
+        BigDecimal premium = pricingRuleEngine.premium(request, rate, discount, ncdRate);
+
+        response.setSuccess(true);
+        response.setPremium(premium);
+        response.setRate(rate);
+        response.setDiscount(discount);
+        response.setNcdRate(ncdRate);
+        response.setMessage("计算成功");
+        return response;
+    }
+}
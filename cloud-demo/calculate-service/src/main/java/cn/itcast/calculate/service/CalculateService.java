@@ -1,18 +1,34 @@
 package cn.itcast.calculate.service;
 
+import cn.itcast.calculate.cache.QuoteCache;
+import cn.itcast.calculate.cube.PremiumCube;
+import cn.itcast.calculate.cube.PremiumCubeHolder;
+import cn.itcast.calculate.hedge.QueryBudget;
+import cn.itcast.calculate.log.PricingLog;
+import cn.itcast.calculate.monitor.StageMetrics;
 import cn.itcast.calculate.pojo.CalculateRequest;
 import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.rule.PricingPlan;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 算费服务
  * 
+ * 串行/并行/非阻塞算费每笔输出一行结构化摘要，默认异步采样输出（见PricingLog）
+ * 
  * @author demo
  * @date 2026-02-05
  */
@@ -23,33 +39,56 @@ public class CalculateService {
     @Autowired
     private CalculateAsyncService calculateAsyncService;
     
+    @Autowired
+    private FactorSnapshotHolder factorSnapshotHolder;
+    
+    @Autowired
+    @Qualifier("calculateAsyncExecutor")
+    private ThreadPoolTaskExecutor calculateAsyncExecutor;
+    
+    @Autowired
+    private StageMetrics stageMetrics;
+    
+    @Autowired
+    private QuoteCache quoteCache;
+    
+    @Autowired
+    private PricingRuleEngine pricingRuleEngine;
+    
+    @Autowired
+    private PremiumCubeHolder premiumCubeHolder;
+    
+    @Autowired
+    private PricingLog pricingLog;
+    
     /**
      * 即时算费
      * 
+     * 不查费率表，费率/折扣/NCD取定价规则（pricing-rules.json）中该险种的默认值，
+     * 车龄、地区附加费、渠道活动等附加因子按规则计算
+     * 
      * @param request 请求参数
      * @return 算费结果
      */
     public CalculateResponse calculate(CalculateRequest request) {
-        log.info("开始计算保费，险种：{}，保额：{}", request.getKindCode(), request.getAmount());
-        
+        long start = System.nanoTime();
         CalculateResponse response = new CalculateResponse();
         
         try {
-            // 获取费率（这里使用固定值，实际应该从数据库查询）
-            BigDecimal rate = getRate(request.getKindCode());
-            
-            // 获取折扣系数（这里使用固定值，实际应该根据业务规则计算）
-            BigDecimal discount = getDiscount(request.getKindCode());
+            PricingPlan plan = pricingRuleEngine.plan(request.getKindCode());
+            if (plan == null) {
+                response.setSuccess(false);
+                response.setMessage("计算失败：未配置定价规则，险种：" + request.getKindCode());
+                return response;
+            }
             
-            // 获取NCD系数（这里使用固定值，实际应该根据历史出险记录计算）
-            BigDecimal ncdRate = getNcdRate();
+            // 基础因子取规则默认值
+            BigDecimal rate = plan.getDefaultRate();
+            BigDecimal discount = plan.getDefaultDiscount();
+            BigDecimal ncdRate = plan.getDefaultNcdRate();
             
-            // 计算保费：保费 = 保额 × 基础费率 × 折扣系数 × NCD系数
-            BigDecimal premium = request.getAmount()
-                    .multiply(rate)
-                    .multiply(discount)
-                    .multiply(ncdRate)
-                    .setScale(2, RoundingMode.HALF_UP);
+            // 按编译后的规则计算保费（公式为 保额 × 基础费率 × 折扣系数 × NCD系数 时走定点数内核）
+            BigDecimal premium = plan.premium(request, rate, discount, ncdRate);
             
             // 封装结果
             response.setSuccess(true);
@@ -61,45 +100,17 @@ public class CalculateService {
             response.setNcdRate(ncdRate);
             response.setMessage("计算成功");
             
-            log.info("保费计算成功，保费：{}元", premium);
-            
         } catch (Exception e) {
             log.error("保费计算失败", e);
             response.setSuccess(false);
             response.setMessage("计算失败：" + e.getMessage());
+        } finally {
+            pricingLog.request(PricingLog.SERIAL, request, response, System.nanoTime() - start);
         }
         
         return response;
     }
     
-    /**
-     * 获取费率
-     * 实际应该从数据库查询
-     */
-    private BigDecimal getRate(String kindCode) {
-        // 这里使用固定值，实际应该从数据库的费率表查询
-        return new BigDecimal("0.014320");
-    }
-    
-    /**
-     * 获取折扣系数
-     * 实际应该根据业务规则计算
-     */
-    private BigDecimal getDiscount(String kindCode) {
-        // 这里使用固定值，实际应该根据渠道、活动等因素计算
-        return new BigDecimal("0.7225");
-    }
-    
-    /**
-     * 获取NCD系数（无赔款优待系数）
-     * 实际应该根据历史出险记录计算
-     */
-    private BigDecimal getNcdRate() {
-        // 这里使用固定值，实际应该根据历史出险记录计算
-        // 1年无出险：0.85，2年无出险：0.7，3年及以上无出险：0.6
-        return new BigDecimal("1.0000");
-    }
-    
     /**
      * 即时算费（并行查询版本）
      * 使用CompletableFuture并行查询3张表
@@ -108,24 +119,40 @@ public class CalculateService {
      * - 串行查询：30ms + 30ms + 30ms = 90ms
      * - 并行查询：max(30ms, 30ms, 30ms) = 30ms
      * - 性能提升：3倍
+     * 
+     * 启用报价结果缓存（calculate.quote-cache.enabled）时，相同入参直接返回缓存结果
+     * 
+     * 三张表共用一个查询预算（calculate.hedge.deadline-ms），某张表变慢时不再无限等待：
+     * 超时的因子使用历史因子，结果标记为降级（degraded=true，不写入报价结果缓存）
      */
     public CalculateResponse calculateParallel(CalculateRequest request) {
-        long start = System.currentTimeMillis();
-        log.info("开始并行计算保费，险种：{}，保额：{}", request.getKindCode(), request.getAmount());
+        return quoteCache.get(QuoteCache.PARALLEL, request, () -> calculateParallelUncached(request));
+    }
+    
+    /**
+     * 即时算费（并行查询版本，不经过报价结果缓存，用于启动预热）
+     */
+    public CalculateResponse calculateParallelUncached(CalculateRequest request) {
+        long start = System.nanoTime();
+        String kindCode = request.getKindCode();
         
         CalculateResponse response = new CalculateResponse();
         
         try {
             // 并行查询3张表（从数据库查询）
-            // 默认参数：车型GL8，地区3201，渠道WECHAT，出险次数0
+            // 未传参数时使用默认值：车型GL8，地区3201，渠道WECHAT，出险次数0
+            QueryBudget budget = calculateAsyncService.newBudget();
             CompletableFuture<BigDecimal> rateFuture = calculateAsyncService.queryRateAsync(
-                request.getKindCode(), "GL8", "3201");
+                kindCode, request.getCarModel(), request.getAreaCode(), budget);
             CompletableFuture<BigDecimal> discountFuture = calculateAsyncService.queryDiscountAsync(
-                "WECHAT", "3201");
-            CompletableFuture<BigDecimal> ncdFuture = calculateAsyncService.queryNcdAsync(0);
+                kindCode, request.getChannel(), request.getAreaCode(), budget);
+            CompletableFuture<BigDecimal> ncdFuture = calculateAsyncService.queryNcdAsync(
+                kindCode, request.getClaimCount(), budget);
             
-            // 等待所有查询完成
+            // 等待所有查询完成（启用截止时间时最多等到截止时间）
+            long joinStart = System.nanoTime();
             CompletableFuture.allOf(rateFuture, discountFuture, ncdFuture).join();
+            stageMetrics.record(StageMetrics.JOIN, kindCode, System.nanoTime() - joinStart);
             
             // 获取查询结果
             BigDecimal rate = rateFuture.get();
@@ -133,28 +160,222 @@ public class CalculateService {
             BigDecimal ncdRate = ncdFuture.get();
             
             // 计算保费
-            BigDecimal premium = request.getAmount()
-                    .multiply(rate)
-                    .multiply(discount)
-                    .multiply(ncdRate)
-                    .setScale(2, RoundingMode.HALF_UP);
+            long computeStart = System.nanoTime();
+            BigDecimal premium = pricingRuleEngine.premium(request, rate, discount, ncdRate);
+            stageMetrics.record(StageMetrics.COMPUTE, kindCode, System.nanoTime() - computeStart);
             
             // 封装结果
             response.setSuccess(true);
-            response.setKindCode(request.getKindCode());
+            response.setKindCode(kindCode);
             response.setAmount(request.getAmount());
             response.setPremium(premium);
             response.setRate(rate);
             response.setDiscount(discount);
             response.setNcdRate(ncdRate);
-            response.setMessage("计算成功（并行查询）");
+            response.setDegraded(budget != null && budget.isDegraded());
+            response.setMessage(response.getDegraded()
+                    ? "计算成功（并行查询，降级：" + budget.getDegradedTables() + "使用历史因子）"
+                    : "计算成功（并行查询）");
             
-            long cost = System.currentTimeMillis() - start;
-            log.info("并行保费计算成功，保费：{}元，总耗时：{}ms", premium, cost);
+            stageMetrics.record(StageMetrics.TOTAL, kindCode, System.nanoTime() - start);
             
         } catch (Exception e) {
             log.error("并行保费计算失败", e);
             response.setSuccess(false);
+            response.setMessage(failureMessage(e));
+        } finally {
+            pricingLog.request(PricingLog.PARALLEL, request, response, System.nanoTime() - start);
+        }
+        
+        return response;
+    }
+    
+    /**
+     * 即时算费（非阻塞版本）
+     * 
+     * 与并行查询版本的区别：
+     * - 并行查询：Tomcat线程阻塞在allOf().join()，每个请求占1个Tomcat线程 + 3个查询线程
+     * - 非阻塞：3个查询的结果通过allOf().thenApply()回调合并，Tomcat线程提交后立即返回，
+     *   响应由最后完成的查询线程写回
+     * 
+     * 查询线程数与数据库连接数一致，并发上限由数据库决定；
+     * 队列满时Future异常完成，返回"系统繁忙"，不会回落到Tomcat线程执行
+     * 
+     * 启用报价结果缓存时，相同入参直接返回已完成的Future
+     * 
+     * 截止时间与降级同并行查询版本；超时由定时器触发，最晚在截止时间写回响应
+     */
+    public CompletableFuture<CalculateResponse> calculateAsync(CalculateRequest request) {
+        return quoteCache.getAsync(QuoteCache.ASYNC, request, () -> doCalculateAsync(request));
+    }
+    
+    private CompletableFuture<CalculateResponse> doCalculateAsync(CalculateRequest request) {
+        long start = System.nanoTime();
+        String kindCode = request.getKindCode();
+        Executor executor = calculateAsyncExecutor.getThreadPoolExecutor();
+        QueryBudget budget = calculateAsyncService.newBudget();
+        
+        CompletableFuture<BigDecimal> rateFuture;
+        CompletableFuture<BigDecimal> discountFuture;
+        CompletableFuture<BigDecimal> ncdFuture;
+        try {
+            rateFuture = calculateAsyncService.queryRateAsync(
+                kindCode, request.getCarModel(), request.getAreaCode(), executor, budget);
+            discountFuture = calculateAsyncService.queryDiscountAsync(
+                kindCode, request.getChannel(), request.getAreaCode(), executor, budget);
+            ncdFuture = calculateAsyncService.queryNcdAsync(kindCode, request.getClaimCount(), executor, budget);
+        } catch (RejectedExecutionException e) {
+            log.warn("异步算费线程池已满，拒绝请求，险种：{}", kindCode);
+            CalculateResponse response = new CalculateResponse();
+            response.setSuccess(false);
+            response.setMessage("计算失败：系统繁忙，请稍后重试");
+            pricingLog.request(PricingLog.ASYNC, request, response, System.nanoTime() - start);
+            return CompletableFuture.completedFuture(response);
+        }
+        
+        // allOf().thenApply()注册回调，不阻塞当前线程
+        long joinStart = System.nanoTime();
+        return CompletableFuture.allOf(rateFuture, discountFuture, ncdFuture)
+                .thenApply(v -> {
+                    stageMetrics.record(StageMetrics.JOIN, kindCode, System.nanoTime() - joinStart);
+                    
+                    // 回调执行时三个Future均已完成，join()不会阻塞
+                    BigDecimal rate = rateFuture.join();
+                    BigDecimal discount = discountFuture.join();
+                    BigDecimal ncdRate = ncdFuture.join();
+                    
+                    long computeStart = System.nanoTime();
+                    BigDecimal premium = pricingRuleEngine.premium(request, rate, discount, ncdRate);
+                    stageMetrics.record(StageMetrics.COMPUTE, kindCode, System.nanoTime() - computeStart);
+                    
+                    CalculateResponse response = new CalculateResponse();
+                    response.setSuccess(true);
+                    response.setKindCode(kindCode);
+                    response.setAmount(request.getAmount());
+                    response.setPremium(premium);
+                    response.setRate(rate);
+                    response.setDiscount(discount);
+                    response.setNcdRate(ncdRate);
+                    response.setDegraded(budget != null && budget.isDegraded());
+                    response.setMessage(response.getDegraded()
+                            ? "计算成功（非阻塞，降级：" + budget.getDegradedTables() + "使用历史因子）"
+                            : "计算成功（非阻塞）");
+                    
+                    long cost = System.nanoTime() - start;
+                    stageMetrics.record(StageMetrics.TOTAL, kindCode, cost);
+                    pricingLog.request(PricingLog.ASYNC, request, response, cost);
+                    return response;
+                })
+                .exceptionally(e -> {
+                    log.error("非阻塞保费计算失败", unwrap(e));
+                    CalculateResponse response = new CalculateResponse();
+                    response.setSuccess(false);
+                    response.setMessage(failureMessage(e));
+                    pricingLog.request(PricingLog.ASYNC, request, response, System.nanoTime() - start);
+                    return response;
+                });
+    }
+    
+    /**
+     * 失败消息：舱壁已满/线程池拒绝返回"系统繁忙"，其余返回原因
+     */
+    private static String failureMessage(Throwable e) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof RejectedExecutionException) {
+            return "计算失败：系统繁忙，请稍后重试";
+        }
+        return "计算失败：" + cause.getMessage();
+    }
+    
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+    
+    /**
+     * 即时算费（内存快照版本）
+     * 三个因子全部从内存快照读取，不访问数据库
+     * 
+     * 缺失的折扣/NCD按默认值1处理（与并行查询版本一致），
+     * 缺失的费率直接返回失败，避免算出0元保费
+     */
+    public CalculateResponse calculateSnapshot(CalculateRequest request) {
+        // 记录组合，供保费因子立方体选取热点
+        premiumCubeHolder.record(request);
+        // 只取一次快照引用，保证三个因子来自同一版本
+        return calculateSnapshot(request, factorSnapshotHolder.current());
+    }
+    
+    /**
+     * 按指定快照算费（批量重算时整个任务固定使用同一版本快照）
+     * 
+     * 未传保额或计算异常时返回失败结果（与其他算费方式一致），不向外抛出异常
+     */
+    public CalculateResponse calculateSnapshot(CalculateRequest request, FactorSnapshot snapshot) {
+        CalculateResponse response = new CalculateResponse();
+        
+        if (request.getAmount() == null) {
+            response.setSuccess(false);
+            response.setMessage("计算失败：保额不能为空");
+            return response;
+        }
+        
+        try {
+            if (snapshot.isEmpty()) {
+                response.setSuccess(false);
+                response.setMessage("计算失败：费率快照未加载");
+                return response;
+            }
+            
+            // 热点组合：一次数组查找 + 一次乘法（仅基础公式；定价规则带附加因子时需要单个因子，走下面的计算）
+            PremiumCube cube = premiumCubeHolder.current(snapshot);
+            if (cube != null) {
+                int cell = cube.indexOf(request);
+                PricingPlan plan = pricingRuleEngine.plan(request.getKindCode());
+                if (cell >= 0 && (plan == null || plan.isKernel())) {
+                    premiumCubeHolder.hit();
+                    response.setSuccess(true);
+                    response.setKindCode(request.getKindCode());
+                    response.setAmount(request.getAmount());
+                    response.setPremium(cube.premium(cell, request.getAmount()));
+                    response.setRate(cube.getRate(cell));
+                    response.setDiscount(cube.getDiscount(cell));
+                    response.setNcdRate(cube.getNcdRate(cell));
+                    response.setMessage("计算成功（内存快照，版本" + snapshot.getVersion() + "）");
+                    return response;
+                }
+                premiumCubeHolder.miss();
+            }
+            
+            BigDecimal rate = snapshot.getRate(request.getKindCode(), request.getCarModel(), request.getAreaCode());
+            if (rate == null) {
+                response.setSuccess(false);
+                response.setMessage("计算失败：未找到费率，险种：" + request.getKindCode()
+                        + "，车型：" + request.getCarModel() + "，地区：" + request.getAreaCode());
+                return response;
+            }
+            BigDecimal discount = snapshot.getDiscount(request.getChannel(), request.getAreaCode());
+            if (discount == null) {
+                discount = BigDecimal.ONE;
+            }
+            BigDecimal ncdRate = snapshot.getNcdRate(request.getClaimCount());
+            if (ncdRate == null) {
+                ncdRate = BigDecimal.ONE;
+            }
+            
+            BigDecimal premium = pricingRuleEngine.premium(request, rate, discount, ncdRate);
+            
+            response.setSuccess(true);
+            response.setKindCode(request.getKindCode());
+            response.setAmount(request.getAmount());
+            response.setPremium(premium);
+            response.setRate(rate);
+            response.setDiscount(discount);
+            response.setNcdRate(ncdRate);
+            response.setMessage("计算成功（内存快照，版本" + snapshot.getVersion() + "）");
+            
+        } catch (Exception e) {
+            log.error("内存快照保费计算失败", e);
+            response.setSuccess(false);
             response.setMessage("计算失败：" + e.getMessage());
         }
         
@@ -0,0 +1,38 @@
+package cn.itcast.calculate.snapshot;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 因子表数据版本号（快照文件过期检测用）
+ *
+ * 读取factor_version表中的一行（主键查询），三张因子表任一行增删改时由触发器递增（DDL见README第15节）；
+ * 不扫描因子表，多个实例同时启动也只是各执行一次主键查询。导出工具和calculate-service使用同一条SQL
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class FactorDataVersion {
+
+    private static final String QUERY = "SELECT version FROM factor_version WHERE id = 1";
+
+    private FactorDataVersion() {
+    }
+
+    /**
+     * 读取当前数据版本号
+     *
+     * @throws SQLException factor_version表不存在或没有数据行
+     */
+    public static long read(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(QUERY)) {
+            if (!resultSet.next()) {
+                throw new SQLException("factor_version表没有id=1的数据行");
+            }
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package cn.itcast.calculate.snapshot;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 费率因子内存快照（不可变）
+ *
+ * 一次性加载rate_table、discount_table、ncd_table三张表，
+ * 按组合主键建立索引，构建完成后只读，多线程查询无需加锁
+ *
+ * 费率表行数大（千万级），存放在堆外索引中（见OffHeapRateIndex），折扣/NCD表很小，仍用HashMap
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class FactorSnapshot {
+
+    /**
+     * 数据版本号未知（读取factor_version失败、或快照不是从数据库/快照文件加载）
+     */
+    public static final long UNKNOWN_DATA_VERSION = -1L;
+
+    /**
+     * 空快照（启动加载失败时使用）
+     */
+    public static final FactorSnapshot EMPTY = new FactorSnapshot(
+            OffHeapRateIndex.EMPTY, Collections.emptyMap(), Collections.emptyMap(), 0L, UNKNOWN_DATA_VERSION, 0L);
+
+    /**
+     * 组合主键分隔符
+     */
+    private static final char KEY_SEPARATOR = '|';
+
+    /**
+     * 费率索引：(kindCode, carModel, areaCode) → rate（堆外）
+     */
+    private final OffHeapRateIndex rateIndex;
+
+    /**
+     * 折扣索引：channel|areaCode → discount
+     */
+    private final Map<String, BigDecimal> discountIndex;
+
+    /**
+     * NCD索引：claimCount → ncdRate
+     */
+    private final Map<Integer, BigDecimal> ncdIndex;
+
+    /**
+     * 快照版本号（每次重新加载递增）
+     */
+    private final long version;
+
+    /**
+     * 快照数据对应的因子表数据版本号（见FactorDataVersion），未知为UNKNOWN_DATA_VERSION
+     */
+    private final long dataVersion;
+
+    /**
+     * 加载完成时间（毫秒时间戳）
+     */
+    private final long loadedAt;
+
+    private FactorSnapshot(OffHeapRateIndex rateIndex,
+                           Map<String, BigDecimal> discountIndex,
+                           Map<Integer, BigDecimal> ncdIndex,
+                           long version,
+                           long dataVersion,
+                           long loadedAt) {
+        this.rateIndex = rateIndex;
+        this.discountIndex = discountIndex;
+        this.ncdIndex = ncdIndex;
+        this.version = version;
+        this.dataVersion = dataVersion;
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * 根据三张表的全量数据构建快照
+     */
+    public static FactorSnapshot build(List<Rate> rates, List<Discount> discounts, List<Ncd> ncds, long version) {
+        OffHeapRateIndex.Builder rateIndex = new OffHeapRateIndex.Builder(rates.size());
+        for (Rate rate : rates) {
+            rateIndex.put(rate.getKindCode(), rate.getCarModel(), rate.getAreaCode(), rate.getRate());
+        }
+        return build(rateIndex.build(), discounts, ncds, version);
+    }
+
+    /**
+     * 根据已构建的费率索引（加载时流式写入）和折扣/NCD全量数据构建快照
+     */
+    public static FactorSnapshot build(OffHeapRateIndex rateIndex, List<Discount> discounts, List<Ncd> ncds,
+                                       long version) {
+        Map<String, BigDecimal> discountIndex = new HashMap<>(capacity(discounts.size()));
+        for (Discount discount : discounts) {
+            discountIndex.put(discountKey(discount.getChannel(), discount.getAreaCode()), discount.getDiscount());
+        }
+
+        Map<Integer, BigDecimal> ncdIndex = new HashMap<>(capacity(ncds.size()));
+        for (Ncd ncd : ncds) {
+            ncdIndex.put(ncd.getClaimCount(), ncd.getNcdRate());
+        }
+
+        return new FactorSnapshot(
+                rateIndex,
+                Collections.unmodifiableMap(discountIndex),
+                Collections.unmodifiableMap(ncdIndex),
+                version,
+                UNKNOWN_DATA_VERSION,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * 用快照文件中的数据还原快照（SnapshotFile使用）
+     */
+    static FactorSnapshot of(OffHeapRateIndex rateIndex, Map<String, BigDecimal> discountIndex,
+                             Map<Integer, BigDecimal> ncdIndex, long version, long dataVersion) {
+        return new FactorSnapshot(rateIndex, Collections.unmodifiableMap(discountIndex),
+                Collections.unmodifiableMap(ncdIndex), version, dataVersion, System.currentTimeMillis());
+    }
+
+    /**
+     * 标记快照数据对应的因子表数据版本号（共享索引，不复制数据）
+     */
+    public FactorSnapshot withDataVersion(long dataVersion) {
+        return new FactorSnapshot(rateIndex, discountIndex, ncdIndex, version, dataVersion, loadedAt);
+    }
+
+    /**
+     * 查询费率，不存在返回null
+     */
+    public BigDecimal getRate(String kindCode, String carModel, String areaCode) {
+        return rateIndex.get(kindCode, carModel, areaCode);
+    }
+
+    /**
+     * 查询折扣系数，不存在返回null
+     */
+    public BigDecimal getDiscount(String channel, String areaCode) {
+        return discountIndex.get(discountKey(channel, areaCode));
+    }
+
+    /**
+     * 查询NCD系数，不存在返回null
+     */
+    public BigDecimal getNcdRate(Integer claimCount) {
+        return ncdIndex.get(claimCount);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 因子表数据版本号：与进程内的version不同，重启或其他实例加载同一份数据得到的值相同
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getRateCount() {
+        return rateIndex.size();
+    }
+
+    /**
+     * 费率索引堆外占用（字节）
+     */
+    public long getRateOffHeapBytes() {
+        return rateIndex.getOffHeapBytes();
+    }
+
+    /**
+     * 不同费率取值个数（堆内）
+     */
+    public int getRateValueCount() {
+        return rateIndex.getValueCount();
+    }
+
+    public int getDiscountCount() {
+        return discountIndex.size();
+    }
+
+    public int getNcdCount() {
+        return ncdIndex.size();
+    }
+
+    /**
+     * 是否为空快照
+     */
+    public boolean isEmpty() {
+        return version == 0L;
+    }
+
+    OffHeapRateIndex rateIndex() {
+        return rateIndex;
+    }
+
+    Map<String, BigDecimal> discountIndex() {
+        return discountIndex;
+    }
+
+    Map<Integer, BigDecimal> ncdIndex() {
+        return ncdIndex;
+    }
+
+    /**
+     * 费率组合主键
+     */
+    public static String rateKey(String kindCode, String carModel, String areaCode) {
+        return kindCode + KEY_SEPARATOR + carModel + KEY_SEPARATOR + areaCode;
+    }
+
+    /**
+     * 折扣组合主键
+     */
+    public static String discountKey(String channel, String areaCode) {
+        return channel + KEY_SEPARATOR + areaCode;
+    }
+
+    /**
+     * 按负载因子0.75预估HashMap容量，避免扩容
+     */
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+}
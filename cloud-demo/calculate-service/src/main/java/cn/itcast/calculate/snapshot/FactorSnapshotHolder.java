@@ -0,0 +1,265 @@
+package cn.itcast.calculate.snapshot;
+
+import cn.itcast.calculate.cache.FactorCache;
+import cn.itcast.calculate.cache.FactorChangedEvent;
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.mapper.DiscountMapper;
+import cn.itcast.calculate.mapper.NcdMapper;
+import cn.itcast.calculate.mapper.RateMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 费率快照持有者
+ *
+ * 启动时加载快照，重新加载时先在后台构建新快照，
+ * 构建完成后一次性原子替换；替换前旧快照继续提供查询
+ *
+ * 配置了快照文件（calculate.snapshot.file.path）时：
+ * - 启动直接映射文件，不等待数据库加载；随后在后台比对因子表数据版本号（一次主键查询），不一致则从数据库重新加载
+ * - 每次从数据库加载后重新导出文件，供下次启动使用
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class FactorSnapshotHolder {
+
+    @Autowired
+    private RateMapper rateMapper;
+
+    @Autowired
+    private DiscountMapper discountMapper;
+
+    @Autowired
+    private NcdMapper ncdMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * 快照文件路径，为空表示不使用快照文件
+     */
+    @Value("${calculate.snapshot.file.path:}")
+    private String filePath;
+
+    /**
+     * 从文件启动后是否在后台校验数据版本号
+     */
+    @Value("${calculate.snapshot.file.verify-on-start:true}")
+    private boolean verifyOnStart;
+
+    /**
+     * 当前生效的快照
+     */
+    private final AtomicReference<FactorSnapshot> current = new AtomicReference<>(FactorSnapshot.EMPTY);
+
+    /**
+     * 版本号生成器
+     */
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    /**
+     * 启动时加载快照（失败不阻断启动，快照算费接口会返回失败）
+     * 快照文件可用时直接从文件启动
+     */
+    @PostConstruct
+    public void init() {
+        if (loadFile()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("启动加载费率快照失败", e);
+        }
+    }
+
+    /**
+     * 从快照文件启动
+     *
+     * @return 是否成功（文件未配置、不存在或校验不通过返回false，改为从数据库加载）
+     */
+    private boolean loadFile() {
+        Path path = filePath();
+        if (path == null || !Files.exists(path)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        SnapshotFile file;
+        try {
+            file = SnapshotFile.read(path, versionSequence.incrementAndGet());
+        } catch (Exception e) {
+            log.warn("快照文件不可用，改为从数据库加载：{}，原因：{}", path, e.getMessage());
+            return false;
+        }
+        FactorSnapshot snapshot = file.getSnapshot();
+        current.set(snapshot);
+        log.info("从快照文件启动，版本：{}，费率{}条（映射{}MB），折扣{}条，NCD{}条，导出于：{}，耗时：{}ms",
+                snapshot.getVersion(), snapshot.getRateCount(), snapshot.getRateOffHeapBytes() >> 20,
+                snapshot.getDiscountCount(), snapshot.getNcdCount(),
+                new Date(file.getExportedAt()), System.currentTimeMillis() - start);
+
+        if (verifyOnStart) {
+            Thread verifier = new Thread(this::verify, "snapshot-verify");
+            verifier.setDaemon(true);
+            verifier.start();
+        }
+        return true;
+    }
+
+    /**
+     * 比对数据库中的数据版本号与当前快照，不一致（快照文件已过期）时重新加载
+     */
+    private void verify() {
+        try {
+            long expected = current.get().getDataVersion();
+            long actual = readDataVersion();
+            if (expected == actual) {
+                log.info("快照文件与数据库一致，数据版本：{}", actual);
+                return;
+            }
+            log.warn("快照文件已过期（数据版本{} ≠ 数据库{}），重新加载", expected, actual);
+            reload();
+        } catch (Exception e) {
+            log.error("校验快照文件失败，继续使用文件快照，版本：{}", current.get().getVersion(), e);
+        }
+    }
+
+    /**
+     * 定时重新加载（默认每天凌晨3点）
+     */
+    @Scheduled(cron = "${calculate.snapshot.reload-cron:0 0 3 * * ?}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("定时加载费率快照失败，继续使用旧快照，版本：{}", current.get().getVersion(), e);
+        }
+    }
+
+    /**
+     * 重新加载快照
+     * synchronized保证同一时刻只有一个加载任务，查询线程不受影响
+     *
+     * @return 新快照
+     */
+    public synchronized FactorSnapshot reload() {
+        long start = System.currentTimeMillis();
+
+        // 数据版本号在读取数据之前读取：加载期间数据发生变化时，下次校验（或断点续跑）会发现不一致
+        long loadDataVersion = FactorSnapshot.UNKNOWN_DATA_VERSION;
+        try {
+            loadDataVersion = readDataVersion();
+        } catch (SQLException e) {
+            log.warn("读取数据版本号失败，快照数据版本未知（不导出快照文件，断点不能直接续跑），原因：{}", e.getMessage());
+        }
+
+        OffHeapRateIndex rates = loadRates(current.get().getRateCount());
+        List<Discount> discounts = discountMapper.listAll();
+        List<Ncd> ncds = ncdMapper.listAll();
+
+        FactorSnapshot snapshot = FactorSnapshot.build(rates, discounts, ncds, versionSequence.incrementAndGet())
+                .withDataVersion(loadDataVersion);
+        FactorSnapshot old = current.getAndSet(snapshot);
+
+        long cost = System.currentTimeMillis() - start;
+        log.info("费率快照加载完成，版本：{} → {}，数据版本：{}，费率{}条（不同取值{}个，堆外{}MB），折扣{}条，NCD{}条，耗时：{}ms",
+                old.getVersion(), snapshot.getVersion(), loadDataVersion,
+                snapshot.getRateCount(), snapshot.getRateValueCount(), snapshot.getRateOffHeapBytes() >> 20,
+                snapshot.getDiscountCount(), snapshot.getNcdCount(), cost);
+
+        Path path = filePath();
+        if (path != null && loadDataVersion != FactorSnapshot.UNKNOWN_DATA_VERSION) {
+            export(snapshot, loadDataVersion, path);
+        }
+
+        // 首次加载（启动）不算变更
+        if (!old.isEmpty()) {
+            eventPublisher.publishEvent(new FactorChangedEvent(this, FactorCache.INVALIDATE_ALL));
+        }
+        return snapshot;
+    }
+
+    /**
+     * 导出快照文件（失败只记录日志，不影响已生效的快照）
+     */
+    private void export(FactorSnapshot snapshot, long dataVersion, Path path) {
+        long start = System.currentTimeMillis();
+        try {
+            SnapshotFile.write(snapshot, dataVersion, path);
+            log.info("快照文件导出完成：{}，版本：{}，耗时：{}ms",
+                    path, snapshot.getVersion(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("快照文件导出失败：{}", path, e);
+        }
+    }
+
+    private long readDataVersion() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return FactorDataVersion.read(connection);
+        }
+    }
+
+    private Path filePath() {
+        return filePath == null || filePath.trim().isEmpty() ? null : Paths.get(filePath.trim());
+    }
+
+    /**
+     * 流式读取费率表写入堆外索引，不在堆上保留Rate对象
+     *
+     * @param expectedSize 预计行数（取上一版快照的行数，只影响初始容量）
+     */
+    private OffHeapRateIndex loadRates(int expectedSize) {
+        OffHeapRateIndex.Builder builder = new OffHeapRateIndex.Builder(expectedSize);
+        // MyBatis Cursor需要在事务内遍历
+        transactionTemplate.execute(status -> {
+            try (Cursor<Rate> cursor = rateMapper.scanAll()) {
+                for (Rate rate : cursor) {
+                    builder.put(rate.getKindCode(), rate.getCarModel(), rate.getAreaCode(), rate.getRate());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        return builder.build();
+    }
+
+    /**
+     * 获取当前快照
+     * 调用方应在一次算费内只取一次，保证三个因子来自同一版本
+     */
+    public FactorSnapshot current() {
+        return current.get();
+    }
+}
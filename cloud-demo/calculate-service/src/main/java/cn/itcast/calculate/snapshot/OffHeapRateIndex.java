@@ -0,0 +1,331 @@
+package cn.itcast.calculate.snapshot;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外费率索引（不可变）
+ *
+ * 全量费率表可达千万行，按HashMap&lt;String, BigDecimal&gt;存放时每行一个组合主键字符串、一个Entry、一个BigDecimal，
+ * 堆越大GC停顿越长。这里：
+ * - 组合主键(kindCode, carModel, areaCode)按三个字典编号打包成一个long：险种16位 | 车型24位 | 地区24位
+ * - 费率取值去重后放在堆内数组（费率表的不同取值通常只有几千个），索引中只存取值下标
+ * - 哈希表（开放寻址，线性探测）放在堆外DirectByteBuffer，每个槽位12字节：long主键 + int取值下标
+ *
+ * 堆内只剩三个字典和去重后的取值，不随行数增长；查询只做三次字典查找和几次缓冲区读取，不创建对象
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class OffHeapRateIndex {
+
+    /**
+     * 空索引
+     */
+    public static final OffHeapRateIndex EMPTY = new Builder(0).build();
+
+    /**
+     * 槽位：long主键（0表示空槽） + int取值下标
+     */
+    static final int SLOT_BYTES = 12;
+
+    /**
+     * 装载因子上限，超过后扩容（容量翻倍重新插入）
+     */
+    private static final double MAX_LOAD = 0.7;
+
+    /**
+     * 单个缓冲区最多2^27个槽位（1.5GB），按装载因子约可容纳9千万行
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private static final long EMPTY_KEY = 0L;
+    private static final int KIND_BITS = 16;
+    private static final int CAR_BITS = 24;
+    private static final int AREA_BITS = 24;
+
+    private final Map<String, Integer> kindCodes;
+    private final Map<String, Integer> carModels;
+    private final Map<String, Integer> areaCodes;
+    private final BigDecimal[] values;
+    private final ByteBuffer table;
+    private final int mask;
+    private final int size;
+
+    private OffHeapRateIndex(Map<String, Integer> kindCodes, Map<String, Integer> carModels,
+                             Map<String, Integer> areaCodes, BigDecimal[] values,
+                             ByteBuffer table, int capacity, int size) {
+        this.kindCodes = kindCodes;
+        this.carModels = carModels;
+        this.areaCodes = areaCodes;
+        this.values = values;
+        this.table = table;
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * 查询费率，不存在返回null（不创建对象）
+     */
+    public BigDecimal get(String kindCode, String carModel, String areaCode) {
+        Integer kind = kindCodes.get(kindCode);
+        Integer car = carModels.get(carModel);
+        Integer area = areaCodes.get(areaCode);
+        if (kind == null || car == null || area == null) {
+            return null;
+        }
+        int slot = find(table, mask, encode(kind, car, area));
+        return slot < 0 ? null : values[table.getInt(slot * SLOT_BYTES + Long.BYTES)];
+    }
+
+    /**
+     * 费率行数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 不同费率取值的个数
+     */
+    public int getValueCount() {
+        return values.length;
+    }
+
+    /**
+     * 堆外占用（字节）
+     */
+    public long getOffHeapBytes() {
+        return table.capacity();
+    }
+
+    /**
+     * 用快照文件中的字典、取值和哈希表（映射后的缓冲区，直接在文件上查询）还原索引
+     *
+     * @param kindCodes 险种字典（下标 + 1 为编号，下同）
+     * @param table     哈希表，槽位数为2的幂
+     */
+    static OffHeapRateIndex wrap(String[] kindCodes, String[] carModels, String[] areaCodes,
+                                 BigDecimal[] values, ByteBuffer table, int size) {
+        int capacity = table.capacity() / SLOT_BYTES;
+        if (Integer.bitCount(capacity) != 1 || capacity * SLOT_BYTES != table.capacity() || size >= capacity) {
+            throw new IllegalArgumentException("哈希表大小不合法：" + table.capacity());
+        }
+        return new OffHeapRateIndex(dictionary(kindCodes), dictionary(carModels), dictionary(areaCodes),
+                values, table.order(ByteOrder.LITTLE_ENDIAN), capacity, size);
+    }
+
+    /**
+     * 字典按编号顺序导出（写快照文件用）
+     */
+    String[] kindCodes() {
+        return entries(kindCodes);
+    }
+
+    String[] carModels() {
+        return entries(carModels);
+    }
+
+    String[] areaCodes() {
+        return entries(areaCodes);
+    }
+
+    BigDecimal[] values() {
+        return values;
+    }
+
+    /**
+     * 哈希表只读视图（写快照文件用）
+     */
+    ByteBuffer table() {
+        return table.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static Map<String, Integer> dictionary(String[] entries) {
+        Map<String, Integer> dictionary = new HashMap<>((int) (entries.length / 0.75f) + 1);
+        for (int i = 0; i < entries.length; i++) {
+            dictionary.put(entries[i], i + 1);
+        }
+        return Collections.unmodifiableMap(dictionary);
+    }
+
+    private static String[] entries(Map<String, Integer> dictionary) {
+        String[] entries = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            entries[entry.getValue() - 1] = entry.getKey();
+        }
+        return entries;
+    }
+
+    /**
+     * 组合主键打包：险种编号 | 车型编号 | 地区编号（编号从1开始，结果不会为0）
+     */
+    static long encode(int kind, int car, int area) {
+        return ((long) kind << (CAR_BITS + AREA_BITS)) | ((long) car << AREA_BITS) | area;
+    }
+
+    /**
+     * 查找主键所在槽位，不存在返回-1
+     */
+    private static int find(ByteBuffer table, int mask, long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            long current = table.getLong(slot * SLOT_BYTES);
+            if (current == key) {
+                return slot;
+            }
+            if (current == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * 64位混淆（MurmurHash3 fmix64），打散相邻编号
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * 逐行构建（加载时可边读边写，不需要先把全部Rate放进List）
+     *
+     * 同一组合主键重复写入时以最后一次为准；非线程安全
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> kindCodes = new HashMap<>();
+        private final Map<String, Integer> carModels = new HashMap<>();
+        private final Map<String, Integer> areaCodes = new HashMap<>();
+        private final Map<BigDecimal, Integer> valueIds = new HashMap<>();
+        private final List<BigDecimal> values = new ArrayList<>();
+
+        private ByteBuffer table;
+        private int capacity;
+        private int size;
+
+        /**
+         * @param expectedSize 预计行数（只影响初始容量，超过后自动扩容）
+         */
+        public Builder(int expectedSize) {
+            capacity = tableSizeFor((long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD));
+            table = allocate(capacity);
+        }
+
+        /**
+         * 写入一行费率，费率为空时忽略（与查不到等价）
+         */
+        public Builder put(String kindCode, String carModel, String areaCode, BigDecimal rate) {
+            if (rate == null) {
+                return this;
+            }
+            long key = encode(id(kindCodes, kindCode, KIND_BITS, "险种"),
+                    id(carModels, carModel, CAR_BITS, "车型"),
+                    id(areaCodes, areaCode, AREA_BITS, "地区"));
+            Integer valueId = valueIds.get(rate);
+            if (valueId == null) {
+                valueId = values.size();
+                valueIds.put(rate, valueId);
+                values.add(rate);
+            }
+
+            int slot = find(table, capacity - 1, key);
+            if (slot < 0) {
+                if (size + 1 > capacity * MAX_LOAD) {
+                    grow();
+                }
+                slot = insert(table, capacity - 1, key);
+                size++;
+            }
+            table.putInt(slot * SLOT_BYTES + Long.BYTES, valueId);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public OffHeapRateIndex build() {
+            return new OffHeapRateIndex(
+                    Collections.unmodifiableMap(kindCodes),
+                    Collections.unmodifiableMap(carModels),
+                    Collections.unmodifiableMap(areaCodes),
+                    values.toArray(new BigDecimal[0]),
+                    table, capacity, size);
+        }
+
+        /**
+         * 容量翻倍，重新插入已有主键
+         */
+        private void grow() {
+            if (capacity >= MAX_CAPACITY) {
+                throw new IllegalStateException("费率行数超过堆外索引上限：" + size);
+            }
+            int newCapacity = capacity << 1;
+            ByteBuffer newTable = allocate(newCapacity);
+            for (int slot = 0; slot < capacity; slot++) {
+                long key = table.getLong(slot * SLOT_BYTES);
+                if (key != EMPTY_KEY) {
+                    int newSlot = insert(newTable, newCapacity - 1, key);
+                    newTable.putInt(newSlot * SLOT_BYTES + Long.BYTES, table.getInt(slot * SLOT_BYTES + Long.BYTES));
+                }
+            }
+            table = newTable;
+            capacity = newCapacity;
+        }
+
+        /**
+         * 在第一个空槽写入主键，返回槽位
+         */
+        private static int insert(ByteBuffer table, int mask, long key) {
+            int slot = hash(key) & mask;
+            while (table.getLong(slot * SLOT_BYTES) != EMPTY_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            table.putLong(slot * SLOT_BYTES, key);
+            return slot;
+        }
+
+        private static int id(Map<String, Integer> dictionary, String value, int bits, String name) {
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                id = dictionary.size() + 1;
+                if (id >= 1 << bits) {
+                    throw new IllegalStateException(name + "取值个数超过上限：" + ((1 << bits) - 1));
+                }
+                dictionary.put(value, id);
+            }
+            return id;
+        }
+
+        private static int tableSizeFor(long minCapacity) {
+            if (minCapacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("预计行数超过堆外索引上限：" + minCapacity);
+            }
+            int capacity = 16;
+            while (capacity < minCapacity) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+
+        /**
+         * 分配堆外缓冲区（DirectByteBuffer初始内容全为0，即全部为空槽）
+         */
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cn.itcast.calculate.snapshot;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 费率快照导出工具（不启动Spring，直接用JDBC从calculate_db导出快照文件）
+ *
+ * 运行：
+ * <pre>
+ * java -cp target/calculate-service-exec.jar -Dloader.main=cn.itcast.calculate.snapshot.SnapshotExportTool \
+ *     org.springframework.boot.loader.PropertiesLauncher \
+ *     "jdbc:mysql://localhost:3306/calculate_db?useCursorFetch=true" root root /data/calculate/rates.snap
+ * </pre>
+ *
+ * 先读取数据版本号再读取数据：导出期间数据发生变化时，服务启动校验会发现版本号不一致并重新加载
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+public final class SnapshotExportTool {
+
+    /**
+     * 费率表分批读取行数（MySQL需在连接串中开启useCursorFetch）
+     */
+    private static final int FETCH_SIZE = 10000;
+
+    private SnapshotExportTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("用法：SnapshotExportTool <jdbcUrl> <username> <password> <output>");
+            System.exit(2);
+        }
+        Path output = Paths.get(args[3]);
+        long start = System.currentTimeMillis();
+
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            long dataVersion = FactorDataVersion.read(connection);
+            FactorSnapshot snapshot = FactorSnapshot.build(
+                    loadRates(connection), loadDiscounts(connection), loadNcds(connection), 1L);
+            SnapshotFile.write(snapshot, dataVersion, output);
+
+            log.info("费率快照导出完成：{}，费率{}条（堆外{}MB），折扣{}条，NCD{}条，数据版本：{}，耗时：{}ms",
+                    output.toAbsolutePath(), snapshot.getRateCount(), snapshot.getRateOffHeapBytes() >> 20,
+                    snapshot.getDiscountCount(), snapshot.getNcdCount(), dataVersion,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private static OffHeapRateIndex loadRates(Connection connection) throws Exception {
+        OffHeapRateIndex.Builder builder = new OffHeapRateIndex.Builder(0);
+        // 游标读取需要关闭自动提交（MySQL useCursorFetch / PostgreSQL等）
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT kind_code, car_model, area_code, rate FROM rate_table")) {
+                while (resultSet.next()) {
+                    builder.put(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+                            resultSet.getBigDecimal(4));
+                }
+            }
+        } finally {
+            connection.commit();
+            connection.setAutoCommit(autoCommit);
+        }
+        return builder.build();
+    }
+
+    private static List<Discount> loadDiscounts(Connection connection) throws Exception {
+        List<Discount> discounts = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT channel, area_code, discount FROM discount_table")) {
+            while (resultSet.next()) {
+                Discount discount = new Discount();
+                discount.setChannel(resultSet.getString(1));
+                discount.setAreaCode(resultSet.getString(2));
+                discount.setDiscount(resultSet.getBigDecimal(3));
+                discounts.add(discount);
+            }
+        }
+        return discounts;
+    }
+
+    private static List<Ncd> loadNcds(Connection connection) throws Exception {
+        List<Ncd> ncds = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT claim_count, ncd_rate FROM ncd_table")) {
+            while (resultSet.next()) {
+                Ncd ncd = new Ncd();
+                ncd.setClaimCount(resultSet.getInt(1));
+                ncd.setNcdRate(resultSet.getBigDecimal(2));
+                ncds.add(ncd);
+            }
+        }
+        return ncds;
+    }
+}
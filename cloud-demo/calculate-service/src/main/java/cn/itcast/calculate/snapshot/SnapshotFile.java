@@ -0,0 +1,290 @@
+package cn.itcast.calculate.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 费率快照二进制文件
+ *
+ * 启动时把文件映射到内存（mmap），费率哈希表直接在映射区上查询，不再从MySQL加载三张表；
+ * 字典、费率取值、折扣、NCD数据量小，读入堆内
+ *
+ * 文件格式（头部和元数据为大端序，哈希表为小端序，与内存中的堆外索引一致）：
+ * <pre>
+ * 头部64字节：
+ *   0  magic "CALCSNAP"       8  格式版本(int)      12 头部长度(int)
+ *   16 导出时间(long)          24 数据版本号(long)   32 费率/折扣/NCD行数(3 × int)
+ *   44 哈希表偏移(int)         48 文件长度(long)     56 头部之后全部内容的CRC32(int)
+ * 元数据：险种/车型/地区字典、费率取值、折扣、NCD
+ * 哈希表：按8字节对齐，槽位数 × 12字节（见OffHeapRateIndex）
+ * </pre>
+ *
+ * 写入时先写临时文件再原子改名，正在映射旧文件的进程不受影响
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public final class SnapshotFile {
+
+    /**
+     * 格式版本，格式变化时+1；版本不一致的文件视为过期，重新从数据库加载并导出
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final byte[] MAGIC = "CALCSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 64;
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private final FactorSnapshot snapshot;
+    private final long exportedAt;
+    private final long dataVersion;
+
+    private SnapshotFile(FactorSnapshot snapshot, long exportedAt, long dataVersion) {
+        this.snapshot = snapshot;
+        this.exportedAt = exportedAt;
+        this.dataVersion = dataVersion;
+    }
+
+    public FactorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 导出时间（毫秒时间戳）
+     */
+    public long getExportedAt() {
+        return exportedAt;
+    }
+
+    /**
+     * 导出时的因子表数据版本号（见FactorDataVersion）
+     */
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * 导出快照
+     *
+     * @param snapshot    快照
+     * @param dataVersion 加载快照数据之前读取的数据版本号
+     * @param path        目标文件
+     */
+    public static void write(FactorSnapshot snapshot, long dataVersion, Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            OffHeapRateIndex rates = snapshot.rateIndex();
+            CRC32 crc = new CRC32();
+            long tableOffset;
+            long length;
+            try (OutputStream file = Files.newOutputStream(temp);
+                 CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, COPY_CHUNK), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                // 头部最后回填，先占位（不参与CRC）
+                file.write(new byte[HEADER_BYTES]);
+
+                writeStrings(out, rates.kindCodes());
+                writeStrings(out, rates.carModels());
+                writeStrings(out, rates.areaCodes());
+                BigDecimal[] values = rates.values();
+                out.writeInt(values.length);
+                for (BigDecimal value : values) {
+                    writeDecimal(out, value);
+                }
+                out.writeInt(snapshot.discountIndex().size());
+                for (Map.Entry<String, BigDecimal> entry : snapshot.discountIndex().entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeDecimal(out, entry.getValue());
+                }
+                out.writeInt(snapshot.ncdIndex().size());
+                for (Map.Entry<Integer, BigDecimal> entry : snapshot.ncdIndex().entrySet()) {
+                    out.writeInt(entry.getKey());
+                    writeDecimal(out, entry.getValue());
+                }
+
+                int padding = (8 - (HEADER_BYTES + out.size()) % 8) % 8;
+                out.write(new byte[padding]);
+                tableOffset = HEADER_BYTES + out.size();
+
+                ByteBuffer table = rates.table();
+                byte[] chunk = new byte[COPY_CHUNK];
+                while (table.hasRemaining()) {
+                    int n = Math.min(chunk.length, table.remaining());
+                    table.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+                out.flush();
+                length = tableOffset + table.capacity();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(HEADER_BYTES)
+                    .putLong(System.currentTimeMillis())
+                    .putLong(dataVersion)
+                    .putInt(rates.size())
+                    .putInt(snapshot.getDiscountCount())
+                    .putInt(snapshot.getNcdCount())
+                    .putInt((int) tableOffset)
+                    .putLong(length)
+                    .putInt((int) crc.getValue());
+            header.clear();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 映射并校验快照文件
+     *
+     * @param path    快照文件
+     * @param version 还原出的快照使用的版本号
+     * @throws IOException 文件不存在、格式版本不一致、长度或校验和不符
+     */
+    public static SnapshotFile read(Path path, long version) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件大小不合法：" + size);
+            }
+            // 映射在通道关闭后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("不是费率快照文件：" + path);
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("快照文件格式版本不一致：" + formatVersion + "，当前：" + FORMAT_VERSION);
+        }
+        buffer.getInt();
+        long exportedAt = buffer.getLong();
+        long dataVersion = buffer.getLong();
+        int rateCount = buffer.getInt();
+        int discountCount = buffer.getInt();
+        int ncdCount = buffer.getInt();
+        int tableOffset = buffer.getInt();
+        long length = buffer.getLong();
+        int checksum = buffer.getInt();
+        if (length != buffer.capacity() || tableOffset < HEADER_BYTES || tableOffset > length) {
+            throw new IOException("快照文件长度不符（未写完或已截断）：" + buffer.capacity() + "，应为：" + length);
+        }
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("快照文件校验和不符：" + path);
+        }
+
+        buffer.position(HEADER_BYTES);
+        String[] kindCodes = readStrings(buffer);
+        String[] carModels = readStrings(buffer);
+        String[] areaCodes = readStrings(buffer);
+        BigDecimal[] values = new BigDecimal[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readDecimal(buffer);
+        }
+        Map<String, BigDecimal> discounts = new HashMap<>((int) (discountCount / 0.75f) + 1);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            discounts.put(readString(buffer), readDecimal(buffer));
+        }
+        Map<Integer, BigDecimal> ncds = new HashMap<>((int) (ncdCount / 0.75f) + 1);
+        count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            ncds.put(buffer.getInt(), readDecimal(buffer));
+        }
+
+        buffer.position(tableOffset);
+        ByteBuffer table = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        OffHeapRateIndex rates = OffHeapRateIndex.wrap(kindCodes, carModels, areaCodes, values, table, rateCount);
+        return new SnapshotFile(FactorSnapshot.of(rates, discounts, ncds, version, dataVersion), exportedAt, dataVersion);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * 字符串：长度(int，-1表示null) + UTF-8字节
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 小数：小数位数(int) + 未缩放值字节数(int) + 未缩放值（补码，大端）
+     */
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(buffer);
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.getInt()];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
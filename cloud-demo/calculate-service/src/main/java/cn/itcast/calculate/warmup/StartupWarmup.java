@@ -0,0 +1,212 @@
+package cn.itcast.calculate.warmup;
+
+import cn.itcast.calculate.config.WarmupProperties;
+import cn.itcast.calculate.monitor.StartupMetrics;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pricing.PremiumKernel;
+import cn.itcast.calculate.service.CalculateAsyncService;
+import cn.itcast.calculate.service.CalculateService;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 启动预热
+ *
+ * 发布后前几百个请求很慢：线程池没有线程、连接池没有连接、MyBatis语句没有解析、
+ * 算费路径没有被JIT编译。ApplicationRunner在ApplicationReadyEvent之前执行，
+ * 预热完成后应用才会就绪（/actuator/health/readiness返回UP），负载均衡才会导入流量
+ *
+ * 预热步骤：
+ * 1. 预启动算费线程池的核心线程
+ * 2. 建立数据库连接池的全部连接
+ * 3. 预加载热点请求的费率/折扣/NCD（同时加载MyBatis语句；启用两级缓存时写入本地缓存和Redis）
+ * 4. 模拟算费：保费计算内核 + 完整并行算费流程，触发JIT编译
+ *
+ * 预热失败不阻断启动；数据库连接失败时跳过依赖数据库的步骤
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    @Autowired
+    private WarmupProperties properties;
+
+    @Autowired
+    private StartupMetrics startupMetrics;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private CalculateService calculateService;
+
+    @Autowired
+    private CalculateAsyncService calculateAsyncService;
+
+    @Autowired
+    @Qualifier("calculateExecutor")
+    private ThreadPoolTaskExecutor calculateExecutor;
+
+    @Autowired
+    @Qualifier("calculateAsyncExecutor")
+    private ThreadPoolTaskExecutor calculateAsyncExecutor;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            log.info("启动预热未启用");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        log.info("开始启动预热");
+
+        prestartThreads();
+        boolean dbReady = openConnections();
+        if (dbReady) {
+            preloadHotKeys();
+        }
+        warmKernel();
+        if (dbReady) {
+            warmRequests();
+        }
+
+        long cost = System.currentTimeMillis() - start;
+        startupMetrics.onWarmupFinished(cost);
+        log.info("启动预热完成，耗时：{}ms", cost);
+    }
+
+    /**
+     * 1. 预启动线程池核心线程
+     */
+    private void prestartThreads() {
+        int calculateThreads = calculateExecutor.getThreadPoolExecutor().prestartAllCoreThreads();
+        int asyncThreads = calculateAsyncExecutor.getThreadPoolExecutor().prestartAllCoreThreads();
+        log.info("预热：算费线程池预启动{}个线程，异步算费线程池预启动{}个线程", calculateThreads, asyncThreads);
+    }
+
+    /**
+     * 2. 同时借出连接直到连接池上限，再全部归还，连接池一次性建满
+     *
+     * @return 数据库是否可用
+     */
+    private boolean openConnections() {
+        long start = System.currentTimeMillis();
+        int maxPoolSize = maxPoolSize();
+        List<Connection> connections = new ArrayList<>(maxPoolSize);
+        try {
+            for (int i = 0; i < maxPoolSize; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(1);
+            }
+            log.info("预热：数据库连接池建立{}个连接，耗时：{}ms", connections.size(), System.currentTimeMillis() - start);
+            return true;
+        } catch (SQLException e) {
+            log.warn("预热：数据库连接失败，跳过数据库相关预热，原因：{}", e.getMessage());
+            return !connections.isEmpty();
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("预热：归还连接失败", e);
+                }
+            }
+        }
+    }
+
+    private int maxPoolSize() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("预热：读取连接池大小失败", e);
+        }
+        return 1;
+    }
+
+    /**
+     * 3. 预加载热点请求的三个因子
+     */
+    private void preloadHotKeys() {
+        long start = System.currentTimeMillis();
+        List<CalculateRequest> requests = hotRequests();
+        List<CompletableFuture<?>> futures = new ArrayList<>(requests.size() * 3);
+        for (CalculateRequest request : requests) {
+            String kindCode = request.getKindCode();
+            futures.add(calculateAsyncService.queryRateAsync(kindCode, request.getCarModel(), request.getAreaCode()));
+            futures.add(calculateAsyncService.queryDiscountAsync(kindCode, request.getChannel(), request.getAreaCode()));
+            futures.add(calculateAsyncService.queryNcdAsync(kindCode, request.getClaimCount()));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            log.info("预热：预加载{}个热点请求的因子，耗时：{}ms", requests.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("预热：预加载热点因子失败，原因：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 4.1 保费计算内核，输入逐次变化，避免被常量折叠
+     */
+    private void warmKernel() {
+        long start = System.currentTimeMillis();
+        BigDecimal rate = new BigDecimal("0.014320");
+        BigDecimal discount = new BigDecimal("0.7225");
+        BigDecimal ncdRate = new BigDecimal("1.0000");
+        long checksum = 0;
+        for (int i = 0; i < properties.getKernelIterations(); i++) {
+            BigDecimal amount = BigDecimal.valueOf(50_000 + i);
+            checksum += PremiumKernel.premium(amount, rate, discount, ncdRate).unscaledValue().longValue();
+        }
+        log.info("预热：保费计算内核{}次，耗时：{}ms，校验和：{}",
+                properties.getKernelIterations(), System.currentTimeMillis() - start, checksum);
+    }
+
+    /**
+     * 4.2 完整并行算费流程（不经过报价结果缓存，每次都真实查询）
+     */
+    private void warmRequests() {
+        long start = System.currentTimeMillis();
+        List<CalculateRequest> requests = hotRequests();
+        int failed = 0;
+        for (int i = 0; i < properties.getRequestIterations(); i++) {
+            CalculateRequest request = requests.get(i % requests.size());
+            if (!Boolean.TRUE.equals(calculateService.calculateParallelUncached(request).getSuccess())) {
+                failed++;
+            }
+        }
+        log.info("预热：模拟算费{}次（失败{}次），耗时：{}ms",
+                properties.getRequestIterations(), failed, System.currentTimeMillis() - start);
+    }
+
+    private List<CalculateRequest> hotRequests() {
+        List<CalculateRequest> requests = properties.getHotRequests();
+        if (requests != null && !requests.isEmpty()) {
+            return requests;
+        }
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode("050200");
+        request.setAmount(new BigDecimal("100000"));
+        return Collections.singletonList(request);
+    }
+}
@@ -0,0 +1,67 @@
+package cn.itcast.calculate.bulkhead;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 舱壁测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class BulkheadTest {
+
+    @Test
+    public void testRejectsWhenFullAndReleasesOnCompletion() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("ncd", 2);
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<Integer> second = new CompletableFuture<>();
+
+        bulkhead.execute(() -> first);
+        bulkhead.execute(() -> second);
+        assertEquals(2, bulkhead.getActive());
+
+        CompletableFuture<Integer> rejected = bulkhead.execute(() -> CompletableFuture.completedFuture(3));
+        assertFailedWith(rejected, BulkheadFullException.class);
+        assertEquals(1, bulkhead.getRejected());
+
+        first.complete(1);
+        assertEquals(1, bulkhead.getActive());
+        assertEquals(Integer.valueOf(3), bulkhead.execute(() -> CompletableFuture.completedFuture(3)).get());
+
+        second.completeExceptionally(new IllegalStateException("查询失败"));
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(2, bulkhead.getPeakActive());
+        assertEquals(4, bulkhead.getCalls());
+    }
+
+    @Test
+    public void testSubmitFailureReleasesPermit() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("rate", 1);
+
+        CompletableFuture<Integer> result = bulkhead.execute(() -> {
+            throw new RejectedExecutionException("线程池已满");
+        });
+
+        assertFailedWith(result, RejectedExecutionException.class);
+        assertEquals(0, bulkhead.getActive());
+        assertEquals(0, bulkhead.getRejected());
+    }
+
+    private static void assertFailedWith(CompletableFuture<?> future, Class<? extends Throwable> type) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("应当失败");
+        } catch (ExecutionException e) {
+            assertTrue(type.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package cn.itcast.calculate.cache;
+
+import cn.itcast.calculate.config.FactorCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 因子两级缓存测试（Redis用mock）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class FactorCacheTest {
+
+    private static final String KEY = FactorCache.rateKey("050200", "BMW", "310000");
+    private static final String REDIS_KEY = "calculate:factor:" + KEY;
+
+    private FactorCache cache;
+    private StringRedisTemplate redis;
+    private ValueOperations<String, String> ops;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        FactorCacheProperties properties = new FactorCacheProperties();
+        properties.setEnabled(true);
+        redis = mock(StringRedisTemplate.class);
+        ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+
+        cache = new FactorCache();
+        ReflectionTestUtils.setField(cache, "properties", properties);
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "eventPublisher", mock(ApplicationEventPublisher.class));
+        cache.init();
+    }
+
+    /**
+     * 未发生失效：MySQL结果回填Redis和本地
+     */
+    @Test
+    public void testBackFill() {
+        BigDecimal value = cache.load(KEY, () -> new BigDecimal("0.0125"));
+
+        assertEquals(new BigDecimal("0.0125"), value);
+        assertEquals(new BigDecimal("0.0125"), cache.getIfPresent(KEY));
+        verify(ops).set(eq(REDIS_KEY), eq("0.0125"), anyLong(), eq(TimeUnit.SECONDS));
+    }
+
+    /**
+     * 回源MySQL期间本实例失效：返回读到的值，但不回填Redis和本地
+     */
+    @Test
+    public void testInvalidateDuringLoad() {
+        BigDecimal value = cache.load(KEY, () -> {
+            BigDecimal old = new BigDecimal("0.0125");
+            cache.invalidate(KEY);
+            return old;
+        });
+
+        assertEquals(new BigDecimal("0.0125"), value);
+        assertNull(cache.getIfPresent(KEY));
+        verify(ops, never()).set(anyString(), anyString(), anyLong(), eq(TimeUnit.SECONDS));
+
+        // 下一次加载正常回填新值
+        assertEquals(new BigDecimal("0.0130"), cache.load(KEY, () -> new BigDecimal("0.0130")));
+        assertEquals(new BigDecimal("0.0130"), cache.getIfPresent(KEY));
+    }
+
+    /**
+     * 读Redis期间收到其他实例的失效消息：Redis中读到的旧值不写入本地
+     */
+    @Test
+    public void testInvalidateMessageDuringRedisRead() {
+        when(ops.get(REDIS_KEY)).thenAnswer(invocation -> {
+            cache.onInvalidateMessage(FactorCache.INVALIDATE_ALL);
+            return "0.0125";
+        });
+
+        assertEquals(new BigDecimal("0.0125"), cache.load(KEY, () -> BigDecimal.ONE));
+        assertNull(cache.getIfPresent(KEY));
+    }
+}
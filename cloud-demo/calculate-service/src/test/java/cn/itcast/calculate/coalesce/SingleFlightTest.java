@@ -0,0 +1,128 @@
+package cn.itcast.calculate.coalesce;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 并发查询合并测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneQuery() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(flight.execute("050200|GL8|3201", () -> CompletableFuture.supplyAsync(() -> {
+                queries.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 42;
+            }, pool)));
+        }
+        release.countDown();
+
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(Integer.valueOf(42), future.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(1, queries.get());
+        assertEquals(100, flight.getCalls());
+        assertEquals(1, flight.getExecutions());
+        assertEquals(99, flight.getCoalesced());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    public void testCompletedQueryIsNotReused() {
+        SingleFlight<Integer, Integer> flight = new SingleFlight<>();
+        AtomicInteger queries = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            flight.execute(0, () -> CompletableFuture.completedFuture(queries.incrementAndGet())).join();
+        }
+
+        assertEquals(3, queries.get());
+        assertEquals(3, flight.getExecutions());
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    @Test
+    public void testDifferentKeysAreNotCoalesced() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> a = flight.execute("WECHAT|3201", () -> pending);
+        CompletableFuture<String> b = flight.execute("APP|3201", () -> CompletableFuture.completedFuture("APP"));
+        pending.complete("WECHAT");
+
+        assertEquals("WECHAT", a.join());
+        assertEquals("APP", b.join());
+        assertEquals(2, flight.getExecutions());
+    }
+
+    @Test
+    public void testFailurePropagatesToFollowers() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> leader = flight.execute("k", () -> pending);
+        CompletableFuture<Integer> follower = flight.execute("k", () -> CompletableFuture.completedFuture(1));
+        pending.completeExceptionally(new IllegalStateException("db down"));
+
+        assertFailed(leader);
+        assertFailed(follower);
+        assertEquals(0, flight.getInFlight());
+
+        // 失败后不残留，下一次重新查询
+        assertEquals(Integer.valueOf(7), flight.execute("k", () -> CompletableFuture.completedFuture(7)).join());
+    }
+
+    @Test
+    public void testRejectedSubmitIsRethrown() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        try {
+            flight.execute("k", () -> {
+                throw new RejectedExecutionException("queue full");
+            });
+            fail("应抛出RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            // 与未合并时一致，由调用方返回"系统繁忙"
+        }
+        assertEquals(0, flight.getInFlight());
+    }
+
+    private static void assertFailed(CompletableFuture<?> future) {
+        try {
+            future.join();
+            fail("应异常完成");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
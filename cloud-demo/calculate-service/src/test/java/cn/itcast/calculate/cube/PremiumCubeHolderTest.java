@@ -0,0 +1,95 @@
+package cn.itcast.calculate.cube;
+
+import cn.itcast.calculate.config.WarmupProperties;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.PremiumCubeStats;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 保费因子立方体构建测试（使用classpath中的定价规则：050200带附加因子，其他险种走基础公式）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class PremiumCubeHolderTest {
+
+    /**
+     * 带附加因子的险种不进立方体，也不计入预期命中
+     */
+    @Test
+    public void testSkipsRuleKindCodes() {
+        FactorSnapshot snapshot = FactorSnapshot.build(
+                Arrays.asList(rate("050200"), rate("030000")), Collections.emptyList(), Collections.emptyList(), 1L);
+        FactorSnapshotHolder snapshotHolder = mock(FactorSnapshotHolder.class);
+        when(snapshotHolder.current()).thenReturn(snapshot);
+
+        PricingRuleEngine pricingRuleEngine = new PricingRuleEngine();
+        ReflectionTestUtils.setField(pricingRuleEngine, "location", "classpath:pricing-rules.json");
+        ReflectionTestUtils.setField(pricingRuleEngine, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(pricingRuleEngine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        pricingRuleEngine.init();
+
+        WarmupProperties warmupProperties = new WarmupProperties();
+        warmupProperties.getHotRequests().add(request("050200"));
+
+        PremiumCubeHolder holder = new PremiumCubeHolder();
+        ReflectionTestUtils.setField(holder, "enabled", true);
+        ReflectionTestUtils.setField(holder, "maxCombinations", 1000);
+        ReflectionTestUtils.setField(holder, "maxCells", 1000000);
+        ReflectionTestUtils.setField(holder, "maxTracked", 100000);
+        ReflectionTestUtils.setField(holder, "factorSnapshotHolder", snapshotHolder);
+        ReflectionTestUtils.setField(holder, "warmupProperties", warmupProperties);
+        ReflectionTestUtils.setField(holder, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(holder, "pricingRuleEngine", pricingRuleEngine);
+        holder.init();
+
+        for (int i = 0; i < 3; i++) {
+            holder.record(request("050200"));
+        }
+        holder.record(request("030000"));
+        PremiumCubeStats stats = holder.rebuild();
+
+        assertEquals(1, stats.getCombinations());
+        assertEquals(0.25, stats.getExpectedHitRatio(), 1e-9);
+        PremiumCube cube = holder.current(snapshot);
+        assertEquals(-1, cube.indexOf(request("050200")));
+        assertTrue(cube.indexOf(request("030000")) >= 0);
+    }
+
+    private static Rate rate(String kindCode) {
+        Rate rate = new Rate();
+        rate.setKindCode(kindCode);
+        rate.setCarModel("GL8");
+        rate.setAreaCode("3201");
+        rate.setRate(new BigDecimal("0.014320"));
+        return rate;
+    }
+
+    private static CalculateRequest request(String kindCode) {
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode(kindCode);
+        request.setAmount(new BigDecimal("100000"));
+        request.setCarModel("GL8");
+        request.setAreaCode("3201");
+        request.setChannel("WECHAT");
+        request.setClaimCount(0);
+        return request;
+    }
+}
@@ -0,0 +1,129 @@
+package cn.itcast.calculate.cube;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 保费因子立方体测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class PremiumCubeTest {
+
+    @Test
+    public void testPremiumMatchesSnapshotCalculation() {
+        FactorSnapshot snapshot = FactorSnapshot.build(
+                Arrays.asList(rate("GL8", "3201", "0.014320"), rate("GL8", "3101", "0.01535"),
+                        rate("CAMRY", "3201", "0.012000")),
+                Collections.singletonList(discount("WECHAT", "3201", "0.7225")),
+                Arrays.asList(ncd(0, "0.8500"), ncd(2, "1.25")),
+                1L);
+
+        PremiumCube cube = PremiumCube.build(snapshot, Arrays.asList(
+                new PremiumCube.Combination("050200", "GL8", "3201", "WECHAT", 0),
+                new PremiumCube.Combination("050200", "CAMRY", "3101", "APP", 2)), 1000);
+
+        assertEquals(2, cube.getCombinations());
+        // 2车型 × 2地区 × 2渠道 × 2出险次数，CAMRY|3101无费率
+        assertEquals(16, cube.getCells());
+        assertEquals(12, cube.getFilledCells());
+        assertTrue(cube.getMemoryBytes() > 16 * Long.BYTES);
+
+        for (String carModel : new String[]{"GL8", "CAMRY"}) {
+            for (String areaCode : new String[]{"3201", "3101"}) {
+                for (String channel : new String[]{"WECHAT", "APP"}) {
+                    for (int claimCount : new int[]{0, 2}) {
+                        CalculateRequest request = request(carModel, areaCode, channel, claimCount, "123456.78");
+                        BigDecimal rate = snapshot.getRate("050200", carModel, areaCode);
+                        int cell = cube.indexOf(request);
+                        if (rate == null) {
+                            assertEquals(-1, cell);
+                            continue;
+                        }
+                        BigDecimal discount = orOne(snapshot.getDiscount(channel, areaCode));
+                        BigDecimal ncdRate = orOne(snapshot.getNcdRate(claimCount));
+                        BigDecimal expected = request.getAmount().multiply(rate).multiply(discount).multiply(ncdRate)
+                                .setScale(2, RoundingMode.HALF_UP);
+                        assertEquals(expected, cube.premium(cell, request.getAmount()));
+                        assertEquals(rate, cube.getRate(cell));
+                        assertEquals(discount, cube.getDiscount(cell));
+                        assertEquals(ncdRate, cube.getNcdRate(cell));
+                    }
+                }
+            }
+        }
+
+        // 维度取值不在立方体中
+        assertEquals(-1, cube.indexOf(request("GL8", "3201", "WECHAT", 1, "100000")));
+        assertEquals(-1, PremiumCube.EMPTY.indexOf(request("GL8", "3201", "WECHAT", 0, "100000")));
+    }
+
+    @Test
+    public void testMaxCellsSkipsCombinations() {
+        FactorSnapshot snapshot = FactorSnapshot.build(
+                Collections.singletonList(rate("GL8", "3201", "0.014320")),
+                Collections.<Discount>emptyList(), Collections.<Ncd>emptyList(), 1L);
+
+        PremiumCube cube = PremiumCube.build(snapshot, Arrays.asList(
+                new PremiumCube.Combination("050200", "GL8", "3201", "WECHAT", 0),
+                new PremiumCube.Combination("050200", "GL8", "3201", "WECHAT", 1),
+                new PremiumCube.Combination("050200", "GL8", "3201", "APP", 0)), 2);
+
+        assertEquals(2, cube.getCombinations());
+        assertEquals(2, cube.getCells());
+        assertEquals(-1, cube.indexOf(request("GL8", "3201", "APP", 0, "100000")));
+    }
+
+    private static CalculateRequest request(String carModel, String areaCode, String channel, int claimCount,
+                                            String amount) {
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode("050200");
+        request.setAmount(new BigDecimal(amount));
+        request.setCarModel(carModel);
+        request.setAreaCode(areaCode);
+        request.setChannel(channel);
+        request.setClaimCount(claimCount);
+        return request;
+    }
+
+    private static Rate rate(String carModel, String areaCode, String value) {
+        Rate rate = new Rate();
+        rate.setKindCode("050200");
+        rate.setCarModel(carModel);
+        rate.setAreaCode(areaCode);
+        rate.setRate(new BigDecimal(value));
+        return rate;
+    }
+
+    private static Discount discount(String channel, String areaCode, String value) {
+        Discount discount = new Discount();
+        discount.setChannel(channel);
+        discount.setAreaCode(areaCode);
+        discount.setDiscount(new BigDecimal(value));
+        return discount;
+    }
+
+    private static Ncd ncd(int claimCount, String value) {
+        Ncd ncd = new Ncd();
+        ncd.setClaimCount(claimCount);
+        ncd.setNcdRate(new BigDecimal(value));
+        return ncd;
+    }
+
+    private static BigDecimal orOne(BigDecimal value) {
+        return value != null ? value : BigDecimal.ONE;
+    }
+}
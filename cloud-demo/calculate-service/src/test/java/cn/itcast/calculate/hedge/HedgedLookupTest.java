@@ -0,0 +1,123 @@
+package cn.itcast.calculate.hedge;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 对冲查询测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class HedgedLookupTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void testFastPrimaryDoesNotHedge() throws Exception {
+        HedgedLookup<String, Integer> lookup = new HedgedLookup<>(timer);
+        AtomicInteger hedgeCalls = new AtomicInteger();
+
+        CompletableFuture<Integer> result = lookup.execute("rate", () -> CompletableFuture.completedFuture(1),
+                () -> {
+                    hedgeCalls.incrementAndGet();
+                    return CompletableFuture.completedFuture(2);
+                }, millis(10), deadline(200), key -> 0);
+
+        assertEquals(Integer.valueOf(1), result.get(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(0, hedgeCalls.get());
+        assertEquals(0, lookup.getHedges());
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedged() throws Exception {
+        HedgedLookup<String, Integer> lookup = new HedgedLookup<>(timer);
+
+        CompletableFuture<Integer> result = lookup.execute("rate", CompletableFuture::new,
+                () -> CompletableFuture.completedFuture(2), millis(10), deadline(1000), key -> 0);
+
+        assertEquals(Integer.valueOf(2), result.get(1, TimeUnit.SECONDS));
+        drainTimer();
+        assertEquals(1, lookup.getHedges());
+        assertEquals(1, lookup.getHedgeWins());
+        assertEquals(0, lookup.getFallbacks());
+    }
+
+    @Test
+    public void testDeadlineFallsBackToLastKnownGood() throws Exception {
+        HedgedLookup<String, Integer> lookup = new HedgedLookup<>(timer);
+
+        CompletableFuture<Integer> result = lookup.execute("rate", CompletableFuture::new,
+                CompletableFuture::new, millis(10), deadline(50), key -> 7);
+
+        assertEquals(Integer.valueOf(7), result.get(1, TimeUnit.SECONDS));
+        drainTimer();
+        assertEquals(1, lookup.getHedges());
+        assertEquals(1, lookup.getTimeouts());
+        assertEquals(1, lookup.getFallbacks());
+    }
+
+    @Test
+    public void testDeadlineWithoutFallbackFails() throws Exception {
+        HedgedLookup<String, Integer> lookup = new HedgedLookup<>(timer);
+
+        CompletableFuture<Integer> result = lookup.execute("rate", CompletableFuture::new,
+                null, millis(10), deadline(50), key -> null);
+
+        try {
+            result.get(1, TimeUnit.SECONDS);
+            fail("应当超时");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, lookup.getHedges());
+        assertEquals(1, lookup.getTimeouts());
+    }
+
+    @Test
+    public void testPrimaryFailureFallsBackImmediately() throws Exception {
+        HedgedLookup<String, Integer> lookup = new HedgedLookup<>(timer);
+        CompletableFuture<Integer> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("连接断开"));
+
+        CompletableFuture<Integer> result = lookup.execute("ncd", () -> failed,
+                null, millis(10), deadline(1000), key -> 9);
+
+        assertEquals(Integer.valueOf(9), result.get(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, lookup.getFailures());
+        assertEquals(1, lookup.getFallbacks());
+    }
+
+    /**
+     * 对冲/超时回调在定时器线程上完成结果后才更新统计，等定时器执行完已有任务再断言
+     */
+    private void drainTimer() throws Exception {
+        timer.submit(() -> { }).get(1, TimeUnit.SECONDS);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + millis(millis);
+    }
+}
@@ -0,0 +1,97 @@
+package cn.itcast.calculate.log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 无锁环形缓冲区测试类
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class LogRingBufferTest {
+
+    @Test
+    public void testFullBufferRejectsAndWrapsAround() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(round * 10 + i));
+            }
+            assertFalse(buffer.offer(-1));
+            assertEquals(4, buffer.size());
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(round * 10 + i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersKeepPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50000;
+        LogRingBuffer<long[]> buffer = new LogRingBuffer<>(1024);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        // 满时自旋重试（真实场景直接丢弃）
+                        while (!buffer.offer(new long[]{producer, i})) {
+                            Thread.yield();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        List<String> errors = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                if (done.await(0, TimeUnit.MILLISECONDS) && buffer.size() == 0 && buffer.poll() == null) {
+                    break;
+                }
+                continue;
+            }
+            int producer = (int) element[0];
+            if (element[1] != next[producer]) {
+                errors.add(producer + ":" + element[1] + "≠" + next[producer]);
+            }
+            next[producer] = element[1] + 1;
+            received++;
+        }
+        pool.shutdown();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(producers * perProducer, received);
+    }
+}
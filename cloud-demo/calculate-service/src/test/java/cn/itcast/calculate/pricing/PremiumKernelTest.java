@@ -0,0 +1,95 @@
+package cn.itcast.calculate.pricing;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 保费定点数内核测试类
+ *
+ * 随机生成大量输入，逐一与BigDecimal链式计算结果比对（值和scale都必须一致）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class PremiumKernelTest {
+
+    private static final int CASES = 200_000;
+
+    /**
+     * 与CalculateService原有写法一致的BigDecimal计算
+     */
+    private static BigDecimal expected(BigDecimal amount, BigDecimal rate, BigDecimal discount, BigDecimal ncdRate) {
+        return amount.multiply(rate)
+                .multiply(discount)
+                .multiply(ncdRate)
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static void assertSame(BigDecimal amount, BigDecimal rate, BigDecimal discount, BigDecimal ncdRate) {
+        BigDecimal expected = expected(amount, rate, discount, ncdRate);
+        BigDecimal actual = PremiumKernel.premium(amount, rate, discount, ncdRate);
+        assertEquals(amount + " × " + rate + " × " + discount + " × " + ncdRate, expected, actual);
+    }
+
+    @Test
+    public void testDefaultFactors() {
+        assertSame(new BigDecimal("100000"), new BigDecimal("0.014320"), new BigDecimal("0.7225"), new BigDecimal("1.0000"));
+        assertEquals(new BigDecimal("1034.62"), PremiumKernel.premium(
+                new BigDecimal("100000"), new BigDecimal("0.014320"), new BigDecimal("0.7225"), new BigDecimal("1.0000")));
+    }
+
+    /**
+     * 真实取值范围：保额0~1000万（0/2位小数），费率6位小数，折扣/NCD 4位小数
+     */
+    @Test
+    public void testRandomRealisticInputs() {
+        Random random = new Random(20261017L);
+        for (int i = 0; i < CASES; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(1_000_000_000), random.nextBoolean() ? 2 : 0);
+            BigDecimal rate = BigDecimal.valueOf(random.nextInt(1_000_000), 6);
+            BigDecimal discount = BigDecimal.valueOf(random.nextInt(20_000), 4);
+            BigDecimal ncdRate = BigDecimal.valueOf(random.nextInt(20_000), 4);
+            assertSame(amount, rate, discount, ncdRate);
+        }
+    }
+
+    /**
+     * 任意小数位数（含负scale）、任意大小，覆盖溢出回退路径
+     */
+    @Test
+    public void testRandomArbitraryScales() {
+        Random random = new Random(42L);
+        for (int i = 0; i < CASES; i++) {
+            BigDecimal amount = BigDecimal.valueOf(Math.abs(random.nextLong() >> random.nextInt(63)), random.nextInt(8) - 2);
+            BigDecimal rate = BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE) >> random.nextInt(31), random.nextInt(10));
+            BigDecimal discount = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(7));
+            BigDecimal ncdRate = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(7));
+            assertSame(amount, rate, discount, ncdRate);
+        }
+    }
+
+    /**
+     * 舍入边界：恰好 x.xx5 时向上进位
+     */
+    @Test
+    public void testHalfUpBoundary() {
+        assertSame(new BigDecimal("1.005"), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+        assertSame(new BigDecimal("1.004999999"), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+        assertSame(new BigDecimal("100000"), new BigDecimal("0.00000005"), new BigDecimal("1.0000"), new BigDecimal("1.0000"));
+        assertSame(new BigDecimal("100000"), new BigDecimal("0.000000049999"), new BigDecimal("1.0000"), new BigDecimal("1.0000"));
+    }
+
+    /**
+     * 负数走BigDecimal回退，结果依然一致
+     */
+    @Test
+    public void testNegativeFallsBack() {
+        assertSame(new BigDecimal("-100000"), new BigDecimal("0.014320"), new BigDecimal("0.7225"), new BigDecimal("1.0000"));
+        assertEquals(PremiumKernel.OVERFLOW, PremiumKernel.premiumCents(-1, 0, 1, 0, 1, 0, 1, 0));
+    }
+}
@@ -0,0 +1,134 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.cube.PremiumCubeHolder;
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Policy;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import cn.itcast.calculate.service.CalculateService;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分片重算测试：重算结果与即时算费一致（使用classpath中的定价规则，050200带车龄系数）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class RepriceChunkTaskTest {
+
+    private CalculateService calculateService;
+    private FactorSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        Rate rate = new Rate();
+        rate.setKindCode("050200");
+        rate.setCarModel("GL8");
+        rate.setAreaCode("3201");
+        rate.setRate(new BigDecimal("0.014320"));
+        Discount discount = new Discount();
+        discount.setChannel("WECHAT");
+        discount.setAreaCode("3201");
+        discount.setDiscount(new BigDecimal("0.7225"));
+        Ncd ncd = new Ncd();
+        ncd.setClaimCount(0);
+        ncd.setNcdRate(new BigDecimal("1.0000"));
+        snapshot = FactorSnapshot.build(Collections.singletonList(rate), Collections.singletonList(discount),
+                Collections.singletonList(ncd), 1L);
+
+        PricingRuleEngine pricingRuleEngine = new PricingRuleEngine();
+        ReflectionTestUtils.setField(pricingRuleEngine, "location", "classpath:pricing-rules.json");
+        ReflectionTestUtils.setField(pricingRuleEngine, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(pricingRuleEngine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        pricingRuleEngine.init();
+
+        FactorSnapshotHolder holder = mock(FactorSnapshotHolder.class);
+        when(holder.current()).thenReturn(snapshot);
+
+        calculateService = new CalculateService();
+        ReflectionTestUtils.setField(calculateService, "factorSnapshotHolder", holder);
+        ReflectionTestUtils.setField(calculateService, "pricingRuleEngine", pricingRuleEngine);
+        ReflectionTestUtils.setField(calculateService, "premiumCubeHolder", mock(PremiumCubeHolder.class));
+    }
+
+    /**
+     * 同一张保单：即时算费与批量重算的保费相同，车龄系数生效
+     */
+    @Test
+    public void testRepriceMatchesLiveQuote() {
+        Policy[] policies = {policy("P1", 8), policy("P2", 2), policy("P3", null)};
+        CalculateResponse[] results = new CalculateResponse[policies.length];
+        ForkJoinPool.commonPool().invoke(new RepriceChunkTask(policies, results, snapshot, calculateService));
+
+        for (int i = 0; i < policies.length; i++) {
+            CalculateResponse live = calculateService.calculateSnapshot(request(policies[i]));
+            assertTrue(live.getSuccess());
+            assertTrue(results[i].getSuccess());
+            assertEquals(live.getPremium(), results[i].getPremium());
+        }
+        // 100000 × 0.014320 × 0.7225 × 车龄系数：8年1.10，2年和未填1.00
+        assertEquals(0, new BigDecimal("1138.08").compareTo(results[0].getPremium()));
+        assertEquals(0, new BigDecimal("1034.62").compareTo(results[1].getPremium()));
+        assertEquals(0, new BigDecimal("1034.62").compareTo(results[2].getPremium()));
+    }
+
+    /**
+     * 即时算费（内存快照）未传保额：返回失败，不抛出异常
+     */
+    @Test
+    public void testSnapshotQuoteWithoutAmountFails() {
+        Policy policy = policy("P4", 8);
+        policy.setAmount(null);
+
+        CalculateResponse response = calculateService.calculateSnapshot(request(policy));
+        assertFalse(response.getSuccess());
+        assertEquals("计算失败：保额不能为空", response.getMessage());
+    }
+
+    private static Policy policy(String policyNo, Integer carAge) {
+        Policy policy = new Policy();
+        policy.setPolicyNo(policyNo);
+        policy.setKindCode("050200");
+        policy.setAmount(new BigDecimal("100000"));
+        policy.setCarModel("GL8");
+        policy.setAreaCode("3201");
+        policy.setChannel("WECHAT");
+        policy.setClaimCount(0);
+        policy.setCarAge(carAge);
+        return policy;
+    }
+
+    /**
+     * 即时算费接口的请求（与保单字段一一对应）
+     */
+    private static CalculateRequest request(Policy policy) {
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode(policy.getKindCode());
+        request.setAmount(policy.getAmount());
+        request.setCarModel(policy.getCarModel());
+        request.setAreaCode(policy.getAreaCode());
+        request.setChannel(policy.getChannel());
+        request.setClaimCount(policy.getClaimCount());
+        request.setCarAge(policy.getCarAge());
+        return request;
+    }
+}
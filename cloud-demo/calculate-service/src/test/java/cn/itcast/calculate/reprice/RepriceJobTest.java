@@ -0,0 +1,202 @@
+package cn.itcast.calculate.reprice;
+
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.pojo.RepriceJobRequest;
+import cn.itcast.calculate.pojo.RepriceJobStatus;
+import cn.itcast.calculate.service.CalculateService;
+import cn.itcast.calculate.snapshot.FactorSnapshot;
+import cn.itcast.calculate.snapshot.FactorSnapshotHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量重算任务测试（文件来源，算费用mock）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class RepriceJobTest {
+
+    private static final int ROWS = 1000;
+    private static final int CHUNK_SIZE = 50;
+    private static final long DATA_VERSION = 7L;
+
+    private Path workDir;
+    private RepriceJob job;
+
+    @Before
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("reprice-test");
+        List<String> lines = new ArrayList<>(ROWS + 1);
+        lines.add(FilePolicyReader.HEADER);
+        for (int i = 0; i < ROWS; i++) {
+            lines.add(String.format("P%05d,050200,%d,BMW,310000,online,0", i, 100000 + i));
+        }
+        Files.write(workDir.resolve("policies.csv"), lines, StandardCharsets.UTF_8);
+
+        // 每行随机耗时，让分片乱序完成
+        CalculateService calculateService = mock(CalculateService.class);
+        when(calculateService.calculateSnapshot(any(CalculateRequest.class), any(FactorSnapshot.class)))
+                .thenAnswer(invocation -> {
+                    LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(20_000));
+                    CalculateRequest request = invocation.getArgument(0);
+                    CalculateResponse response = new CalculateResponse();
+                    response.setSuccess(true);
+                    response.setKindCode(request.getKindCode());
+                    response.setAmount(request.getAmount());
+                    response.setPremium(request.getAmount().multiply(new BigDecimal("0.01")));
+                    return response;
+                });
+        FactorSnapshotHolder holder = mock(FactorSnapshotHolder.class);
+        when(holder.current()).thenReturn(FactorSnapshot.build(
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 1L)
+                .withDataVersion(DATA_VERSION));
+
+        job = new RepriceJob();
+        ReflectionTestUtils.setField(job, "workDir", workDir.toString());
+        ReflectionTestUtils.setField(job, "defaultChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(job, "calculateService", calculateService);
+        ReflectionTestUtils.setField(job, "factorSnapshotHolder", holder);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        job.shutdown();
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 多线程乱序完成，输出仍按输入顺序
+     */
+    @Test
+    public void testOutputOrder() throws Exception {
+        RepriceJobStatus status = runToEnd(request("out.csv", false));
+
+        assertEquals(RepriceJob.COMPLETED, status.getState());
+        assertEquals(ROWS, status.getRowsWritten());
+        List<String> output = Files.readAllLines(workDir.resolve("out.csv"), StandardCharsets.UTF_8);
+        assertEquals(ROWS + 1, output.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(String.format("P%05d", i), output.get(i + 1).split(",")[0]);
+        }
+    }
+
+    /**
+     * 进程在断点之后写了半个分片时崩溃：续跑丢弃半个分片，从断点继续，结果与一次跑完相同
+     */
+    @Test
+    public void testResumeAfterCrash() throws Exception {
+        runToEnd(request("expected.csv", false));
+        byte[] expected = Files.readAllBytes(workDir.resolve("expected.csv"));
+        int saved = crash("out.csv", DATA_VERSION);
+        Path output = workDir.resolve("out.csv");
+
+        RepriceJobStatus status = runToEnd(request("out.csv", true));
+
+        assertEquals(RepriceJob.COMPLETED, status.getState());
+        assertEquals(saved, status.getResumedFrom());
+        assertEquals(ROWS - saved, status.getRowsWritten());
+        assertEquals(new String(expected, StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+        assertEquals(ROWS, RepriceCheckpoint.load(workDir.resolve("out.csv.checkpoint")).getRowsWritten());
+    }
+
+    /**
+     * 断点之后因子表数据已变化（重启后快照版本号相同也不算一致）：拒绝续跑，输出和断点保持原样；显式强制时才续跑
+     */
+    @Test
+    public void testResumeRefusedWhenDataVersionChanged() throws Exception {
+        runToEnd(request("expected.csv", false));
+        int saved = crash("out.csv", DATA_VERSION - 1);
+        Path output = workDir.resolve("out.csv");
+        byte[] crashed = Files.readAllBytes(output);
+
+        RepriceJobStatus status = runToEnd(request("out.csv", true));
+
+        assertEquals(RepriceJob.FAILED, status.getState());
+        assertTrue(status.getMessage(), status.getMessage().contains("forceResume"));
+        assertArrayEquals(crashed, Files.readAllBytes(output));
+        assertEquals(DATA_VERSION - 1, RepriceCheckpoint.load(workDir.resolve("out.csv.checkpoint")).getDataVersion());
+
+        RepriceJobRequest force = request("out.csv", true);
+        force.setForceResume(true);
+        status = runToEnd(force);
+
+        assertEquals(RepriceJob.COMPLETED, status.getState());
+        assertEquals(saved, status.getResumedFrom());
+        assertEquals(DATA_VERSION, RepriceCheckpoint.load(workDir.resolve("out.csv.checkpoint")).getDataVersion());
+    }
+
+    /**
+     * 构造崩溃现场：3个分片已保存断点，第4个分片写了一半（最后一行不完整）
+     *
+     * @return 断点中已写出的行数
+     */
+    private int crash(String outputName, long dataVersion) throws IOException {
+        List<String> lines = Files.readAllLines(workDir.resolve("expected.csv"), StandardCharsets.UTF_8);
+        int saved = 3 * CHUNK_SIZE;
+        StringBuilder crashed = new StringBuilder();
+        for (int i = 0; i <= saved; i++) {
+            crashed.append(lines.get(i)).append('\n');
+        }
+        long outputBytes = crashed.toString().getBytes(StandardCharsets.UTF_8).length;
+        for (int i = saved + 1; i <= saved + CHUNK_SIZE / 2; i++) {
+            crashed.append(lines.get(i)).append('\n');
+        }
+        crashed.append("P0017");
+        Files.write(workDir.resolve(outputName), crashed.toString().getBytes(StandardCharsets.UTF_8));
+
+        RepriceCheckpoint checkpoint = new RepriceCheckpoint();
+        checkpoint.setRowsWritten(saved);
+        checkpoint.setLastPolicyNo(lines.get(saved).split(",")[0]);
+        checkpoint.setOutputBytes(outputBytes);
+        checkpoint.setDataVersion(dataVersion);
+        checkpoint.save(workDir.resolve(outputName + ".checkpoint"));
+        return saved;
+    }
+
+    private static RepriceJobRequest request(String output, boolean resume) {
+        RepriceJobRequest request = new RepriceJobRequest();
+        request.setInput("policies.csv");
+        request.setOutput(output);
+        request.setResume(resume);
+        request.setParallelism(4);
+        return request;
+    }
+
+    private RepriceJobStatus runToEnd(RepriceJobRequest request) throws InterruptedException {
+        job.start(request);
+        long deadline = System.currentTimeMillis() + 30_000;
+        RepriceJobStatus status = job.status();
+        while (RepriceJob.RUNNING.equals(status.getState()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = job.status();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,66 @@
+package cn.itcast.calculate.rule;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 保费公式编译器测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class FormulaCompilerTest {
+
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    public FormulaCompilerTest() {
+        slots.put("amount", 0);
+        slots.put("rate", 1);
+        slots.put("surcharge", 2);
+    }
+
+    @Test
+    public void testPrecedenceAndFunctions() {
+        BitSet used = new BitSet();
+        Expression expression = FormulaCompiler.compile("max(amount * rate - 10, 2 * (3 + 4)) + -1", slots, used);
+
+        BigDecimal[] values = {new BigDecimal("100000"), new BigDecimal("0.01"), null};
+        assertEquals(0, new BigDecimal("989").compareTo(expression.evaluate(values)));
+
+        values[0] = new BigDecimal("1000");
+        assertEquals(0, new BigDecimal("13").compareTo(expression.evaluate(values)));
+
+        assertTrue(used.get(0));
+        assertTrue(used.get(1));
+        assertFalse(used.get(2));
+    }
+
+    @Test
+    public void testConstantFolding() {
+        Expression expression = FormulaCompiler.compile("(1 + 2) * 0.5 / 3", slots, new BitSet());
+
+        assertTrue(expression instanceof Expression.Constant);
+        assertEquals(0, new BigDecimal("0.5").compareTo(expression.evaluate(new BigDecimal[0])));
+    }
+
+    @Test
+    public void testInvalidFormulas() {
+        for (String formula : new String[]{"", "amount *", "amount * unknown", "(amount", "amount rate", "avg(amount)"}) {
+            try {
+                FormulaCompiler.compile(formula, slots, new BitSet());
+                fail("应当编译失败：" + formula);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package cn.itcast.calculate.service;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import cn.itcast.calculate.mapper.DiscountMapper;
+import cn.itcast.calculate.mapper.NcdMapper;
+import cn.itcast.calculate.mapper.RateMapper;
+import cn.itcast.calculate.pojo.CalculateBatchResponse;
+import cn.itcast.calculate.pojo.CalculateRequest;
+import cn.itcast.calculate.pojo.CalculateResponse;
+import cn.itcast.calculate.rule.PricingRuleEngine;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量算费测试类（Mapper用Mockito模拟，定价规则使用classpath中的pricing-rules.json）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class CalculateBatchServiceTest {
+
+    private RateMapper rateMapper;
+    private DiscountMapper discountMapper;
+    private NcdMapper ncdMapper;
+
+    private CalculateBatchService batchService;
+
+    @Before
+    public void setUp() {
+        rateMapper = mock(RateMapper.class);
+        discountMapper = mock(DiscountMapper.class);
+        ncdMapper = mock(NcdMapper.class);
+        when(rateMapper.queryRateBatch(anyCollection())).thenReturn(Collections.singletonList(rate("GL8", "0.014320")));
+        when(discountMapper.queryDiscountBatch(anyCollection())).thenReturn(Collections.singletonList(discount("WECHAT")));
+        when(ncdMapper.queryNcdBatch(anyCollection())).thenReturn(Collections.singletonList(ncd(0)));
+
+        PricingRuleEngine pricingRuleEngine = new PricingRuleEngine();
+        ReflectionTestUtils.setField(pricingRuleEngine, "location", "classpath:pricing-rules.json");
+        ReflectionTestUtils.setField(pricingRuleEngine, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(pricingRuleEngine, "eventPublisher", mock(ApplicationEventPublisher.class));
+        pricingRuleEngine.init();
+
+        batchService = new CalculateBatchService();
+        ReflectionTestUtils.setField(batchService, "rateMapper", rateMapper);
+        ReflectionTestUtils.setField(batchService, "discountMapper", discountMapper);
+        ReflectionTestUtils.setField(batchService, "ncdMapper", ncdMapper);
+        ReflectionTestUtils.setField(batchService, "pricingRuleEngine", pricingRuleEngine);
+        ReflectionTestUtils.setField(batchService, "maxBatchSize", 10);
+    }
+
+    /**
+     * 重复的组合主键只查询一次，每张表一条IN查询，结果按请求顺序返回
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeduplicatesKeysAndKeepsRequestOrder() {
+        List<CalculateRequest> requests = Arrays.asList(
+                request("GL8", "WECHAT", 0, "100000"),
+                request("CRV", "WECHAT", 0, "100000"),
+                request("GL8", "WECHAT", 0, "200000"),
+                request("GL8", "AGENT", 2, "100000"),
+                request("GL8", "WECHAT", 0, null));
+
+        CalculateBatchResponse response = batchService.calculateBatch(requests);
+
+        assertTrue(response.getSuccess());
+        assertEquals(Integer.valueOf(5), response.getTotal());
+        assertEquals(Integer.valueOf(3), response.getSuccessCount());
+
+        ArgumentCaptor<Collection<Rate>> rateKeys = ArgumentCaptor.forClass(Collection.class);
+        verify(rateMapper, times(1)).queryRateBatch(rateKeys.capture());
+        assertEquals(2, rateKeys.getValue().size());
+        ArgumentCaptor<Collection<Discount>> discountKeys = ArgumentCaptor.forClass(Collection.class);
+        verify(discountMapper, times(1)).queryDiscountBatch(discountKeys.capture());
+        assertEquals(2, discountKeys.getValue().size());
+        ArgumentCaptor<Collection<Integer>> claimCounts = ArgumentCaptor.forClass(Collection.class);
+        verify(ncdMapper, times(1)).queryNcdBatch(claimCounts.capture());
+        assertEquals(Arrays.asList(0, 2), new ArrayList<>(claimCounts.getValue()));
+
+        List<CalculateResponse> results = response.getResults();
+        assertEquals(5, results.size());
+        // 100000 × 0.014320 × 0.7225 × 1.0000
+        assertPremium("1034.62", results.get(0));
+        // 缺失费率：单笔失败
+        assertFalse(results.get(1).getSuccess());
+        assertNull(results.get(1).getPremium());
+        assertPremium("2069.24", results.get(2));
+        // 缺失的折扣和NCD按默认值1处理
+        assertPremium("1432.00", results.get(3));
+        assertEquals(0, BigDecimal.ONE.compareTo(results.get(3).getDiscount()));
+        assertEquals(0, BigDecimal.ONE.compareTo(results.get(3).getNcdRate()));
+        // 未传保额：单笔失败
+        assertFalse(results.get(4).getSuccess());
+        assertEquals("计算失败：保额不能为空", results.get(4).getMessage());
+    }
+
+    /**
+     * 超过单批最大笔数直接拒绝，不查询数据库
+     */
+    @Test
+    public void testRejectsOversizeBatch() {
+        List<CalculateRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            requests.add(request("GL8", "WECHAT", 0, "100000"));
+        }
+
+        CalculateBatchResponse response = batchService.calculateBatch(requests);
+
+        assertFalse(response.getSuccess());
+        assertEquals(Integer.valueOf(11), response.getTotal());
+        verify(rateMapper, never()).queryRateBatch(any());
+        verify(discountMapper, never()).queryDiscountBatch(any());
+        verify(ncdMapper, never()).queryNcdBatch(any());
+    }
+
+    @Test
+    public void testRejectsEmptyBatch() {
+        assertFalse(batchService.calculateBatch(Collections.emptyList()).getSuccess());
+        assertFalse(batchService.calculateBatch(null).getSuccess());
+    }
+
+    private static void assertPremium(String expected, CalculateResponse response) {
+        assertTrue(response.getMessage(), response.getSuccess());
+        assertEquals(0, new BigDecimal(expected).compareTo(response.getPremium()));
+    }
+
+    private static CalculateRequest request(String carModel, String channel, int claimCount, String amount) {
+        CalculateRequest request = new CalculateRequest();
+        request.setKindCode("050200");
+        request.setCarModel(carModel);
+        request.setAreaCode("3201");
+        request.setChannel(channel);
+        request.setClaimCount(claimCount);
+        request.setAmount(amount == null ? null : new BigDecimal(amount));
+        return request;
+    }
+
+    private static Rate rate(String carModel, String value) {
+        Rate rate = new Rate();
+        rate.setKindCode("050200");
+        rate.setCarModel(carModel);
+        rate.setAreaCode("3201");
+        rate.setRate(new BigDecimal(value));
+        return rate;
+    }
+
+    private static Discount discount(String channel) {
+        Discount discount = new Discount();
+        discount.setChannel(channel);
+        discount.setAreaCode("3201");
+        discount.setDiscount(new BigDecimal("0.7225"));
+        return discount;
+    }
+
+    private static Ncd ncd(int claimCount) {
+        Ncd ncd = new Ncd();
+        ncd.setClaimCount(claimCount);
+        ncd.setNcdRate(new BigDecimal("1.0000"));
+        return ncd;
+    }
+}
@@ -0,0 +1,63 @@
+package cn.itcast.calculate.snapshot;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import cn.itcast.calculate.entity.Rate;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 费率快照测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class FactorSnapshotTest {
+
+    @Test
+    public void testLookupByCompositeKey() {
+        Rate rate = new Rate();
+        rate.setKindCode("050200");
+        rate.setCarModel("GL8");
+        rate.setAreaCode("3201");
+        rate.setRate(new BigDecimal("0.014320"));
+
+        Discount discount = new Discount();
+        discount.setChannel("WECHAT");
+        discount.setAreaCode("3201");
+        discount.setDiscount(new BigDecimal("0.7225"));
+
+        Ncd ncd = new Ncd();
+        ncd.setClaimCount(0);
+        ncd.setNcdRate(new BigDecimal("0.8500"));
+
+        FactorSnapshot snapshot = FactorSnapshot.build(
+                Collections.singletonList(rate),
+                Collections.singletonList(discount),
+                Collections.singletonList(ncd),
+                1L);
+
+        assertFalse(snapshot.isEmpty());
+        assertEquals(new BigDecimal("0.014320"), snapshot.getRate("050200", "GL8", "3201"));
+        assertEquals(new BigDecimal("0.7225"), snapshot.getDiscount("WECHAT", "3201"));
+        assertEquals(new BigDecimal("0.8500"), snapshot.getNcdRate(0));
+
+        // 组合主键任一字段不同都查不到
+        assertNull(snapshot.getRate("050200", "GL8", "3202"));
+        assertNull(snapshot.getDiscount("APP", "3201"));
+        assertNull(snapshot.getNcdRate(1));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        assertTrue(FactorSnapshot.EMPTY.isEmpty());
+        assertNull(FactorSnapshot.EMPTY.getRate("050200", "GL8", "3201"));
+    }
+}
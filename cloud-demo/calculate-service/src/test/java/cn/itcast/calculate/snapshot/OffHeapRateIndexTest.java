@@ -0,0 +1,67 @@
+package cn.itcast.calculate.snapshot;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 堆外费率索引测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class OffHeapRateIndexTest {
+
+    @Test
+    public void testLookupAcrossGrowth() {
+        // 预计行数远小于实际行数，构建过程中多次扩容
+        OffHeapRateIndex.Builder builder = new OffHeapRateIndex.Builder(1);
+        for (int car = 0; car < 200; car++) {
+            for (int area = 0; area < 50; area++) {
+                builder.put("050200", "M" + car, "A" + area, rate(car, area));
+            }
+        }
+        OffHeapRateIndex index = builder.build();
+
+        assertEquals(10000, index.size());
+        assertEquals(100, index.getValueCount());
+        assertTrue(index.getOffHeapBytes() >= 10000 / 0.7 * OffHeapRateIndex.SLOT_BYTES);
+        for (int car = 0; car < 200; car++) {
+            for (int area = 0; area < 50; area++) {
+                assertEquals(rate(car, area), index.get("050200", "M" + car, "A" + area));
+            }
+        }
+
+        assertNull(index.get("050200", "M0", "A50"));
+        assertNull(index.get("050201", "M0", "A0"));
+        assertNull(index.get(null, "M0", "A0"));
+    }
+
+    @Test
+    public void testDuplicateKeyKeepsLastAndValuesAreShared() {
+        BigDecimal first = new BigDecimal("0.014320");
+        BigDecimal second = new BigDecimal("0.015000");
+        OffHeapRateIndex index = new OffHeapRateIndex.Builder(4)
+                .put("050200", "GL8", "3201", first)
+                .put("050200", "GL8", "3201", second)
+                .put("050200", "GL8", "3101", new BigDecimal("0.015000"))
+                .put("050200", "CAMRY", "3201", null)
+                .build();
+
+        assertEquals(2, index.size());
+        assertSame(second, index.get("050200", "GL8", "3201"));
+        // 相同取值只保存一份
+        assertSame(second, index.get("050200", "GL8", "3101"));
+        assertNull(index.get("050200", "CAMRY", "3201"));
+        assertEquals(0, OffHeapRateIndex.EMPTY.size());
+    }
+
+    private static BigDecimal rate(int car, int area) {
+        return new BigDecimal("0.0" + (10000 + (car * 7 + area) % 100));
+    }
+}
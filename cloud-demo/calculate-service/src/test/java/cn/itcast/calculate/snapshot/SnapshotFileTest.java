@@ -0,0 +1,138 @@
+package cn.itcast.calculate.snapshot;
+
+import cn.itcast.calculate.entity.Discount;
+import cn.itcast.calculate.entity.Ncd;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 快照文件测试类（不依赖数据库）
+ *
+ * @author demo
+ * @date 2026-10-17
+ */
+public class SnapshotFileTest {
+
+    private Path directory;
+
+    @After
+    public void cleanUp() throws IOException {
+        if (directory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        OffHeapRateIndex.Builder builder = new OffHeapRateIndex.Builder(0);
+        for (int i = 0; i < 5000; i++) {
+            builder.put("050200", "CAR" + (i % 100), "AREA" + (i / 100), new BigDecimal("0.0" + (10000 + i % 37)));
+        }
+        builder.put("050210", "特斯拉", "3201", new BigDecimal("0.015350"));
+        FactorSnapshot snapshot = FactorSnapshot.build(builder.build(),
+                Collections.singletonList(discount("WECHAT", "3201", "0.7225")),
+                Collections.singletonList(ncd(2, "1.25")), 1L);
+
+        Path path = file();
+        SnapshotFile.write(snapshot, 123456789L, path);
+        SnapshotFile file = SnapshotFile.read(path, 7L);
+        FactorSnapshot restored = file.getSnapshot();
+
+        assertEquals(123456789L, file.getDataVersion());
+        assertEquals(123456789L, restored.getDataVersion());
+        assertEquals(7L, restored.getVersion());
+        assertEquals(snapshot.getRateCount(), restored.getRateCount());
+        assertEquals(snapshot.getRateValueCount(), restored.getRateValueCount());
+        for (int i = 0; i < 5000; i++) {
+            String carModel = "CAR" + (i % 100);
+            String areaCode = "AREA" + (i / 100);
+            assertEquals(snapshot.getRate("050200", carModel, areaCode), restored.getRate("050200", carModel, areaCode));
+        }
+        assertEquals(new BigDecimal("0.015350"), restored.getRate("050210", "特斯拉", "3201"));
+        assertNull(restored.getRate("050210", "GL8", "3201"));
+        assertEquals(new BigDecimal("0.7225"), restored.getDiscount("WECHAT", "3201"));
+        assertEquals(new BigDecimal("1.25"), restored.getNcdRate(2));
+        assertNull(restored.getNcdRate(0));
+    }
+
+    @Test
+    public void testCorruptedFileRejected() throws IOException {
+        Path path = file();
+        FactorSnapshot snapshot = FactorSnapshot.build(
+                new OffHeapRateIndex.Builder(0).put("050200", "GL8", "3201", new BigDecimal("0.014320")).build(),
+                Collections.<Discount>emptyList(), Collections.<Ncd>emptyList(), 1L);
+        SnapshotFile.write(snapshot, 1L, path);
+
+        // 篡改哈希表最后一个字节
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        assertRejected(path, "校验和");
+
+        // 格式版本不一致
+        SnapshotFile.write(snapshot, 1L, path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(8);
+            file.writeInt(SnapshotFile.FORMAT_VERSION + 1);
+        }
+        assertRejected(path, "格式版本");
+
+        // 截断
+        SnapshotFile.write(snapshot, 1L, path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 12);
+        }
+        assertRejected(path, "长度");
+    }
+
+    private Path file() throws IOException {
+        directory = Files.createTempDirectory("snapshot-file-test");
+        return directory.resolve("rates.snap");
+    }
+
+    private static void assertRejected(Path path, String reason) {
+        try {
+            SnapshotFile.read(path, 1L);
+            fail("应拒绝：" + reason);
+        } catch (IOException e) {
+            if (!e.getMessage().contains(reason)) {
+                fail("拒绝原因应包含" + reason + "：" + e.getMessage());
+            }
+        }
+    }
+
+    private static Discount discount(String channel, String areaCode, String value) {
+        Discount discount = new Discount();
+        discount.setChannel(channel);
+        discount.setAreaCode(areaCode);
+        discount.setDiscount(new BigDecimal(value));
+        return discount;
+    }
+
+    private static Ncd ncd(int claimCount, String value) {
+        Ncd ncd = new Ncd();
+        ncd.setClaimCount(claimCount);
+        ncd.setNcdRate(new BigDecimal(value));
+        return ncd;
+    }
+}
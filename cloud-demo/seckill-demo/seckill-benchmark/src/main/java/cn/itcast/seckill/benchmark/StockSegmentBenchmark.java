@@ -0,0 +1,188 @@
+package cn.itcast.seckill.benchmark;
+
+import cn.itcast.seckill.stock.StockSegments;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存分段压测工具（不启动Spring，直接用Lettuce执行lua/stock.lua）
+ *
+ * 依次用1、2、4、8、16段预热同一个压测商品，多线程按用户起始段扣减（不足时换下一段），
+ * 统计每秒扣减成功次数和相对1段的倍数
+ *
+ * 运行（在cloud-demo目录下打包，独立模块，不进入seckill-service的jar）：
+ * <pre>
+ * mvn -pl seckill-demo/seckill-benchmark -am package -DskipTests
+ * java -jar seckill-demo/seckill-benchmark/target/seckill-benchmark.jar \
+ *     redis://127.0.0.1:7000 --cluster --threads 64 --seconds 10
+ * </pre>
+ *
+ * 段key不带hash tag，Redis集群下分布在不同节点上，扣减吞吐随段数增长；
+ * 单机Redis只有一个执行线程，分段后吞吐基本不变
+ */
+@Slf4j
+public final class StockSegmentBenchmark {
+
+    /**
+     * 压测商品ID（不与真实商品冲突）
+     */
+    private static final long PRODUCT_ID = 999999L;
+
+    /**
+     * 每轮预热库存（压测期间不会扣完）
+     */
+    private static final long STOCK = 1_000_000_000L;
+
+    private static final int[] SEGMENTS = {1, 2, 4, 8, 16};
+
+    private StockSegmentBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("用法：StockSegmentBenchmark <redisUri> [--cluster] [--threads 64] [--seconds 10]");
+            System.exit(2);
+        }
+        String uri = args[0];
+        boolean cluster = false;
+        int threads = 64;
+        int seconds = 10;
+        for (int i = 1; i < args.length; i++) {
+            if ("--cluster".equals(args[i])) {
+                cluster = true;
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--seconds".equals(args[i]) && i + 1 < args.length) {
+                seconds = Integer.parseInt(args[++i]);
+            }
+        }
+        String script = readScript();
+
+        AbstractRedisClient client = cluster ? RedisClusterClient.create(uri) : RedisClient.create(uri);
+        List<StatefulConnection<String, String>> connections = new ArrayList<>();
+        try {
+            List<RedisClusterCommands<String, String>> commands = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // 每个线程一个连接，避免压测瓶颈落在单个连接上
+                if (cluster) {
+                    StatefulRedisClusterConnection<String, String> connection = ((RedisClusterClient) client).connect();
+                    connections.add(connection);
+                    commands.add(connection.sync());
+                } else {
+                    StatefulRedisConnection<String, String> connection = ((RedisClient) client).connect();
+                    connections.add(connection);
+                    commands.add(connection.sync());
+                }
+            }
+
+            log.info("库存分段压测：{}，线程{}，每轮{}秒", cluster ? "集群" : "单机", threads, seconds);
+            double baseline = 0;
+            for (int count : SEGMENTS) {
+                StockSegments segments = new StockSegments(count);
+                double perSecond = run(segments, commands, script, seconds);
+                if (count == 1) {
+                    baseline = perSecond;
+                }
+                log.info("分段{}：扣减成功{}次/秒，相对1段：{}倍",
+                        count, Math.round(perSecond), String.format("%.2f", perSecond / baseline));
+            }
+        } finally {
+            for (StatefulConnection<String, String> connection : connections) {
+                connection.close();
+            }
+            client.shutdown();
+        }
+    }
+
+    /**
+     * 预热、压测一轮，返回每秒扣减成功次数
+     */
+    private static double run(StockSegments segments, List<RedisClusterCommands<String, String>> commands,
+                              String script, int seconds) throws InterruptedException {
+        RedisClusterCommands<String, String> admin = commands.get(0);
+        long[] stocks = segments.split(STOCK);
+        for (int segment = 0; segment < stocks.length; segment++) {
+            admin.set(segments.key(PRODUCT_ID, segment), String.valueOf(stocks[segment]));
+        }
+
+        LongAdder success = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(commands.size());
+        for (RedisClusterCommands<String, String> redis : commands) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        if (deduct(segments, redis, script, ThreadLocalRandom.current().nextLong(1, 1_000_000_000L))) {
+                            success.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "segment-benchmark");
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (int segment = 0; segment < stocks.length; segment++) {
+            admin.del(segments.key(PRODUCT_ID, segment));
+        }
+        return success.sum() / elapsed;
+    }
+
+    /**
+     * 与SeckillService相同的扣减顺序：从用户的起始段开始，不足时换下一段
+     */
+    private static boolean deduct(StockSegments segments, RedisClusterCommands<String, String> redis,
+                                  String script, long userId) {
+        int home = segments.home(userId);
+        for (int i = 0; i < segments.getCount(); i++) {
+            String key = segments.key(PRODUCT_ID, (home + i) % segments.getCount());
+            Long result = redis.eval(script, ScriptOutputType.INTEGER, new String[]{key}, "1");
+            if (result != null && result >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String readScript() throws IOException {
+        try (InputStream in = StockSegmentBenchmark.class.getClassLoader().getResourceAsStream("lua/stock.lua")) {
+            if (in == null) {
+                throw new IOException("找不到lua/stock.lua");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
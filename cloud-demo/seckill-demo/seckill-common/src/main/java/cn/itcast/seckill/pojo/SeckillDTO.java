@@ -21,4 +21,9 @@ public class SeckillDTO {
      * 购买数量（默认1）
      */
     private Integer quantity = 1;
+
+    /**
+     * 扣减的Redis库存key（秒杀服务扣减成功后写入，消费者丢弃订单时归还库存用）
+     */
+    private String stockKey;
 }
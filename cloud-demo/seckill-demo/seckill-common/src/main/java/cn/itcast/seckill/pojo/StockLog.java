@@ -0,0 +1,44 @@
+package cn.itcast.seckill.pojo;
+
+import lombok.Data;
+
+/**
+ * 库存扣减日志实体类
+ */
+@Data
+public class StockLog {
+    /**
+     * 订单号
+     */
+    private String orderNo;
+
+    /**
+     * 商品ID
+     */
+    private Long productId;
+
+    /**
+     * 商品名称
+     */
+    private String productName;
+
+    /**
+     * 扣减数量
+     */
+    private Integer quantity;
+
+    /**
+     * 扣减前库存
+     */
+    private Integer beforeStock;
+
+    /**
+     * 扣减后库存
+     */
+    private Integer afterStock;
+
+    /**
+     * 类型：1=扣减
+     */
+    private Integer type;
+}
@@ -0,0 +1,50 @@
+package cn.itcast.seckill.pojo;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 库存结算记录实体类（每次结算每个商品一条，记录汇总扣减前后的库存）
+ */
+@Data
+public class StockSettle {
+    /**
+     * 主键ID
+     */
+    private Long id;
+
+    /**
+     * 结算批次号（与tb_stock_log.settle_no对应）
+     */
+    private String settleNo;
+
+    /**
+     * 商品ID
+     */
+    private Long productId;
+
+    /**
+     * 本次结算的订单数
+     */
+    private Integer orderCount;
+
+    /**
+     * 本次结算的扣减数量
+     */
+    private Integer quantity;
+
+    /**
+     * 结算前库存
+     */
+    private Integer beforeStock;
+
+    /**
+     * 结算后库存
+     */
+    private Integer afterStock;
+
+    /**
+     * 结算时间
+     */
+    private LocalDateTime createTime;
+}
@@ -3,12 +3,14 @@ package cn.itcast.seckill.consumer;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 秒杀消费者启动类
  */
 @SpringBootApplication
 @MapperScan("cn.itcast.seckill.consumer.mapper")
+@EnableScheduling
 public class ConsumerApplication {
     public static void main(String[] args) {
         SpringApplication.run(ConsumerApplication.class, args);
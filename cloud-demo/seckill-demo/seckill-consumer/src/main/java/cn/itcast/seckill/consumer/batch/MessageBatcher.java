@@ -0,0 +1,149 @@
+package cn.itcast.seckill.consumer.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 消息攒批器（单写线程）
+ *
+ * 消费线程提交消息后等待返回的Future；写线程取到第一条消息后最多再等一个时间窗口，
+ * 攒够batchSize条或窗口到期就整批交给writer处理，处理完成时统一完成这一批的Future。
+ * 整批失败时逐条重新交给writer（每条一次调用），一条坏消息只让它自己的Future失败，不连累同批的其他消息。
+ * 消费线程在所在批次（或逐条重试）提交成功后才返回，消息不会在写库之前被确认
+ *
+ * 一批最多的消息数还受消费线程数限制（每个消费线程同时只有一条消息在等待）
+ */
+public class MessageBatcher<T> implements AutoCloseable {
+
+    private final int batchSize;
+    private final long windowNanos;
+    private final Consumer<List<T>> writer;
+    private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    public MessageBatcher(String name, int batchSize, long windowMillis, Consumer<List<T>> writer) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("批量大小必须大于0：" + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(windowMillis, 0));
+        this.writer = writer;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 提交一条消息
+     *
+     * @return 所在批次写入完成时完成；写入失败时以writer抛出的异常完成
+     */
+    public CompletableFuture<Void> submit(T message) {
+        Pending<T> pending = new Pending<>(message);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("攒批器已关闭"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * 停止接收新消息，处理完队列中剩余的消息后退出
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        thread.join();
+        // 关闭过程中刚提交的消息
+        Pending<T> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("攒批器已关闭"));
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Pending<T> first = poll(TimeUnit.MILLISECONDS.toNanos(100));
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            // 时间窗口内继续攒批
+            long deadline = System.nanoTime() + windowNanos;
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long wait = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || wait <= 0) {
+                    break;
+                }
+                Pending<T> next = poll(wait);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private Pending<T> poll(long nanos) {
+        try {
+            return queue.poll(nanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // 只在close时退出，中断忽略
+            return null;
+        }
+    }
+
+    private void flush(List<Pending<T>> batch) {
+        List<T> messages = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            writer.accept(messages);
+            for (Pending<T> pending : batch) {
+                pending.future.complete(null);
+            }
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // 整批失败：逐条重试，找出失败的消息
+            for (Pending<T> pending : batch) {
+                write(pending);
+            }
+        }
+    }
+
+    private void write(Pending<T> pending) {
+        try {
+            writer.accept(Collections.singletonList(pending.message));
+            pending.future.complete(null);
+        } catch (Throwable e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Pending<T> {
+
+        private final T message;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(T message) {
+            this.message = message;
+        }
+    }
+}
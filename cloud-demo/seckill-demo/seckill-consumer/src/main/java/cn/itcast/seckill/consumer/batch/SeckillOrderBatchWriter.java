@@ -0,0 +1,179 @@
+package cn.itcast.seckill.consumer.batch;
+
+import cn.itcast.seckill.consumer.compensate.RedisStockCompensator;
+import cn.itcast.seckill.consumer.mapper.SeckillOrderMapper;
+import cn.itcast.seckill.consumer.mapper.SeckillProductMapper;
+import cn.itcast.seckill.consumer.mapper.StockLogMapper;
+import cn.itcast.seckill.consumer.mapper.UserSeckillMapper;
+import cn.itcast.seckill.consumer.settle.StockLedger;
+import cn.itcast.seckill.consumer.settle.StockSettlement;
+import cn.itcast.seckill.pojo.SeckillDTO;
+import cn.itcast.seckill.pojo.SeckillOrder;
+import cn.itcast.seckill.pojo.SeckillProduct;
+import cn.itcast.seckill.pojo.StockLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 秒杀订单批量写入（一批消息一个事务）
+ *
+ * 一批只有：1条商品查询 + 每个商品1条用户秒杀记录查询 + 3条多行INSERT（订单、库存日志、用户秒杀记录）。
+ * 库存在库存台账上预占，不UPDATE tb_seckill_product；库存日志作为扣减流水，
+ * 由StockSettlement定期汇总结算到商品库存
+ *
+ * 幂等：已有用户秒杀记录的消息（重复投递）和同一批中重复的消息直接跳过，
+ * 不会因为uk_user_product唯一索引冲突让整批失败。
+ * 丢弃的订单（商品不存在、MySQL库存不足）在事务提交后归还Redis库存、删除用户标记
+ *
+ * 逐条消费时也走这里（一批只有一条消息）
+ */
+@Slf4j
+@Component
+public class SeckillOrderBatchWriter {
+
+    @Autowired
+    private SeckillOrderMapper orderMapper;
+
+    @Autowired
+    private SeckillProductMapper productMapper;
+
+    @Autowired
+    private StockSettlement stockSettlement;
+
+    @Autowired
+    private StockLogMapper stockLogMapper;
+
+    @Autowired
+    private UserSeckillMapper userSeckillMapper;
+
+    @Autowired
+    private RedisStockCompensator redisStockCompensator;
+
+    /**
+     * 写入一批秒杀消息
+     *
+     * 同一商品按消息到达顺序预占库存，超出可用库存的订单记为失败；
+     * 任何SQL失败整批回滚（预占的库存归还），由攒批器逐条重试或消息重试
+     *
+     * @return 创建的订单数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int write(List<SeckillDTO> messages) {
+        // 第1步：按商品分组，一次查询本批涉及的商品（不锁行）
+        Map<Long, List<SeckillDTO>> byProduct = new LinkedHashMap<>();
+        for (SeckillDTO dto : messages) {
+            byProduct.computeIfAbsent(dto.getProductId(), id -> new ArrayList<>()).add(dto);
+        }
+        Map<Long, SeckillProduct> products = new LinkedHashMap<>();
+        for (SeckillProduct product : productMapper.selectByIds(new ArrayList<>(byProduct.keySet()))) {
+            products.put(product.getId(), product);
+        }
+
+        // 事务结束后确认或归还预占的库存；提交后归还丢弃订单的Redis库存
+        List<SeckillOrder> orders = new ArrayList<>(messages.size());
+        List<SeckillDTO> dropped = new ArrayList<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                for (SeckillOrder order : orders) {
+                    if (status == STATUS_COMMITTED) {
+                        stockSettlement.confirm(order.getProductId());
+                    } else {
+                        stockSettlement.release(order.getProductId(), order.getQuantity());
+                    }
+                }
+                // 回滚时消息会重试，不归还
+                if (status == STATUS_COMMITTED) {
+                    dropped.forEach(redisStockCompensator::compensate);
+                }
+            }
+        });
+
+        // 第2步：按到达顺序预占库存，生成订单和库存日志（跳过已有秒杀记录的用户）
+        List<StockLog> stockLogs = new ArrayList<>(messages.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<Long, List<SeckillDTO>> entry : byProduct.entrySet()) {
+            Long productId = entry.getKey();
+            SeckillProduct product = products.get(productId);
+            if (product == null) {
+                log.error("商品不存在：{}，丢弃{}条消息", productId, entry.getValue().size());
+                dropped.addAll(entry.getValue());
+                continue;
+            }
+            Set<Long> buyers = new HashSet<>();
+            for (SeckillDTO dto : entry.getValue()) {
+                buyers.add(dto.getUserId());
+            }
+            buyers = new HashSet<>(userSeckillMapper.selectUserIds(productId, buyers));
+            for (SeckillDTO dto : entry.getValue()) {
+                if (!buyers.add(dto.getUserId())) {
+                    log.warn("用户{}已有商品{}的秒杀记录，跳过重复消息", dto.getUserId(), productId);
+                    continue;
+                }
+                long before = stockSettlement.reserve(productId, dto.getQuantity());
+                if (before == StockLedger.INSUFFICIENT) {
+                    log.error("MySQL库存不足，扣减失败：商品ID={}，用户ID={}", productId, dto.getUserId());
+                    dropped.add(dto);
+                    continue;
+                }
+                SeckillOrder order = newOrder(dto, product, now);
+                orders.add(order);
+                stockLogs.add(newStockLog(order, (int) before));
+            }
+        }
+
+        // 第3步：订单、库存日志、用户秒杀记录各一条多行INSERT
+        if (!orders.isEmpty()) {
+            orderMapper.insertBatch(orders);
+            stockLogMapper.insertBatch(stockLogs);
+            userSeckillMapper.insertBatch(orders);
+        }
+        log.info("批量写入完成：消息{}条，订单{}单，丢弃{}条，商品{}个",
+                messages.size(), orders.size(), dropped.size(), byProduct.size());
+        return orders.size();
+    }
+
+    private SeckillOrder newOrder(SeckillDTO dto, SeckillProduct product, LocalDateTime now) {
+        SeckillOrder order = new SeckillOrder();
+        order.setOrderNo(generateOrderNo(dto.getUserId(), dto.getProductId()));
+        order.setUserId(dto.getUserId());
+        order.setProductId(dto.getProductId());
+        order.setProductName(product.getProductName());
+        order.setPrice(product.getPrice());
+        order.setQuantity(dto.getQuantity());
+        order.setStatus(0);  // 0=待支付
+        order.setCreateTime(now);
+        return order;
+    }
+
+    private StockLog newStockLog(SeckillOrder order, int beforeStock) {
+        StockLog stockLog = new StockLog();
+        stockLog.setOrderNo(order.getOrderNo());
+        stockLog.setProductId(order.getProductId());
+        stockLog.setProductName(order.getProductName());
+        stockLog.setQuantity(order.getQuantity());
+        stockLog.setBeforeStock(beforeStock);
+        stockLog.setAfterStock(beforeStock - order.getQuantity());
+        stockLog.setType(1);  // 1=扣减
+        return stockLog;
+    }
+
+    /**
+     * 生成订单号
+     */
+    private String generateOrderNo(Long userId, Long productId) {
+        return "SK" + System.currentTimeMillis() + userId + productId;
+    }
+}
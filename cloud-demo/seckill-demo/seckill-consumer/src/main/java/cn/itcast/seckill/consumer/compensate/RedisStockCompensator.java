@@ -0,0 +1,50 @@
+package cn.itcast.seckill.consumer.compensate;
+
+import cn.itcast.seckill.pojo.SeckillDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis库存补偿：消费者丢弃订单（MySQL库存不足、商品不存在、写库失败）时，
+ * 把秒杀服务扣减的Redis库存加回去，并删除用户秒杀标记，用户可以再次秒杀
+ *
+ * key格式与秒杀服务一致（StockSegments）：
+ * - 库存：消息中的stockKey（旧消息没有时用不分段的seckill:stock:商品ID）
+ * - 用户标记：seckill:user:用户ID:商品ID
+ * - 闸门批次号：seckill:gate:epoch:商品ID
+ *
+ * 秒杀服务的本地闸门只降不升，扣完最后一件已关闭的闸门看不到归还的库存；
+ * 归还后递增批次号，闸门在下次核对（SeckillService.recheckGate）时按每段上限未知重新打开
+ */
+@Slf4j
+@Component
+public class RedisStockCompensator {
+
+    /**
+     * 闸门批次号key前缀（与秒杀服务一致）
+     */
+    private static final String GATE_EPOCH_KEY = "seckill:gate:epoch:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 归还一条被丢弃的秒杀消息（补偿失败只记日志，不影响消费结果）
+     */
+    public void compensate(SeckillDTO dto) {
+        String stockKey = dto.getStockKey() != null ? dto.getStockKey() : "seckill:stock:" + dto.getProductId();
+        String userKey = "seckill:user:" + dto.getUserId() + ":" + dto.getProductId();
+        try {
+            Long stock = stringRedisTemplate.opsForValue().increment(stockKey, dto.getQuantity());
+            Long epoch = stringRedisTemplate.opsForValue().increment(GATE_EPOCH_KEY + dto.getProductId());
+            stringRedisTemplate.delete(userKey);
+            log.info("已归还Redis库存：{}，数量：{}，归还后：{}，闸门批次：{}，用户标记已删除：{}",
+                    stockKey, dto.getQuantity(), stock, epoch, userKey);
+        } catch (Exception e) {
+            log.error("归还Redis库存失败：{}，数量：{}，用户：{}，原因：{}",
+                    stockKey, dto.getQuantity(), dto.getUserId(), e.getMessage());
+        }
+    }
+}
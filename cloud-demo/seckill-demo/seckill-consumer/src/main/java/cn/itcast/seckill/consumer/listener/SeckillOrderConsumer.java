@@ -1,22 +1,30 @@
 package cn.itcast.seckill.consumer.listener;
 
-import cn.itcast.seckill.consumer.mapper.SeckillOrderMapper;
-import cn.itcast.seckill.consumer.mapper.SeckillProductMapper;
-import cn.itcast.seckill.consumer.mapper.StockLogMapper;
-import cn.itcast.seckill.consumer.mapper.UserSeckillMapper;
+import cn.itcast.seckill.consumer.batch.MessageBatcher;
+import cn.itcast.seckill.consumer.batch.SeckillOrderBatchWriter;
+import cn.itcast.seckill.consumer.compensate.RedisStockCompensator;
 import cn.itcast.seckill.pojo.SeckillDTO;
-import cn.itcast.seckill.pojo.SeckillOrder;
-import cn.itcast.seckill.pojo.SeckillProduct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * 秒杀订单消费者 - 异步创建订单、扣减MySQL库存
+ * 秒杀订单消费者 - 异步创建订单、预占MySQL库存（由StockSettlement汇总结算）
+ *
+ * 两种模式（seckill.consumer.mode）：
+ * - single：逐条消费，每条消息一个事务
+ * - batch：消费线程把消息交给攒批器，等所在批次在一个事务里写入后再返回（SeckillOrderBatchWriter）
  */
 @Slf4j
 @Service
@@ -27,83 +35,121 @@ import java.time.LocalDateTime;
 public class SeckillOrderConsumer implements RocketMQListener<SeckillDTO> {
 
     @Autowired
-    private SeckillOrderMapper orderMapper;
+    private SeckillOrderBatchWriter batchWriter;
 
     @Autowired
-    private SeckillProductMapper productMapper;
+    private RedisStockCompensator redisStockCompensator;
 
-    @Autowired
-    private StockLogMapper stockLogMapper;
+    /**
+     * 消费模式：single（逐条）/ batch（攒批）
+     */
+    @Value("${seckill.consumer.mode:single}")
+    private String mode;
 
-    @Autowired
-    private UserSeckillMapper userSeckillMapper;
+    /**
+     * 每批最多消息数（不超过消费线程数才有意义）
+     */
+    @Value("${seckill.consumer.batch-size:64}")
+    private int batchSize;
+
+    /**
+     * 攒批时间窗口（毫秒）
+     */
+    @Value("${seckill.consumer.batch-window-ms:20}")
+    private long batchWindowMs;
+
+    private MessageBatcher<SeckillDTO> batcher;
+
+    /**
+     * 已消费消息数（用于统计消费速率）
+     */
+    private final LongAdder consumed = new LongAdder();
+
+    private long lastReportNanos = System.nanoTime();
+
+    @PostConstruct
+    public void init() {
+        if ("batch".equalsIgnoreCase(mode)) {
+            batcher = new MessageBatcher<>("seckill-order-batch", batchSize, batchWindowMs, batchWriter::write);
+            log.info("秒杀订单消费模式：批量，每批最多{}条，时间窗口{}ms", batchSize, batchWindowMs);
+        } else {
+            log.info("秒杀订单消费模式：逐条");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
 
     @Override
     public void onMessage(SeckillDTO dto) {
-        log.info("========== 秒杀订单消费 ==========");
-        log.info("收到秒杀消息：用户ID={}, 商品ID={}, 数量={}",
-                dto.getUserId(), dto.getProductId(), dto.getQuantity());
+        if (batcher != null) {
+            consumeBatched(dto);
+        } else {
+            consumeSingle(dto);
+        }
+        consumed.increment();
+    }
 
+    /**
+     * 批量模式：等待所在批次写入完成（整批失败时攒批器已逐条重试）；
+     * 仍然失败时抛出异常，消息稍后重新投递
+     */
+    private void consumeBatched(SeckillDTO dto) {
         try {
-            // 第1步：查询商品信息
-            SeckillProduct product = productMapper.selectById(dto.getProductId());
-            if (product == null) {
-                log.error("商品不存在：{}", dto.getProductId());
+            batcher.submit(dto).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待批量写入被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DuplicateKeyException) {
+                // 并发写入的同一用户记录已提交，这条消息视为已处理
+                log.warn("用户{}已有商品{}的秒杀记录，跳过重复消息", dto.getUserId(), dto.getProductId());
                 return;
             }
+            log.error("批量写入失败，消息稍后重试：用户ID={}, 商品ID={}，原因：{}",
+                    dto.getUserId(), dto.getProductId(), e.getCause().getMessage());
+            throw new IllegalStateException("批量写入失败", e.getCause());
+        }
+    }
 
-            // 第2步：扣减MySQL库存（乐观锁）
-            int rows = productMapper.reduceStock(dto.getProductId(), dto.getQuantity());
-            if (rows == 0) {
-                log.error("MySQL库存不足，扣减失败：商品ID={}", dto.getProductId());
-                // TODO: 回滚Redis库存
-                return;
-            }
+    /**
+     * 每10秒输出一次消费速率（单/秒），用于对比逐条与批量模式
+     */
+    @Scheduled(fixedRate = 10000)
+    public void reportRate() {
+        long now = System.nanoTime();
+        long count = consumed.sumThenReset();
+        double seconds = (now - lastReportNanos) / 1e9;
+        lastReportNanos = now;
+        if (count > 0) {
+            log.info("订单消费速率：{}单/秒（模式：{}，{}秒内{}单）",
+                    Math.round(count / seconds), batcher != null ? "batch" : "single", Math.round(seconds), count);
+        }
+    }
 
-            log.info("MySQL库存扣减成功：商品ID={}, 数量={}", dto.getProductId(), dto.getQuantity());
-
-            // 第3步：创建订单
-            SeckillOrder order = new SeckillOrder();
-            order.setOrderNo(generateOrderNo(dto.getUserId(), dto.getProductId()));
-            order.setUserId(dto.getUserId());
-            order.setProductId(dto.getProductId());
-            order.setProductName(product.getProductName());
-            order.setPrice(product.getPrice());
-            order.setQuantity(dto.getQuantity());
-            order.setStatus(0);  // 0=待支付
-            order.setCreateTime(LocalDateTime.now());
-
-            orderMapper.insert(order);
-            log.info("订单创建成功：订单号={}", order.getOrderNo());
-
-            // 第4步：记录库存扣减日志
-            stockLogMapper.insert(
-                    order.getOrderNo(),
-                    dto.getProductId(),
-                    product.getProductName(),
-                    dto.getQuantity(),
-                    product.getStock() + dto.getQuantity(),  // 扣减前库存
-                    product.getStock(),                       // 扣减后库存
-                    1                                         // 1=扣减
-            );
-
-            // 第5步：记录用户秒杀记录
-            userSeckillMapper.insert(dto.getUserId(), dto.getProductId(), order.getOrderNo());
-
-            log.info("秒杀订单处理完成：订单号={}", order.getOrderNo());
+    /**
+     * 逐条模式：每条消息一个事务
+     */
+    private void consumeSingle(SeckillDTO dto) {
+        log.info("========== 秒杀订单消费 ==========");
+        log.info("收到秒杀消息：用户ID={}, 商品ID={}, 数量={}",
+                dto.getUserId(), dto.getProductId(), dto.getQuantity());
 
+        try {
+            batchWriter.write(Collections.singletonList(dto));
+        } catch (DuplicateKeyException e) {
+            // 并发写入的同一用户记录已提交，这条消息视为已处理
+            log.warn("用户{}已有商品{}的秒杀记录，跳过重复消息", dto.getUserId(), dto.getProductId());
         } catch (Exception e) {
+            // 逐条模式不重试：订单丢弃，归还Redis库存和用户标记
             log.error("秒杀订单处理失败：{}", e.getMessage(), e);
-            // TODO: 回滚Redis库存
+            redisStockCompensator.compensate(dto);
         }
 
         log.info("==================================");
     }
-
-    /**
-     * 生成订单号
-     */
-    private String generateOrderNo(Long userId, Long productId) {
-        return "SK" + System.currentTimeMillis() + userId + productId;
-    }
 }
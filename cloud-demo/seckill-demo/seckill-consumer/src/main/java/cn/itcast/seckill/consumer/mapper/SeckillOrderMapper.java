@@ -3,6 +3,9 @@ package cn.itcast.seckill.consumer.mapper;
 import cn.itcast.seckill.pojo.SeckillOrder;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 秒杀订单Mapper
@@ -16,4 +19,15 @@ public interface SeckillOrderMapper {
     @Insert("INSERT INTO tb_seckill_order (order_no, user_id, product_id, product_name, price, quantity, status, create_time) " +
             "VALUES (#{orderNo}, #{userId}, #{productId}, #{productName}, #{price}, #{quantity}, #{status}, #{createTime})")
     int insert(SeckillOrder order);
+
+    /**
+     * 批量插入订单（一条多行INSERT）
+     */
+    @Insert({"<script>",
+            "INSERT INTO tb_seckill_order (order_no, user_id, product_id, product_name, price, quantity, status, create_time) VALUES ",
+            "<foreach collection='orders' item='o' separator=','>",
+            "(#{o.orderNo}, #{o.userId}, #{o.productId}, #{o.productName}, #{o.price}, #{o.quantity}, #{o.status}, #{o.createTime})",
+            "</foreach>",
+            "</script>"})
+    int insertBatch(@Param("orders") List<SeckillOrder> orders);
 }
@@ -5,6 +5,8 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 /**
  * 秒杀商品Mapper
  */
@@ -18,7 +20,23 @@ public interface SeckillProductMapper {
     SeckillProduct selectById(@Param("id") Long id);
 
     /**
-     * 扣减库存（乐观锁）
+     * 批量查询秒杀商品（只读，不锁行）
+     */
+    List<SeckillProduct> selectByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询可用库存：商品库存 - 未结算的库存日志数量（一条SQL，同一快照）
+     */
+    Long selectAvailable(@Param("id") Long id);
+
+    /**
+     * 查询并锁定库存（只在结算事务中使用）
+     */
+    @Select("SELECT stock FROM tb_seckill_product WHERE id = #{id} FOR UPDATE")
+    Integer selectStockForUpdate(@Param("id") Long id);
+
+    /**
+     * 结算：按汇总数量扣减库存（只由结算任务执行）
      */
-    int reduceStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
+    int settleStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
 }
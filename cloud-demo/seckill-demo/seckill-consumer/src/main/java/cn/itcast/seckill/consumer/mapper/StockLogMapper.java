@@ -1,9 +1,12 @@
 package cn.itcast.seckill.consumer.mapper;
 
+import cn.itcast.seckill.pojo.StockLog;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * 库存日志Mapper
  */
@@ -22,4 +25,15 @@ public interface StockLogMapper {
                @Param("beforeStock") Integer beforeStock,
                @Param("afterStock") Integer afterStock,
                @Param("type") Integer type);
+
+    /**
+     * 批量插入库存日志（一条多行INSERT）
+     */
+    @Insert({"<script>",
+            "INSERT INTO tb_stock_log (order_no, product_id, product_name, quantity, before_stock, after_stock, type) VALUES ",
+            "<foreach collection='logs' item='l' separator=','>",
+            "(#{l.orderNo}, #{l.productId}, #{l.productName}, #{l.quantity}, #{l.beforeStock}, #{l.afterStock}, #{l.type})",
+            "</foreach>",
+            "</script>"})
+    int insertBatch(@Param("logs") List<StockLog> logs);
 }
@@ -0,0 +1,38 @@
+package cn.itcast.seckill.consumer.mapper;
+
+import cn.itcast.seckill.pojo.StockSettle;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 库存结算Mapper
+ */
+@Mapper
+public interface StockSettleMapper {
+
+    /**
+     * 认领未结算的库存日志（写入结算批次号）
+     */
+    @Update("UPDATE tb_stock_log SET settle_no = #{settleNo} " +
+            "WHERE settle_no IS NULL AND type = 1 ORDER BY id LIMIT #{limit}")
+    int claim(@Param("settleNo") String settleNo, @Param("limit") int limit);
+
+    /**
+     * 按商品汇总本批次认领的库存日志
+     */
+    @Select("SELECT product_id, COUNT(*) AS order_count, SUM(quantity) AS quantity " +
+            "FROM tb_stock_log WHERE settle_no = #{settleNo} GROUP BY product_id ORDER BY product_id")
+    List<StockSettle> sumClaimed(@Param("settleNo") String settleNo);
+
+    /**
+     * 插入结算记录
+     */
+    @Insert("INSERT INTO tb_stock_settle (settle_no, product_id, order_count, quantity, before_stock, after_stock, create_time) " +
+            "VALUES (#{settleNo}, #{productId}, #{orderCount}, #{quantity}, #{beforeStock}, #{afterStock}, #{createTime})")
+    int insert(StockSettle settle);
+}
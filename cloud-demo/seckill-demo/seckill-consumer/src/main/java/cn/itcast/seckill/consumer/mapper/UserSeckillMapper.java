@@ -1,8 +1,13 @@
 package cn.itcast.seckill.consumer.mapper;
 
+import cn.itcast.seckill.pojo.SeckillOrder;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 用户秒杀记录Mapper
@@ -18,4 +23,24 @@ public interface UserSeckillMapper {
     int insert(@Param("userId") Long userId,
                @Param("productId") Long productId,
                @Param("orderNo") String orderNo);
+
+    /**
+     * 查询已有秒杀记录的用户（消息重复投递时跳过，不重复下单）
+     */
+    @Select({"<script>",
+            "SELECT user_id FROM tb_user_seckill WHERE product_id = #{productId} AND user_id IN ",
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<Long> selectUserIds(@Param("productId") Long productId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 按订单批量插入用户秒杀记录（一条多行INSERT）
+     */
+    @Insert({"<script>",
+            "INSERT INTO tb_user_seckill (user_id, product_id, order_no) VALUES ",
+            "<foreach collection='orders' item='o' separator=','>",
+            "(#{o.userId}, #{o.productId}, #{o.orderNo})",
+            "</foreach>",
+            "</script>"})
+    int insertBatch(@Param("orders") List<SeckillOrder> orders);
 }
@@ -0,0 +1,130 @@
+package cn.itcast.seckill.consumer.settle;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 库存台账（本实例内存中的MySQL可用库存）
+ *
+ * 可用库存 = tb_seckill_product.stock - 未结算的库存日志数量，首次使用时从MySQL加载。
+ * 消费订单时在台账上预占库存（不访问tb_seckill_product），
+ * 订单事务提交后确认、回滚后归还；真正的库存UPDATE由结算任务（StockSettlement）汇总执行
+ *
+ * 同一商品的预占/确认/归还在ConcurrentHashMap的compute中串行执行
+ *
+ * 每个商品有一个清除代数，invalidate时递增：加载在compute外执行，开始加载之后如果台账被清除过
+ * （期间其他线程加载、下单提交、结算清除），读到的可用库存可能不包含这些订单，这次加载作废重新加载
+ */
+public class StockLedger {
+
+    /**
+     * 库存不足
+     */
+    public static final long INSUFFICIENT = -1L;
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 每个商品的清除代数（只在entries的compute中递增）
+     */
+    private final ConcurrentMap<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 预占库存
+     *
+     * @param loader 台账中没有该商品时加载可用库存（在compute外执行，不持有锁访问数据库）
+     * @return 预占前的可用库存；库存不足返回INSUFFICIENT
+     */
+    public long reserve(Long productId, int quantity, LongSupplier loader) {
+        if (!entries.containsKey(productId)) {
+            long generation = generation(productId).get();
+            long loaded = loader.getAsLong();
+            // 加载期间被清除过：丢弃这次加载的结果
+            entries.compute(productId, (id, entry) ->
+                    entry != null || generation(id).get() != generation ? entry : new Entry(loaded));
+        }
+        long[] before = {INSUFFICIENT};
+        entries.compute(productId, (id, entry) -> {
+            if (entry == null) {
+                // 加载后刚好被清除（或加载作废），重新加载
+                return null;
+            }
+            if (entry.available >= quantity) {
+                before[0] = entry.available;
+                entry.available -= quantity;
+                entry.inflight++;
+            }
+            return entry;
+        });
+        if (before[0] == INSUFFICIENT && !entries.containsKey(productId)) {
+            return reserve(productId, quantity, loader);
+        }
+        return before[0];
+    }
+
+    /**
+     * 订单事务已提交：预占转为已扣减（等待结算）
+     */
+    public void confirm(Long productId) {
+        entries.computeIfPresent(productId, (id, entry) -> {
+            entry.inflight--;
+            return entry;
+        });
+    }
+
+    /**
+     * 订单事务已回滚：归还预占的库存
+     */
+    public void release(Long productId, int quantity) {
+        entries.computeIfPresent(productId, (id, entry) -> {
+            entry.available += quantity;
+            entry.inflight--;
+            return entry;
+        });
+    }
+
+    /**
+     * 结算后清除该商品（没有进行中的订单时），下次使用重新从MySQL加载，
+     * 让补货等直接修改MySQL库存的操作生效
+     */
+    public void invalidate(Long productId) {
+        entries.computeIfPresent(productId, (id, entry) -> {
+            if (entry.inflight > 0) {
+                return entry;
+            }
+            generation(id).incrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * 当前可用库存（台账中没有时返回null）
+     */
+    public Long available(Long productId) {
+        Long[] available = {null};
+        entries.computeIfPresent(productId, (id, entry) -> {
+            available[0] = entry.available;
+            return entry;
+        });
+        return available[0];
+    }
+
+    private AtomicLong generation(Long productId) {
+        return generations.computeIfAbsent(productId, id -> new AtomicLong());
+    }
+
+    /**
+     * 只在compute中读写
+     */
+    private static final class Entry {
+
+        private long available;
+        private int inflight;
+
+        private Entry(long available) {
+            this.available = available;
+        }
+    }
+}
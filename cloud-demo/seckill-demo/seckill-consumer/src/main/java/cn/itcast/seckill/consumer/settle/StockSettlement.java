@@ -0,0 +1,135 @@
+package cn.itcast.seckill.consumer.settle;
+
+import cn.itcast.seckill.consumer.mapper.SeckillProductMapper;
+import cn.itcast.seckill.consumer.mapper.StockSettleMapper;
+import cn.itcast.seckill.pojo.StockSettle;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 库存结算（MySQL库存的唯一写入方）
+ *
+ * 消费订单时不再逐单UPDATE tb_seckill_product（热点行的乐观锁冲突和行锁等待），而是：
+ * 1. 在本实例的库存台账（StockLedger）上预占库存，订单和库存日志在订单事务中写入，库存日志即扣减流水
+ * 2. 结算任务定期认领未结算的库存日志（写入结算批次号），按商品汇总后每个商品执行一条UPDATE，
+ *    并写一条结算记录（tb_stock_settle：订单数、数量、结算前后库存），与认领在同一个事务中
+ *
+ * 库存日志在订单事务中持久化，进程重启后未结算的日志在下一次结算时处理，不会丢失扣减
+ */
+@Slf4j
+@Component
+public class StockSettlement {
+
+    @Autowired
+    private SeckillProductMapper productMapper;
+
+    @Autowired
+    private StockSettleMapper settleMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 每次结算最多认领的库存日志条数（积压时连续结算多次）
+     */
+    @Value("${seckill.settle.max-rows:10000}")
+    private int maxRows;
+
+    private final StockLedger ledger = new StockLedger();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // 读已提交：认领未结算日志时不加间隙锁，不阻塞订单事务插入新日志
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * 预占库存（在订单事务中调用，事务提交后confirm，回滚后release）
+     *
+     * @return 预占前的可用库存；库存不足返回StockLedger.INSUFFICIENT
+     */
+    public long reserve(Long productId, int quantity) {
+        return ledger.reserve(productId, quantity, () -> {
+            Long available = productMapper.selectAvailable(productId);
+            return available == null ? 0L : available;
+        });
+    }
+
+    public void confirm(Long productId) {
+        ledger.confirm(productId);
+    }
+
+    public void release(Long productId, int quantity) {
+        ledger.release(productId, quantity);
+    }
+
+    /**
+     * 定期结算（Spring默认单线程调度，本实例内只有这一个线程写tb_seckill_product）
+     */
+    @Scheduled(fixedDelayString = "${seckill.settle.interval-ms:1000}")
+    public void settle() {
+        int claimed;
+        do {
+            String settleNo = UUID.randomUUID().toString().replace("-", "");
+            List<StockSettle> settles = transactionTemplate.execute(status -> settleOnce(settleNo));
+            claimed = 0;
+            for (StockSettle settle : settles) {
+                claimed += settle.getOrderCount();
+                // 让台账下次从MySQL重新加载（补货等直接修改MySQL库存的操作生效）
+                ledger.invalidate(settle.getProductId());
+                if (settle.getAfterStock() < 0) {
+                    log.error("库存结算后为负数，可能超卖：商品ID={}，结算前={}，扣减={}",
+                            settle.getProductId(), settle.getBeforeStock(), settle.getQuantity());
+                }
+            }
+            if (claimed > 0) {
+                log.info("库存结算完成：批次={}，商品{}个，订单{}单", settleNo, settles.size(), claimed);
+            }
+        } while (claimed >= maxRows);
+    }
+
+    private List<StockSettle> settleOnce(String settleNo) {
+        // 第1步：认领未结算的库存日志
+        if (settleMapper.claim(settleNo, maxRows) == 0) {
+            return Collections.emptyList();
+        }
+
+        // 第2步：按商品汇总，每个商品一条UPDATE + 一条结算记录
+        List<StockSettle> settles = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (StockSettle settle : settleMapper.sumClaimed(settleNo)) {
+            Integer before = productMapper.selectStockForUpdate(settle.getProductId());
+            if (before == null) {
+                // 日志保留结算批次号，没有结算记录，便于对账时排查
+                log.error("结算的商品不存在：商品ID={}，批次={}，订单{}单",
+                        settle.getProductId(), settleNo, settle.getOrderCount());
+                continue;
+            }
+            productMapper.settleStock(settle.getProductId(), settle.getQuantity());
+
+            settle.setSettleNo(settleNo);
+            settle.setBeforeStock(before);
+            settle.setAfterStock(before - settle.getQuantity());
+            settle.setCreateTime(now);
+            settleMapper.insert(settle);
+            settles.add(settle);
+        }
+        return settles;
+    }
+}
@@ -0,0 +1,110 @@
+package cn.itcast.seckill.consumer.batch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 消息攒批器测试类
+ */
+public class MessageBatcherTest {
+
+    @Test
+    public void testBatchBySizeAndWindow() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch block = new CountDownLatch(1);
+        MessageBatcher<Integer> batcher = new MessageBatcher<>("test-batch", 3, 50, batch -> {
+            // 第一批写入时阻塞，让后面的消息在队列里攒起来
+            if (batches.isEmpty()) {
+                await(block);
+            }
+            batches.add(new ArrayList<>(batch));
+        });
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(batcher.submit(0));
+        Thread.sleep(100);
+        for (int i = 1; i <= 4; i++) {
+            futures.add(batcher.submit(i));
+        }
+        block.countDown();
+        for (CompletableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        batcher.close();
+
+        // 第一批窗口内只有1条；后面4条按批量大小拆成3+1
+        assertEquals(3, batches.size());
+        assertEquals(Collections.singletonList(0), batches.get(0));
+        assertEquals(3, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+    }
+
+    @Test
+    public void testWriterFailureFailsWholeBatch() throws Exception {
+        MessageBatcher<Integer> batcher = new MessageBatcher<>("test-batch", 10, 50, batch -> {
+            throw new IllegalStateException("写入失败");
+        });
+        CompletableFuture<Void> first = batcher.submit(1);
+        CompletableFuture<Void> second = batcher.submit(2);
+        for (CompletableFuture<Void> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("应当失败");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        batcher.close();
+
+        // 关闭后提交直接失败
+        assertTrue(batcher.submit(3).isCompletedExceptionally());
+    }
+
+    @Test
+    public void testBadMessageOnlyFailsItself() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        MessageBatcher<Integer> batcher = new MessageBatcher<>("test-batch", 10, 50, batch -> {
+            batches.add(new ArrayList<>(batch));
+            if (batch.contains(2)) {
+                throw new IllegalStateException("唯一索引冲突");
+            }
+        });
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            futures.add(batcher.submit(i));
+        }
+        futures.get(0).get(5, TimeUnit.SECONDS);
+        futures.get(2).get(5, TimeUnit.SECONDS);
+        try {
+            futures.get(1).get(5, TimeUnit.SECONDS);
+            fail("应当失败");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        batcher.close();
+
+        // 整批失败后逐条重试
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3),
+                Collections.singletonList(1), Collections.singletonList(2), Collections.singletonList(3)), batches);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cn.itcast.seckill.consumer.batch;
+
+import cn.itcast.seckill.consumer.compensate.RedisStockCompensator;
+import cn.itcast.seckill.consumer.mapper.SeckillOrderMapper;
+import cn.itcast.seckill.consumer.mapper.SeckillProductMapper;
+import cn.itcast.seckill.consumer.mapper.StockLogMapper;
+import cn.itcast.seckill.consumer.mapper.UserSeckillMapper;
+import cn.itcast.seckill.consumer.settle.StockLedger;
+import cn.itcast.seckill.consumer.settle.StockSettlement;
+import cn.itcast.seckill.pojo.SeckillDTO;
+import cn.itcast.seckill.pojo.SeckillOrder;
+import cn.itcast.seckill.pojo.SeckillProduct;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 秒杀订单批量写入测试类（Mapper用Mockito模拟，手动触发事务同步回调）
+ */
+public class SeckillOrderBatchWriterTest {
+
+    private SeckillOrderMapper orderMapper;
+    private UserSeckillMapper userSeckillMapper;
+    private StockSettlement stockSettlement;
+    private RedisStockCompensator compensator;
+
+    private SeckillOrderBatchWriter writer;
+
+    @Before
+    public void setUp() {
+        orderMapper = mock(SeckillOrderMapper.class);
+        userSeckillMapper = mock(UserSeckillMapper.class);
+        stockSettlement = mock(StockSettlement.class);
+        compensator = mock(RedisStockCompensator.class);
+        SeckillProductMapper productMapper = mock(SeckillProductMapper.class);
+        SeckillProduct product = new SeckillProduct();
+        product.setId(1L);
+        product.setProductName("测试商品");
+        when(productMapper.selectByIds(anyList())).thenReturn(Collections.singletonList(product));
+
+        writer = new SeckillOrderBatchWriter();
+        ReflectionTestUtils.setField(writer, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(writer, "productMapper", productMapper);
+        ReflectionTestUtils.setField(writer, "stockSettlement", stockSettlement);
+        ReflectionTestUtils.setField(writer, "stockLogMapper", mock(StockLogMapper.class));
+        ReflectionTestUtils.setField(writer, "userSeckillMapper", userSeckillMapper);
+        ReflectionTestUtils.setField(writer, "redisStockCompensator", compensator);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSkipsUsersWhoAlreadyBought() {
+        // 用户1001已有秒杀记录（消息重复投递），1002在同一批中出现两次
+        when(userSeckillMapper.selectUserIds(eq(1L), anyCollection())).thenReturn(Collections.singletonList(1001L));
+        when(stockSettlement.reserve(eq(1L), anyInt())).thenReturn(10L);
+
+        assertEquals(1, writer.write(Arrays.asList(request(1001L), request(1002L), request(1002L))));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<List<SeckillOrder>> orders = ArgumentCaptor.forClass(List.class);
+        verify(userSeckillMapper).insertBatch(orders.capture());
+        assertEquals(1, orders.getValue().size());
+        assertEquals(Long.valueOf(1002L), orders.getValue().get(0).getUserId());
+        // 跳过的消息已经下过单，不归还Redis库存
+        verify(compensator, never()).compensate(any());
+    }
+
+    @Test
+    public void testCompensatesDroppedOrderAfterCommit() {
+        when(userSeckillMapper.selectUserIds(eq(1L), anyCollection())).thenReturn(Collections.emptyList());
+        when(stockSettlement.reserve(eq(1L), anyInt())).thenReturn(1L, StockLedger.INSUFFICIENT);
+        SeckillDTO dropped = request(1002L);
+
+        assertEquals(1, writer.write(Arrays.asList(request(1001L), dropped)));
+        verify(compensator, never()).compensate(any());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(compensator).compensate(dropped);
+        verify(stockSettlement).confirm(1L);
+    }
+
+    @Test
+    public void testRollbackDoesNotCompensate() {
+        when(userSeckillMapper.selectUserIds(eq(1L), anyCollection())).thenReturn(Collections.emptyList());
+        when(stockSettlement.reserve(eq(1L), anyInt())).thenReturn(1L, StockLedger.INSUFFICIENT);
+
+        writer.write(Arrays.asList(request(1001L), request(1002L)));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // 回滚后消息会重试：归还台账预占，不归还Redis库存
+        verify(stockSettlement).release(1L, 1);
+        verify(compensator, never()).compensate(any());
+        verify(orderMapper).insertBatch(anyList());
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static SeckillDTO request(Long userId) {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(userId);
+        dto.setProductId(1L);
+        dto.setStockKey("seckill:stock:1");
+        return dto;
+    }
+}
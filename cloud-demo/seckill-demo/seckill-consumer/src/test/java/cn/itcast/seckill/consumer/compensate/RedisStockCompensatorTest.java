@@ -0,0 +1,77 @@
+package cn.itcast.seckill.consumer.compensate;
+
+import cn.itcast.seckill.pojo.SeckillDTO;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis库存补偿测试类（StringRedisTemplate用Mockito模拟）
+ */
+public class RedisStockCompensatorTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+    private ValueOperations<String, String> valueOperations;
+
+    private RedisStockCompensator compensator;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        compensator = new RedisStockCompensator();
+        ReflectionTestUtils.setField(compensator, "stringRedisTemplate", stringRedisTemplate);
+    }
+
+    @Test
+    public void testReturnsStockThenBumpsGateEpoch() {
+        compensator.compensate(dto("seckill:stock:1:2"));
+
+        // 先归还库存再递增批次号：闸门重新打开时一定能看到归还的库存
+        InOrder order = inOrder(valueOperations, stringRedisTemplate);
+        order.verify(valueOperations).increment("seckill:stock:1:2", 3L);
+        order.verify(valueOperations).increment("seckill:gate:epoch:1");
+        order.verify(stringRedisTemplate).delete("seckill:user:1001:1");
+    }
+
+    @Test
+    public void testOldMessageUsesUnsegmentedKey() {
+        compensator.compensate(dto(null));
+
+        verify(valueOperations).increment("seckill:stock:1", 3L);
+        verify(valueOperations).increment("seckill:gate:epoch:1");
+    }
+
+    @Test
+    public void testFailedIncrementLeavesEpochAlone() {
+        when(valueOperations.increment(anyString(), anyLong())).thenThrow(new IllegalStateException("Redis不可用"));
+
+        compensator.compensate(dto("seckill:stock:1"));
+
+        verify(valueOperations, never()).increment(anyString());
+        verify(stringRedisTemplate, never()).delete(anyString());
+    }
+
+    private static SeckillDTO dto(String stockKey) {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(1001L);
+        dto.setProductId(1L);
+        dto.setQuantity(3);
+        dto.setStockKey(stockKey);
+        return dto;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.itcast.seckill.consumer.settle;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 库存台账测试类
+ */
+public class StockLedgerTest {
+
+    @Test
+    public void testReserveReleaseAndInvalidate() {
+        StockLedger ledger = new StockLedger();
+        AtomicInteger loads = new AtomicInteger();
+
+        // 首次使用时加载，返回预占前的库存
+        assertEquals(10, ledger.reserve(1L, 3, () -> {
+            loads.incrementAndGet();
+            return 10;
+        }));
+        assertEquals(7, ledger.reserve(1L, 7, () -> 0));
+        assertEquals(StockLedger.INSUFFICIENT, ledger.reserve(1L, 1, () -> 0));
+        assertEquals(1, loads.get());
+
+        // 回滚归还，提交确认
+        ledger.release(1L, 7);
+        assertEquals(Long.valueOf(7), ledger.available(1L));
+        ledger.confirm(1L);
+
+        // 全部确认后才能清除，清除后重新加载
+        ledger.reserve(1L, 1, () -> 0);
+        ledger.invalidate(1L);
+        assertEquals(Long.valueOf(6), ledger.available(1L));
+        ledger.confirm(1L);
+        ledger.invalidate(1L);
+        assertNull(ledger.available(1L));
+        assertEquals(100, ledger.reserve(1L, 1, () -> 100));
+    }
+
+    @Test
+    public void testLoadStartedBeforeInvalidationIsDiscarded() {
+        StockLedger ledger = new StockLedger();
+        AtomicInteger loads = new AtomicInteger();
+
+        // 第一次加载期间：另一个线程加载、下单提交、结算清除，这次读到的10件不包含那一单
+        long before = ledger.reserve(1L, 1, () -> {
+            if (loads.incrementAndGet() == 1) {
+                assertEquals(10, ledger.reserve(1L, 1, () -> 10));
+                ledger.confirm(1L);
+                ledger.invalidate(1L);
+                return 10;
+            }
+            return 9;
+        });
+
+        // 旧的加载作废，重新加载到9件
+        assertEquals(2, loads.get());
+        assertEquals(9, before);
+        assertEquals(Long.valueOf(8), ledger.available(1L));
+    }
+
+    @Test
+    public void testConcurrentReserveNeverOversells() throws Exception {
+        StockLedger ledger = new StockLedger();
+        int threads = 8;
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (ledger.reserve(1L, 1, () -> 5000) != StockLedger.INSUFFICIENT) {
+                        reserved.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        pool.shutdown();
+
+        assertEquals(5000, reserved.get());
+        assertEquals(Long.valueOf(0), ledger.available(1L));
+    }
+}
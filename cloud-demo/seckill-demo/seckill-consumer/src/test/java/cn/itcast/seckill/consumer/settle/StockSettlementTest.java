@@ -0,0 +1,160 @@
+package cn.itcast.seckill.consumer.settle;
+
+import cn.itcast.seckill.consumer.mapper.SeckillProductMapper;
+import cn.itcast.seckill.consumer.mapper.StockSettleMapper;
+import cn.itcast.seckill.pojo.StockSettle;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 库存结算测试类（Mapper和事务管理器用Mockito模拟）
+ */
+public class StockSettlementTest {
+
+    private SeckillProductMapper productMapper;
+    private StockSettleMapper settleMapper;
+    private PlatformTransactionManager transactionManager;
+
+    private StockSettlement settlement;
+
+    @Before
+    public void setUp() {
+        productMapper = mock(SeckillProductMapper.class);
+        settleMapper = mock(StockSettleMapper.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+        settlement = new StockSettlement();
+        ReflectionTestUtils.setField(settlement, "productMapper", productMapper);
+        ReflectionTestUtils.setField(settlement, "settleMapper", settleMapper);
+        ReflectionTestUtils.setField(settlement, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(settlement, "maxRows", 100);
+        settlement.init();
+    }
+
+    @Test
+    public void testSettleClaimsSumsUpdatesAndAudits() {
+        when(settleMapper.claim(anyString(), eq(100))).thenReturn(5);
+        when(settleMapper.sumClaimed(anyString())).thenReturn(Arrays.asList(sum(1L, 3, 4), sum(2L, 2, 2)));
+        when(productMapper.selectStockForUpdate(1L)).thenReturn(100);
+        when(productMapper.selectStockForUpdate(2L)).thenReturn(50);
+
+        settlement.settle();
+
+        // 认领、汇总、锁行、UPDATE、结算记录在同一个读已提交事务中，按顺序执行
+        ArgumentCaptor<String> settleNo = ArgumentCaptor.forClass(String.class);
+        InOrder order = inOrder(settleMapper, productMapper, transactionManager);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(settleMapper).claim(settleNo.capture(), eq(100));
+        order.verify(settleMapper).sumClaimed(settleNo.getValue());
+        order.verify(productMapper).selectStockForUpdate(1L);
+        order.verify(productMapper).settleStock(1L, 4);
+        order.verify(settleMapper).insert(any(StockSettle.class));
+        order.verify(productMapper).selectStockForUpdate(2L);
+        order.verify(productMapper).settleStock(2L, 2);
+        order.verify(settleMapper).insert(any(StockSettle.class));
+        order.verify(transactionManager).commit(any());
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.ISOLATION_READ_COMMITTED, definition.getValue().getIsolationLevel());
+
+        // 结算记录：批次号与认领一致，记录结算前后库存
+        ArgumentCaptor<StockSettle> audits = ArgumentCaptor.forClass(StockSettle.class);
+        verify(settleMapper, times(2)).insert(audits.capture());
+        StockSettle audit = audits.getAllValues().get(0);
+        assertEquals(settleNo.getValue(), audit.getSettleNo());
+        assertEquals(Long.valueOf(1L), audit.getProductId());
+        assertEquals(Integer.valueOf(3), audit.getOrderCount());
+        assertEquals(Integer.valueOf(4), audit.getQuantity());
+        assertEquals(Integer.valueOf(100), audit.getBeforeStock());
+        assertEquals(Integer.valueOf(96), audit.getAfterStock());
+        assertEquals(Integer.valueOf(48), audits.getAllValues().get(1).getAfterStock());
+    }
+
+    @Test
+    public void testNothingClaimedSkipsSummary() {
+        when(settleMapper.claim(anyString(), anyInt())).thenReturn(0);
+
+        settlement.settle();
+
+        verify(settleMapper, never()).sumClaimed(anyString());
+        verify(productMapper, never()).settleStock(any(), any());
+    }
+
+    @Test
+    public void testMissingProductLeavesNoAudit() {
+        when(settleMapper.claim(anyString(), anyInt())).thenReturn(1);
+        when(settleMapper.sumClaimed(anyString())).thenReturn(Collections.singletonList(sum(9L, 1, 1)));
+        when(productMapper.selectStockForUpdate(9L)).thenReturn(null);
+
+        settlement.settle();
+
+        verify(productMapper, never()).settleStock(any(), any());
+        verify(settleMapper, never()).insert(any(StockSettle.class));
+    }
+
+    @Test
+    public void testBacklogSettlesUntilBelowMaxRows() {
+        when(settleMapper.claim(anyString(), eq(100))).thenReturn(100, 30);
+        when(settleMapper.sumClaimed(anyString())).thenReturn(
+                Collections.singletonList(sum(1L, 100, 100)), Collections.singletonList(sum(1L, 30, 30)));
+        when(productMapper.selectStockForUpdate(1L)).thenReturn(200, 100);
+
+        settlement.settle();
+
+        // 第一次认领满100条，继续结算；第二次30条后停止
+        verify(settleMapper, times(2)).claim(anyString(), eq(100));
+        verify(productMapper).settleStock(1L, 100);
+        verify(productMapper).settleStock(1L, 30);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    public void testSettleReloadsLedger() {
+        when(productMapper.selectAvailable(1L)).thenReturn(10L, 7L);
+        assertEquals(10, settlement.reserve(1L, 3));
+        settlement.confirm(1L);
+
+        when(settleMapper.claim(anyString(), anyInt())).thenReturn(1);
+        when(settleMapper.sumClaimed(anyString())).thenReturn(Collections.singletonList(sum(1L, 1, 3)));
+        when(productMapper.selectStockForUpdate(1L)).thenReturn(10);
+        settlement.settle();
+
+        // 结算后台账清除，下次预占从MySQL重新加载
+        StockLedger ledger = (StockLedger) ReflectionTestUtils.getField(settlement, "ledger");
+        assertNull(ledger.available(1L));
+        assertEquals(7, settlement.reserve(1L, 1));
+        verify(productMapper, times(2)).selectAvailable(1L);
+    }
+
+    private static StockSettle sum(Long productId, int orderCount, int quantity) {
+        StockSettle settle = new StockSettle();
+        settle.setProductId(productId);
+        settle.setOrderCount(orderCount);
+        settle.setQuantity(quantity);
+        return settle;
+    }
+}
@@ -1,11 +1,17 @@
 package cn.itcast.seckill.config;
 
+import cn.itcast.seckill.gate.StockGate;
+import cn.itcast.seckill.gate.StockGateBroadcaster;
+import cn.itcast.seckill.stock.StockSegments;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.scripting.support.ResourceScriptSource;
@@ -51,4 +57,33 @@ public class RedisConfig {
         script.setResultType(Long.class);
         return script;
     }
+
+    /**
+     * 库存分段（热点商品的库存拆到多个key上）
+     */
+    @Bean
+    public StockSegments stockSegments(@Value("${seckill.stock.segments:1}") int segments) {
+        return new StockSegments(segments);
+    }
+
+    /**
+     * 本地库存闸门
+     */
+    @Bean
+    public StockGate stockGate(StockSegments stockSegments,
+                               @Value("${seckill.gate.recheck-interval-ms:1000}") long recheckMillis) {
+        return new StockGate(stockSegments, recheckMillis);
+    }
+
+    /**
+     * 订阅库存闸门广播（售罄、预热重置）
+     */
+    @Bean
+    public RedisMessageListenerContainer stockGateListenerContainer(RedisConnectionFactory factory,
+                                                                    StockGateBroadcaster broadcaster) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(broadcaster, new ChannelTopic(broadcaster.getChannel()));
+        return container;
+    }
 }
@@ -0,0 +1,247 @@
+package cn.itcast.seckill.gate;
+
+import cn.itcast.seckill.stock.StockSegments;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地库存闸门（每个实例一份，无锁）
+ *
+ * 每个商品记录：
+ * - 每段剩余库存上限：取Redis扣减后返回的该段剩余库存（各实例扣减的结果都会让它变小），只减不增；
+ *   购买数量大于上限的段一定库存不足，不再访问
+ * - 售罄标记：所有段的上限都降到0时置位，之后该商品的请求不再访问Redis
+ *
+ * 库存只在预热和归还（消费者丢弃订单、秒杀失败撤销）时增加，两者都会递增批次号（epoch），预热还会广播重置；
+ * 广播消息带批次号，旧批次的售罄消息不会影响新一轮预热后的闸门。
+ * 重置消息可能丢失（发布/订阅最多投递一次），闸门拒绝请求期间由调用方定期核对Redis中的批次号（shouldRecheck/refresh）
+ */
+public class StockGate {
+
+    /**
+     * 批次号未知（本实例启动晚于预热，没有收到重置消息）
+     */
+    public static final long UNKNOWN_EPOCH = 0L;
+
+    /**
+     * 默认核对批次号间隔（毫秒）
+     */
+    public static final long DEFAULT_RECHECK_MILLIS = 1000L;
+
+    private final StockSegments segments;
+
+    private final long recheckNanos;
+
+    private final ConcurrentMap<Long, Gate> gates = new ConcurrentHashMap<>();
+
+    /**
+     * 本地拒绝次数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    public StockGate(StockSegments segments) {
+        this(segments, DEFAULT_RECHECK_MILLIS);
+    }
+
+    /**
+     * @param recheckMillis 闸门拒绝请求期间，每个商品核对Redis批次号的最小间隔
+     */
+    public StockGate(StockSegments segments, long recheckMillis) {
+        this.segments = segments;
+        this.recheckNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(recheckMillis, 0));
+    }
+
+    /**
+     * 判断是否放行到Redis（不访问Redis，不加锁）
+     *
+     * @return false表示已售罄或数量超过每一段的剩余库存上限，直接拒绝
+     */
+    public boolean tryPass(Long productId, int quantity) {
+        Gate gate = gates.get(productId);
+        if (gate == null || (!gate.soldOut.get() && gate.maxRemaining() >= quantity)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 该段是否可能还有足够库存（本地已知不足的段跳过，不访问Redis）
+     */
+    public boolean mayHave(Long productId, int segment, int quantity) {
+        Gate gate = gates.get(productId);
+        return gate == null || gate.remaining.get(segment) >= quantity;
+    }
+
+    /**
+     * Redis扣减成功，按返回的该段剩余库存收紧上限
+     *
+     * @param epoch 访问Redis之前取的批次号
+     * @return 是否由本次调用变为售罄（需要广播）
+     */
+    public boolean onDeducted(Long productId, long epoch, int segment, long remaining) {
+        return lower(productId, epoch, segment, remaining);
+    }
+
+    /**
+     * Redis返回库存不足：该段剩余库存一定小于购买数量
+     *
+     * @param epoch 访问Redis之前取的批次号
+     * @return 是否由本次调用变为售罄（需要广播）
+     */
+    public boolean onInsufficient(Long productId, long epoch, int segment, int quantity) {
+        return lower(productId, epoch, segment, quantity - 1L);
+    }
+
+    /**
+     * 预热后重置（本实例预热或收到重置广播）
+     *
+     * 同一批次只重置一次：发布方先在本地重置，随后收到自己的广播时不再重置（保留期间收紧的上限）
+     */
+    public void reset(Long productId, long epoch, long stock) {
+        gates.compute(productId, (id, gate) ->
+                gate != null && gate.epoch >= epoch ? gate : new Gate(epoch, segments.split(stock)));
+    }
+
+    /**
+     * 闸门拒绝请求时，是否该去Redis核对批次号（每个商品每个间隔最多返回一次true）
+     */
+    public boolean shouldRecheck(Long productId) {
+        Gate gate = gates.get(productId);
+        if (gate == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long next = gate.nextRecheck.get();
+        return now - next >= 0 && gate.nextRecheck.compareAndSet(next, now + recheckNanos);
+    }
+
+    /**
+     * 核对到Redis中的批次号：比本地新说明错过了重置消息，按每段上限未知重新打开
+     *
+     * @return 是否重新打开
+     */
+    public boolean refresh(Long productId, long epoch) {
+        boolean[] reopened = {false};
+        gates.compute(productId, (id, gate) -> {
+            if (gate != null && gate.epoch >= epoch) {
+                return gate;
+            }
+            reopened[0] = true;
+            return new Gate(epoch, unknownStock());
+        });
+        return reopened[0];
+    }
+
+    /**
+     * 收到售罄广播
+     *
+     * 不带批次号（UNKNOWN_EPOCH）的消息无法判断属于哪一轮预热：本地批次已知时忽略，避免关闭补货后的闸门
+     */
+    public void markSoldOut(Long productId, long epoch) {
+        gates.compute(productId, (id, current) -> {
+            if (current != null && epoch == UNKNOWN_EPOCH && current.epoch != UNKNOWN_EPOCH) {
+                return current;
+            }
+            if (current == null || (epoch != UNKNOWN_EPOCH && epoch > current.epoch)) {
+                // 本实例还不知道该批次（启动晚于预热或重置消息未到）：采用消息中的批次
+                return new Gate(epoch, new long[segments.getCount()]);
+            }
+            // 旧批次的消息忽略
+            if (epoch == UNKNOWN_EPOCH || epoch == current.epoch) {
+                for (int i = 0; i < segments.getCount(); i++) {
+                    lower(current, i, 0);
+                }
+            }
+            return current;
+        });
+    }
+
+    /**
+     * 商品当前批次号（广播售罄时携带）
+     */
+    public long epoch(Long productId) {
+        Gate gate = gates.get(productId);
+        return gate == null ? UNKNOWN_EPOCH : gate.epoch;
+    }
+
+    public boolean isSoldOut(Long productId) {
+        Gate gate = gates.get(productId);
+        return gate != null && gate.soldOut.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private boolean lower(Long productId, long epoch, int segment, long value) {
+        Gate gate = gates.get(productId);
+        if (gate == null) {
+            gate = gates.computeIfAbsent(productId, id -> new Gate(epoch, unknownStock()));
+        }
+        // 访问Redis期间重新预热过，旧批次的结果作废
+        if (gate.epoch != epoch) {
+            return false;
+        }
+        return lower(gate, segment, value);
+    }
+
+    /**
+     * CAS把该段上限降到value（已经更小则不变），所有段都降到0时置售罄
+     *
+     * @return 是否由本次调用置为售罄
+     */
+    private static boolean lower(Gate gate, int segment, long value) {
+        long target = Math.max(value, 0);
+        long current;
+        do {
+            current = gate.remaining.get(segment);
+            if (current <= target) {
+                break;
+            }
+        } while (!gate.remaining.compareAndSet(segment, current, target));
+        return target == 0 && gate.maxRemaining() == 0 && gate.soldOut.compareAndSet(false, true);
+    }
+
+    /**
+     * 未收到预热消息的商品：每段上限未知
+     */
+    private long[] unknownStock() {
+        long[] stock = new long[segments.getCount()];
+        Arrays.fill(stock, Long.MAX_VALUE);
+        return stock;
+    }
+
+    private static final class Gate {
+
+        private final long epoch;
+        private final AtomicLongArray remaining;
+        private final AtomicBoolean soldOut;
+
+        /**
+         * 下次允许核对批次号的时间（System.nanoTime）
+         */
+        private final AtomicLong nextRecheck = new AtomicLong(System.nanoTime());
+
+        private Gate(long epoch, long[] stock) {
+            this.epoch = epoch;
+            this.remaining = new AtomicLongArray(stock);
+            this.soldOut = new AtomicBoolean(maxRemaining() == 0);
+        }
+
+        private long maxRemaining() {
+            long max = 0;
+            for (int i = 0; i < remaining.length(); i++) {
+                max = Math.max(max, remaining.get(i));
+            }
+            return max;
+        }
+    }
+}
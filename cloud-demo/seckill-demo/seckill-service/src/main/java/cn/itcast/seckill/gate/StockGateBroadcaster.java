@@ -0,0 +1,87 @@
+package cn.itcast.seckill.gate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 本地库存闸门广播（Redis发布/订阅）
+ *
+ * 消息格式：
+ * - 售罄：SOLD_OUT|商品ID|批次号
+ * - 预热重置：RESET|商品ID|批次号|库存
+ *
+ * 发布方自己也会收到消息：同一批次的重置和售罄重复处理不改变闸门状态。
+ * 发布/订阅最多投递一次：售罄消息丢失时，各实例在自己访问Redis时发现售罄；
+ * 重置消息丢失时，闸门关闭的实例定期核对Redis中的批次号后重新打开（见SeckillService）
+ */
+@Slf4j
+@Component
+public class StockGateBroadcaster implements MessageListener {
+
+    private static final String SOLD_OUT = "SOLD_OUT";
+    private static final String RESET = "RESET";
+
+    @Autowired
+    private StockGate stockGate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${seckill.gate.channel:seckill:gate}")
+    private String channel;
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 广播售罄
+     */
+    public void publishSoldOut(Long productId, long epoch) {
+        publish(SOLD_OUT + "|" + productId + "|" + epoch);
+    }
+
+    /**
+     * 广播预热重置
+     */
+    public void publishReset(Long productId, long epoch, long stock) {
+        publish(RESET + "|" + productId + "|" + epoch + "|" + stock);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            // 广播失败不影响秒杀结果，其他实例会在访问Redis时自行发现
+            log.warn("库存闸门广播失败：{}，原因：{}", message, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|");
+        try {
+            if (SOLD_OUT.equals(parts[0]) && parts.length == 3) {
+                Long productId = Long.valueOf(parts[1]);
+                stockGate.markSoldOut(productId, Long.parseLong(parts[2]));
+                log.info("收到售罄广播，商品{}本地闸门关闭", productId);
+            } else if (RESET.equals(parts[0]) && parts.length == 4) {
+                Long productId = Long.valueOf(parts[1]);
+                stockGate.reset(productId, Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                log.info("收到预热广播，商品{}本地闸门重置，库存：{}", productId, parts[3]);
+            } else {
+                log.warn("忽略无法识别的库存闸门消息：{}", body);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法识别的库存闸门消息：{}", body);
+        }
+    }
+}
@@ -1,24 +1,45 @@
 package cn.itcast.seckill.service;
 
+import cn.itcast.seckill.gate.StockGate;
+import cn.itcast.seckill.gate.StockGateBroadcaster;
 import cn.itcast.seckill.mapper.SeckillProductMapper;
+import cn.itcast.seckill.stock.StockSegments;
 import cn.itcast.seckill.pojo.SeckillDTO;
 import cn.itcast.seckill.pojo.SeckillProduct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 秒杀服务
+ *
+ * 访问Redis之前先过本地库存闸门（StockGate）：商品售罄后，
+ * 各实例直接在本地拒绝，不再执行Lua脚本；拒绝期间定期核对Redis中的批次号，
+ * 错过重置广播的实例在补货预热后重新打开
+ *
+ * 先用SET NX写用户标记再扣库存，同一用户的并发请求只有一个能写入标记；
+ * 标记key与分段数无关，调整分段数后已秒杀的用户仍会被拦住
+ *
+ * 库存可分段（StockSegments）：每次Lua脚本只扣一个段的key，
+ * 从用户的起始段开始，该段不足时依次尝试后面的段
  */
 @Slf4j
 @Service
 public class SeckillService {
 
+    /**
+     * 闸门批次号key前缀（预热时递增）
+     */
+    private static final String GATE_EPOCH_KEY = "seckill:gate:epoch:";
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -31,6 +52,30 @@ public class SeckillService {
     @Autowired
     private SeckillProductMapper productMapper;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private StockGate stockGate;
+
+    @Autowired
+    private StockGateBroadcaster stockGateBroadcaster;
+
+    @Autowired
+    private StockSegments stockSegments;
+
+    /**
+     * 是否启用本地库存闸门
+     */
+    @Value("${seckill.gate.enabled:true}")
+    private boolean gateEnabled;
+
+    /**
+     * 用户秒杀标记过期时间（秒）
+     */
+    @Value("${seckill.user.ttl-seconds:86400}")
+    private long userTtlSeconds;
+
     /**
      * 秒杀接口
      */
@@ -39,46 +84,80 @@ public class SeckillService {
         Long productId = dto.getProductId();
         Integer quantity = dto.getQuantity();
 
+        // 第0步：本地库存闸门（已售罄或数量超过剩余库存上限时直接拒绝，不访问Redis）
+        long epoch = stockGate.epoch(productId);
+        if (gateEnabled && epoch == StockGate.UNKNOWN_EPOCH) {
+            // 本实例还不知道当前批次：访问Redis之前读一次，之后的售罄广播才能带上批次号
+            epoch = learnEpoch(productId);
+        }
+        if (gateEnabled && !stockGate.tryPass(productId, quantity)) {
+            if (!recheckGate(productId)) {
+                log.debug("商品{}库存不足（本地闸门），直接拒绝", productId);
+                return null;
+            }
+            epoch = stockGate.epoch(productId);
+        }
+
         log.info("========== 秒杀请求 ==========");
         log.info("用户ID：{}，商品ID：{}，数量：{}", userId, productId, quantity);
 
-        // 第1步：检查用户是否已秒杀（防止重复秒杀）
-        String userKey = "seckill:user:" + userId + ":" + productId;
-        Boolean hasKey = redisTemplate.hasKey(userKey);
-        if (Boolean.TRUE.equals(hasKey)) {
+        // 第1步：写用户标记（SET NX，同一用户的并发请求只有一个能写入，防重复秒杀）
+        String userKey = stockSegments.userKey(productId, userId);
+        Boolean marked = redisTemplate.opsForValue().setIfAbsent(userKey, 1, userTtlSeconds, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(marked)) {
             log.warn("用户{}已秒杀商品{}，不能重复秒杀", userId, productId);
             return null;
         }
 
-        // 第2步：Redis扣减库存（Lua脚本，原子操作）
-        String stockKey = "seckill:stock:" + productId;
-        Long result = redisTemplate.execute(
-                stockScript,
-                Collections.singletonList(stockKey),
-                quantity
-        );
+        // 第2~4步异常（Redis或MQ不可用）时删除用户标记、归还已扣的库存，否则用户被拦24小时、库存永久少一份
+        String stockKey = null;
+        boolean stockDeducted = false;
+        try {
+            // 第2步：Redis扣减库存（Lua脚本，从用户的起始段开始，该段不足时换后面的段）
+            int segments = stockSegments.getCount();
+            int home = stockSegments.home(userId);
+            long result = -2;
+            for (int i = 0; i < segments && result < 0; i++) {
+                int segment = (home + i) % segments;
+                // 本地已知该段不足，跳过
+                if (gateEnabled && !stockGate.mayHave(productId, segment, quantity)) {
+                    continue;
+                }
+                stockKey = stockSegments.key(productId, segment);
+                Long deducted = redisTemplate.execute(
+                        stockScript,
+                        Collections.singletonList(stockKey),
+                        quantity
+                );
+                log.info("Redis扣减库存结果：{}，段：{}", deducted, segment);
+                if (deducted == null || deducted == -1) {
+                    log.error("商品{}库存不存在", productId);
+                    redisTemplate.delete(userKey);
+                    return null;
+                }
+                result = deducted;
+                stockDeducted = result >= 0;
+                updateGate(productId, epoch, segment, quantity, result);
+            }
 
-        log.info("Redis扣减库存结果：{}", result);
+            // 第3步：所有段都不足，删除用户标记（用户可以在补货后再次秒杀）
+            if (result < 0) {
+                redisTemplate.delete(userKey);
+                log.warn("商品{}库存不足", productId);
+                return null;
+            }
 
-        // 第3步：判断扣减结果
-        if (result == null || result == -1) {
-            log.error("商品{}库存不存在", productId);
+            // 第4步：发送MQ消息（异步创建订单；带上扣减的库存key，消费者丢弃订单时归还）
+            dto.setStockKey(stockKey);
+            rocketMQTemplate.convertAndSend("seckill-topic", dto);
+            log.info("秒杀成功，发送MQ消息");
+        } catch (RuntimeException e) {
+            log.error("秒杀失败，撤销用户标记，已扣库存：{}，用户ID：{}，商品ID：{}", stockDeducted, userId, productId, e);
+            rollback(productId, userKey, stockDeducted ? stockKey : null, quantity);
             return null;
         }
 
-        if (result == 0) {
-            log.warn("商品{}库存不足", productId);
-            return null;
-        }
-
-        // 第4步：扣减成功，标记用户已秒杀
-        redisTemplate.opsForValue().set(userKey, "1");
-
-        // 第5步：发送MQ消息（异步创建订单）
-        rocketMQTemplate.convertAndSend("seckill-topic", dto);
-        log.info("秒杀成功，发送MQ消息");
-
-        // 第6步：生成订单号并返回
+        // 第5步：生成订单号并返回
         String orderNo = generateOrderNo(userId, productId);
         log.info("秒杀成功，订单号：{}", orderNo);
         log.info("==================================");
@@ -97,10 +176,94 @@ public class SeckillService {
             return;
         }
 
-        // 预热到Redis
-        String stockKey = "seckill:stock:" + productId;
-        redisTemplate.opsForValue().set(stockKey, product.getStock());
-        log.info("预热库存成功：商品ID={}，库存={}", productId, product.getStock());
+        // 预热到Redis（分段时平均拆到各段的key）
+        long[] stocks = stockSegments.split(product.getStock());
+        for (int segment = 0; segment < stocks.length; segment++) {
+            redisTemplate.opsForValue().set(stockSegments.key(productId, segment), stocks[segment]);
+        }
+
+        // 重置本地闸门：递增批次号，广播给其他实例
+        Long epoch = stringRedisTemplate.opsForValue().increment(GATE_EPOCH_KEY + productId);
+        stockGate.reset(productId, epoch, product.getStock());
+        stockGateBroadcaster.publishReset(productId, epoch, product.getStock());
+        log.info("预热库存成功：商品ID={}，库存={}，分段={}，闸门批次={}",
+                productId, product.getStock(), stocks.length, epoch);
+    }
+
+    /**
+     * 闸门关闭期间核对Redis中的批次号（每个商品每个间隔最多一次），
+     * 比本地新说明错过了重置广播，重新打开闸门
+     *
+     * @return 是否重新打开
+     */
+    private boolean recheckGate(Long productId) {
+        if (!stockGate.shouldRecheck(productId)) {
+            return false;
+        }
+        String value = stringRedisTemplate.opsForValue().get(GATE_EPOCH_KEY + productId);
+        if (value == null || !stockGate.refresh(productId, Long.parseLong(value))) {
+            return false;
+        }
+        log.info("商品{}闸门批次已更新为{}（错过重置广播），本地闸门重新打开", productId, value);
+        return true;
+    }
+
+    /**
+     * 读取Redis中的批次号并采用（本实例启动晚于预热、没有收到重置广播时，每个商品一次）
+     *
+     * 必须在扣减之前读：扣减之后再读，期间发生的补货预热会让旧库存的售罄结果带上新批次号
+     *
+     * @return 采用后的批次号，商品未经preloadStock预热时仍为UNKNOWN_EPOCH
+     */
+    private long learnEpoch(Long productId) {
+        String value = stringRedisTemplate.opsForValue().get(GATE_EPOCH_KEY + productId);
+        if (value != null) {
+            stockGate.refresh(productId, Long.parseLong(value));
+        }
+        return stockGate.epoch(productId);
+    }
+
+    /**
+     * 按扣减结果收紧本地闸门（扣完最后一件时广播售罄）
+     *
+     * 批次号未知时只关闭本地闸门、不广播：接收方无法判断消息属于哪一轮预热
+     */
+    private void updateGate(Long productId, long epoch, int segment, int quantity, long result) {
+        if (!gateEnabled) {
+            return;
+        }
+        boolean soldOut = result >= 0
+                ? stockGate.onDeducted(productId, epoch, segment, result)
+                : stockGate.onInsufficient(productId, epoch, segment, quantity);
+        if (soldOut && epoch != StockGate.UNKNOWN_EPOCH) {
+            stockGateBroadcaster.publishSoldOut(productId, epoch);
+            log.info("商品{}已售罄，广播关闭各实例本地闸门", productId);
+        } else if (soldOut) {
+            log.info("商品{}已售罄（批次号未知，只关闭本地闸门）", productId);
+        }
+    }
+
+    /**
+     * 撤销秒杀：归还已扣的库存（递增批次号，让已关闭的闸门在核对后重新打开），删除用户标记
+     *
+     * 撤销本身失败只记录日志（Redis仍不可用），需按日志人工补偿
+     *
+     * @param stockKey 已扣减的库存key，未扣减为null
+     */
+    private void rollback(Long productId, String userKey, String stockKey, int quantity) {
+        if (stockKey != null) {
+            try {
+                redisTemplate.opsForValue().increment(stockKey, quantity);
+                stringRedisTemplate.opsForValue().increment(GATE_EPOCH_KEY + productId);
+            } catch (Exception e) {
+                log.error("归还Redis库存失败，需人工补偿：{} +{}", stockKey, quantity, e);
+            }
+        }
+        try {
+            redisTemplate.delete(userKey);
+        } catch (Exception e) {
+            log.error("删除用户秒杀标记失败，需人工删除：{}", userKey, e);
+        }
     }
 
     /**
@@ -0,0 +1,70 @@
+package cn.itcast.seckill.stock;
+
+/**
+ * 库存分段
+ *
+ * 热点商品的库存只放在一个key上时，所有扣减都落在同一个key（同一个Redis节点的同一个线程）上。
+ * 分段后库存平均拆到N个子key：seckill:stock:商品ID:段号（不带hash tag，集群下分布在不同slot/节点），
+ * 用户按userId哈希固定一个起始段，该段不足时依次尝试后面的段
+ *
+ * 只有1段时沿用原来的key（seckill:stock:商品ID）
+ */
+public final class StockSegments {
+
+    /**
+     * 分段数上限
+     */
+    public static final int MAX_SEGMENTS = 64;
+
+    private final int count;
+
+    public StockSegments(int count) {
+        if (count < 1 || count > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("库存分段数必须在1~" + MAX_SEGMENTS + "之间：" + count);
+        }
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 段的库存key
+     */
+    public String key(Long productId, int segment) {
+        return count == 1 ? "seckill:stock:" + productId : "seckill:stock:" + productId + ":" + segment;
+    }
+
+    /**
+     * 用户秒杀标记key：与分段数无关，调整分段数后已写入的标记仍然有效
+     */
+    public String userKey(Long productId, Long userId) {
+        return "seckill:user:" + userId + ":" + productId;
+    }
+
+    /**
+     * 把库存平均拆到各段，余数从第0段开始每段多分1件
+     */
+    public long[] split(long stock) {
+        long[] segments = new long[count];
+        long base = Math.max(stock, 0) / count;
+        long remainder = Math.max(stock, 0) % count;
+        for (int i = 0; i < count; i++) {
+            segments[i] = base + (i < remainder ? 1 : 0);
+        }
+        return segments;
+    }
+
+    /**
+     * 用户的起始段（同一用户总是从同一段开始）
+     */
+    public int home(Long userId) {
+        if (count == 1) {
+            return 0;
+        }
+        // 打散连续的userId
+        long hash = (userId == null ? 0L : userId) * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % count);
+    }
+}
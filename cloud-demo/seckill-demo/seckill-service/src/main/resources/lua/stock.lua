@@ -1,6 +1,7 @@
 -- Redis Lua脚本：原子扣减库存
--- KEYS[1]: 库存key，格式：seckill:stock:productId
+-- KEYS[1]: 库存key，格式：seckill:stock:productId（分段时为seckill:stock:productId:段号）
 -- ARGV[1]: 扣减数量
+-- 返回：-1 库存不存在，-2 库存不足，>=0 扣减后的剩余库存
 
 -- 获取当前库存
 local stock = redis.call('GET', KEYS[1])
@@ -13,9 +14,9 @@ end
 -- 转换为数字
 stock = tonumber(stock)
 
--- 如果库存不足，返回0
+-- 如果库存不足，返回-2（与扣减后剩余0件区分）
 if stock < tonumber(ARGV[1]) then
-    return 0
+    return -2
 end
 
 -- 扣减库存
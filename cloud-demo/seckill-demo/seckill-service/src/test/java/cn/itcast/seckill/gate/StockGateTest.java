@@ -0,0 +1,162 @@
+package cn.itcast.seckill.gate;
+
+import cn.itcast.seckill.stock.StockSegments;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地库存闸门测试类（不依赖Redis）
+ */
+public class StockGateTest {
+
+    @Test
+    public void testUnknownProductPassesUntilSoldOut() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        long epoch = gate.epoch(1L);
+        assertTrue(gate.tryPass(1L, 1));
+
+        assertFalse(gate.onDeducted(1L, epoch, 0, 2));
+        // 剩余库存上限2：买3件本地拒绝，买2件放行
+        assertFalse(gate.tryPass(1L, 3));
+        assertTrue(gate.tryPass(1L, 2));
+
+        // 扣完最后一件只有第一次返回true（只广播一次）
+        assertTrue(gate.onDeducted(1L, epoch, 0, 0));
+        assertFalse(gate.onInsufficient(1L, epoch, 0, 1));
+        assertTrue(gate.isSoldOut(1L));
+        assertFalse(gate.tryPass(1L, 1));
+        assertEquals(2, gate.getRejected());
+    }
+
+    @Test
+    public void testInsufficientLowersUpperBound() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        gate.reset(1L, 1L, 100);
+
+        // 买5件库存不足：剩余最多4件
+        assertFalse(gate.onInsufficient(1L, 1L, 0, 5));
+        assertFalse(gate.tryPass(1L, 5));
+        assertTrue(gate.tryPass(1L, 4));
+        assertFalse(gate.isSoldOut(1L));
+
+        assertTrue(gate.onInsufficient(1L, 1L, 0, 1));
+        assertTrue(gate.isSoldOut(1L));
+    }
+
+    @Test
+    public void testResetIgnoresStaleEpoch() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        gate.reset(1L, 1L, 10);
+        gate.markSoldOut(1L, 1L);
+        assertTrue(gate.isSoldOut(1L));
+
+        // 重新预热
+        gate.reset(1L, 2L, 10);
+        assertFalse(gate.isSoldOut(1L));
+        assertEquals(2L, gate.epoch(1L));
+
+        // 旧批次的售罄消息、扣减结果、重置消息都不生效
+        gate.markSoldOut(1L, 1L);
+        assertFalse(gate.onDeducted(1L, 1L, 0, 0));
+        gate.reset(1L, 1L, 0);
+        assertFalse(gate.isSoldOut(1L));
+        assertTrue(gate.tryPass(1L, 10));
+
+        // 新批次的售罄消息生效
+        gate.markSoldOut(1L, 2L);
+        assertTrue(gate.isSoldOut(1L));
+    }
+
+    @Test
+    public void testSoldOutBroadcastAdoptsNewerEpoch() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        // 本实例启动晚于预热，没有收到重置消息
+        gate.onDeducted(1L, StockGate.UNKNOWN_EPOCH, 0, 5);
+        gate.markSoldOut(1L, 3L);
+
+        assertTrue(gate.isSoldOut(1L));
+        assertEquals(3L, gate.epoch(1L));
+        assertFalse(gate.tryPass(1L, 1));
+    }
+
+    @Test
+    public void testUnknownEpochSoldOutIgnoredWhenEpochKnown() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        gate.reset(1L, 2L, 10);
+
+        // 不带批次号的售罄消息可能来自补货之前：不关闭已知批次的闸门
+        gate.markSoldOut(1L, StockGate.UNKNOWN_EPOCH);
+        assertFalse(gate.isSoldOut(1L));
+        assertTrue(gate.tryPass(1L, 10));
+
+        // 本地批次也未知时照常关闭
+        gate.onDeducted(2L, StockGate.UNKNOWN_EPOCH, 0, 5);
+        gate.markSoldOut(2L, StockGate.UNKNOWN_EPOCH);
+        assertTrue(gate.isSoldOut(2L));
+    }
+
+    @Test
+    public void testSoldOutOnlyWhenAllSegmentsEmpty() {
+        StockGate gate = new StockGate(new StockSegments(4));
+        // 10件拆成3/3/2/2
+        gate.reset(1L, 1L, 10);
+        assertFalse(gate.tryPass(1L, 4));
+        assertTrue(gate.tryPass(1L, 3));
+
+        assertFalse(gate.onDeducted(1L, 1L, 0, 0));
+        assertFalse(gate.mayHave(1L, 0, 1));
+        assertTrue(gate.mayHave(1L, 1, 3));
+
+        assertFalse(gate.onInsufficient(1L, 1L, 1, 1));
+        assertFalse(gate.onDeducted(1L, 1L, 2, 0));
+        assertFalse(gate.isSoldOut(1L));
+        assertTrue(gate.tryPass(1L, 2));
+
+        assertTrue(gate.onDeducted(1L, 1L, 3, 0));
+        assertTrue(gate.isSoldOut(1L));
+        assertFalse(gate.tryPass(1L, 1));
+    }
+
+    @Test
+    public void testResetEchoKeepsTightenedBounds() {
+        StockGate gate = new StockGate(new StockSegments(1));
+        gate.reset(1L, 1L, 10);
+        gate.onDeducted(1L, 1L, 0, 3);
+
+        // 发布方收到自己的重置广播：同一批次不再重置
+        gate.reset(1L, 1L, 10);
+        assertFalse(gate.tryPass(1L, 4));
+        assertTrue(gate.tryPass(1L, 3));
+
+        gate.markSoldOut(1L, 1L);
+        gate.reset(1L, 1L, 10);
+        assertTrue(gate.isSoldOut(1L));
+    }
+
+    @Test
+    public void testRecheckReopensAfterLostReset() {
+        StockGate gate = new StockGate(new StockSegments(1), 60_000);
+        gate.reset(1L, 1L, 10);
+        gate.markSoldOut(1L, 1L);
+        assertFalse(gate.tryPass(1L, 1));
+
+        // 每个间隔只核对一次
+        assertTrue(gate.shouldRecheck(1L));
+        assertFalse(gate.shouldRecheck(1L));
+
+        // Redis中的批次号未变：保持关闭
+        assertFalse(gate.refresh(1L, 1L));
+        assertTrue(gate.isSoldOut(1L));
+
+        // 重置广播丢失，Redis中的批次号已递增：重新打开
+        assertTrue(gate.refresh(1L, 2L));
+        assertEquals(2L, gate.epoch(1L));
+        assertTrue(gate.tryPass(1L, 1));
+        // 随后收到迟到的重置消息照常生效（库存已知）
+        gate.reset(1L, 3L, 5);
+        assertFalse(gate.tryPass(1L, 6));
+    }
+}
@@ -0,0 +1,266 @@
+package cn.itcast.seckill.service;
+
+import cn.itcast.seckill.gate.StockGate;
+import cn.itcast.seckill.gate.StockGateBroadcaster;
+import cn.itcast.seckill.pojo.SeckillDTO;
+import cn.itcast.seckill.stock.StockSegments;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 秒杀服务测试类（Redis用内存Map模拟：SET NX和stock.lua都是原子操作）
+ */
+public class SeckillServiceTest {
+
+    /**
+     * 模拟的Redis数据（库存段key和用户标记key）
+     */
+    private final ConcurrentMap<String, Object> redis = new ConcurrentHashMap<>();
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private DefaultRedisScript<Long> stockScript;
+
+    private RocketMQTemplate rocketMQTemplate;
+
+    private StockGateBroadcaster stockGateBroadcaster;
+
+    private StockGate stockGate;
+
+    private SeckillService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        stockScript = new DefaultRedisScript<>("stock.lua", Long.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(valueOperations.increment(anyString(), anyLong()))
+                .thenAnswer(invocation -> (Long) redis.merge(invocation.getArgument(0), invocation.getArgument(1),
+                        (a, b) -> (Long) a + (Long) b));
+        when(redisTemplate.delete(anyString()))
+                .thenAnswer(invocation -> redis.remove((String) invocation.getArgument(0)) != null);
+        // 与stock.lua一致：-1库存不存在，-2库存不足，否则返回扣减后库存
+        when(redisTemplate.execute(eq(stockScript), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    String key = ((List<String>) invocation.getArgument(1)).get(0);
+                    long quantity = ((Integer) invocation.getArgument(2)).longValue();
+                    long[] result = {-1};
+                    redis.computeIfPresent(key, (k, value) -> {
+                        long stock = (Long) value;
+                        if (stock < quantity) {
+                            result[0] = -2;
+                            return value;
+                        }
+                        result[0] = stock - quantity;
+                        return result[0];
+                    });
+                    return result[0];
+                });
+        // 闸门批次号key（StringRedisTemplate）也存在同一个Map中
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> stringOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringOperations);
+        when(stringOperations.get(anyString())).thenAnswer(invocation -> {
+            Object value = redis.get((String) invocation.getArgument(0));
+            return value == null ? null : value.toString();
+        });
+        when(stringOperations.increment(anyString()))
+                .thenAnswer(invocation -> (Long) redis.merge(invocation.getArgument(0), 1L, (a, b) -> (Long) a + (Long) b));
+        rocketMQTemplate = mock(RocketMQTemplate.class);
+        stockGateBroadcaster = mock(StockGateBroadcaster.class);
+
+        service = new SeckillService();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "stockScript", stockScript);
+        ReflectionTestUtils.setField(service, "rocketMQTemplate", rocketMQTemplate);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(service, "stockGateBroadcaster", stockGateBroadcaster);
+        ReflectionTestUtils.setField(service, "gateEnabled", true);
+        ReflectionTestUtils.setField(service, "userTtlSeconds", 86400L);
+        useSegments(1);
+    }
+
+    @Test
+    public void testConcurrentRequestsOfOneUserBuyOnce() throws Exception {
+        redis.put("seckill:stock:1", 100L);
+
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger success = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    if (service.seckill(request(1001L, 1)) != null) {
+                        success.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 同一用户只有一个请求扣到库存、发出MQ消息
+        assertEquals(1, success.get());
+        assertEquals(99L, redis.get("seckill:stock:1"));
+        verify(rocketMQTemplate, times(1)).convertAndSend(eq("seckill-topic"), any(SeckillDTO.class));
+    }
+
+    @Test
+    public void testMarkerSurvivesSegmentCountChange() {
+        redis.put("seckill:stock:1", 10L);
+        assertNotNull(service.seckill(request(1001L, 1)));
+
+        // 调整为4段重新预热：已秒杀的用户仍被拦住，库存不变
+        useSegments(4);
+        for (int segment = 0; segment < 4; segment++) {
+            redis.put("seckill:stock:1:" + segment, 10L);
+        }
+        assertNull(service.seckill(request(1001L, 1)));
+        for (int segment = 0; segment < 4; segment++) {
+            assertEquals(10L, redis.get("seckill:stock:1:" + segment));
+        }
+        assertNotNull(service.seckill(request(1002L, 1)));
+    }
+
+    @Test
+    public void testInsufficientStockRemovesMarker() {
+        redis.put("seckill:stock:1", 1L);
+
+        assertNull(service.seckill(request(1001L, 2)));
+        // 库存不足删除用户标记，补货后可以再次秒杀
+        assertFalse(redis.containsKey("seckill:user:1001:1"));
+        // 补货预热（重置本地闸门）
+        redis.put("seckill:stock:1", 5L);
+        stockGate.reset(1L, 1L, 5);
+        assertNotNull(service.seckill(request(1001L, 2)));
+        assertEquals(3L, redis.get("seckill:stock:1"));
+    }
+
+    @Test
+    public void testSoldOutBroadcastCarriesEpochFromRedis() {
+        // 本实例启动晚于预热，没有收到重置广播
+        redis.put("seckill:stock:1", 1L);
+        redis.put("seckill:gate:epoch:1", 3L);
+
+        assertNotNull(service.seckill(request(1001L, 1)));
+
+        // 扣减之前读到批次号，售罄广播带上它
+        assertTrue(stockGate.isSoldOut(1L));
+        verify(stockGateBroadcaster).publishSoldOut(1L, 3L);
+    }
+
+    @Test
+    public void testSoldOutWithUnknownEpochIsNotBroadcast() {
+        // 库存未经preloadStock预热，Redis中没有批次号
+        redis.put("seckill:stock:1", 1L);
+
+        assertNotNull(service.seckill(request(1001L, 1)));
+
+        assertTrue(stockGate.isSoldOut(1L));
+        verify(stockGateBroadcaster, never()).publishSoldOut(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testScriptFailureRemovesMarker() {
+        redis.put("seckill:stock:1", 10L);
+        when(redisTemplate.execute(eq(stockScript), anyList(), any())).thenThrow(new IllegalStateException("Redis超时"));
+
+        assertNull(service.seckill(request(1001L, 1)));
+
+        // 未扣到库存：只删除用户标记
+        assertFalse(redis.containsKey("seckill:user:1001:1"));
+        assertEquals(10L, redis.get("seckill:stock:1"));
+        verify(rocketMQTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    public void testSendFailureReturnsStockAndRemovesMarker() {
+        redis.put("seckill:stock:1", 1L);
+        redis.put("seckill:gate:epoch:1", 1L);
+        doThrow(new IllegalStateException("MQ不可用"))
+                .when(rocketMQTemplate).convertAndSend(eq("seckill-topic"), any(SeckillDTO.class));
+
+        assertNull(service.seckill(request(1001L, 1)));
+
+        // 已扣的库存归还，批次号递增（扣完最后一件已关闭的闸门核对后重新打开）
+        assertFalse(redis.containsKey("seckill:user:1001:1"));
+        assertEquals(1L, redis.get("seckill:stock:1"));
+        assertEquals(2L, redis.get("seckill:gate:epoch:1"));
+        assertTrue(stockGate.isSoldOut(1L));
+    }
+
+    @Test
+    public void testCompensatedStockReopensSoldOutGate() {
+        redis.put("seckill:stock:1", 1L);
+        redis.put("seckill:gate:epoch:1", 1L);
+        assertNotNull(service.seckill(request(1001L, 1)));
+        assertTrue(stockGate.isSoldOut(1L));
+
+        // 消费者丢弃订单，RedisStockCompensator归还：INCRBY库存、INCR批次号、删除用户标记
+        redis.merge("seckill:stock:1", 1L, (a, b) -> (Long) a + (Long) b);
+        redis.merge("seckill:gate:epoch:1", 1L, (a, b) -> (Long) a + (Long) b);
+        redis.remove("seckill:user:1001:1");
+
+        // 闸门核对到新批次号后重新打开，归还的库存可以再卖出
+        assertNotNull(service.seckill(request(1002L, 1)));
+        assertEquals(0L, redis.get("seckill:stock:1"));
+        assertEquals(2L, stockGate.epoch(1L));
+        assertTrue(stockGate.isSoldOut(1L));
+    }
+
+    private void useSegments(int count) {
+        StockSegments segments = new StockSegments(count);
+        ReflectionTestUtils.setField(service, "stockSegments", segments);
+        stockGate = new StockGate(segments);
+        ReflectionTestUtils.setField(service, "stockGate", stockGate);
+    }
+
+    private static SeckillDTO request(Long userId, int quantity) {
+        SeckillDTO dto = new SeckillDTO();
+        dto.setUserId(userId);
+        dto.setProductId(1L);
+        dto.setQuantity(quantity);
+        return dto;
+    }
+}
@@ -0,0 +1,42 @@
+package cn.itcast.seckill.stock;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 库存分段测试类
+ */
+public class StockSegmentsTest {
+
+    @Test
+    public void testSingleSegmentKeepsLegacyKey() {
+        StockSegments segments = new StockSegments(1);
+        assertEquals("seckill:stock:1", segments.key(1L, 0));
+        assertArrayEquals(new long[]{100}, segments.split(100));
+        assertEquals(0, segments.home(12345L));
+        assertEquals("seckill:user:1001:1", segments.userKey(1L, 1001L));
+    }
+
+    @Test
+    public void testSplitAndHome() {
+        StockSegments segments = new StockSegments(4);
+        assertEquals("seckill:stock:1:3", segments.key(1L, 3));
+        assertEquals("seckill:user:1001:1", segments.userKey(1L, 1001L));
+        assertArrayEquals(new long[]{3, 3, 2, 2}, segments.split(10));
+        assertArrayEquals(new long[]{0, 0, 0, 0}, segments.split(0));
+
+        // 连续userId均匀分布到各段
+        int[] counts = new int[4];
+        for (long userId = 1; userId <= 40000; userId++) {
+            int home = segments.home(userId);
+            assertEquals(home, segments.home(userId));
+            counts[home]++;
+        }
+        for (int count : counts) {
+            assertTrue("分布不均：" + count, count > 9000 && count < 11000);
+        }
+    }
+}